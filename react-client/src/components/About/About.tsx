@@ -126,6 +126,22 @@ const About = () => {
                   <Table.Td>{i18n.get('JVMMemoryUsage')}</Table.Td>
                   <Table.Td><ServerEventContext.Consumer>{sse => (<MemoryBar decorate={false} sse={sse} i18n={i18n} />)}</ServerEventContext.Consumer></Table.Td>
                 </Table.Tr>
+                <Table.Tr>
+                  <Table.Td>{i18n.get('DataSent')}</Table.Td>
+                  <Table.Td>{aboutDatas.dataSent}</Table.Td>
+                </Table.Tr>
+                <Table.Tr>
+                  <Table.Td>{i18n.get('AverageTransferSpeed')}</Table.Td>
+                  <Table.Td>{aboutDatas.averageTransferSpeed}</Table.Td>
+                </Table.Tr>
+                <Table.Tr>
+                  <Table.Td>{i18n.get('RequestsInFlight')}</Table.Td>
+                  <Table.Td>{aboutDatas.requestsInFlight}</Table.Td>
+                </Table.Tr>
+                <Table.Tr>
+                  <Table.Td>{i18n.get('PeakRequestsInFlight')}</Table.Td>
+                  <Table.Td>{aboutDatas.peakRequestsInFlight}</Table.Td>
+                </Table.Tr>
               </Table.Tbody>
             </>}
           </Table>
@@ -59,6 +59,7 @@ import net.pms.database.MediaDatabase;
 import net.pms.database.UserDatabase;
 import net.pms.encoders.EngineFactory;
 import net.pms.encoders.FFmpegWebVideo;
+import net.pms.encoders.HlsSegmentCache;
 import net.pms.encoders.YoutubeDl;
 import net.pms.external.umsapi.APIUtils;
 import net.pms.external.update.AutoUpdater;
@@ -818,11 +819,15 @@ public class PMS {
 	}
 
 	public void addTempFile(File f) {
-		tfm.add(f);
+		if (tfm != null) {
+			tfm.add(f);
+		}
 	}
 
 	public void addTempFile(File f, int cleanTime) {
-		tfm.add(f, cleanTime);
+		if (tfm != null) {
+			tfm.add(f, cleanTime);
+		}
 	}
 
 	public CodeDb codeDb() {
@@ -1118,6 +1123,7 @@ public class PMS {
 			LOGGER.debug("Shutting down all active processes");
 
 			Services.stopProcessManager();
+			HlsSegmentCache.shutdown();
 			ProcessWrapperImpl.destroyCurrentProcesses();
 		} catch (InterruptedException e) {
 			LOGGER.debug("Interrupted while shutting down..");
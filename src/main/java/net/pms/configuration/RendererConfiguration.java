@@ -181,7 +181,8 @@ public class RendererConfiguration extends BaseConfiguration {
 	public static final File NOFILE = new File("NOFILE");
 	public static final String UNKNOWN_ICON = "unknown.png";
 
-	protected Matcher sortedHeaderMatcher;
+	protected Pattern sortedHeaderPattern;
+	private volatile Pattern upnpDetailsPattern;
 
 	protected UmsConfiguration umsConfiguration = PMS.getConfiguration();
 	protected boolean loaded = false;
@@ -312,7 +313,7 @@ public class RendererConfiguration extends BaseConfiguration {
 			searchMap.put("User-Agent", getUserAgent());
 			searchMap.put(getUserAgentAdditionalHttpHeader(), getUserAgentAdditionalHttpHeaderSearch());
 			String re = searchMap.toRegex();
-			sortedHeaderMatcher = StringUtils.isNotBlank(re) ? Pattern.compile(re, Pattern.CASE_INSENSITIVE).matcher("") : null;
+			sortedHeaderPattern = StringUtils.isNotBlank(re) ? Pattern.compile(re, Pattern.CASE_INSENSITIVE) : null;
 
 			boolean addWatch = file != f;
 			file = f;
@@ -418,6 +419,8 @@ public class RendererConfiguration extends BaseConfiguration {
 		} catch (ConfigurationException e) {
 			LOGGER.debug("Error reloading renderer configuration {}: {}", f, e);
 		}
+		// the headers may match differently now
+		RendererConfigurations.updateMatchers();
 	}
 
 	public void resetLoaded() {
@@ -773,15 +776,27 @@ public class RendererConfiguration extends BaseConfiguration {
 	}
 
 	public boolean matchUPNPDetails(String details) {
-		String upnpDetails = getUpnpDetailsString();
-		Pattern pattern;
+		Pattern pattern = getUpnpDetailsPattern();
+		return pattern != null && pattern.matcher(details.replace("\n", " ")).find();
+	}
 
-		if (StringUtils.isNotBlank(upnpDetails)) {
-			String p = StringUtils.join(upnpDetails.split(" , "), ".*");
+	/**
+	 * @return the pattern matching the UPnP details, or {@code null} if none
+	 *         is defined.
+	 */
+	Pattern getUpnpDetailsPattern() {
+		String upnpDetails = getUpnpDetailsString();
+		if (StringUtils.isBlank(upnpDetails)) {
+			return null;
+		}
+		String p = StringUtils.join(upnpDetails.split(" , "), ".*");
+		// compiled once, unless the configuration changed
+		Pattern pattern = upnpDetailsPattern;
+		if (pattern == null || !pattern.pattern().equals(p)) {
 			pattern = Pattern.compile(p, Pattern.CASE_INSENSITIVE);
-			return pattern.matcher(details.replace("\n", " ")).find();
+			upnpDetailsPattern = pattern;
 		}
-		return false;
+		return pattern;
 	}
 
 	/**
@@ -1660,9 +1675,9 @@ public class RendererConfiguration extends BaseConfiguration {
 	 * @return True if the pattern matches or false if no match, no headers, or no matcher.
 	 */
 	public boolean match(SortedHeaderMap headers) {
-		if (headers != null && !headers.isEmpty() && sortedHeaderMatcher != null) {
+		if (headers != null && !headers.isEmpty() && sortedHeaderPattern != null) {
 			try {
-				return sortedHeaderMatcher.reset(headers.joined()).find();
+				return sortedHeaderPattern.matcher(headers.joined()).find();
 			} catch (Exception e) {
 				return false;
 			}
@@ -1670,6 +1685,14 @@ public class RendererConfiguration extends BaseConfiguration {
 		return false;
 	}
 
+	/**
+	 * @return the pattern matching the headers, or {@code null} if none is
+	 *         defined.
+	 */
+	Pattern getHeadersPattern() {
+		return sortedHeaderPattern;
+	}
+
 	/**
 	 * The loading priority of this renderer. This should be set to 1 (or greater)
 	 * if this renderer config is a more specific version of one we already have.
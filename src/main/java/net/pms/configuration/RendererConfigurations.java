@@ -20,6 +20,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,9 +29,13 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import net.pms.PMS;
 import net.pms.renderers.ConnectedRenderers;
 import net.pms.renderers.Renderer;
@@ -87,6 +92,22 @@ public class RendererConfigurations {
 	};
 	private static final SortedSet<RendererConfiguration> ENABLED_RENDERERS_CONFS = Collections.synchronizedSortedSet(new TreeSet<>(RENDERER_LOADING_PRIORITY_COMPARATOR));
 	private static final Map<String, PropertiesConfiguration> DEVICES_CONFS = Collections.synchronizedMap(new HashMap<>());
+	/**
+	 * The header matches already done, by address and header fingerprint.
+	 */
+	private static final Map<String, Optional<RendererConfiguration>> HEADERS_MATCHES = new ConcurrentHashMap<>();
+	private static final int MAX_HEADERS_MATCHES = 1000;
+	/**
+	 * The matchers of the enabled renderer configurations in loading priority
+	 * order, replaced as a whole so that matching needs no lock.
+	 */
+	private static volatile RendererMatcher headersMatcher = new RendererMatcher(new RendererConfiguration[0], RendererConfiguration::getHeadersPattern);
+	private static volatile RendererMatcher upnpDetailsMatcher = new RendererMatcher(new RendererConfiguration[0], RendererConfiguration::getUpnpDetailsPattern);
+	/**
+	 * The names of the headers the configurations look at: the User-Agent and
+	 * the additional header of each configuration.
+	 */
+	private static volatile Set<String> identifyingHeaders = Set.of("User-Agent");
 
 	private static RendererConfiguration defaultConf;
 	private static Renderer defaultRenderer;
@@ -117,6 +138,28 @@ public class RendererConfigurations {
 
 	private static void addRendererConfiguration(RendererConfiguration r) {
 		ENABLED_RENDERERS_CONFS.add(r);
+		updateMatchers();
+	}
+
+	/**
+	 * Rebuilds the matchers and forgets the header matches already done, once
+	 * the enabled renderer configurations changed or one of them is reloaded.
+	 */
+	static void updateMatchers() {
+		synchronized (ENABLED_RENDERERS_CONFS) {
+			RendererConfiguration[] confs = ENABLED_RENDERERS_CONFS.toArray(RendererConfiguration[]::new);
+			Set<String> headerNames = new TreeSet<>(SortedHeaderMap.CASE_INSENSITIVE_COMPARATOR);
+			headerNames.add("User-Agent");
+			for (RendererConfiguration r : confs) {
+				if (StringUtils.isNotBlank(r.getUserAgentAdditionalHttpHeader())) {
+					headerNames.add(r.getUserAgentAdditionalHttpHeader().trim());
+				}
+			}
+			identifyingHeaders = Collections.unmodifiableSet(headerNames);
+			headersMatcher = new RendererMatcher(confs, RendererConfiguration::getHeadersPattern);
+			upnpDetailsMatcher = new RendererMatcher(confs, RendererConfiguration::getUpnpDetailsPattern);
+			HEADERS_MATCHES.clear();
+		}
 	}
 
 	/**
@@ -139,30 +182,99 @@ public class RendererConfigurations {
 		return null;
 	}
 
-	public static synchronized RendererConfiguration getRendererConfigurationByHeaders(SortedHeaderMap sortedHeaders) {
+	/**
+	 * Tries to find a matching renderer configuration based on the request
+	 * headers.
+	 *
+	 * @param sortedHeaders the request headers.
+	 * @return The matching renderer configuration or <code>null</code>
+	 * @see #getRendererConfigurationByHeaders(SortedHeaderMap, InetAddress)
+	 */
+	public static RendererConfiguration getRendererConfigurationByHeaders(SortedHeaderMap sortedHeaders) {
+		return getRendererConfigurationByHeaders(sortedHeaders, null);
+	}
+
+	/**
+	 * Tries to find a matching renderer configuration based on the request
+	 * headers.
+	 * <p>
+	 * The configurations only look at the User-Agent and at their additional
+	 * header, so only these headers are matched. The result is kept for the
+	 * next requests from the same address with the same values for these
+	 * headers, whatever their other headers (Range, Date...).
+	 *
+	 * @param sortedHeaders the request headers.
+	 * @param ia the request's origin address, or {@code null}.
+	 * @return The matching renderer configuration or <code>null</code>
+	 */
+	public static RendererConfiguration getRendererConfigurationByHeaders(SortedHeaderMap sortedHeaders, InetAddress ia) {
 		if (PMS.getConfiguration().isRendererForceDefault()) {
 			// Force default renderer
 			RendererConfiguration r = getDefaultConf();
 			LOGGER.debug("Forcing renderer match to \"" + r.getRendererName() + "\"");
 			return r;
 		}
-		for (RendererConfiguration r : ENABLED_RENDERERS_CONFS) {
-			if (r.match(sortedHeaders)) {
-				LOGGER.debug("Matched media renderer \"" + r.getRendererName() + "\" based on headers " + sortedHeaders);
-				return r;
+		if (sortedHeaders == null || sortedHeaders.isEmpty()) {
+			return null;
+		}
+		SortedHeaderMap fingerprint = getHeadersFingerprint(sortedHeaders);
+		StringBuilder key = new StringBuilder(ia != null ? ia.getHostAddress() : "");
+		for (Map.Entry<String, String> header : fingerprint.entrySet()) {
+			key.append('\n').append(header.getKey().toLowerCase(Locale.ROOT)).append(':').append(header.getValue());
+		}
+		String cacheKey = key.toString();
+		Optional<RendererConfiguration> match = HEADERS_MATCHES.get(cacheKey);
+		if (match == null) {
+			match = Optional.ofNullable(matchHeaders(fingerprint));
+			if (HEADERS_MATCHES.size() >= MAX_HEADERS_MATCHES) {
+				// make room for this one, the others stay
+				Iterator<String> iterator = HEADERS_MATCHES.keySet().iterator();
+				if (iterator.hasNext()) {
+					iterator.next();
+					iterator.remove();
+				}
 			}
+			HEADERS_MATCHES.put(cacheKey, match);
 		}
-		return null;
+		return match.orElse(null);
 	}
 
-	public static synchronized RendererConfiguration getRendererConfigurationByUPNPDetails(String details) {
-		for (RendererConfiguration r : ENABLED_RENDERERS_CONFS) {
-			if (r.matchUPNPDetails(details)) {
-				LOGGER.debug("Matched media renderer \"" + r.getRendererName() + "\" based on dlna details \"" + details + "\"");
-				return r;
-			}
+	/**
+	 * @return the number of header matches kept.
+	 */
+	static int getHeadersMatchesCount() {
+		return HEADERS_MATCHES.size();
+	}
+
+	/**
+	 * @param sortedHeaders the request headers.
+	 * @return the headers the renderer configurations look at.
+	 */
+	static SortedHeaderMap getHeadersFingerprint(SortedHeaderMap sortedHeaders) {
+		SortedHeaderMap fingerprint = new SortedHeaderMap();
+		for (String name : identifyingHeaders) {
+			fingerprint.put(name, sortedHeaders.get(name));
 		}
-		return null;
+		return fingerprint;
+	}
+
+	private static RendererConfiguration matchHeaders(SortedHeaderMap fingerprint) {
+		if (fingerprint.isEmpty()) {
+			return null;
+		}
+		RendererConfiguration r = headersMatcher.match(fingerprint.joined());
+		if (r != null) {
+			LOGGER.debug("Matched media renderer \"" + r.getRendererName() + "\" based on headers " + fingerprint);
+		}
+		return r;
+	}
+
+	public static RendererConfiguration getRendererConfigurationByUPNPDetails(String details) {
+		RendererConfiguration r = upnpDetailsMatcher.match(details.replace("\n", " "));
+		if (r != null) {
+			LOGGER.debug("Matched media renderer \"" + r.getRendererName() + "\" based on dlna details \"" + details + "\"");
+		}
+		return r;
 	}
 
 	public static File getRenderersDir() {
@@ -377,6 +489,7 @@ public class RendererConfigurations {
 
 			loadConfigurations(getProfileRenderersDir(), true);
 			loadConfigurations(getRenderersDir(), false);
+			updateMatchers();
 		}
 
 		LOGGER.info("Enabled " + ENABLED_RENDERERS_CONFS.size() + " configurations, listed in order of loading priority:");
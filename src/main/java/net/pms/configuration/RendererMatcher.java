@@ -0,0 +1,441 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.configuration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recognizes renderer configurations with a single automaton combining the
+ * patterns of all of them.
+ * <p>
+ * Most patterns can only match a text containing a given literal, like
+ * "SEC_HHP_" or "BRAVIA KDL", or one of a few literals when they have
+ * alternatives. These literals are compiled into one Aho-Corasick automaton,
+ * and a single pass of it over the text tells which patterns may match. Only
+ * these, and the patterns without such literals, are then evaluated, in
+ * loading priority order, so the first configuration matching wins as when
+ * the configurations are matched one after the other.
+ */
+final class RendererMatcher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RendererMatcher.class);
+	/**
+	 * Inline flags and quotes change how the pattern reads, no literal is
+	 * taken from patterns using them.
+	 */
+	private static final Pattern UNREADABLE = Pattern.compile("\\\\Q|\\(\\?[a-zA-Z-]");
+	/**
+	 * The escaped letters standing for a class, a boundary or a control
+	 * character.
+	 */
+	private static final String SIMPLE_ESCAPES = "dDsSwWhHvVbBAzZGRXtnrfe";
+
+	private final RendererConfiguration[] confs;
+	private final Pattern[] patterns;
+	/**
+	 * The literals of each pattern, one of them being enough, or
+	 * {@code null} if the pattern must always be evaluated.
+	 */
+	private final int[][] literals;
+	private final Automaton automaton;
+
+	/**
+	 * @param confs the configurations, in loading priority order.
+	 * @param patternGetter gives the pattern of a configuration, or
+	 *            {@code null} if it has none.
+	 */
+	RendererMatcher(RendererConfiguration[] confs, Function<RendererConfiguration, Pattern> patternGetter) {
+		this.confs = confs;
+		patterns = new Pattern[confs.length];
+		literals = new int[confs.length][];
+		Map<String, Integer> literalIds = new LinkedHashMap<>();
+		for (int i = 0; i < confs.length; i++) {
+			Pattern pattern;
+			try {
+				pattern = patternGetter.apply(confs[i]);
+			} catch (PatternSyntaxException e) {
+				LOGGER.debug("Invalid pattern in renderer configuration {}: {}", confs[i].getConfName(), e.getMessage());
+				pattern = null;
+			}
+			patterns[i] = pattern;
+			List<String> required = pattern != null ? getRequiredLiterals(pattern.pattern()) : null;
+			if (required != null) {
+				literals[i] = new int[required.size()];
+				for (int j = 0; j < required.size(); j++) {
+					literals[i][j] = literalIds.computeIfAbsent(required.get(j), key -> literalIds.size());
+				}
+			}
+		}
+		automaton = new Automaton(new ArrayList<>(literalIds.keySet()));
+	}
+
+	/**
+	 * @param text the text to match.
+	 * @return the first configuration matching, or {@code null}.
+	 */
+	RendererConfiguration match(String text) {
+		BitSet found = automaton.search(text.toLowerCase(Locale.ROOT));
+		for (int i = 0; i < confs.length; i++) {
+			if (patterns[i] != null && mayMatch(literals[i], found) && patterns[i].matcher(text).find()) {
+				return confs[i];
+			}
+		}
+		return null;
+	}
+
+	private static boolean mayMatch(int[] required, BitSet found) {
+		if (required == null) {
+			return true;
+		}
+		for (int literal : required) {
+			if (found.get(literal)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the literals that any text matching a pattern contains one of:
+	 * the longest literal of each alternative of the pattern.
+	 *
+	 * @param regex the pattern.
+	 * @return the literals in lower case, or {@code null} if an alternative
+	 *         has none.
+	 */
+	static List<String> getRequiredLiterals(String regex) {
+		if (UNREADABLE.matcher(regex).find()) {
+			return null;
+		}
+		List<String> result = new ArrayList<>();
+		int start = 0;
+		while (start <= regex.length()) {
+			int end = findAlternativeEnd(regex, start);
+			List<String> runs = new ArrayList<>();
+			if (!addRequiredLiterals(regex, start, end, runs)) {
+				return null;
+			}
+			String longest = null;
+			for (String run : runs) {
+				if (longest == null || run.length() > longest.length()) {
+					longest = run;
+				}
+			}
+			if (longest == null) {
+				return null;
+			}
+			result.add(longest);
+			start = end + 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the literals required by a part of a pattern.
+	 *
+	 * @return {@code false} if the part has alternatives or can't be read, so
+	 *         it requires nothing.
+	 */
+	private static boolean addRequiredLiterals(String regex, int start, int end, List<String> runs) {
+		List<String> found = new ArrayList<>();
+		StringBuilder run = new StringBuilder();
+		int i = start;
+		while (i < end) {
+			char c = regex.charAt(i);
+			switch (c) {
+				case '|' -> {
+					return false;
+				}
+				case '\\' -> {
+					if (i + 1 >= end) {
+						return false;
+					}
+					char escaped = regex.charAt(i + 1);
+					i += 2;
+					if (Character.isLetterOrDigit(escaped)) {
+						if (SIMPLE_ESCAPES.indexOf(escaped) < 0) {
+							// a code point, a property or a back reference
+							return false;
+						}
+						endRun(run, found);
+						i = skipQuantifier(regex, i, end);
+					} else if (isOptional(regex, i, end)) {
+						endRun(run, found);
+						i = skipQuantifier(regex, i, end);
+					} else {
+						run.append(Character.toLowerCase(escaped));
+						i = endRunIfRepeated(regex, i, end, run, found);
+					}
+				}
+				case '[' -> {
+					endRun(run, found);
+					i = skipClass(regex, i, end);
+					i = skipQuantifier(regex, i, end);
+				}
+				case '(' -> {
+					endRun(run, found);
+					int close = findGroupEnd(regex, i, end);
+					if (close < 0) {
+						return false;
+					}
+					int contentStart = i + 1;
+					boolean required = true;
+					if (regex.startsWith("?:", contentStart)) {
+						contentStart += 2;
+					} else if (regex.startsWith("?<", contentStart) && contentStart + 2 < close && Character.isLetter(regex.charAt(contentStart + 2))) {
+						contentStart = regex.indexOf('>', contentStart) + 1;
+					} else if (contentStart < close && regex.charAt(contentStart) == '?') {
+						// lookarounds and atomic groups
+						required = false;
+					}
+					i = close + 1;
+					if (isOptional(regex, i, end)) {
+						required = false;
+					}
+					i = skipQuantifier(regex, i, end);
+					if (required) {
+						addRequiredLiterals(regex, contentStart, close, found);
+					}
+				}
+				case '.', '^', '$' -> {
+					endRun(run, found);
+					i = skipQuantifier(regex, i + 1, end);
+				}
+				case '*', '?', '+', '{', ')' -> {
+					// a quantifier is read with its atom
+					return false;
+				}
+				default -> {
+					i++;
+					if (isOptional(regex, i, end)) {
+						endRun(run, found);
+						i = skipQuantifier(regex, i, end);
+					} else {
+						run.append(Character.toLowerCase(c));
+						i = endRunIfRepeated(regex, i, end, run, found);
+					}
+				}
+			}
+		}
+		endRun(run, found);
+		runs.addAll(found);
+		return true;
+	}
+
+	private static void endRun(StringBuilder run, List<String> runs) {
+		if (run.length() > 0) {
+			runs.add(run.toString());
+			run.setLength(0);
+		}
+	}
+
+	/**
+	 * A repeated atom is still required, but the run can't go past it.
+	 */
+	private static int endRunIfRepeated(String regex, int i, int end, StringBuilder run, List<String> runs) {
+		if (i < end && (regex.charAt(i) == '+' || regex.charAt(i) == '{')) {
+			endRun(run, runs);
+			return skipQuantifier(regex, i, end);
+		}
+		return i;
+	}
+
+	/**
+	 * @return whether the quantifier at {@code i} allows no occurrence.
+	 */
+	private static boolean isOptional(String regex, int i, int end) {
+		if (i >= end) {
+			return false;
+		}
+		char c = regex.charAt(i);
+		return c == '*' || c == '?' || (c == '{' && i + 1 < end && regex.charAt(i + 1) == '0');
+	}
+
+	private static int skipQuantifier(String regex, int i, int end) {
+		if (i < end) {
+			char c = regex.charAt(i);
+			if (c == '{') {
+				int close = regex.indexOf('}', i);
+				i = close < 0 || close >= end ? end : close + 1;
+			} else if (c == '*' || c == '?' || c == '+') {
+				i++;
+			} else {
+				return i;
+			}
+			// lazy or possessive
+			if (i < end && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+				i++;
+			}
+		}
+		return i;
+	}
+
+	private static int skipClass(String regex, int i, int end) {
+		int depth = 0;
+		while (i < end) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i += 2;
+				continue;
+			}
+			if (c == '[') {
+				depth++;
+				if (i + 1 < end && regex.charAt(i + 1) == '^') {
+					i++;
+				}
+				if (i + 1 < end && regex.charAt(i + 1) == ']') {
+					i++;
+				}
+			} else if (c == ']' && --depth == 0) {
+				return i + 1;
+			}
+			i++;
+		}
+		return end;
+	}
+
+	private static int findAlternativeEnd(String regex, int i) {
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '|') {
+				return i;
+			} else if (c == '\\') {
+				i += 2;
+			} else if (c == '[') {
+				i = skipClass(regex, i, regex.length());
+			} else if (c == '(') {
+				int close = findGroupEnd(regex, i, regex.length());
+				i = close < 0 ? regex.length() : close + 1;
+			} else {
+				i++;
+			}
+		}
+		return regex.length();
+	}
+
+	private static int findGroupEnd(String regex, int i, int end) {
+		int depth = 0;
+		while (i < end) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				i += 2;
+				continue;
+			}
+			if (c == '[') {
+				i = skipClass(regex, i, end);
+				continue;
+			}
+			if (c == '(') {
+				depth++;
+			} else if (c == ')' && --depth == 0) {
+				return i;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * An Aho-Corasick automaton finding all the literals a text contains in a
+	 * single pass.
+	 */
+	private static class Automaton {
+		private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+		private final List<Integer> failures = new ArrayList<>();
+		private final List<BitSet> outputs = new ArrayList<>();
+		private final int count;
+
+		private Automaton(List<String> literals) {
+			count = literals.size();
+			addState();
+			for (int id = 0; id < literals.size(); id++) {
+				int state = 0;
+				for (char c : literals.get(id).toCharArray()) {
+					Integer next = transitions.get(state).get(c);
+					if (next == null) {
+						next = addState();
+						transitions.get(state).put(c, next);
+					}
+					state = next;
+				}
+				outputs.get(state).set(id);
+			}
+			Queue<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+			while (!queue.isEmpty()) {
+				int state = queue.poll();
+				for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+					int next = transition.getValue();
+					int failure = 0;
+					if (state > 0) {
+						failure = failures.get(state);
+						while (failure > 0 && !transitions.get(failure).containsKey(transition.getKey())) {
+							failure = failures.get(failure);
+						}
+						failure = transitions.get(failure).getOrDefault(transition.getKey(), 0);
+					}
+					failures.set(next, failure);
+					outputs.get(next).or(outputs.get(failure));
+					queue.add(next);
+				}
+			}
+		}
+
+		private int addState() {
+			transitions.add(new HashMap<>());
+			failures.add(0);
+			outputs.add(new BitSet());
+			return transitions.size() - 1;
+		}
+
+		/**
+		 * @param text the text, in lower case.
+		 * @return the literals found in the text.
+		 */
+		private BitSet search(String text) {
+			BitSet found = new BitSet(count);
+			if (count == 0) {
+				return found;
+			}
+			int state = 0;
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				Integer next = transitions.get(state).get(c);
+				while (next == null && state > 0) {
+					state = failures.get(state);
+					next = transitions.get(state).get(c);
+				}
+				state = next != null ? next : 0;
+				found.or(outputs.get(state));
+			}
+			return found;
+		}
+	}
+
+}
@@ -252,6 +252,8 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_DATABASE_MEDIA_CACHE_SIZE_KB = "database_media_cache_size";
 	private static final String KEY_DATABASE_MEDIA_USE_CACHE_SOFT = "database_media_use_cache_soft";
 	private static final String KEY_DATABASE_MEDIA_USE_MEMORY_INDEXES = "database_media_use_memory_indexes";
+	private static final String KEY_DATABASE_MEDIA_WRITE_GROUP_DELAY = "database_media_write_group_delay";
+	private static final String KEY_DATABASE_MEDIA_WRITE_GROUP_SIZE = "database_media_write_group_size";
 	private static final String KEY_DISABLE_EXTERNAL_ENTITIES = "disable_external_entities";
 	private static final String KEY_DISABLE_FAKESIZE = "disable_fakesize";
 	private static final String KEY_DISABLE_SUBTITLES = "disable_subtitles";
@@ -267,6 +269,7 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_ENGINES_PRIORITY = "engines_priority";
 	/* Start without external network (increase startup speed) */
 	private static final String KEY_EXTERNAL_NETWORK = "external_network";
+	private static final String KEY_EXTERNAL_NETWORK_CACHE_SIZE = "external_network_cache_size";
 	private static final String KEY_FFMPEG_AVAILABLE_GPU_ACCELERATION_METHODS = "ffmpeg_available_gpu_acceleration_methods";
 	private static final String KEY_FFMPEG_AVISYNTH_2D_TO_3D = "ffmpeg_avisynth_2d_to_3d_conversion";
 	private static final String KEY_FFMPEG_AVISYNTH_CONVERSION_ALGORITHM_2D_TO_3D = "ffmpeg_avisynth_conversion_algorithm_index_2d_to_3d";
@@ -307,6 +310,9 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_HIDE_EMPTY_FOLDERS = "hide_empty_folders";
 	private static final String KEY_HIDE_ENGINENAMES = "hide_enginenames";
 	private static final String KEY_HIDE_EXTENSIONS = "hide_extensions";
+	private static final String KEY_HLS_SEGMENT_CACHE = "hls_segment_cache";
+	private static final String KEY_HLS_SEGMENT_CACHE_SIZE = "hls_segment_cache_size";
+	private static final String KEY_HLS_SEGMENT_LOOK_AHEAD = "hls_segment_look_ahead";
 	private static final String KEY_IGNORE_THE_WORD_A_AND_THE = "ignore_the_word_a_and_the";
 	private static final String KEY_IMAGE_THUMBNAILS_ENABLED = "image_thumbnails";
 	private static final String KEY_INFO_DB_RETRY = "infodb_retry";
@@ -328,6 +334,8 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_MAX_AUDIO_BUFFER = "maximum_audio_buffer_size";
 	private static final String KEY_MAX_BITRATE = "maximum_bitrate";
 	private static final String KEY_MAX_MEMORY_BUFFER_SIZE = "maximum_video_buffer_size";
+	private static final String KEY_MEDIAINFO_BULK_EXTRACTION = "mediainfo_bulk_extraction";
+	private static final String KEY_MEDIAINFO_POOL_SIZE = "mediainfo_pool_size";
 	private static final String KEY_MENCODER_ASS = "mencoder_ass";
 	private static final String KEY_MENCODER_AC3_FIXED = "mencoder_ac3_fixed";
 	private static final String KEY_MENCODER_CODEC_SPECIFIC_SCRIPT = "mencoder_codec_specific_script";
@@ -376,6 +384,7 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_PROFILE_NAME = "name";
 	private static final String KEY_RENDERER_DEFAULT = "renderer_default";
 	private static final String KEY_RENDERER_FORCE_DEFAULT = "renderer_force_default";
+	private static final String KEY_RESOLVER_THREADS_PER_RENDERER = "resolver_threads_per_renderer";
 	private static final String KEY_RENDERERS_FILTER = "renderers_filter";
 	private static final String KEY_RENDERERS_USER = "renderers_user";
 	private static final String KEY_RESUME = "resume";
@@ -384,7 +393,9 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_RESUME_REWIND = "resume_rewind";
 	private static final String KEY_ROOT_LOG_LEVEL = "log_level";
 	private static final String KEY_RUN_WIZARD = "run_wizard";
+	private static final String KEY_SCAN_INCREMENTAL = "scan_incremental";
 	private static final String KEY_SCAN_SHARED_FOLDERS_ON_STARTUP = "scan_shared_folders_on_startup";
+	private static final String KEY_SCAN_THREADS_PER_DISK = "scan_threads_per_disk";
 	private static final String KEY_SCRIPT_DIR = "script_dir";
 	private static final String KEY_SEARCH_FOLDER = "search_folder";
 	private static final String KEY_SEARCH_IN_FOLDER = "search_in_folder";
@@ -392,6 +403,7 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_SEARCH_RECURSE_DEPTH = "search_recurse_depth";
 	private static final String KEY_SELECTED_RENDERERS = "selected_renderers";
 	private static final String KEY_SERVER_ENGINE = "server_engine";
+	private static final String KEY_SERVER_VIRTUAL_THREADS = "server_virtual_threads";
 	private static final String KEY_SERVER_HOSTNAME = "hostname";
 	private static final String KEY_SERVER_NAME = "server_name";
 	private static final String KEY_SERVER_PORT = "port";
@@ -417,10 +429,14 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_SUBTITLES_CODEPAGE = "subtitles_codepage";
 	private static final String KEY_SUBTITLES_LANGUAGES = "subtitles_languages";
 	private static final String KEY_TEMP_FOLDER_PATH = "temp_directory";
+	private static final String KEY_THUMBNAIL_CACHE_DISK_SIZE = "thumbnail_cache_disk_size";
+	private static final String KEY_THUMBNAIL_CACHE_MEMORY_SIZE = "thumbnail_cache_memory_size";
 	private static final String KEY_THUMBNAIL_GENERATION_ENABLED = "generate_thumbnails";
 	private static final String KEY_THUMBNAIL_SEEK_POS = "thumbnail_seek_position";
 	private static final String KEY_TMDB_API_KEY = "tmdb_api_key";
 	private static final String KEY_TRANSCODE_BLOCKS_MULTIPLE_CONNECTIONS = "transcode_block_multiple_connections";
+	private static final String KEY_TRANSCODE_BUFFER_MEMORY_BUDGET = "transcode_buffer_memory_budget";
+	private static final String KEY_TRANSCODE_BUFFER_OFF_HEAP = "transcode_buffer_off_heap";
 	private static final String KEY_TRANSCODE_FOLDER_NAME = "transcode_folder_name";
 	private static final String KEY_TRANSCODE_KEEP_FIRST_CONNECTION = "transcode_keep_first_connection";
 	private static final String KEY_TSMUXER_FORCEFPS = "tsmuxer_forcefps";
@@ -444,6 +460,9 @@ public class UmsConfiguration extends BaseConfiguration {
 	private static final String KEY_VLC_USE_EXPERIMENTAL_CODECS = "vlc_use_experimental_codecs";
 	private static final String KEY_VLC_USE_HW_ACCELERATION = "vlc_use_hw_acceleration";
 	private static final String KEY_WAS_YOUTUBE_DL_ENABLED_ONCE = "was_youtube_dl_enabled_once";
+	private static final String KEY_WEB_GUI_EVENTS_COALESCE = "web_gui_events_coalesce";
+	private static final String KEY_WEB_GUI_EVENTS_DROP_OLDEST = "web_gui_events_drop_oldest";
+	private static final String KEY_WEB_GUI_EVENTS_QUEUE_SIZE = "web_gui_events_queue_size";
 	private static final String KEY_WEB_GUI_ON_START = "web_gui_on_start";
 	private static final String KEY_WEB_GUI_PORT = "web_gui_port";
 	private static final String KEY_WEB_PATH = "web_path";
@@ -1593,6 +1612,64 @@ public class UmsConfiguration extends BaseConfiguration {
 		configuration.setProperty(KEY_SERVER_ENGINE, value);
 	}
 
+	/**
+	 * Whether the media server requests should each run on their own virtual
+	 * thread. Only effective when the JVM supports virtual threads (Java 21
+	 * and later), platform thread pools are used otherwise.
+	 *
+	 * @return true if virtual threads should be used.
+	 */
+	public boolean isServerVirtualThreads() {
+		return getBoolean(KEY_SERVER_VIRTUAL_THREADS, false);
+	}
+
+	public void setServerVirtualThreads(boolean value) {
+		configuration.setProperty(KEY_SERVER_VIRTUAL_THREADS, value);
+	}
+
+	/**
+	 * Returns the maximum number of store resources of a renderer that are
+	 * resolved at the same time when browsing. Default value is 3.
+	 *
+	 * @return the number of resources resolved in parallel for a renderer.
+	 */
+	public int getResolverThreadsPerRenderer() {
+		return Math.max(1, getInt(KEY_RESOLVER_THREADS_PER_RENDERER, 3));
+	}
+
+	public void setResolverThreadsPerRenderer(int value) {
+		configuration.setProperty(KEY_RESOLVER_THREADS_PER_RENDERER, value);
+	}
+
+	/**
+	 * Returns the number of MediaInfo handles used to parse files in
+	 * parallel. Default value is the number of processors.
+	 *
+	 * @return the number of MediaInfo handles.
+	 */
+	public int getMediaInfoPoolSize() {
+		int size = getInt(KEY_MEDIAINFO_POOL_SIZE, 0);
+		return size > 0 ? size : Runtime.getRuntime().availableProcessors();
+	}
+
+	public void setMediaInfoPoolSize(int value) {
+		configuration.setProperty(KEY_MEDIAINFO_POOL_SIZE, value);
+	}
+
+	/**
+	 * Whether MediaInfo gives all the fields of a file in a single call
+	 * instead of one call per field. Default value is false.
+	 *
+	 * @return true if the fields are read in bulk.
+	 */
+	public boolean isMediaInfoBulkExtraction() {
+		return getBoolean(KEY_MEDIAINFO_BULK_EXTRACTION, false);
+	}
+
+	public void setMediaInfoBulkExtraction(boolean value) {
+		configuration.setProperty(KEY_MEDIAINFO_BULK_EXTRACTION, value);
+	}
+
 	/**
 	 * The server port where UMS listens for TCP/IP traffic. Default value is 5001.
 	 * @return The port number.
@@ -2540,6 +2617,34 @@ public class UmsConfiguration extends BaseConfiguration {
 		configuration.setProperty(KEY_THUMBNAIL_SEEK_POS, value);
 	}
 
+	/**
+	 * Returns the maximum memory (in MB) used to keep the thumbnails converted
+	 * for the renderers. 0 disables it. Default value is 16.
+	 *
+	 * @return The maximum memory size.
+	 */
+	public int getThumbnailCacheMemorySize() {
+		return Math.max(0, getInt(KEY_THUMBNAIL_CACHE_MEMORY_SIZE, 16));
+	}
+
+	public void setThumbnailCacheMemorySize(int value) {
+		configuration.setProperty(KEY_THUMBNAIL_CACHE_MEMORY_SIZE, value);
+	}
+
+	/**
+	 * Returns the maximum disk space (in MB) used to keep the thumbnails
+	 * converted for the renderers. 0 disables it. Default value is 256.
+	 *
+	 * @return The maximum disk size.
+	 */
+	public int getThumbnailCacheDiskSize() {
+		return Math.max(0, getInt(KEY_THUMBNAIL_CACHE_DISK_SIZE, 256));
+	}
+
+	public void setThumbnailCacheDiskSize(int value) {
+		configuration.setProperty(KEY_THUMBNAIL_CACHE_DISK_SIZE, value);
+	}
+
 	/**
 	 * Returns true if UMS should generate thumbnails for images. Default value
 	 * is true.
@@ -2613,6 +2718,50 @@ public class UmsConfiguration extends BaseConfiguration {
 		configuration.setProperty(KEY_MINIMIZED, value);
 	}
 
+	/**
+	 * Whether a web gui event waiting to be sent replaces the previous one
+	 * of the same kind still waiting, like memory usage or renderer updates.
+	 * Default value is true.
+	 *
+	 * @return whether the web gui events are coalesced.
+	 */
+	public boolean isWebGuiEventsCoalesce() {
+		return getBoolean(KEY_WEB_GUI_EVENTS_COALESCE, true);
+	}
+
+	public void setWebGuiEventsCoalesce(boolean value) {
+		configuration.setProperty(KEY_WEB_GUI_EVENTS_COALESCE, value);
+	}
+
+	/**
+	 * Whether the oldest web gui event waiting is dropped when the queue of
+	 * a browser is full. Otherwise the browser is disconnected, and will
+	 * reconnect. Default value is true.
+	 *
+	 * @return whether the oldest events are dropped.
+	 */
+	public boolean isWebGuiEventsDropOldest() {
+		return getBoolean(KEY_WEB_GUI_EVENTS_DROP_OLDEST, true);
+	}
+
+	public void setWebGuiEventsDropOldest(boolean value) {
+		configuration.setProperty(KEY_WEB_GUI_EVENTS_DROP_OLDEST, value);
+	}
+
+	/**
+	 * Returns the maximum number of web gui events waiting to be sent to a
+	 * single browser. Default value is 1000.
+	 *
+	 * @return the queue size.
+	 */
+	public int getWebGuiEventsQueueSize() {
+		return Math.max(1, getInt(KEY_WEB_GUI_EVENTS_QUEUE_SIZE, 1000));
+	}
+
+	public void setWebGuiEventsQueueSize(int value) {
+		configuration.setProperty(KEY_WEB_GUI_EVENTS_QUEUE_SIZE, value);
+	}
+
 	/**
 	 * Whether we should open a browser.
 	 *
@@ -2868,6 +3017,49 @@ public class UmsConfiguration extends BaseConfiguration {
 		configuration.setProperty(KEY_MENCODER_CODEC_SPECIFIC_SCRIPT, value);
 	}
 
+	/**
+	 * Returns whether HLS segments are written ahead into a disk cache by a
+	 * single transcoding process per item and rendition, instead of starting
+	 * a transcoding process per segment. Default value is true.
+	 *
+	 * @return {@code true} if the HLS segment cache is used.
+	 */
+	public boolean isHlsSegmentCache() {
+		return getBoolean(KEY_HLS_SEGMENT_CACHE, true);
+	}
+
+	public void setHlsSegmentCache(boolean value) {
+		configuration.setProperty(KEY_HLS_SEGMENT_CACHE, value);
+	}
+
+	/**
+	 * Returns the maximum disk space (in MB) used by the HLS segment cache.
+	 * Default value is 1024.
+	 *
+	 * @return The maximum cache size.
+	 */
+	public int getHlsSegmentCacheSize() {
+		return Math.max(64, getInt(KEY_HLS_SEGMENT_CACHE_SIZE, 1024));
+	}
+
+	public void setHlsSegmentCacheSize(int value) {
+		configuration.setProperty(KEY_HLS_SEGMENT_CACHE_SIZE, value);
+	}
+
+	/**
+	 * Returns the number of HLS segments transcoded ahead of the last
+	 * requested one. Default value is 10.
+	 *
+	 * @return The number of segments.
+	 */
+	public int getHlsSegmentLookAhead() {
+		return Math.max(2, getInt(KEY_HLS_SEGMENT_LOOK_AHEAD, 10));
+	}
+
+	public void setHlsSegmentLookAhead(int value) {
+		configuration.setProperty(KEY_HLS_SEGMENT_LOOK_AHEAD, value);
+	}
+
 	/**
 	 * Returns the maximum size (in MB) that UMS should use for buffering
 	 * audio.
@@ -3169,6 +3361,37 @@ public class UmsConfiguration extends BaseConfiguration {
 		configuration.setProperty(KEY_TRANSCODE_BLOCKS_MULTIPLE_CONNECTIONS, value);
 	}
 
+	/**
+	 * Whether the transcoding buffers should be kept outside the Java heap,
+	 * in pooled direct memory that spills to memory-mapped temporary files
+	 * once {@link #getTranscodeBufferMemoryBudget()} is used up.
+	 * Default is false.
+	 *
+	 * @return true if the transcoding buffers are off-heap.
+	 */
+	public boolean isTranscodeBufferOffHeap() {
+		return getBoolean(KEY_TRANSCODE_BUFFER_OFF_HEAP, false);
+	}
+
+	public void setTranscodeBufferOffHeap(boolean value) {
+		configuration.setProperty(KEY_TRANSCODE_BUFFER_OFF_HEAP, value);
+	}
+
+	/**
+	 * Returns the amount of direct memory in megabytes that all off-heap
+	 * transcoding buffers together may use before spilling to disk.
+	 * Default value is 512.
+	 *
+	 * @return The off-heap transcoding buffers memory budget.
+	 */
+	public int getTranscodeBufferMemoryBudget() {
+		return Math.max(0, getInt(KEY_TRANSCODE_BUFFER_MEMORY_BUDGET, 512));
+	}
+
+	public void setTranscodeBufferMemoryBudget(int value) {
+		configuration.setProperty(KEY_TRANSCODE_BUFFER_MEMORY_BUDGET, Math.max(0, value));
+	}
+
 	public boolean getTrancodeKeepFirstConnections() {
 		return getBoolean(KEY_TRANSCODE_KEEP_FIRST_CONNECTION, true);
 	}
@@ -4427,6 +4650,35 @@ public class UmsConfiguration extends BaseConfiguration {
 		this.configuration.setProperty(KEY_SCAN_SHARED_FOLDERS_ON_STARTUP, value);
 	}
 
+	/**
+	 * Whether the media scanner skips the folders that did not change since
+	 * the previous scan. Default value is true.
+	 *
+	 * @return whether unchanged folders are skipped.
+	 */
+	public boolean isScanIncremental() {
+		return getBoolean(KEY_SCAN_INCREMENTAL, true);
+	}
+
+	public void setScanIncremental(final boolean value) {
+		configuration.setProperty(KEY_SCAN_INCREMENTAL, value);
+	}
+
+	/**
+	 * Returns the number of folders scanned at the same time on a single
+	 * storage device. Different devices are scanned in parallel. Default value
+	 * is 2.
+	 *
+	 * @return the number of folders scanned at once per device.
+	 */
+	public int getScanThreadsPerDisk() {
+		return Math.max(1, getInt(KEY_SCAN_THREADS_PER_DISK, 2));
+	}
+
+	public void setScanThreadsPerDisk(int value) {
+		configuration.setProperty(KEY_SCAN_THREADS_PER_DISK, value);
+	}
+
 	/**
 	 * Whether to show the "Recently Played" folder on the renderer.
 	 *
@@ -4704,6 +4956,21 @@ public class UmsConfiguration extends BaseConfiguration {
 		configuration.setProperty(KEY_EXTERNAL_NETWORK, b);
 	}
 
+	/**
+	 * Returns the maximum disk space (in MB) used to keep the responses of
+	 * the external servers, like metadata and posters. 0 disables it.
+	 * Default value is 512.
+	 *
+	 * @return The maximum cache size.
+	 */
+	public int getExternalNetworkCacheSize() {
+		return Math.max(0, getInt(KEY_EXTERNAL_NETWORK_CACHE_SIZE, 512));
+	}
+
+	public void setExternalNetworkCacheSize(int value) {
+		configuration.setProperty(KEY_EXTERNAL_NETWORK_CACHE_SIZE, value);
+	}
+
 	public boolean isUseInfoFromTMDB() {
 		return getBoolean(KEY_USE_TMDB_INFO, true);
 	}
@@ -4983,6 +5250,32 @@ public class UmsConfiguration extends BaseConfiguration {
 		return getBoolean(KEY_DATABASE_MEDIA_USE_CACHE_SOFT, false);
 	}
 
+	/**
+	 * Get the maximum number of media files written to the Media database in
+	 * a single transaction.
+	 * @return the number of media files
+	 */
+	public int getDatabaseMediaWriteGroupSize() {
+		return Math.max(1, getInt(KEY_DATABASE_MEDIA_WRITE_GROUP_SIZE, 100));
+	}
+
+	public void setDatabaseMediaWriteGroupSize(int value) {
+		configuration.setProperty(KEY_DATABASE_MEDIA_WRITE_GROUP_SIZE, value);
+	}
+
+	/**
+	 * Get the maximum time a scanned media file waits before being written to
+	 * the Media database.
+	 * @return the delay in milliseconds
+	 */
+	public int getDatabaseMediaWriteGroupDelay() {
+		return Math.max(0, getInt(KEY_DATABASE_MEDIA_WRITE_GROUP_DELAY, 500));
+	}
+
+	public void setDatabaseMediaWriteGroupDelay(int value) {
+		configuration.setProperty(KEY_DATABASE_MEDIA_WRITE_GROUP_DELAY, value);
+	}
+
 	public boolean isVlcUseHardwareAccel() {
 		return getBoolean(KEY_VLC_USE_HW_ACCELERATION, false);
 	}
@@ -86,6 +86,7 @@ public class MediaDatabase extends Database {
 				// Files and metadata
 				MediaTableMetadata.checkTable(connection);
 				MediaTableFiles.checkTable(connection);
+				MediaTableDirectorySnapshots.checkTable(connection);
 				MediaTableVideoMetadata.checkTable(connection);
 				MediaTableVideotracks.checkTable(connection);
 				MediaTableSubtracks.checkTable(connection);
@@ -114,6 +115,8 @@ public class MediaDatabase extends Database {
 				MediaTableAudiotracks.checkTable(connection);
 				MediaTableMusicBrainzReleaseLike.checkTable(connection);
 
+				MediaTableSearchIndex.checkTable(connection);
+
 				MediaTableStoreIds.checkTable(connection);
 			}
 			tablesChecked = true;
@@ -143,6 +146,8 @@ public class MediaDatabase extends Database {
 	}
 
 	public static synchronized void dropAllTablesExceptFilesStatus(Connection connection) {
+		dropTableAndConstraint(connection, MediaTableDirectorySnapshots.TABLE_NAME);
+		dropTableAndConstraint(connection, MediaTableSearchIndex.TABLE_NAME);
 		dropTableAndConstraint(connection, MediaTableMusicBrainzReleases.TABLE_NAME);
 		dropTableAndConstraint(connection, MediaTableCoverArtArchive.TABLE_NAME);
 		dropTableAndConstraint(connection, MediaTableThumbnails.TABLE_NAME);
@@ -256,6 +261,7 @@ public class MediaDatabase extends Database {
 	 * Shutdown the MediaDatabase database.
 	 */
 	public static synchronized void shutdown() {
+		MediaDatabaseWriter.shutdown();
 		if (instance != null) {
 			instance.close();
 		}
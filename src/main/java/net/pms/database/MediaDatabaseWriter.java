@@ -0,0 +1,458 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import net.pms.PMS;
+import net.pms.media.MediaInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind stage for the parsed media information.
+ * <p>
+ * Writing a media file touches the FILES table and all the track tables, and
+ * committing every file on its own means thousands of small transactions
+ * during a scan. The writes are queued here instead, and a single thread
+ * groups them, one transaction per group. Each file is still written with its
+ * own statements, as its track rows need the id of its FILES row; only the
+ * commits are shared. A group is written once it holds the configured number
+ * of files, or once its oldest file waited the configured delay.
+ * <p>
+ * The queue is bounded: callers block when it is full, so the parsers can't
+ * get too far ahead of the database. Callers that need the file to be written
+ * before they go on (on-demand parsing) use {@link #write}, which jumps ahead
+ * of the queued files and is written in its own group, so browsing stays
+ * responsive during a scan.
+ */
+public final class MediaDatabaseWriter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaDatabaseWriter.class);
+	private static final int QUEUE_CAPACITY = 1000;
+	private static final int MAX_FAILURES = 1000;
+	private static final Writer WRITER = new Writer("Media Database Writer");
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private MediaDatabaseWriter() {
+	}
+
+	/**
+	 * Queues the media information of a file, blocking while the queue is
+	 * full.
+	 *
+	 * @param filename the full path to the file.
+	 * @param modified the modification time of the file.
+	 * @param type the type constant defined in {@link net.pms.formats.Format}.
+	 * @param media the media information, or {@code null}.
+	 * @return a future completed once the file is committed.
+	 */
+	public static CompletableFuture<Void> submit(String filename, long modified, int type, MediaInfo media) {
+		return WRITER.submit(filename, modified, type, media);
+	}
+
+	/**
+	 * Writes the media information of a file ahead of the queued files,
+	 * returning once it is committed.
+	 *
+	 * @param filename the full path to the file.
+	 * @param modified the modification time of the file.
+	 * @param type the type constant defined in {@link net.pms.formats.Format}.
+	 * @param media the media information, or {@code null}.
+	 * @throws SQLException if the file could not be written.
+	 */
+	public static void write(String filename, long modified, int type, MediaInfo media) throws SQLException {
+		WRITER.write(filename, modified, type, media);
+	}
+
+	/**
+	 * Waits until the pending write of a file, if any, is committed.
+	 *
+	 * @param filename the full path to the file.
+	 */
+	public static void await(String filename) {
+		WRITER.await(filename);
+	}
+
+	/**
+	 * Returns the sequence number of the last file queued, to be passed to
+	 * {@link #barrier(long)}.
+	 *
+	 * @return the sequence number.
+	 */
+	public static long getSequence() {
+		return WRITER.getSequence();
+	}
+
+	/**
+	 * Returns a future completed once all the files queued so far are
+	 * committed, without hurrying their group.
+	 *
+	 * @return the future.
+	 */
+	public static CompletableFuture<Void> barrier() {
+		return WRITER.barrier(WRITER.getSequence());
+	}
+
+	/**
+	 * Returns a future completed once all the files queued so far are
+	 * committed, without hurrying their group. The future fails if any file
+	 * queued after the given sequence number could not be written.
+	 *
+	 * @param since the sequence number returned by {@link #getSequence()}.
+	 * @return the future.
+	 */
+	public static CompletableFuture<Void> barrier(long since) {
+		return WRITER.barrier(since);
+	}
+
+	/**
+	 * Writes all the queued files, returning once they are committed.
+	 */
+	public static void flush() {
+		WRITER.flush();
+	}
+
+	/**
+	 * Writes all the queued files and stops the writer thread. The files
+	 * queued later are written right away, by their caller.
+	 */
+	public static void shutdown() {
+		WRITER.shutdown();
+	}
+
+	/**
+	 * @return the number of files queued and not written yet.
+	 */
+	public static int getQueuedCount() {
+		return WRITER.getQueuedCount();
+	}
+
+	private static void waitFor(CompletableFuture<Void> future) throws SQLException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for the media database writer", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException sqlException) {
+				throw sqlException;
+			}
+			throw new SQLException(e.getCause());
+		}
+	}
+
+	/**
+	 * The queue and the thread writing it. The application uses a single
+	 * one, the tests use their own.
+	 * <p>
+	 * The urgent writes are queued at the head and don't count against the
+	 * capacity, the other files and the markers are queued at the tail.
+	 */
+	static final class Writer {
+		private final String name;
+		private final BlockingDeque<PendingWrite> queue = new LinkedBlockingDeque<>();
+		private final Semaphore capacity = new Semaphore(QUEUE_CAPACITY);
+		private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+		private final AtomicLong sequence = new AtomicLong();
+		private final NavigableSet<Long> failures = new ConcurrentSkipListSet<>();
+		private final AtomicLong written = new AtomicLong();
+		private final AtomicLong transactions = new AtomicLong();
+		private final PendingWrite stop = new PendingWrite(null, 0, 0, null, true, -1);
+
+		private Thread writerThread;
+		private volatile boolean stopped;
+
+		Writer(String name) {
+			this.name = name;
+		}
+
+		CompletableFuture<Void> submit(String filename, long modified, int type, MediaInfo media) {
+			return enqueue(new PendingWrite(filename, modified, type, media, false, -1));
+		}
+
+		void write(String filename, long modified, int type, MediaInfo media) throws SQLException {
+			waitFor(enqueue(new PendingWrite(filename, modified, type, media, true, -1)));
+		}
+
+		void await(String filename) {
+			PendingWrite pendingWrite = pending.get(filename);
+			if (pendingWrite != null) {
+				flush();
+			}
+		}
+
+		long getSequence() {
+			return sequence.get();
+		}
+
+		CompletableFuture<Void> barrier(long since) {
+			return enqueue(new PendingWrite(null, 0, 0, null, false, since));
+		}
+
+		void flush() {
+			try {
+				waitFor(enqueue(new PendingWrite(null, 0, 0, null, true, -1)));
+			} catch (SQLException e) {
+				// the marker is never written
+			}
+		}
+
+		void shutdown() {
+			Thread thread;
+			synchronized (this) {
+				stopped = true;
+				thread = writerThread;
+				writerThread = null;
+			}
+			if (thread != null) {
+				try {
+					queue.putLast(stop);
+					thread.join(5000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			// anything queued meanwhile
+			List<PendingWrite> remaining = new ArrayList<>();
+			queue.drainTo(remaining);
+			remaining.remove(stop);
+			if (!remaining.isEmpty()) {
+				commit(remaining);
+			}
+			LOGGER.debug("{} stopped after writing {} files in {} transactions", name, written.get(), transactions.get());
+		}
+
+		int getQueuedCount() {
+			return queue.size();
+		}
+
+		private CompletableFuture<Void> enqueue(PendingWrite pendingWrite) {
+			if (!startIfNeeded()) {
+				commit(List.of(pendingWrite));
+				return pendingWrite.future;
+			}
+			if (pendingWrite.isBounded()) {
+				try {
+					capacity.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					pendingWrite.future.completeExceptionally(new SQLException("Interrupted while queuing " + pendingWrite.filename, e));
+					return pendingWrite.future;
+				}
+			}
+			pendingWrite.sequence = sequence.incrementAndGet();
+			if (pendingWrite.filename != null) {
+				PendingWrite previous = pending.put(pendingWrite.filename, pendingWrite);
+				if (previous != null) {
+					// an older write must not overwrite this one
+					previous.superseded = true;
+				}
+			}
+			if (pendingWrite.urgent && pendingWrite.filename != null) {
+				queue.offerFirst(pendingWrite);
+			} else {
+				queue.offerLast(pendingWrite);
+			}
+			return pendingWrite.future;
+		}
+
+		private synchronized boolean startIfNeeded() {
+			if (stopped) {
+				return false;
+			}
+			if (writerThread == null) {
+				writerThread = new Thread(this::run, name);
+				writerThread.setDaemon(true);
+				writerThread.start();
+			}
+			return true;
+		}
+
+		private PendingWrite take(PendingWrite pendingWrite) {
+			if (pendingWrite != null && pendingWrite.isBounded()) {
+				capacity.release();
+			}
+			return pendingWrite;
+		}
+
+		private void run() {
+			List<PendingWrite> group = new ArrayList<>();
+			boolean running = true;
+			while (running) {
+				try {
+					PendingWrite first = take(queue.takeFirst());
+					if (first == stop) {
+						break;
+					}
+					group.add(first);
+					int groupSize = PMS.getConfiguration().getDatabaseMediaWriteGroupSize();
+					long deadline = first.submitted + TimeUnit.MILLISECONDS.toNanos(PMS.getConfiguration().getDatabaseMediaWriteGroupDelay());
+					boolean urgent = first.urgent;
+					while (group.size() < groupSize) {
+						PendingWrite next;
+						if (urgent) {
+							// only the other urgent writes join, the queued files can wait
+							PendingWrite head = queue.peekFirst();
+							next = head != null && head.urgent && head.filename != null ? take(queue.pollFirst()) : null;
+						} else {
+							next = take(queue.pollFirst(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+						}
+						if (next == null) {
+							break;
+						} else if (next == stop) {
+							running = false;
+							break;
+						}
+						group.add(next);
+						urgent |= next.urgent;
+					}
+				} catch (InterruptedException e) {
+					// the writes already taken are still written
+				}
+				if (!group.isEmpty()) {
+					commit(group);
+					group.clear();
+				}
+			}
+		}
+
+		/**
+		 * Writes a group in a single transaction. A file that fails is rolled
+		 * back on its own, the others are still committed.
+		 */
+		private void commit(List<PendingWrite> group) {
+			Connection connection = null;
+			try {
+				connection = MediaDatabase.getConnectionIfAvailable();
+				if (connection == null) {
+					LOGGER.debug("Media database not available, {} files were not written", group.size());
+					SQLException e = new SQLException("Media database not available");
+					for (PendingWrite pendingWrite : group) {
+						fail(pendingWrite, e);
+					}
+				} else {
+					connection.setAutoCommit(false);
+					int count = 0;
+					for (PendingWrite pendingWrite : group) {
+						if (pendingWrite.filename == null || pendingWrite.superseded) {
+							continue;
+						}
+						Savepoint savepoint = connection.setSavepoint();
+						try {
+							MediaTableFiles.insertOrUpdateData(connection, pendingWrite.filename, pendingWrite.modified, pendingWrite.type, pendingWrite.media);
+							count++;
+						} catch (SQLException e) {
+							connection.rollback(savepoint);
+							fail(pendingWrite, e);
+						}
+					}
+					connection.commit();
+					connection.setAutoCommit(true);
+					written.addAndGet(count);
+					transactions.incrementAndGet();
+					LOGGER.trace("Wrote {} media files in a single transaction", count);
+				}
+			} catch (SQLException e) {
+				LOGGER.error("Error while writing {} media files to the database: {}", group.size(), e.getMessage());
+				LOGGER.trace("", e);
+				if (connection != null) {
+					try {
+						connection.rollback();
+					} catch (SQLException e2) {
+						LOGGER.trace("", e2);
+					}
+				}
+				for (PendingWrite pendingWrite : group) {
+					fail(pendingWrite, e);
+				}
+			} finally {
+				MediaDatabase.close(connection);
+			}
+			for (PendingWrite pendingWrite : group) {
+				complete(pendingWrite);
+			}
+		}
+
+		private void fail(PendingWrite pendingWrite, SQLException e) {
+			if (pendingWrite.filename != null) {
+				pending.remove(pendingWrite.filename, pendingWrite);
+				failures.add(pendingWrite.sequence);
+				if (failures.size() > MAX_FAILURES) {
+					failures.pollFirst();
+				}
+			}
+			pendingWrite.future.completeExceptionally(e);
+		}
+
+		private void complete(PendingWrite pendingWrite) {
+			if (pendingWrite.filename != null) {
+				pending.remove(pendingWrite.filename, pendingWrite);
+			} else if (pendingWrite.since >= 0 && pendingWrite.since < pendingWrite.sequence && !failures.subSet(pendingWrite.since, false, pendingWrite.sequence, false).isEmpty()) {
+				pendingWrite.future.completeExceptionally(new SQLException("Some media files queued before the barrier were not written"));
+			}
+			// no-op if it failed already
+			pendingWrite.future.complete(null);
+		}
+	}
+
+	private static class PendingWrite {
+		private final String filename;
+		private final long modified;
+		private final int type;
+		private final MediaInfo media;
+		private final boolean urgent;
+		private final long since;
+		private final long submitted = System.nanoTime();
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+		private long sequence;
+		private volatile boolean superseded;
+
+		private PendingWrite(String filename, long modified, int type, MediaInfo media, boolean urgent, long since) {
+			this.filename = filename;
+			this.modified = modified;
+			this.type = type;
+			this.media = media;
+			this.urgent = urgent;
+			this.since = since;
+		}
+
+		/**
+		 * @return whether this write counts against the queue capacity.
+		 */
+		private boolean isBounded() {
+			return filename != null && !urgent;
+		}
+	}
+
+}
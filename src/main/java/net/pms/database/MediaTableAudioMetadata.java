@@ -212,6 +212,7 @@ public class MediaTableAudioMetadata extends MediaTable {
 				}
 			}
 		}
+		MediaTableSearchIndex.insertOrUpdateAudioMetadata(connection, fileId, audioMetadata);
 	}
 
 	public static MediaAudioMetadata getAudioMetadataByFileId(final Connection connection, final long fileId) {
@@ -0,0 +1,251 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.database;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import net.pms.store.DirectorySnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is responsible for managing the directory snapshots table. It
+ * keeps the content summary of every directory scanned, so the next media scan
+ * only goes through the directories that changed.
+ */
+public final class MediaTableDirectorySnapshots extends MediaTable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaTableDirectorySnapshots.class);
+	protected static final String TABLE_NAME = "DIRECTORY_SNAPSHOTS";
+
+	/**
+	 * Table version must be increased every time a change is done to the table
+	 * definition. Table upgrade SQL must also be added to
+	 * {@link #upgradeTable(Connection, int)}
+	 */
+	private static final int TABLE_VERSION = 1;
+
+	/**
+	 * COLUMNS NAMES
+	 */
+	private static final String COL_ID = "ID";
+	private static final String COL_DIRECTORY = "DIRECTORY";
+	private static final String COL_MODIFIED = "MODIFIED";
+	private static final String COL_ENTRIES = "ENTRIES";
+	private static final String COL_HASH = "HASH";
+
+	/**
+	 * COLUMNS with table name
+	 */
+	private static final String TABLE_COL_DIRECTORY = TABLE_NAME + "." + COL_DIRECTORY;
+	private static final String TABLE_COL_MODIFIED = TABLE_NAME + "." + COL_MODIFIED;
+	private static final String TABLE_COL_ENTRIES = TABLE_NAME + "." + COL_ENTRIES;
+	private static final String TABLE_COL_HASH = TABLE_NAME + "." + COL_HASH;
+
+	/**
+	 * SQL Queries
+	 */
+	private static final String SQL_GET_DIRECTORY = SELECT + TABLE_COL_DIRECTORY + COMMA + TABLE_COL_MODIFIED + COMMA + TABLE_COL_ENTRIES + COMMA + TABLE_COL_HASH + FROM + TABLE_NAME + WHERE + TABLE_COL_DIRECTORY + EQUAL + PARAMETER + LIMIT_1;
+	private static final String SQL_GET_DIRECTORIES = SELECT + TABLE_COL_DIRECTORY + FROM + TABLE_NAME;
+	private static final String SQL_DELETE_DIRECTORY = DELETE_FROM + TABLE_NAME + WHERE + TABLE_COL_DIRECTORY + EQUAL + PARAMETER;
+	private static final String SQL_DELETE_DIRECTORY_LIKE = DELETE_FROM + TABLE_NAME + WHERE + TABLE_COL_DIRECTORY + LIKE + LIKE_STARTING_WITH_PARAMETER;
+
+	/**
+	 * Checks and creates or upgrades the table as needed.
+	 *
+	 * @param connection the {@link Connection} to use
+	 *
+	 * @throws SQLException
+	 */
+	protected static void checkTable(final Connection connection) throws SQLException {
+		if (tableExists(connection, TABLE_NAME)) {
+			Integer version = MediaTableTablesVersions.getTableVersion(connection, TABLE_NAME);
+			if (version != null) {
+				if (version < TABLE_VERSION) {
+					upgradeTable(connection, version);
+				} else if (version > TABLE_VERSION) {
+					LOGGER.warn(LOG_TABLE_NEWER_VERSION_DELETEDB,
+							DATABASE_NAME,
+							TABLE_NAME,
+							DATABASE.getDatabaseFilename()
+					);
+				}
+			} else {
+				LOGGER.warn(LOG_TABLE_UNKNOWN_VERSION_RECREATE, DATABASE_NAME, TABLE_NAME);
+				dropTable(connection, TABLE_NAME);
+				createTable(connection);
+				MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+			}
+		} else {
+			createTable(connection);
+			MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+		}
+	}
+
+	/**
+	 * This method <strong>MUST</strong> be updated if the table definition are
+	 * altered. The changes for each version in the form of
+	 * <code>ALTER TABLE</code> must be implemented here.
+	 *
+	 * @param connection the {@link Connection} to use
+	 * @param currentVersion the version to upgrade <strong>from</strong>
+	 *
+	 * @throws SQLException
+	 */
+	private static void upgradeTable(final Connection connection, final int currentVersion) throws SQLException {
+		LOGGER.info(LOG_UPGRADING_TABLE, DATABASE_NAME, TABLE_NAME, currentVersion, TABLE_VERSION);
+		for (int version = currentVersion; version < TABLE_VERSION; version++) {
+			LOGGER.trace(LOG_UPGRADING_TABLE, DATABASE_NAME, TABLE_NAME, version, version + 1);
+			switch (version) {
+				default -> {
+					throw new IllegalStateException(
+							getMessage(LOG_UPGRADING_TABLE_MISSING, DATABASE_NAME, TABLE_NAME, version, TABLE_VERSION)
+					);
+				}
+			}
+		}
+		MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+	}
+
+	private static void createTable(final Connection connection) throws SQLException {
+		LOGGER.info(LOG_CREATING_TABLE, DATABASE_NAME, TABLE_NAME);
+		execute(connection,
+				CREATE_TABLE + TABLE_NAME + "(" +
+					COL_ID +          IDENTITY        + PRIMARY_KEY + COMMA +
+					COL_DIRECTORY +   VARCHAR_1024    + NOT_NULL    + COMMA +
+					COL_MODIFIED +    BIGINT          + NOT_NULL    + COMMA +
+					COL_ENTRIES +     INTEGER         + NOT_NULL    + COMMA +
+					COL_HASH +        BIGINT          + NOT_NULL    +
+				")",
+				CREATE_UNIQUE_INDEX + TABLE_NAME + CONSTRAINT_SEPARATOR + COL_DIRECTORY + IDX_MARKER + ON + TABLE_NAME + "(" + COL_DIRECTORY + ")"
+		);
+	}
+
+	/**
+	 * Gets the snapshot stored for a directory.
+	 *
+	 * @param connection the db connection
+	 * @param directory the absolute path of the directory
+	 * @return the snapshot, or {@code null} if the directory was never
+	 *         scanned.
+	 */
+	public static DirectorySnapshot getSnapshot(final Connection connection, final String directory) {
+		try (PreparedStatement statement = connection.prepareStatement(SQL_GET_DIRECTORY)) {
+			statement.setString(1, directory);
+			try (ResultSet rs = statement.executeQuery()) {
+				if (rs.next()) {
+					return new DirectorySnapshot(
+							rs.getString(COL_DIRECTORY),
+							rs.getLong(COL_MODIFIED),
+							rs.getInt(COL_ENTRIES),
+							rs.getLong(COL_HASH)
+					);
+				}
+			}
+		} catch (SQLException e) {
+			LOGGER.error(LOG_ERROR_WHILE_IN_FOR, DATABASE_NAME, "reading", TABLE_NAME, directory, e.getMessage());
+			LOGGER.trace("", e);
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the snapshot of a directory, replacing the previous one.
+	 *
+	 * @param connection the db connection
+	 * @param snapshot the snapshot
+	 */
+	public static void setSnapshot(final Connection connection, final DirectorySnapshot snapshot) {
+		if (snapshot.getDirectory().length() > SIZE_1024) {
+			// can't be stored, the directory will always be scanned
+			return;
+		}
+		try (PreparedStatement statement = connection.prepareStatement(SQL_GET_DIRECTORY, ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_UPDATABLE)) {
+			statement.setString(1, snapshot.getDirectory());
+			try (ResultSet result = statement.executeQuery()) {
+				if (result.next()) {
+					result.updateLong(COL_MODIFIED, snapshot.getModified());
+					result.updateInt(COL_ENTRIES, snapshot.getEntries());
+					result.updateLong(COL_HASH, snapshot.getHash());
+					result.updateRow();
+				} else {
+					result.moveToInsertRow();
+					result.updateString(COL_DIRECTORY, snapshot.getDirectory());
+					result.updateLong(COL_MODIFIED, snapshot.getModified());
+					result.updateInt(COL_ENTRIES, snapshot.getEntries());
+					result.updateLong(COL_HASH, snapshot.getHash());
+					result.insertRow();
+				}
+			}
+		} catch (SQLException e) {
+			LOGGER.error(LOG_ERROR_WHILE_IN_FOR, DATABASE_NAME, "writing", TABLE_NAME, snapshot.getDirectory(), e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
+	/**
+	 * Removes the snapshot of a directory, or of a whole tree.
+	 *
+	 * If {@code useLike} is {@code true} {@code directory} must be properly
+	 * escaped.
+	 *
+	 * @param connection the db connection
+	 * @param directory the directory to remove
+	 * @param useLike {@code true} if {@code LIKE} should be used as the compare
+	 * operator, {@code false} if {@code =} should be used.
+	 */
+	public static void remove(final Connection connection, final String directory, boolean useLike) {
+		String sql = useLike ? SQL_DELETE_DIRECTORY_LIKE : SQL_DELETE_DIRECTORY;
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			statement.setString(1, directory);
+			int rows = statement.executeUpdate();
+			LOGGER.trace("Removed entries {} in " + TABLE_NAME + " for directory \"{}\"", rows, directory);
+		} catch (SQLException e) {
+			LOGGER.error(LOG_ERROR_WHILE_IN_FOR, DATABASE_NAME, "removing entries", TABLE_NAME, directory, e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
+	/**
+	 * Removes the snapshots of the directories that are not on the hard drive
+	 * anymore.
+	 *
+	 * @param connection the db connection
+	 */
+	public static void cleanup(final Connection connection) {
+		try (
+			PreparedStatement statement = connection.prepareStatement(SQL_GET_DIRECTORIES, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_UPDATABLE);
+			ResultSet rs = statement.executeQuery()
+		) {
+			int rows = 0;
+			while (rs.next()) {
+				if (!new File(rs.getString(COL_DIRECTORY)).isDirectory()) {
+					rs.deleteRow();
+					rows++;
+				}
+			}
+			LOGGER.trace("Removed {} entries in \"{}\"", rows, TABLE_NAME);
+		} catch (SQLException e) {
+			LOGGER.error(LOG_ERROR_WHILE_IN, DATABASE_NAME, "removing entries", TABLE_NAME, e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
+}
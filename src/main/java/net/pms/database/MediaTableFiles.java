@@ -483,6 +483,8 @@ public class MediaTableFiles extends MediaTable {
 				//delete rows to cascade delete
 				LOGGER.error("Deleting data from table: {}", TABLE_NAME);
 				executeUpdate(connection, DELETE_FROM + TABLE_NAME);
+				//directories have to be scanned again
+				MediaDatabase.dropTableAndConstraint(connection, MediaTableDirectorySnapshots.TABLE_NAME);
 				//remove table and constraints
 				MediaDatabase.dropCascadeConstraint(connection, TABLE_NAME);
 				MediaDatabase.dropTable(connection, TABLE_NAME);
@@ -495,6 +497,7 @@ public class MediaTableFiles extends MediaTable {
 				ensureCascadeConstraint(connection, MediaTableSubtracks.TABLE_NAME, MediaTableSubtracks.COL_FILEID, TABLE_NAME, COL_ID);
 				ensureCascadeConstraint(connection, MediaTableVideotracks.TABLE_NAME, MediaTableVideotracks.COL_FILEID, TABLE_NAME, COL_ID);
 				ensureCascadeConstraint(connection, MediaTableVideoMetadata.TABLE_NAME, MediaTableVideoMetadata.COL_FILEID, TABLE_NAME, COL_ID);
+				ensureCascadeConstraint(connection, MediaTableSearchIndex.TABLE_NAME, MediaTableSearchIndex.COL_FILEID, TABLE_NAME, COL_ID);
 			} catch (SQLException se) {
 				LOGGER.error("SQL error while (re)initializing tables: {}", se.getMessage());
 				LOGGER.trace("", se);
@@ -726,6 +729,9 @@ public class MediaTableFiles extends MediaTable {
 					if (isCreatingNewRecord) {
 						result.insertRow();
 						fileId = getFileId(connection, name);
+						if (fileId > -1) {
+							MediaTableSearchIndex.insertFilename(connection, fileId, name);
+						}
 					} else {
 						result.updateRow();
 					}
@@ -817,6 +823,11 @@ public class MediaTableFiles extends MediaTable {
 		}
 
 		deleteRowsInFilesTable(connection, filename, useLike);
+		if (useLike) {
+			MediaTableDirectorySnapshots.remove(connection, filename, true);
+		} else if (new File(filename).getParent() != null) {
+			MediaTableDirectorySnapshots.remove(connection, new File(filename).getParent(), false);
+		}
 		if (removeStatus) {
 			MediaTableFilesStatus.remove(connection, filename, useLike);
 		}
@@ -996,6 +1007,14 @@ public class MediaTableFiles extends MediaTable {
 			 */
 			MediaTableThumbnails.cleanup(connection);
 
+			/*
+			 * Cleanup of DIRECTORY_SNAPSHOTS table
+			 *
+			 * Removes entries for directories that are not on the hard drive
+			 * anymore.
+			 */
+			MediaTableDirectorySnapshots.cleanup(connection);
+
 		} catch (SQLException se) {
 			LOGGER.error(null, se);
 		} finally {
@@ -0,0 +1,331 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import net.pms.media.audio.metadata.MediaAudioMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is responsible for managing the search index table.
+ * <p>
+ * UPnP searches look for text contained anywhere in a title, artist, album,
+ * genre or filename, which can't use the regular indexes. This table keeps
+ * the trigrams (every three consecutive characters) of the lower-cased text of
+ * these columns, so a search only has to check the rows that hold all the
+ * trigrams of the searched text.
+ * <p>
+ * The full path of a file is indexed, as a file name search matches the text
+ * anywhere in the path, so that a folder name finds the files it holds.
+ * <p>
+ * Trigrams are stored as integers. Different trigrams may share the same
+ * number, so the matching rows still have to be checked with the original
+ * {@code LIKE} condition, the index only avoids the full table scans.
+ */
+public final class MediaTableSearchIndex extends MediaTable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaTableSearchIndex.class);
+	public static final String TABLE_NAME = "SEARCH_INDEX";
+
+	/**
+	 * Table version must be increased every time a change is done to the table
+	 * definition. Table upgrade SQL must also be added to
+	 * {@link #upgradeTable(Connection, int)}
+	 */
+	private static final int TABLE_VERSION = 3;
+
+	/**
+	 * The indexed fields.
+	 */
+	public static final int FIELD_FILENAME = 1;
+	public static final int FIELD_SONGNAME = 2;
+	public static final int FIELD_ARTIST = 3;
+	public static final int FIELD_ALBUMARTIST = 4;
+	public static final int FIELD_ALBUM = 5;
+	public static final int FIELD_GENRE = 6;
+	public static final int FIELD_COMPOSER = 7;
+	public static final int FIELD_CONDUCTOR = 8;
+	private static final int[] AUDIO_FIELDS = {FIELD_SONGNAME, FIELD_ARTIST, FIELD_ALBUMARTIST, FIELD_ALBUM, FIELD_GENRE, FIELD_COMPOSER, FIELD_CONDUCTOR};
+
+	/**
+	 * COLUMNS NAMES
+	 */
+	public static final String COL_FILEID = MediaTableFiles.CHILD_ID;
+	private static final String COL_FIELD = "FIELD";
+	private static final String COL_TRIGRAM = "TRIGRAM";
+
+	/**
+	 * SQL Queries
+	 */
+	private static final String SQL_INSERT = INSERT_INTO + TABLE_NAME + " (" + COL_FIELD + COMMA + COL_TRIGRAM + COMMA + COL_FILEID + ") VALUES (" + PARAMETER + COMMA + PARAMETER + COMMA + PARAMETER + ")";
+	private static final String SQL_DELETE_BY_FILEID_FIELD = DELETE_FROM + TABLE_NAME + WHERE + COL_FILEID + EQUAL + PARAMETER + AND + COL_FIELD + EQUAL + PARAMETER;
+	private static final String SQL_DELETE_FILENAMES = DELETE_FROM + TABLE_NAME + WHERE + COL_FIELD + EQUAL + FIELD_FILENAME;
+	private static final String SQL_GET_FILES = SELECT + "ID, FILENAME" + FROM + MediaTableFiles.TABLE_NAME;
+	private static final String SQL_GET_AUDIO_METADATA = SELECT + "A.FILEID, A.SONGNAME, A.ARTIST, A.ALBUMARTIST, A.ALBUM, A.GENRE, A.COMPOSER, A.CONDUCTOR" +
+		FROM + MediaTableAudioMetadata.TABLE_NAME + " AS A" + JOIN + MediaTableFiles.TABLE_NAME + " AS F" + ON + "A.FILEID" + EQUAL + "F.ID";
+
+	/**
+	 * The searched text must have at least this number of characters to use
+	 * the index.
+	 */
+	private static final int TRIGRAM_LENGTH = 3;
+
+	/**
+	 * Checks and creates or upgrades the table as needed.
+	 *
+	 * @param connection the {@link Connection} to use
+	 *
+	 * @throws SQLException
+	 */
+	protected static void checkTable(final Connection connection) throws SQLException {
+		if (tableExists(connection, TABLE_NAME)) {
+			Integer version = MediaTableTablesVersions.getTableVersion(connection, TABLE_NAME);
+			if (version != null) {
+				if (version < TABLE_VERSION) {
+					upgradeTable(connection, version);
+				} else if (version > TABLE_VERSION) {
+					LOGGER.warn(LOG_TABLE_NEWER_VERSION_DELETEDB,
+							DATABASE_NAME,
+							TABLE_NAME,
+							DATABASE.getDatabaseFilename()
+					);
+				}
+			} else {
+				LOGGER.warn(LOG_TABLE_UNKNOWN_VERSION_RECREATE, DATABASE_NAME, TABLE_NAME);
+				dropTable(connection, TABLE_NAME);
+				createTable(connection);
+				MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+			}
+		} else {
+			createTable(connection);
+			MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+		}
+	}
+
+	/**
+	 * This method <strong>MUST</strong> be updated if the table definition are
+	 * altered. The changes for each version in the form of
+	 * <code>ALTER TABLE</code> must be implemented here.
+	 *
+	 * @param connection the {@link Connection} to use
+	 * @param currentVersion the version to upgrade <strong>from</strong>
+	 *
+	 * @throws SQLException
+	 */
+	private static void upgradeTable(final Connection connection, final int currentVersion) throws SQLException {
+		LOGGER.info(LOG_UPGRADING_TABLE, DATABASE_NAME, TABLE_NAME, currentVersion, TABLE_VERSION);
+		for (int version = currentVersion; version < TABLE_VERSION; version++) {
+			LOGGER.trace(LOG_UPGRADING_TABLE, DATABASE_NAME, TABLE_NAME, version, version + 1);
+			switch (version) {
+				case 1 -> {
+					// the full paths were indexed, as they are again
+				}
+				case 2 -> {
+					// only the file names were indexed
+					executeUpdate(connection, SQL_DELETE_FILENAMES);
+					indexFilenames(connection);
+				}
+				default -> {
+					throw new IllegalStateException(
+							getMessage(LOG_UPGRADING_TABLE_MISSING, DATABASE_NAME, TABLE_NAME, version, TABLE_VERSION)
+					);
+				}
+			}
+		}
+		MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+	}
+
+	private static void createTable(final Connection connection) throws SQLException {
+		LOGGER.info(LOG_CREATING_TABLE, DATABASE_NAME, TABLE_NAME);
+		execute(connection,
+			CREATE_TABLE + TABLE_NAME + " (" +
+				COL_FIELD               + TINYINT                        + NOT_NULL          + COMMA +
+				COL_TRIGRAM             + INTEGER                        + NOT_NULL          + COMMA +
+				COL_FILEID              + BIGINT                         + NOT_NULL          + COMMA +
+				CONSTRAINT + TABLE_NAME + PK_MARKER + PRIMARY_KEY + "(" + COL_FIELD + COMMA + COL_TRIGRAM + COMMA + COL_FILEID + ")" + COMMA +
+				CONSTRAINT + TABLE_NAME + CONSTRAINT_SEPARATOR + COL_FILEID + FK_MARKER + FOREIGN_KEY + "(" + COL_FILEID + ")" + REFERENCES + MediaTableFiles.REFERENCE_TABLE_COL_ID + ON_DELETE_CASCADE +
+			")",
+			CREATE_INDEX + TABLE_NAME + CONSTRAINT_SEPARATOR + COL_FILEID + IDX_MARKER + ON + TABLE_NAME + " (" + COL_FILEID + ")"
+		);
+		rebuild(connection);
+	}
+
+	/**
+	 * Indexes the media already in the database.
+	 */
+	private static void rebuild(final Connection connection) throws SQLException {
+		long start = System.currentTimeMillis();
+		int files = indexFilenames(connection);
+		try (
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery(SQL_GET_AUDIO_METADATA);
+			PreparedStatement insert = connection.prepareStatement(SQL_INSERT)
+		) {
+			int count = 0;
+			while (rs.next()) {
+				long fileId = rs.getLong(1);
+				for (int i = 0; i < AUDIO_FIELDS.length; i++) {
+					addBatch(insert, fileId, AUDIO_FIELDS[i], rs.getString(i + 2));
+				}
+				if (++count % 1000 == 0) {
+					insert.executeBatch();
+				}
+			}
+			insert.executeBatch();
+		}
+		LOGGER.info("Indexed {} media files for searching in {} ms", files, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Indexes the paths of the files already in the database.
+	 *
+	 * @return the number of files.
+	 */
+	private static int indexFilenames(final Connection connection) throws SQLException {
+		int files = 0;
+		try (
+			Statement statement = connection.createStatement();
+			ResultSet rs = statement.executeQuery(SQL_GET_FILES);
+			PreparedStatement insert = connection.prepareStatement(SQL_INSERT)
+		) {
+			while (rs.next()) {
+				addBatch(insert, rs.getLong(1), FIELD_FILENAME, rs.getString(2));
+				if (++files % 1000 == 0) {
+					insert.executeBatch();
+				}
+			}
+			insert.executeBatch();
+		}
+		return files;
+	}
+
+	/**
+	 * Indexes the filename of a new file.
+	 *
+	 * @param connection the db connection
+	 * @param fileId the file id from FILES table.
+	 * @param filename the filename.
+	 * @throws SQLException if an SQL error occurs during the operation.
+	 */
+	protected static void insertFilename(final Connection connection, final long fileId, final String filename) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement(SQL_INSERT)) {
+			if (addBatch(insert, fileId, FIELD_FILENAME, filename)) {
+				insert.executeBatch();
+			}
+		}
+	}
+
+	/**
+	 * Indexes the audio metadata of a file, replacing the previous one.
+	 *
+	 * @param connection the db connection
+	 * @param fileId the file id from FILES table.
+	 * @param audioMetadata the audio metadata.
+	 * @throws SQLException if an SQL error occurs during the operation.
+	 */
+	protected static void insertOrUpdateAudioMetadata(final Connection connection, final long fileId, final MediaAudioMetadata audioMetadata) throws SQLException {
+		try (PreparedStatement delete = connection.prepareStatement(SQL_DELETE_BY_FILEID_FIELD)) {
+			for (int field : AUDIO_FIELDS) {
+				delete.setLong(1, fileId);
+				delete.setInt(2, field);
+				delete.addBatch();
+			}
+			delete.executeBatch();
+		}
+		try (PreparedStatement insert = connection.prepareStatement(SQL_INSERT)) {
+			boolean added = addBatch(insert, fileId, FIELD_SONGNAME, audioMetadata.getSongname());
+			added |= addBatch(insert, fileId, FIELD_ARTIST, audioMetadata.getArtist());
+			added |= addBatch(insert, fileId, FIELD_ALBUMARTIST, audioMetadata.getAlbumArtist());
+			added |= addBatch(insert, fileId, FIELD_ALBUM, audioMetadata.getAlbum());
+			added |= addBatch(insert, fileId, FIELD_GENRE, audioMetadata.getGenre());
+			added |= addBatch(insert, fileId, FIELD_COMPOSER, audioMetadata.getComposer());
+			added |= addBatch(insert, fileId, FIELD_CONDUCTOR, audioMetadata.getConductor());
+			if (added) {
+				insert.executeBatch();
+			}
+		}
+	}
+
+	private static boolean addBatch(PreparedStatement insert, long fileId, int field, String value) throws SQLException {
+		Set<Integer> trigrams = getTrigrams(value);
+		for (int trigram : trigrams) {
+			insert.setInt(1, field);
+			insert.setInt(2, trigram);
+			insert.setLong(3, fileId);
+			insert.addBatch();
+		}
+		return !trigrams.isEmpty();
+	}
+
+	/**
+	 * Returns the SQL condition selecting the files whose field may contain
+	 * the given text, to be combined with the exact {@code LIKE} condition.
+	 *
+	 * @param fileIdColumn the column holding the file id in the query.
+	 * @param field the indexed field.
+	 * @param value the searched text, as given by the client.
+	 * @return the condition, or {@code null} if the index can't be used for
+	 *         this text.
+	 */
+	public static String getContainsCondition(String fileIdColumn, int field, String value) {
+		if (value == null || value.indexOf('%') > -1 || value.indexOf('_') > -1) {
+			// wildcards are left to LIKE
+			return null;
+		}
+		Set<Integer> trigrams = getTrigrams(value);
+		if (trigrams.isEmpty()) {
+			return null;
+		}
+		StringJoiner in = new StringJoiner(COMMA, "(", ")");
+		for (int trigram : trigrams) {
+			in.add(Integer.toString(trigram));
+		}
+		return fileIdColumn + IN + "(" +
+			SELECT + COL_FILEID + FROM + TABLE_NAME +
+			WHERE + COL_FIELD + EQUAL + field + AND + COL_TRIGRAM + IN + in +
+			" GROUP BY " + COL_FILEID + " HAVING COUNT(*)" + EQUAL + trigrams.size() +
+		")";
+	}
+
+	/**
+	 * Returns the trigrams of the lower-cased text.
+	 *
+	 * @param value the text.
+	 * @return the distinct trigrams, empty if the text is too short.
+	 */
+	protected static Set<Integer> getTrigrams(String value) {
+		Set<Integer> trigrams = new LinkedHashSet<>();
+		if (value == null || value.length() < TRIGRAM_LENGTH) {
+			return trigrams;
+		}
+		String text = value.toLowerCase(Locale.ROOT);
+		for (int i = 0; i + TRIGRAM_LENGTH <= text.length(); i++) {
+			trigrams.add((text.charAt(i) * 31 + text.charAt(i + 1)) * 31 + text.charAt(i + 2));
+		}
+		return trigrams;
+	}
+
+}
@@ -24,6 +24,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.function.Predicate;
 import net.pms.dlna.DLNAThumbnail;
 import net.pms.dlna.DLNAThumbnailFixer;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -71,6 +72,7 @@ public final class MediaTableThumbnails extends MediaTable {
 	 * SQL Queries
 	 */
 	private static final String SQL_GET_ID = SELECT_ALL + FROM + TABLE_NAME + WHERE + TABLE_COL_ID + EQUAL + PARAMETER + LIMIT_1;
+	private static final String SQL_GET_ALL_THUMBNAILS = SELECT + TABLE_COL_THUMBNAIL + FROM + TABLE_NAME;
 	private static final String SQL_GET_ID_MD5 = SELECT + TABLE_COL_ID + FROM + TABLE_NAME + WHERE + TABLE_COL_MD5 + EQUAL + PARAMETER + LIMIT_1;
 	private static final String SQL_INSERT_ID_MD5 = INSERT_INTO + TABLE_NAME + " (" + COL_THUMBNAIL + COMMA + COL_MODIFIED + COMMA + COL_MD5 + ") VALUES (" + PARAMETER + COMMA + PARAMETER + COMMA + PARAMETER + ")";
 	private static final String SQL_DELETE_ID = DELETE_FROM + TABLE_NAME + WHERE + TABLE_COL_ID + EQUAL + PARAMETER;
@@ -257,6 +259,37 @@ public final class MediaTableThumbnails extends MediaTable {
 		return null;
 	}
 
+	/**
+	 * Goes through all the stored thumbnails, skipping the ones that can't be
+	 * read.
+	 *
+	 * @param connection the db connection
+	 * @param consumer called with every thumbnail, returns {@code false} to
+	 *            stop
+	 */
+	public static void forEachThumbnail(final Connection connection, final Predicate<DLNAThumbnail> consumer) {
+		try (
+			Statement statement = connection.createStatement();
+			ResultSet resultSet = statement.executeQuery(SQL_GET_ALL_THUMBNAILS)
+		) {
+			while (resultSet.next()) {
+				DLNAThumbnail thumbnail;
+				try {
+					thumbnail = (DLNAThumbnail) resultSet.getObject(COL_THUMBNAIL);
+				} catch (SQLException e) {
+					LOGGER.trace("Skipping unreadable thumbnail: {}", e.getMessage());
+					continue;
+				}
+				if (thumbnail != null && !consumer.test(thumbnail)) {
+					return;
+				}
+			}
+		} catch (SQLException e) {
+			LOGGER.error("Database error in " + TABLE_NAME + " while reading the thumbnails: {}", e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
 	/**
 	 * Removes an entry or entries based on its ID.
 	 *
@@ -0,0 +1,382 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import net.pms.PMS;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.database.MediaTableThumbnails;
+import net.pms.image.BufferedImageFilter;
+import net.pms.image.BufferedImageFilterChain;
+import net.pms.image.ImagesUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the thumbnails converted for the renderers, so that browsing the same
+ * folders again doesn't decode and encode the same images.
+ *
+ * The variants are keyed by the MD5 of the source thumbnail, the
+ * {@link DLNAImageProfile} and its size, the padding and the filters. They are
+ * kept in memory and on disk, both tiers being bounded and evicting the least
+ * recently used variants first.
+ */
+public class DLNAThumbnailCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DLNAThumbnailCache.class);
+	private static final UmsConfiguration CONFIGURATION = PMS.getConfiguration();
+	private static final String CACHE_DIRECTORY = "thumbnails";
+	private static final String EXTENSION = ".thumb";
+	private static final Map<String, DLNAThumbnail> MEMORY = new LinkedHashMap<>(64, 0.75f, true);
+	private static final Set<Variant> VARIANTS = ConcurrentHashMap.newKeySet();
+	private static final Object DISK_LOCK = new Object();
+	/**
+	 * The cached files are only read back as thumbnails: the thumbnail, its
+	 * image information and profile, and the JDK types of their fields.
+	 */
+	private static final ObjectInputFilter THUMBNAIL_FILTER = ObjectInputFilter.Config.createFilter(
+		"net.pms.dlna.DLNAThumbnail;net.pms.dlna.DLNAImage;net.pms.dlna.DLNAImageProfile;" +
+		"net.pms.dlna.protocolinfo.MimeType;net.pms.image.*;com.drew.metadata.jpeg.JpegComponent;java.awt.color.*;" +
+		"java.lang.Boolean;java.lang.Enum;java.lang.Integer;java.lang.Number;java.lang.String;" +
+		"java.util.HashMap;java.util.TreeMap;java.util.Collections$*;!*"
+	);
+	private static long memorySize;
+	private static long diskSize = -1;
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private DLNAThumbnailCache() {
+	}
+
+	/**
+	 * Converts and scales a thumbnail according to the given
+	 * {@link DLNAImageProfile}, or returns the cached conversion.
+	 *
+	 * @param source the thumbnail to convert.
+	 * @param outputProfile the DLNA media profile to adhere to for the output.
+	 * @param padToSize Whether padding should be used if source aspect doesn't
+	 *                  match target aspect.
+	 * @param filterChain a {@link BufferedImageFilterChain} to apply during the
+	 *            operation or {@code null}.
+	 * @return The scaled and/or converted thumbnail, {@code null} if the
+	 *         source is {@code null}.
+	 * @throws IOException if the operation fails.
+	 * @see DLNAThumbnailInputStream#transcode(DLNAImageProfile, boolean, BufferedImageFilterChain)
+	 */
+	public static DLNAThumbnailInputStream transcode(
+		DLNAThumbnailInputStream source,
+		DLNAImageProfile outputProfile,
+		boolean padToSize,
+		BufferedImageFilterChain filterChain
+	) throws IOException {
+		if (source == null) {
+			return null;
+		}
+		if (getMemoryBudget() == 0 && getDiskBudget() == 0) {
+			return source.transcode(outputProfile, padToSize, filterChain);
+		}
+		if (filterChain == null || filterChain.isEmpty()) {
+			VARIANTS.add(new Variant(outputProfile, padToSize));
+		}
+		String key = getKey(DigestUtils.md5Hex(source.getBytes(false)), outputProfile, padToSize, filterChain);
+		DLNAThumbnail thumbnail = get(key);
+		if (thumbnail == null) {
+			thumbnail = transcode(source.getBytes(false), outputProfile, padToSize, filterChain);
+			if (thumbnail == null) {
+				return null;
+			}
+			putMemory(key, thumbnail);
+			putDisk(key, thumbnail);
+		}
+		return new DLNAThumbnailInputStream(thumbnail);
+	}
+
+	/**
+	 * Converts the stored thumbnails to the variants asked by the renderers so
+	 * far, for those missing on disk.
+	 *
+	 * @param connection the db connection.
+	 * @param running tells whether to go on.
+	 */
+	public static void prewarm(Connection connection, BooleanSupplier running) {
+		if (VARIANTS.isEmpty() || getDiskBudget() == 0) {
+			return;
+		}
+		Variant[] variants = VARIANTS.toArray(Variant[]::new);
+		int[] count = new int[1];
+		MediaTableThumbnails.forEachThumbnail(connection, thumbnail -> {
+			String md5 = DigestUtils.md5Hex(thumbnail.getBytes(false));
+			for (Variant variant : variants) {
+				if (!running.getAsBoolean()) {
+					return false;
+				}
+				String key = getKey(md5, variant.profile, variant.padToSize, null);
+				if (!getFile(key).exists()) {
+					try {
+						DLNAThumbnail converted = transcode(thumbnail.getBytes(false), variant.profile, variant.padToSize, null);
+						if (converted != null) {
+							putDisk(key, converted);
+							count[0]++;
+						}
+					} catch (IOException e) {
+						LOGGER.trace("Could not prepare thumbnail variant {}: {}", variant.profile, e.getMessage());
+					}
+				}
+			}
+			return true;
+		});
+		LOGGER.debug("Prepared {} thumbnail variants", count[0]);
+	}
+
+	private static DLNAThumbnail transcode(
+		byte[] bytes,
+		DLNAImageProfile outputProfile,
+		boolean padToSize,
+		BufferedImageFilterChain filterChain
+	) throws IOException {
+		return (DLNAThumbnail) ImagesUtil.transcodeImage(bytes, outputProfile, true, padToSize, filterChain);
+	}
+
+	static String getKey(String md5, DLNAImageProfile profile, boolean padToSize, BufferedImageFilterChain filterChain) {
+		StringBuilder sb = new StringBuilder(md5).append('|').append(profile).append('|');
+		sb.append(profile.getMaxWidth()).append('x').append(profile.getMaxHeight());
+		if (padToSize) {
+			sb.append("|padded");
+		}
+		if (filterChain != null) {
+			for (BufferedImageFilter filter : filterChain) {
+				sb.append('|').append(filter.getDescription());
+			}
+		}
+		return sb.toString();
+	}
+
+	private static DLNAThumbnail get(String key) {
+		synchronized (MEMORY) {
+			DLNAThumbnail thumbnail = MEMORY.get(key);
+			if (thumbnail != null) {
+				return thumbnail;
+			}
+		}
+		if (getDiskBudget() == 0) {
+			return null;
+		}
+		File file = getFile(key);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			ois.setObjectInputFilter(THUMBNAIL_FILTER);
+			DLNAThumbnail thumbnail = (DLNAThumbnail) ois.readObject();
+			if (!file.setLastModified(System.currentTimeMillis())) {
+				LOGGER.trace("Could not update the last use of {}", file);
+			}
+			putMemory(key, thumbnail);
+			return thumbnail;
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			LOGGER.debug("Removing unreadable cached thumbnail {}: {}", file, e.getMessage());
+			synchronized (DISK_LOCK) {
+				deleteFile(file);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Drops the thumbnails kept in memory, the ones on disk stay.
+	 */
+	static void clearMemory() {
+		synchronized (MEMORY) {
+			MEMORY.clear();
+			memorySize = 0;
+		}
+	}
+
+	private static void putMemory(String key, DLNAThumbnail thumbnail) {
+		long budget = getMemoryBudget();
+		long size = thumbnail.getBytes(false).length;
+		if (size > budget) {
+			return;
+		}
+		synchronized (MEMORY) {
+			DLNAThumbnail previous = MEMORY.put(key, thumbnail);
+			if (previous != null) {
+				memorySize -= previous.getBytes(false).length;
+			}
+			memorySize += size;
+			Iterator<DLNAThumbnail> iterator = MEMORY.values().iterator();
+			while (memorySize > budget && iterator.hasNext()) {
+				memorySize -= iterator.next().getBytes(false).length;
+				iterator.remove();
+			}
+		}
+	}
+
+	private static void putDisk(String key, DLNAThumbnail thumbnail) {
+		long budget = getDiskBudget();
+		if (budget == 0) {
+			return;
+		}
+		File file = getFile(key);
+		File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			LOGGER.debug("Could not create the thumbnail cache folder {}", directory);
+			return;
+		}
+		synchronized (DISK_LOCK) {
+			long previous = file.length();
+			Path temp = null;
+			try {
+				// written aside then moved, the lookups don't lock
+				temp = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+				try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+					oos.writeObject(thumbnail);
+				}
+				Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				LOGGER.debug("Could not write cached thumbnail {}: {}", file, e.getMessage());
+				if (temp != null) {
+					deleteFile(temp.toFile());
+				}
+				return;
+			}
+			diskSize = getDiskSize(directory) - previous + file.length();
+			if (diskSize > budget) {
+				evictDisk(directory, budget);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the least recently used files down to 90% of the budget, so
+	 * that it doesn't happen on every write.
+	 */
+	private static void evictDisk(File directory, long budget) {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		if (files == null) {
+			return;
+		}
+		long[] lastModified = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		long size = 0;
+		for (int i = 0; i < files.length; i++) {
+			lastModified[i] = files[i].lastModified();
+			order[i] = i;
+			size += files[i].length();
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+		long target = budget - budget / 10;
+		for (Integer i : order) {
+			if (size <= target) {
+				break;
+			}
+			long length = files[i].length();
+			if (deleteFile(files[i])) {
+				size -= length;
+			}
+		}
+		diskSize = size;
+	}
+
+	private static long getDiskSize(File directory) {
+		if (diskSize < 0) {
+			long size = 0;
+			File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+			if (files != null) {
+				for (File file : files) {
+					size += file.length();
+				}
+			}
+			diskSize = size;
+		}
+		return diskSize;
+	}
+
+	private static boolean deleteFile(File file) {
+		if (file.delete()) {
+			return true;
+		}
+		LOGGER.trace("Could not delete cached thumbnail {}", file);
+		return false;
+	}
+
+	private static File getFile(String key) {
+		return new File(CONFIGURATION.getDataFile(CACHE_DIRECTORY), DigestUtils.md5Hex(key) + EXTENSION);
+	}
+
+	private static long getMemoryBudget() {
+		return CONFIGURATION.getThumbnailCacheMemorySize() * 1024L * 1024L;
+	}
+
+	private static long getDiskBudget() {
+		return CONFIGURATION.getThumbnailCacheDiskSize() * 1024L * 1024L;
+	}
+
+	/**
+	 * A conversion asked by a renderer, without filters.
+	 */
+	private static class Variant {
+		private final DLNAImageProfile profile;
+		private final boolean padToSize;
+
+		private Variant(DLNAImageProfile profile, boolean padToSize) {
+			this.profile = profile;
+			this.padToSize = padToSize;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(profile, profile.getMaxWidth(), profile.getMaxHeight(), padToSize);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Variant other)) {
+				return false;
+			}
+			return padToSize == other.padToSize && profile.equals(other.profile) &&
+				profile.getMaxWidth() == other.profile.getMaxWidth() && profile.getMaxHeight() == other.profile.getMaxHeight();
+		}
+	}
+
+}
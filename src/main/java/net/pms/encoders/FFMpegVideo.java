@@ -1410,6 +1410,94 @@ public class FFMpegVideo extends Engine {
 		params.setMinBufferSize(params.getMinFileSize());
 		params.setSecondReadMinSize(100000);
 		params.setWaitBeforeStart(0);
+		List<String> cmdList = getHlsTranscodeCommand(resource, media, params);
+		if (cmdList == null) {
+			return null;
+		}
+		HlsHelper.HlsConfiguration hlsConfiguration = params.getHlsConfiguration();
+		boolean needVideo = hlsConfiguration.video.resolutionWidth > -1;
+		boolean needAudio = hlsConfiguration.audioStream > -1;
+		boolean needSubtitle = hlsConfiguration.subtitle > -1;
+
+		cmdList.add("-f");
+		if (needSubtitle && !needAudio && !needVideo) {
+			cmdList.add("webvtt");
+		} else {
+			cmdList.add(FormatConfiguration.MPEGTS);
+			cmdList.add("-skip_estimate_duration_from_pts");
+			cmdList.add("1");
+			cmdList.add("-use_wallclock_as_timestamps");
+			cmdList.add("1");
+			//transcodeOptions.add("-mpegts_flags");
+			//transcodeOptions.add("latm");
+			cmdList.add("-movflags");
+			cmdList.add("frag_keyframe"); //frag_keyframe
+		}
+
+		return runHlsTranscodeProcess(params, cmdList);
+	}
+
+	/**
+	 * Launches a transcode writing the HLS segments of an audio or video
+	 * rendition into a directory, from a given segment to the end of the
+	 * media.
+	 *
+	 * Segments are named after their index, and only renamed to it once they
+	 * are complete.
+	 *
+	 * @param resource the item.
+	 * @param media the media info of the item.
+	 * @param params the output parameters, seeking to the first segment.
+	 * @param directory the directory receiving the segments.
+	 * @param startSegment the index of the first segment.
+	 * @return the running process, or {@code null} if it can't be launched.
+	 */
+	public synchronized ProcessWrapperImpl launchHlsSegmenter(
+		StoreItem resource,
+		MediaInfo media,
+		OutputParams params,
+		File directory,
+		int startSegment
+	) {
+		params.setLog(true);
+		List<String> cmdList = getHlsTranscodeCommand(resource, media, params);
+		if (cmdList == null) {
+			return null;
+		}
+		String segmentDuration = String.valueOf((int) HlsHelper.DEFAULT_TARGETDURATION);
+		if (params.getHlsConfiguration().video.resolutionWidth > -1) {
+			// timestamps are kept, so cut from the first segment start
+			cmdList.add("-force_key_frames");
+			cmdList.add("expr:gte(t," + (int) params.getTimeSeek() + "+n_forced*" + segmentDuration + ")");
+		}
+		cmdList.add("-f");
+		cmdList.add("hls");
+		cmdList.add("-hls_time");
+		cmdList.add(segmentDuration);
+		cmdList.add("-hls_list_size");
+		cmdList.add("0");
+		cmdList.add("-hls_segment_type");
+		cmdList.add(FormatConfiguration.MPEGTS);
+		cmdList.add("-hls_flags");
+		cmdList.add("temp_file");
+		cmdList.add("-start_number");
+		cmdList.add(String.valueOf(startSegment));
+		cmdList.add("-hls_segment_filename");
+		cmdList.add(new File(directory, "%d.ts").getAbsolutePath());
+		cmdList.add(new File(directory, "index.m3u8").getAbsolutePath());
+
+		String[] cmdArray = new String[cmdList.size()];
+		cmdList.toArray(cmdArray);
+		ProcessWrapperImpl pw = new ProcessWrapperImpl(cmdArray, params);
+		pw.runInNewThread();
+		return pw;
+	}
+
+	private List<String> getHlsTranscodeCommand(
+		StoreItem resource,
+		MediaInfo media,
+		OutputParams params
+	) {
 		// Use device-specific conf
 		UmsConfiguration configuration = params.getMediaRenderer().getUmsConfiguration();
 		HlsHelper.HlsConfiguration hlsConfiguration = params.getHlsConfiguration();
@@ -1577,23 +1665,7 @@ public class FFMpegVideo extends Engine {
 
 		// Encoder threads
 		setEncodingThreads(cmdList, configuration);
-
-		cmdList.add("-f");
-		if (needSubtitle && !needAudio && !needVideo) {
-			cmdList.add("webvtt");
-		} else {
-			cmdList.add(FormatConfiguration.MPEGTS);
-			cmdList.add("-skip_estimate_duration_from_pts");
-			cmdList.add("1");
-			cmdList.add("-use_wallclock_as_timestamps");
-			cmdList.add("1");
-			//transcodeOptions.add("-mpegts_flags");
-			//transcodeOptions.add("latm");
-			cmdList.add("-movflags");
-			cmdList.add("frag_keyframe"); //frag_keyframe
-		}
-
-		return runHlsTranscodeProcess(params, cmdList);
+		return cmdList;
 	}
 
 	public static void setLogLevel(List<String> cmdList, UmsConfiguration configuration) {
@@ -37,7 +37,6 @@ import net.pms.media.subtitle.MediaSubtitle;
 import net.pms.media.video.MediaVideo;
 import net.pms.renderers.Renderer;
 import net.pms.store.StoreItem;
-import net.pms.util.Range;
 import net.pms.util.TimeRange;
 import org.apache.commons.lang3.StringUtils;
 
@@ -344,8 +343,13 @@ public class HlsHelper {
 		rendition = rendition.substring(0, rendition.indexOf("/"));
 		//here we need to set rendition to renderer
 		HlsHelper.HlsConfiguration hlsConfiguration = getByKey(rendition);
-		Range timeRange = getTimeRange(url);
+		TimeRange timeRange = getTimeRange(url);
 		if (hlsConfiguration != null && timeRange != null) {
+			int segment = (int) Math.round(timeRange.getStartOrZero() / DEFAULT_TARGETDURATION);
+			InputStream cached = HlsSegmentCache.getInputStream(resource, rendition, hlsConfiguration, segment);
+			if (cached != null) {
+				return cached;
+			}
 			return resource.getInputStream(timeRange, hlsConfiguration);
 		}
 		return null;
@@ -0,0 +1,236 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.encoders;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.media.MediaInfo;
+import net.pms.store.StoreItem;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves HLS segments from an on-disk cache filled by one transcode per item
+ * and rendition, instead of launching a transcode for every segment.
+ *
+ * The cache is bounded by a disk budget, the least recently used segments
+ * being evicted first, except the ones about to be played.
+ */
+public class HlsSegmentCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HlsSegmentCache.class);
+	private static final UmsConfiguration CONFIGURATION = PMS.getConfiguration();
+	private static final Map<String, HlsSegmenter> SEGMENTERS = new ConcurrentHashMap<>();
+	private static final long SEGMENT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+	private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+	private static final long MAINTENANCE_INTERVAL = 2;
+	private static ScheduledExecutorService maintenance;
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private HlsSegmentCache() {
+	}
+
+	/**
+	 * Returns a segment of an audio or video rendition from the cache.
+	 *
+	 * @param resource the item.
+	 * @param rendition the rendition label.
+	 * @param hlsConfiguration the rendition.
+	 * @param segment the segment index.
+	 * @return the segment stream, or {@code null} if the cache can't serve
+	 *         it.
+	 * @throws IOException
+	 */
+	public static InputStream getInputStream(StoreItem resource, String rendition, HlsHelper.HlsConfiguration hlsConfiguration, int segment) throws IOException {
+		if (!CONFIGURATION.isHlsSegmentCache() || hlsConfiguration.isSubtitle() || resource.getEngine() == null ||
+				resource.getEngine().getClass() != FFMpegVideo.class) {
+			return null;
+		}
+		HlsSegmenter segmenter;
+		try {
+			segmenter = getSegmenter(resource, rendition, hlsConfiguration);
+		} catch (IOException e) {
+			LOGGER.debug("Cannot create the HLS segment cache: {}", e.getMessage());
+			return null;
+		}
+		File file;
+		try {
+			file = segmenter.getSegment(segment, CONFIGURATION.getHlsSegmentLookAhead(), SEGMENT_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		return file != null ? new FileInputStream(file) : null;
+	}
+
+	/**
+	 * Stops all transcodes and deletes the cached segments.
+	 */
+	public static synchronized void shutdown() {
+		if (maintenance != null) {
+			maintenance.shutdownNow();
+			maintenance = null;
+		}
+		for (HlsSegmenter segmenter : SEGMENTERS.values()) {
+			remove(segmenter);
+		}
+		SEGMENTERS.clear();
+	}
+
+	private static HlsSegmenter getSegmenter(StoreItem resource, String rendition, HlsHelper.HlsConfiguration hlsConfiguration) throws IOException {
+		String key = resource.getDefaultRenderer().getId() + "|" + resource.getFileName() + "|" + rendition + "|" +
+			(resource.getMediaSubtitle() != null ? resource.getMediaSubtitle().getId() : -1);
+		HlsSegmenter segmenter = SEGMENTERS.get(key);
+		if (segmenter != null) {
+			return segmenter;
+		}
+		File directory = new File(new File(CONFIGURATION.getTempFolder(), "hls"), DigestUtils.md5Hex(key));
+		synchronized (HlsSegmentCache.class) {
+			segmenter = SEGMENTERS.get(key);
+			if (segmenter == null) {
+				if (directory.exists()) {
+					FileUtils.cleanDirectory(directory);
+				} else if (!directory.mkdirs()) {
+					throw new IOException("Cannot create " + directory);
+				}
+				segmenter = new HlsSegmenter(resource, hlsConfiguration, directory, getSegmentCount(resource.getMediaInfo()));
+				SEGMENTERS.put(key, segmenter);
+				startMaintenance();
+			}
+		}
+		return segmenter;
+	}
+
+	private static int getSegmentCount(MediaInfo mediaInfo) {
+		if (mediaInfo == null || mediaInfo.getDurationInSeconds() <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		return (int) Math.ceil(mediaInfo.getDurationInSeconds() / HlsHelper.DEFAULT_TARGETDURATION);
+	}
+
+	private static synchronized void startMaintenance() {
+		if (maintenance == null) {
+			maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "HLS segment cache");
+				thread.setDaemon(true);
+				return thread;
+			});
+			maintenance.scheduleWithFixedDelay(HlsSegmentCache::maintain, MAINTENANCE_INTERVAL, MAINTENANCE_INTERVAL, TimeUnit.SECONDS);
+		}
+	}
+
+	private static void maintain() {
+		try {
+			int lookAhead = CONFIGURATION.getHlsSegmentLookAhead();
+			long now = System.currentTimeMillis();
+			for (Map.Entry<String, HlsSegmenter> entry : SEGMENTERS.entrySet()) {
+				HlsSegmenter segmenter = entry.getValue();
+				if (now - segmenter.getLastAccess() > IDLE_TIMEOUT) {
+					SEGMENTERS.remove(entry.getKey());
+					remove(segmenter);
+				} else {
+					segmenter.throttle(lookAhead);
+				}
+			}
+			evict(SEGMENTERS.values(), CONFIGURATION.getHlsSegmentCacheSize() * 1024L * 1024L, lookAhead);
+		} catch (RuntimeException e) {
+			LOGGER.debug("Error while maintaining the HLS segment cache: {}", e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
+	private static void remove(HlsSegmenter segmenter) {
+		segmenter.stop();
+		FileUtils.deleteQuietly(segmenter.getDirectory());
+	}
+
+	/**
+	 * Deletes the least recently used segments until the cache fits in the
+	 * budget, keeping the segments about to be played.
+	 *
+	 * @param segmenters the segmenters sharing the budget.
+	 * @param budget the disk budget, in bytes.
+	 * @param lookAhead the number of segments to produce ahead.
+	 * @return the size of the cache after eviction, in bytes.
+	 */
+	static long evict(Collection<HlsSegmenter> segmenters, long budget, int lookAhead) {
+		long size = 0;
+		List<CachedSegment> candidates = new ArrayList<>();
+		for (HlsSegmenter segmenter : segmenters) {
+			File[] files = segmenter.getDirectory().listFiles();
+			if (files == null) {
+				continue;
+			}
+			for (File file : files) {
+				int segment = HlsSegmenter.getSegmentIndex(file);
+				if (segment < 0) {
+					continue;
+				}
+				long length = file.length();
+				size += length;
+				if (!segmenter.isProtected(segment, lookAhead)) {
+					candidates.add(new CachedSegment(segmenter, segment, length, segmenter.getAccessTime(segment)));
+				}
+			}
+		}
+		if (size <= budget) {
+			return size;
+		}
+		candidates.sort(Comparator.comparingLong(candidate -> candidate.accessTime));
+		for (CachedSegment candidate : candidates) {
+			if (size <= budget) {
+				break;
+			}
+			candidate.segmenter.evict(candidate.segment);
+			size -= candidate.length;
+		}
+		LOGGER.trace("HLS segment cache evicted down to {} bytes", size);
+		return size;
+	}
+
+	private static class CachedSegment {
+		private final HlsSegmenter segmenter;
+		private final int segment;
+		private final long length;
+		private final long accessTime;
+
+		private CachedSegment(HlsSegmenter segmenter, int segment, long length, long accessTime) {
+			this.segmenter = segmenter;
+			this.segment = segment;
+			this.length = length;
+			this.accessTime = accessTime;
+		}
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.encoders;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.pms.io.ProcessWrapperImpl;
+import net.pms.store.StoreItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Produces the segments of one HLS rendition of an item into a directory,
+ * with a single transcode running ahead of the segments asked.
+ *
+ * The transcode can't be paused, so it is stopped when far enough ahead and
+ * restarted from the first missing segment when the playback catches up.
+ */
+class HlsSegmenter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HlsSegmenter.class);
+	private static final String SEGMENT_EXTENSION = ".ts";
+	private static final long WAIT_INTERVAL = 100;
+
+	private final StoreItem resource;
+	private final HlsHelper.HlsConfiguration hlsConfiguration;
+	private final File directory;
+	private final int segmentCount;
+	private final Map<Integer, Long> accessTimes = new ConcurrentHashMap<>();
+	private ProcessWrapperImpl process;
+	private int processStart;
+	private int frontier;
+	private volatile int lastRequested;
+	private volatile long lastAccess = System.currentTimeMillis();
+
+	HlsSegmenter(StoreItem resource, HlsHelper.HlsConfiguration hlsConfiguration, File directory, int segmentCount) {
+		this.resource = resource;
+		this.hlsConfiguration = hlsConfiguration;
+		this.directory = directory;
+		this.segmentCount = segmentCount;
+	}
+
+	/**
+	 * Returns a segment, waiting for the transcode to produce it if needed.
+	 *
+	 * @param segment the segment index.
+	 * @param lookAhead the number of segments to produce ahead.
+	 * @param timeout the maximum time to wait, in milliseconds.
+	 * @return the segment file, or {@code null} if it can't be produced.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	File getSegment(int segment, int lookAhead, long timeout) throws InterruptedException {
+		if (segment < 0 || segment >= segmentCount) {
+			return null;
+		}
+		lastRequested = segment;
+		lastAccess = System.currentTimeMillis();
+		File file = getFile(segment);
+		long deadline = lastAccess + timeout;
+		boolean launched = false;
+		while (!file.exists()) {
+			if (!isProducing(segment, lookAhead)) {
+				if (launched || !start(segment)) {
+					// the transcode ended without producing it
+					return null;
+				}
+				launched = true;
+			}
+			if (System.currentTimeMillis() > deadline) {
+				LOGGER.debug("Timed out waiting for HLS segment {} of {}", segment, resource.getName());
+				return null;
+			}
+			Thread.sleep(WAIT_INTERVAL);
+		}
+		accessTimes.put(segment, System.currentTimeMillis());
+		keepAhead(segment, lookAhead);
+		return file;
+	}
+
+	/**
+	 * Stops the transcode when it runs too far ahead of the last segment
+	 * asked.
+	 *
+	 * @param lookAhead the number of segments to produce ahead.
+	 */
+	synchronized void throttle(int lookAhead) {
+		if (isRunning() && updateFrontier() > lastRequested + lookAhead) {
+			LOGGER.trace("HLS segmenter of {} is {} segments ahead, stopping it", resource.getName(), frontier - lastRequested);
+			process.stopProcess();
+		}
+	}
+
+	synchronized void stop() {
+		if (process != null) {
+			process.stopProcess();
+			process = null;
+		}
+	}
+
+	/**
+	 * Tells whether a segment is in the window following the last segment
+	 * asked, which must never be evicted.
+	 *
+	 * @param segment the segment index.
+	 * @param lookAhead the number of segments to produce ahead.
+	 * @return whether the segment is needed soon.
+	 */
+	boolean isProtected(int segment, int lookAhead) {
+		int current = lastRequested;
+		return segment >= current && segment <= current + lookAhead;
+	}
+
+	/**
+	 * @param segment the segment index.
+	 * @return the last time the segment was served, or produced if never
+	 *         served.
+	 */
+	long getAccessTime(int segment) {
+		Long accessTime = accessTimes.get(segment);
+		return accessTime != null ? accessTime : getFile(segment).lastModified();
+	}
+
+	void evict(int segment) {
+		accessTimes.remove(segment);
+		if (!getFile(segment).delete()) {
+			LOGGER.trace("Could not delete HLS segment {}", getFile(segment));
+		}
+	}
+
+	/**
+	 * @return the index of the segment stored in a file, or -1 if not a
+	 *         complete segment.
+	 */
+	static int getSegmentIndex(File file) {
+		String name = file.getName();
+		if (!name.endsWith(SEGMENT_EXTENSION)) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	File getDirectory() {
+		return directory;
+	}
+
+	long getLastAccess() {
+		return lastAccess;
+	}
+
+	File getFile(int segment) {
+		return new File(directory, segment + SEGMENT_EXTENSION);
+	}
+
+	private synchronized boolean isProducing(int segment, int lookAhead) {
+		return isRunning() && segment >= processStart && segment <= updateFrontier() + lookAhead;
+	}
+
+	/**
+	 * Restarts the transcode from the first missing segment once fewer than
+	 * half the look-ahead segments are ready.
+	 */
+	private synchronized void keepAhead(int segment, int lookAhead) {
+		if (isRunning() && segment >= processStart) {
+			return;
+		}
+		int end = Math.min(segment + lookAhead / 2, segmentCount);
+		for (int next = segment + 1; next < end; next++) {
+			if (!getFile(next).exists()) {
+				start(next);
+				return;
+			}
+		}
+	}
+
+	private synchronized boolean start(int segment) {
+		stop();
+		process = resource.launchHlsSegmenter(hlsConfiguration, directory, segment);
+		processStart = segment;
+		frontier = segment;
+		return process != null;
+	}
+
+	private boolean isRunning() {
+		return process != null && process.isAlive() && !process.isDestroyed();
+	}
+
+	private int updateFrontier() {
+		while (frontier < segmentCount && getFile(frontier).exists()) {
+			frontier++;
+		}
+		return frontier;
+	}
+
+}
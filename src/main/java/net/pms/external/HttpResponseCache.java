@@ -0,0 +1,397 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.external;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLSession;
+import net.pms.PMS;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the responses to GET requests on disk, as allowed by their
+ * {@code Cache-Control} header, and revalidates them with their
+ * {@code ETag} or {@code Last-Modified} header.
+ */
+class HttpResponseCache {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpResponseCache.class);
+	private static final String BODY_EXTENSION = ".body";
+	private static final String META_EXTENSION = ".meta";
+	private static final String URI = "uri";
+	private static final String CONTENT_TYPE = "content-type";
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "last-modified";
+	private static final String EXPIRES = "expires";
+
+	private final File directory;
+	private final long budget;
+	private long size = -1;
+
+	HttpResponseCache(File directory, long budget) {
+		this.directory = directory;
+		this.budget = budget;
+	}
+
+	/**
+	 * @return the cache in the profile folder, or {@code null} if disabled.
+	 */
+	static HttpResponseCache getDefault() {
+		long budget = PMS.getConfiguration().getExternalNetworkCacheSize() * 1024L * 1024L;
+		if (budget == 0) {
+			return null;
+		}
+		return new HttpResponseCache(new File(PMS.getConfiguration().getDataFile("http")), budget);
+	}
+
+	/**
+	 * @return the stored response to the request, fresh or not, or
+	 *         {@code null} if not stored.
+	 */
+	Entry get(HttpRequest request) {
+		if (!isCacheable(request)) {
+			return null;
+		}
+		String key = getKey(request);
+		File meta = new File(directory, key + META_EXTENSION);
+		File body = new File(directory, key + BODY_EXTENSION);
+		if (!meta.isFile() || !body.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream is = new FileInputStream(meta)) {
+			properties.load(is);
+		} catch (IOException e) {
+			LOGGER.trace("Could not read cached response {}: {}", meta, e.getMessage());
+			return null;
+		}
+		if (!request.uri().toString().equals(properties.getProperty(URI))) {
+			return null;
+		}
+		if (!body.setLastModified(System.currentTimeMillis())) {
+			LOGGER.trace("Could not update the last use of {}", body);
+		}
+		return new Entry(key, body, properties);
+	}
+
+	/**
+	 * Adds the conditional headers revalidating a stored response.
+	 */
+	static HttpRequest getConditionalRequest(HttpRequest request, Entry entry) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> true);
+		if (entry.getETag() != null) {
+			builder.setHeader("If-None-Match", entry.getETag());
+		}
+		if (entry.getLastModified() != null) {
+			builder.setHeader("If-Modified-Since", entry.getLastModified());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Stores a successful response, if its headers allow it.
+	 */
+	synchronized void put(HttpRequest request, HttpResponse<byte[]> response) {
+		if (!isCacheable(request) || response.statusCode() != 200) {
+			return;
+		}
+		Properties properties = getFreshness(response.headers());
+		if (properties == null) {
+			return;
+		}
+		properties.setProperty(URI, request.uri().toString());
+		response.headers().firstValue(CONTENT_TYPE).ifPresent(value -> properties.setProperty(CONTENT_TYPE, value));
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			LOGGER.debug("Could not create the HTTP cache folder {}", directory);
+			return;
+		}
+		String key = getKey(request);
+		File body = new File(directory, key + BODY_EXTENSION);
+		File meta = new File(directory, key + META_EXTENSION);
+		long previous = body.length();
+		try {
+			replace(body, response.body());
+			writeMeta(meta, properties);
+		} catch (IOException e) {
+			LOGGER.debug("Could not store the response of {}: {}", request.uri(), e.getMessage());
+			delete(key);
+			return;
+		}
+		size = getSize() - previous + body.length();
+		if (size > budget) {
+			evict();
+		}
+	}
+
+	/**
+	 * Extends a stored response after the server told it was not modified.
+	 */
+	synchronized void refresh(Entry entry, HttpResponse<?> notModified) {
+		Properties properties = getFreshness(notModified.headers());
+		if (properties == null) {
+			// the server doesn't allow caching anymore
+			delete(entry.key);
+			return;
+		}
+		for (String name : new String[] {URI, CONTENT_TYPE, ETAG, LAST_MODIFIED}) {
+			if (!properties.containsKey(name) && entry.properties.containsKey(name)) {
+				properties.setProperty(name, entry.properties.getProperty(name));
+			}
+		}
+		try {
+			writeMeta(new File(directory, entry.key + META_EXTENSION), properties);
+			entry.properties.putAll(properties);
+		} catch (IOException e) {
+			LOGGER.trace("Could not refresh cached response {}: {}", entry.key, e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the caching headers of a response.
+	 *
+	 * @return the validators and expiry time, or {@code null} if the response
+	 *         can't be stored.
+	 */
+	static Properties getFreshness(HttpHeaders headers) {
+		long maxAge = -1;
+		for (String value : headers.allValues("cache-control")) {
+			for (String directive : value.toLowerCase(Locale.ROOT).split(",")) {
+				directive = directive.trim();
+				if (directive.equals("no-store")) {
+					return null;
+				} else if (directive.equals("no-cache")) {
+					maxAge = 0;
+				} else if (directive.startsWith("max-age=") && maxAge != 0) {
+					try {
+						maxAge = Long.parseLong(directive.substring(8).trim());
+					} catch (NumberFormatException e) {
+						maxAge = 0;
+					}
+				}
+			}
+		}
+		Properties properties = new Properties();
+		headers.firstValue(ETAG).ifPresent(value -> properties.setProperty(ETAG, value));
+		headers.firstValue(LAST_MODIFIED).ifPresent(value -> properties.setProperty(LAST_MODIFIED, value));
+		if (maxAge <= 0 && properties.isEmpty()) {
+			// can't be reused nor revalidated
+			return null;
+		}
+		long expires = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(0, maxAge));
+		properties.setProperty(EXPIRES, String.valueOf(expires));
+		return properties;
+	}
+
+	private static boolean isCacheable(HttpRequest request) {
+		return "GET".equals(request.method()) && request.headers().firstValue("authorization").isEmpty();
+	}
+
+	private static String getKey(HttpRequest request) {
+		return DigestUtils.md5Hex(request.uri() + "|" + request.headers().firstValue("accept").orElse(""));
+	}
+
+	private static void writeMeta(File meta, Properties properties) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		properties.store(os, null);
+		replace(meta, os.toByteArray());
+	}
+
+	/**
+	 * Writes a file next to the target then moves it over the target, so that
+	 * the lookups, which don't lock, never read a partly written file.
+	 */
+	private static void replace(File target, byte[] content) throws IOException {
+		Path temp = Files.createTempFile(target.getParentFile().toPath(), target.getName(), ".tmp");
+		try {
+			Files.write(temp, content);
+			Files.move(temp, target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private long getSize() {
+		if (size < 0) {
+			long total = 0;
+			File[] files = directory.listFiles((dir, name) -> name.endsWith(BODY_EXTENSION));
+			if (files != null) {
+				for (File file : files) {
+					total += file.length();
+				}
+			}
+			size = total;
+		}
+		return size;
+	}
+
+	/**
+	 * Deletes the least recently used responses down to 90% of the budget.
+	 */
+	private void evict() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(BODY_EXTENSION));
+		if (files == null) {
+			return;
+		}
+		long[] lastModified = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		long total = 0;
+		for (int i = 0; i < files.length; i++) {
+			lastModified[i] = files[i].lastModified();
+			order[i] = i;
+			total += files[i].length();
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+		long target = budget - budget / 10;
+		for (Integer i : order) {
+			if (total <= target) {
+				break;
+			}
+			String name = files[i].getName();
+			total -= files[i].length();
+			delete(name.substring(0, name.length() - BODY_EXTENSION.length()));
+		}
+		size = total;
+	}
+
+	private void delete(String key) {
+		for (String extension : new String[] {BODY_EXTENSION, META_EXTENSION}) {
+			File file = new File(directory, key + extension);
+			if (file.exists() && !file.delete()) {
+				LOGGER.trace("Could not delete cached response {}", file);
+			}
+		}
+	}
+
+	/**
+	 * A stored response.
+	 */
+	static class Entry {
+		private final String key;
+		private final File body;
+		private final Properties properties;
+
+		private Entry(String key, File body, Properties properties) {
+			this.key = key;
+			this.body = body;
+			this.properties = properties;
+		}
+
+		boolean isFresh() {
+			try {
+				return Long.parseLong(properties.getProperty(EXPIRES, "0")) > System.currentTimeMillis();
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+
+		String getETag() {
+			return properties.getProperty(ETAG);
+		}
+
+		String getLastModified() {
+			return properties.getProperty(LAST_MODIFIED);
+		}
+
+		/**
+		 * @return the stored response, or {@code null} if its body can't be
+		 *         read.
+		 */
+		HttpResponse<byte[]> toResponse(HttpRequest request) {
+			try {
+				return new CachedResponse(request, Files.readAllBytes(body.toPath()), properties.getProperty(CONTENT_TYPE));
+			} catch (IOException e) {
+				LOGGER.trace("Could not read cached response {}: {}", body, e.getMessage());
+				return null;
+			}
+		}
+	}
+
+	private static class CachedResponse implements HttpResponse<byte[]> {
+		private final HttpRequest request;
+		private final byte[] body;
+		private final HttpHeaders headers;
+
+		private CachedResponse(HttpRequest request, byte[] body, String contentType) {
+			this.request = request;
+			this.body = body;
+			Map<String, List<String>> map = contentType != null ? Map.of(CONTENT_TYPE, List.of(contentType)) : Map.of();
+			this.headers = HttpHeaders.of(map, (name, value) -> true);
+		}
+
+		@Override
+		public int statusCode() {
+			return 200;
+		}
+
+		@Override
+		public HttpRequest request() {
+			return request;
+		}
+
+		@Override
+		public Optional<HttpResponse<byte[]>> previousResponse() {
+			return Optional.empty();
+		}
+
+		@Override
+		public HttpHeaders headers() {
+			return headers;
+		}
+
+		@Override
+		public byte[] body() {
+			return body;
+		}
+
+		@Override
+		public Optional<SSLSession> sslSession() {
+			return Optional.empty();
+		}
+
+		@Override
+		public URI uri() {
+			return request.uri();
+		}
+
+		@Override
+		public HttpClient.Version version() {
+			return HttpClient.Version.HTTP_1_1;
+		}
+	}
+
+}
@@ -19,12 +19,22 @@ package net.pms.external;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import net.pms.dlna.DLNAThumbnail;
 import net.pms.image.ImageFormat;
 import net.pms.image.ImagesUtil.ScaleType;
@@ -33,11 +43,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * A single HTTP client shared by the lookups on external servers, so that
+ * connections and TLS sessions are reused.
+ *
+ * The requests to a host are limited, the ones rejected by a rate limit are
+ * retried later, and the responses to GET requests are kept on disk as long
+ * as the servers allow it.
+ *
  * @author Surf@ceS
  */
 public class JavaHttpClient {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(JavaHttpClient.class);
+	private static final int MAX_REQUESTS_PER_HOST = 4;
+	private static final int MAX_RETRIES = 3;
+	private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+	private static final HttpClient CLIENT = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_2)
+			.followRedirects(HttpClient.Redirect.ALWAYS)
+			.connectTimeout(Duration.ofSeconds(30))
+			.build();
+	private static final Map<String, Semaphore> HOST_LIMITS = new ConcurrentHashMap<>();
 
 	/**
 	 * This class is not meant to be instantiated.
@@ -45,6 +71,87 @@ public class JavaHttpClient {
 	private JavaHttpClient() {
 	}
 
+	/**
+	 * @return the shared client, for requests that need their own body
+	 *         handling.
+	 */
+	public static HttpClient getHttpClient() {
+		return CLIENT;
+	}
+
+	/**
+	 * Sends a request, using the stored response of a GET request when it is
+	 * still fresh or not modified.
+	 *
+	 * @param request the request.
+	 * @return the response.
+	 * @throws IOException if the request fails.
+	 */
+	public static HttpResponse<byte[]> send(HttpRequest request) throws IOException {
+		HttpResponseCache responseCache = CacheHolder.CACHE;
+		HttpResponseCache.Entry entry = responseCache != null ? responseCache.get(request) : null;
+		if (entry != null && entry.isFresh()) {
+			HttpResponse<byte[]> cached = entry.toResponse(request);
+			if (cached != null) {
+				LOGGER.trace("Using cached response for {}", request.uri());
+				return cached;
+			}
+		}
+		HttpRequest sentRequest = entry != null ? HttpResponseCache.getConditionalRequest(request, entry) : request;
+		HttpResponse<byte[]> response = send(sentRequest, HttpResponse.BodyHandlers.ofByteArray());
+		if (entry != null && response.statusCode() == 304) {
+			HttpResponse<byte[]> cached = entry.toResponse(request);
+			if (cached != null) {
+				LOGGER.trace("Using revalidated response for {}", request.uri());
+				responseCache.refresh(entry, response);
+				return cached;
+			}
+			response = send(request, HttpResponse.BodyHandlers.ofByteArray());
+		}
+		if (responseCache != null) {
+			responseCache.put(request, response);
+		}
+		return response;
+	}
+
+	/**
+	 * Sends a request with the shared client, waiting while too many requests
+	 * are running on the same host, and retrying while the server answers that
+	 * its rate limit is reached.
+	 * <p>
+	 * The bodies of the responses that are retried are discarded, the given
+	 * handler only gets the body of the response returned.
+	 *
+	 * @param <T> the response body type.
+	 * @param request the request.
+	 * @param responseBodyHandler the response body handler.
+	 * @return the response.
+	 * @throws IOException if the request fails.
+	 */
+	public static <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) throws IOException {
+		Semaphore limit = HOST_LIMITS.computeIfAbsent(String.valueOf(request.uri().getHost()), host -> new Semaphore(MAX_REQUESTS_PER_HOST));
+		try {
+			for (int retry = 0;; retry++) {
+				RetryBodyHandler<T> retryBodyHandler = new RetryBodyHandler<>(responseBodyHandler, retry);
+				HttpResponse<T> response;
+				limit.acquire();
+				try {
+					response = CLIENT.send(request, retryBodyHandler);
+				} finally {
+					limit.release();
+				}
+				if (retryBodyHandler.delay < 0) {
+					return response;
+				}
+				LOGGER.debug("HTTP response {} for {}, retrying in {} ms", response.statusCode(), request.uri(), retryBodyHandler.delay);
+				Thread.sleep(retryBodyHandler.delay);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+		}
+	}
+
 	/**
 	 * Download file from the external server and return the content of it in
 	 * the ByteArray.
@@ -61,11 +168,7 @@ public class JavaHttpClient {
 					.uri(new URI(uri))
 					.GET()
 					.build();
-			HttpResponse<byte[]> response = HttpClient.newBuilder()
-					.followRedirects(HttpClient.Redirect.ALWAYS)
-					.build()
-					.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
-					.join();
+			HttpResponse<byte[]> response = send(request);
 			int statusCode = response.statusCode();
 			if (statusCode != 200) {
 				String contentType = response.headers().firstValue("content-type").orElse(null);
@@ -89,11 +192,7 @@ public class JavaHttpClient {
 					.GET()
 					.build();
 			FileBodyHandler responseBodyHandler = new FileBodyHandler(file, uri, callback);
-			HttpResponse<Void> response = HttpClient.newBuilder()
-					.followRedirects(HttpClient.Redirect.ALWAYS)
-					.build()
-					.sendAsync(request, responseBodyHandler)
-					.join();
+			HttpResponse<Void> response = send(request, responseBodyHandler);
 			int statusCode = response.statusCode();
 			if (statusCode != 200) {
 				throw new IOException("HTTP response not OK (" + statusCode + ") for " + uri);
@@ -122,4 +221,61 @@ public class JavaHttpClient {
 		return null;
 	}
 
+	/**
+	 * @return the time to wait before retrying, from the
+	 *         {@code Retry-After} header if any.
+	 */
+	static long getRetryDelay(HttpHeaders headers, int retry) {
+		String retryAfter = headers.firstValue("retry-after").orElse(null);
+		if (retryAfter != null) {
+			try {
+				return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter.trim())));
+			} catch (NumberFormatException e) {
+				try {
+					ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+					return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+				} catch (DateTimeParseException e2) {
+					LOGGER.trace("Invalid Retry-After header: {}", retryAfter);
+				}
+			}
+		}
+		return TimeUnit.SECONDS.toMillis(1L << retry);
+	}
+
+	/**
+	 * Discards the body of a response that will be retried, and hands the
+	 * other responses to the caller's handler.
+	 */
+	private static class RetryBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+		private final HttpResponse.BodyHandler<T> responseBodyHandler;
+		private final int retry;
+		private volatile long delay = -1;
+
+		private RetryBodyHandler(HttpResponse.BodyHandler<T> responseBodyHandler, int retry) {
+			this.responseBodyHandler = responseBodyHandler;
+			this.retry = retry;
+		}
+
+		@Override
+		public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+			int statusCode = responseInfo.statusCode();
+			if ((statusCode == 429 || statusCode == 503) && retry < MAX_RETRIES) {
+				long retryDelay = getRetryDelay(responseInfo.headers(), retry);
+				if (retryDelay <= MAX_RETRY_DELAY) {
+					delay = retryDelay;
+					return HttpResponse.BodySubscribers.replacing(null);
+				}
+			}
+			return responseBodyHandler.apply(responseInfo);
+		}
+	}
+
+	/**
+	 * Creates the response cache on first use, once the configuration is
+	 * loaded.
+	 */
+	private static class CacheHolder {
+		private static final HttpResponseCache CACHE = HttpResponseCache.getDefault();
+	}
+
 }
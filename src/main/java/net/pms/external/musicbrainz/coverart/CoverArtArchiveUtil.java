@@ -19,10 +19,12 @@ package net.pms.external.musicbrainz.coverart;
 import fm.last.musicbrainz.coverart.CoverArt;
 import fm.last.musicbrainz.coverart.CoverArtException;
 import fm.last.musicbrainz.coverart.CoverArtImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
 import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.util.ArrayList;
@@ -39,6 +41,7 @@ import net.pms.database.MediaTableCoverArtArchive;
 import net.pms.database.MediaTableCoverArtArchive.CoverArtArchiveResult;
 import net.pms.database.MediaTableMusicBrainzReleases;
 import net.pms.database.MediaTableMusicBrainzReleases.MusicBrainzReleasesResult;
+import net.pms.external.JavaHttpClient;
 import net.pms.util.StringUtil;
 import net.pms.util.XmlUtils;
 import org.apache.commons.io.IOUtils;
@@ -793,9 +796,15 @@ public class CoverArtArchiveUtil extends CoverUtil {
 					}
 
 					try {
-						HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
-						connection.setRequestProperty("Accept-Charset", StandardCharsets.UTF_8.name());
-						int status = connection.getResponseCode();
+						// musicbrainz.org answers 503 above its rate limit, the
+						// shared client waits and retries
+						HttpRequest request = HttpRequest.newBuilder()
+							.uri(URI.create(url))
+							.header("Accept-Charset", StandardCharsets.UTF_8.name())
+							.GET()
+							.build();
+						HttpResponse<byte[]> response = JavaHttpClient.send(request);
+						int status = response.statusCode();
 						if (status != 200) {
 							LOGGER.error(
 								"Could not lookup audio cover for \"{}\": musicbrainz.org replied with status code {}",
@@ -806,14 +815,12 @@ public class CoverArtArchiveUtil extends CoverUtil {
 						}
 
 						Document document;
-						try {
-							document = builder.parse(connection.getInputStream());
+						try (InputStream body = new ByteArrayInputStream(response.body())) {
+							document = builder.parse(body);
 						} catch (SAXException e) {
 							LOGGER.error("Failed to parse XML for \"{}\": {}", url, e.getMessage());
 							LOGGER.trace("", e);
 							return null;
-						} finally {
-							connection.getInputStream().close();
 						}
 
 						ArrayList<ReleaseRecord> releaseList;
@@ -19,6 +19,7 @@ package net.pms.external.musicbrainz.coverart;
 import fm.last.musicbrainz.coverart.CoverArt;
 import fm.last.musicbrainz.coverart.CoverArtArchiveClient;
 import fm.last.musicbrainz.coverart.CoverArtException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -27,7 +28,9 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
 import java.util.UUID;
+import net.pms.external.JavaHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -86,16 +89,10 @@ public class DefaultCoverArtArchiveClient implements CoverArtArchiveClient {
 	 * <code>getXYZUrl()</code> methods, such as
 	 * {@link CoverArtImage#getImageUrl()}.
 	 * @param client custom client. <code>null</code> results in using the
-	 * default client
+	 * shared {@link JavaHttpClient}, with its response cache
 	 */
 	public DefaultCoverArtArchiveClient(boolean useHttps, HttpClient client) {
-		if (client == null) {
-			this.client = HttpClient.newBuilder()
-					.followRedirects(HttpClient.Redirect.ALWAYS)
-					.build();
-		} else {
-			this.client = client;
-		}
+		this.client = client;
 		this.useHttps = useHttps;
 	}
 
@@ -128,11 +125,20 @@ public class DefaultCoverArtArchiveClient implements CoverArtArchiveClient {
 		HttpRequest getRequest = getJsonGetRequest(entity, mbid);
 		CoverArt coverArt = null;
 		try {
-			HttpResponse<String> response = client.send(getRequest, BodyHandlers.ofString());
-			if (response.statusCode() != 200) {
-				throw new CoverArtResponseException(response.statusCode(), response.body());
+			String json;
+			int statusCode;
+			if (client == null) {
+				HttpResponse<byte[]> response = JavaHttpClient.send(getRequest);
+				statusCode = response.statusCode();
+				json = new String(response.body(), StandardCharsets.UTF_8);
+			} else {
+				HttpResponse<String> response = client.send(getRequest, BodyHandlers.ofString());
+				statusCode = response.statusCode();
+				json = response.body();
+			}
+			if (statusCode != 200) {
+				throw new CoverArtResponseException(statusCode, json);
 			}
-			String json = response.body();
 			coverArt = factory.valueOf(json);
 		} catch (IOException e) {
 			throw new CoverArtException(e);
@@ -143,6 +149,9 @@ public class DefaultCoverArtArchiveClient implements CoverArtArchiveClient {
 	InputStream getImageData(String location) throws IOException, InterruptedException {
 		LOGGER.info("location={}", location);
 		HttpRequest getRequest = getJpegGetRequest(location);
+		if (client == null) {
+			return new ByteArrayInputStream(JavaHttpClient.send(getRequest).body());
+		}
 		return client.send(getRequest, BodyHandlers.ofInputStream()).body();
 	}
 
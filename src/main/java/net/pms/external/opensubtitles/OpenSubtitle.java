@@ -16,16 +16,17 @@
  */
 package net.pms.external.opensubtitles;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.LongBuffer;
@@ -36,6 +37,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -63,6 +65,7 @@ import javax.xml.transform.TransformerException;
 import javax.xml.xpath.XPathExpressionException;
 import net.pms.PMS;
 import net.pms.dlna.protocolinfo.MimeType;
+import net.pms.external.JavaHttpClient;
 import net.pms.formats.v2.SubtitleType;
 import net.pms.media.MediaInfo;
 import net.pms.media.MediaLang;
@@ -119,6 +122,7 @@ public class OpenSubtitle {
 	private static final int HASH_CHUNK_SIZE = 64 * 1024;
 
 	private static final String OPENSUBS_URL = "http://api.opensubtitles.org/xml-rpc";
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
 	private static final ReentrantReadWriteLock TOKEN_LOCK = new ReentrantReadWriteLock();
 	private static Token token = null;
 
@@ -204,69 +208,68 @@ public class OpenSubtitle {
 	}
 
 	/**
-	 * Completes the exchange of the specified {@link HttpURLConnection} and
-	 * returns the response as an {@link InputStream}. This also handles the
-	 * HTTP response code and throws an {@link OpenSubtitlesException} if the
-	 * response isn't OK. In the event of a
-	 * {@link HTTPResponseCode#SERVICE_UNAVAILABLE} response code, 3 retries
-	 * with a 500 millisecond pause between them will be tried before giving up.
+	 * Sends the specified {@link XMLRPCRequest} and returns the response as an
+	 * {@link InputStream}. This also handles the HTTP response code and throws
+	 * an {@link OpenSubtitlesException} if the response isn't OK. The
+	 * {@link HTTPResponseCode#SERVICE_UNAVAILABLE} and
+	 * {@link HTTPResponseCode#TOO_MANY_REQUESTS} responses are retried by
+	 * {@link JavaHttpClient}.
 	 *
-	 * @param connection the {@link HttpURLConnection} to complete the exchange
-	 *            for.
+	 * @param connection the {@link XMLRPCRequest} to send.
 	 * @return The {@link InputStream} with the response.
 	 * @throws IOException If an error occurs during the operation.
 	 */
-	private static InputStream sendXMLStream(HttpURLConnection connection) throws IOException {
-		return sendXMLStream(connection, 3, 500);
+	private static InputStream sendXMLStream(XMLRPCRequest connection) throws IOException {
+		HttpResponse<InputStream> response = connection.send();
+		HTTPResponseCode responseCode = HTTPResponseCode.typeOf(response.statusCode());
+		if (responseCode == null) {
+			response.body().close();
+			throw new OpenSubtitlesException(
+				"OpenSubtitles replied with an unknown response code: " + response.statusCode()
+			);
+		}
+		if (responseCode.isError()) {
+			response.body().close();
+		}
+		HTTPResponseCode.handleResponseCode(responseCode);
+		return response.body();
 	}
 
 	/**
-	 * Completes the exchange of the specified {@link HttpURLConnection} and
-	 * returns the response as an {@link InputStream}. This also handles the
-	 * HTTP response code and throws an {@link OpenSubtitlesException} if the
-	 * response isn't OK.
-	 *
-	 * @param connection the {@link HttpURLConnection} to complete the exchange
-	 *            for.
-	 * @param retries the number of times to retry if the response code is
-	 *            {@link HTTPResponseCode#SERVICE_UNAVAILABLE} before giving up.
-	 * @param retrySleepMS the number of milliseconds to wait between each
-	 *            retry.
-	 * @return The {@link InputStream} with the response.
-	 * @throws IOException If an error occurs during the operation.
+	 * An XML-RPC request written to memory, then sent with the shared
+	 * {@link JavaHttpClient} so that it uses its connection pool, its per
+	 * host limit and its rate limit retries.
 	 */
-	private static InputStream sendXMLStream(HttpURLConnection connection, int retries, long retrySleepMS) throws IOException {
-		int remaining = retries;
-		HTTPResponseCode responseCode = HTTPResponseCode.typeOf(connection.getResponseCode());
-		do {
-			if (responseCode == null) {
-				throw new OpenSubtitlesException(
-					"OpenSubtitles replied with an unknown response code: " +
-					connection.getResponseCode() + " " +
-					connection.getResponseMessage()
-				);
-			}
-			if (responseCode == HTTPResponseCode.SERVICE_UNAVAILABLE || responseCode == HTTPResponseCode.ORIGIN_ERROR) {
-				remaining--;
-				try {
-					Thread.sleep(retrySleepMS);
-				} catch (InterruptedException e) {
-					LOGGER.debug("OpenSubtitles was interrupted while waiting to retry a request to {}", connection.getURL().getHost());
-					Thread.currentThread().interrupt();
-					throw new OpenSubtitlesException("Interrupted while waiting to retry", e);
-				}
-			} else {
-				HTTPResponseCode.handleResponseCode(responseCode);
+	private static class XMLRPCRequest {
+		private final URL url;
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		private XMLRPCRequest(URL url) {
+			this.url = url;
+		}
+
+		private OutputStream getOutputStream() {
+			return body;
+		}
+
+		private String getHost() {
+			return url.getHost();
+		}
+
+		private HttpResponse<InputStream> send() throws IOException {
+			HttpRequest request;
+			try {
+				request = HttpRequest.newBuilder()
+					.uri(url.toURI())
+					.header("Content-Type", "text/xml;charset=UTF-8")
+					.timeout(REQUEST_TIMEOUT)
+					.POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+					.build();
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				throw new OpenSubtitlesException("Invalid URL: " + url);
 			}
-		} while (remaining >= 0 && (responseCode == HTTPResponseCode.SERVICE_UNAVAILABLE || responseCode == HTTPResponseCode.ORIGIN_ERROR));
-		if (responseCode == HTTPResponseCode.SERVICE_UNAVAILABLE || responseCode == HTTPResponseCode.ORIGIN_ERROR) {
-			throw new OpenSubtitlesException(
-				"OpenSubtitles gave up getting a response from " +
-				connection.getURL().getHost() + " after " +
-				retries + " attempts (Response code " + responseCode + ")"
-			);
+			return JavaHttpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
 		}
-		return connection.getInputStream();
 	}
 
 	/**
@@ -308,16 +311,7 @@ public class OpenSubtitle {
 				throw new AssertionError("OpenSubtitles URL \"" + OPENSUBS_URL + "\" is invalid");
 			}
 
-			URLConnection urlConnection = url.openConnection();
-			if (!(urlConnection instanceof HttpURLConnection)) {
-				throw new OpenSubtitlesException("Invalid URL: " + OPENSUBS_URL);
-			}
-			HttpURLConnection connection = (HttpURLConnection) urlConnection;
-			connection.setDoInput(true);
-			connection.setDoOutput(true);
-			connection.setRequestProperty("Content-Type", "text/xml;charset=UTF-8");
-			connection.setRequestMethod("POST");
-			connection.setConnectTimeout(2000);
+			XMLRPCRequest connection = new XMLRPCRequest(url);
 
 			// Create request
 			Params params = new Params();
@@ -345,8 +339,8 @@ public class OpenSubtitle {
 			// Parse reply
 			params = null;
 			try (InputStream reply = LOGGER.isTraceEnabled() ?
-				new LoggableInputStream(sendXMLStream(connection, 5, 500), StandardCharsets.UTF_8) :
-					sendXMLStream(connection, 5, 500)
+				new LoggableInputStream(sendXMLStream(connection), StandardCharsets.UTF_8) :
+				sendXMLStream(connection)
 			) {
 				LOGGER.trace("Parsing OpenSubtitles login response");
 				XMLStreamReader reader = null;
@@ -747,19 +741,8 @@ public class OpenSubtitle {
 			return new ArrayList<>();
 		}
 
-		URLConnection urlConnection;
 		try {
-			urlConnection = url.openConnection();
-			if (!(urlConnection instanceof HttpURLConnection)) {
-				throw new OpenSubtitlesException("Invalid URL: " + OPENSUBS_URL);
-			}
-
-			HttpURLConnection connection = (HttpURLConnection) urlConnection;
-			connection.setDoInput(true);
-			connection.setDoOutput(true);
-			connection.setRequestProperty("Content-Type", "text/xml;charset=UTF-8");
-			connection.setRequestMethod("POST");
-			connection.setConnectTimeout(3000);
+			XMLRPCRequest connection = new XMLRPCRequest(url);
 
 			// Create request
 			Params params = new Params();
@@ -995,19 +978,8 @@ public class OpenSubtitle {
 			return new HashMap<>();
 		}
 
-		URLConnection urlConnection;
 		try {
-			urlConnection = url.openConnection();
-			if (!(urlConnection instanceof HttpURLConnection)) {
-				throw new OpenSubtitlesException("Invalid URL: " + OPENSUBS_URL);
-			}
-
-			HttpURLConnection connection = (HttpURLConnection) urlConnection;
-			connection.setDoInput(true);
-			connection.setDoOutput(true);
-			connection.setRequestProperty("Content-Type", "text/xml;charset=UTF-8");
-			connection.setRequestMethod("POST");
-			connection.setConnectTimeout(3000);
+			XMLRPCRequest connection = new XMLRPCRequest(url);
 
 			// Create request
 			Params params = new Params();
@@ -1297,19 +1269,8 @@ public class OpenSubtitle {
 			return null;
 		}
 
-		URLConnection urlConnection;
 		try {
-			urlConnection = url.openConnection();
-			if (!(urlConnection instanceof HttpURLConnection)) {
-				throw new OpenSubtitlesException("Invalid URL: " + OPENSUBS_URL);
-			}
-
-			HttpURLConnection connection = (HttpURLConnection) urlConnection;
-			connection.setDoInput(true);
-			connection.setDoOutput(true);
-			connection.setRequestProperty("Content-Type", "text/xml;charset=UTF-8");
-			connection.setRequestMethod("POST");
-			connection.setConnectTimeout(3000);
+			XMLRPCRequest connection = new XMLRPCRequest(url);
 
 			// Create request
 			Params params = new Params();
@@ -1695,10 +1656,18 @@ public class OpenSubtitle {
 		if (output == null) {
 			output = resolveSubtitlesPath("TempSub" + System.currentTimeMillis());
 		}
-		URLConnection connection = url.openConnection();
-		connection.setDoInput(true);
-		connection.setDoOutput(true);
-		InputStream in = connection.getInputStream();
+		HttpResponse<InputStream> response;
+		try {
+			HttpRequest request = HttpRequest.newBuilder().uri(url.toURI()).timeout(REQUEST_TIMEOUT).GET().build();
+			response = JavaHttpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			throw new IOException("Invalid subtitles URL: " + url, e);
+		}
+		InputStream in = response.body();
+		if (response.statusCode() != 200) {
+			in.close();
+			throw new IOException("HTTP response not OK (" + response.statusCode() + ") for " + url);
+		}
 		try (GZIPInputStream gzipInputStream = new GZIPInputStream(in); OutputStream out = Files.newOutputStream(output);) {
 			byte[] buf = new byte[4096];
 			int len;
@@ -67,6 +67,7 @@ import net.pms.Messages;
 import net.pms.PMS;
 import net.pms.configuration.UmsConfiguration;
 import net.pms.database.MediaDatabase;
+import net.pms.database.MediaDatabaseWriter;
 import net.pms.database.MediaTableFailedLookups;
 import net.pms.database.MediaTableFiles;
 import net.pms.database.MediaTableTVSeries;
@@ -200,6 +201,9 @@ public class TMDB {
 				return;
 			}
 
+			// the scanned file may still be queued for the database
+			MediaDatabaseWriter.await(file.getAbsolutePath());
+
 			try (Connection connection = MediaDatabase.getConnectionIfAvailable()) {
 				if (connection == null) {
 					return;
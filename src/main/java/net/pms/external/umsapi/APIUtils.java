@@ -20,17 +20,18 @@ import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -968,69 +969,32 @@ public class APIUtils {
 	}
 
 	private static String getJson(URL url) throws IOException {
-		HttpURLConnection connection = null;
 		try {
-			connection = (HttpURLConnection) url.openConnection();
-			connection.setAllowUserInteraction(false);
-			connection.setRequestProperty("Content-Type", "application/json");
-			connection.setRequestProperty("Content-length", "0");
-			connection.setRequestProperty("User-Agent", VERBOSE_UA);
-			connection.setConnectTimeout(30000);
-			connection.setReadTimeout(30000);
-			connection.connect();
-
-			int status = connection.getResponseCode();
+			HttpRequest request = HttpRequest.newBuilder(url.toURI())
+					.setHeader("Content-Type", "application/json")
+					.setHeader("User-Agent", VERBOSE_UA)
+					.timeout(Duration.ofSeconds(30))
+					.GET()
+					.build();
+			HttpResponse<byte[]> httpResponse = JavaHttpClient.send(request);
+			int status = httpResponse.statusCode();
+			String body = new String(httpResponse.body(), StandardCharsets.UTF_8).trim();
 			String response;
 
 			switch (status) {
 				case 200, 201 -> {
-					StringBuilder sb = new StringBuilder();
-					try (
-							InputStreamReader instream = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8);
-							BufferedReader br = new BufferedReader(instream)
-							) {
-						String line;
-						while ((line = br.readLine()) != null) {
-							sb.append(line.trim()).append("\n");
-						}
-					} catch (Exception e) {
-						LOGGER.info("API lookup error for {}, {}", connection.getURL(), e.getMessage());
-					}
-					LOGGER.debug("API URL was {}", connection.getURL());
-					response = sb.toString().trim();
+					LOGGER.debug("API URL was {}", url);
+					response = body;
 				}
 				default -> {
-					StringBuilder errorMessage = new StringBuilder();
-					if (connection.getErrorStream() != null) {
-						try (
-								InputStreamReader instream = new InputStreamReader(connection.getErrorStream(), StandardCharsets.UTF_8);
-								BufferedReader br = new BufferedReader(instream)
-								) {
-							String line;
-							while ((line = br.readLine()) != null) {
-								errorMessage.append(line.trim()).append("\n");
-							}
-						} catch (Exception e) {
-							LOGGER.info("API lookup error for {}, {}", connection.getURL(), e.getMessage());
-						}
-					}
-
-					LOGGER.debug("API status was {} for {}, {}", status, errorMessage, connection.getURL());
-					response = "{ statusCode: \"" + status + "\", serverResponse: " + GSON.toJson(errorMessage) + " }";
+					LOGGER.debug("API status was {} for {}, {}", status, body, url);
+					response = "{ statusCode: \"" + status + "\", serverResponse: " + GSON.toJson(body) + " }";
 				}
 			}
 
 			return response;
-		} catch (IOException e) {
-			LOGGER.debug("Error with HttpURLConnection: {}", e);
-		} finally {
-			if (connection != null) {
-				try {
-					connection.disconnect();
-				} catch (Exception ex) {
-					LOGGER.debug("Error while disconnecting connection: {}", ex);
-				}
-			}
+		} catch (IOException | URISyntaxException e) {
+			LOGGER.debug("Error with API request: {}", e);
 		}
 		return null;
 	}
@@ -120,6 +120,30 @@ public class GuiManager {
 		}
 	}
 
+	/**
+	 * Appends several log lines, locking the log buffer once.
+	 *
+	 * @param msgs the log lines.
+	 */
+	public static void appendLogs(List<String> msgs) {
+		synchronized (LOG_BUFFER) {
+			LOG_BUFFER.addAll(msgs);
+			int overflow = LOG_BUFFER.size() - LOG_BUFFER_SIZE;
+			if (overflow > 0) {
+				needLogFile = true;
+				LOG_BUFFER.subList(0, overflow).clear();
+			}
+		}
+		for (String msg : msgs) {
+			if (swingFrame != null) {
+				swingFrame.appendLog(msg);
+			}
+			if (webGui != null) {
+				webGui.appendLog(msg);
+			}
+		}
+	}
+
 	public static String[] getLogLines() {
 		synchronized (LOG_BUFFER) {
 			return LOG_BUFFER.toArray(String[]::new);
@@ -152,6 +152,10 @@ public class BufferedOutputByteArrayImpl extends ByteArrayOutputStream implement
 	public void removeInputStream(WaitBufferedInputStream waitBufferedInputStream) {
 	}
 
+	@Override
+	public void readCountChanged() {
+	}
+
 
 	/**
 	 * @deprecated Unused method from interface.
@@ -47,6 +47,12 @@ public interface BufferedOutputFile {
 
 	public abstract void removeInputStream(WaitBufferedInputStream waitBufferedInputStream);
 
+	/**
+	 * Called by a {@link WaitBufferedInputStream} after its read position has
+	 * moved, so that a writer waiting for free space can be woken up.
+	 */
+	public abstract void readCountChanged();
+
 	public abstract void detachInputStream();
 
 	public abstract void write(byte[] byteArray) throws IOException;
@@ -21,16 +21,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.text.NumberFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import net.pms.PMS;
 import net.pms.configuration.UmsConfiguration;
 import net.pms.gui.GuiManager;
 import net.pms.renderers.Renderer;
-import net.pms.util.UMSUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,6 +44,17 @@ import org.slf4j.LoggerFactory;
  * misleading, as there is typically no file involved in the process at all.
  * Instead, the buffer is typically used to hold data piped by a transcoding
  * process in one thread until a request for data comes in from another thread.
+ * <p>
+ * There is a single writer (the transcoding process consumer) and any number
+ * of readers ({@link WaitBufferedInputStream}). Data is copied in and out of
+ * the buffer without locking, the writer publishes its progress through the
+ * volatile write count. The lock is only used to park a reader waiting for
+ * data or the writer waiting for free space, and each side only signals the
+ * other when somebody is actually waiting.
+ * <p>
+ * The buffer lives on the Java heap by default. When off-heap buffers are
+ * enabled, it is a {@link DirectRingBufferStorage} sharing a global memory
+ * budget with all the other transcoding buffers.
  *
  * @see ProcessWrapperImpl
  * @see net.pms.network.Request Request
@@ -66,6 +80,12 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 	private static final int CHECK_INTERVAL = 500;
 	private static final int CHECK_END_OF_PROCESS = 2500; // must be superior to CHECK_INTERVAL
 
+	/**
+	 * Maximum time in milliseconds a reader waits for the minimum amount of
+	 * data to be buffered before it settles for what is available.
+	 */
+	private static final int MAX_READ_WAIT = 15 * CHECK_INTERVAL;
+
 	private final UmsConfiguration configuration;
 	private final Renderer renderer;
 	private final int minMemorySize;
@@ -79,14 +99,20 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 	private final int secondReadMinSize;
 	private final FileOutputStream debugOutput = null;
 
-	private int bufferOverflowWarning;
-	private boolean eof;
-	private long writeCount;
-	private byte[] buffer;
-	private ArrayList<WaitBufferedInputStream> inputStreams;
+	private final List<WaitBufferedInputStream> inputStreams = new CopyOnWriteArrayList<>();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition dataAvailable = lock.newCondition();
+	private final Condition spaceAvailable = lock.newCondition();
+	private final AtomicInteger waitingReaders = new AtomicInteger();
+
+	private volatile int bufferOverflowWarning;
+	private volatile boolean eof;
+	private volatile long writeCount;
+	private volatile RingBufferStorage buffer;
+	private volatile boolean buffered = false;
+	private volatile boolean writerWaiting;
 	private ProcessWrapper attachedThread;
 	private Timer timer;
-	private boolean buffered = false;
 	private long packetpos = 0;
 
 	/**
@@ -206,15 +232,23 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		this.hidebuffer = params.isHideBuffer();
 		this.cleanup = params.isCleanup();
 
+		if (configuration.isTranscodeBufferOffHeap()) {
+			// Chunks are only taken when needed, no need to grow it later
+			buffer = new DirectRingBufferStorage(maxMemorySize);
+			return;
+		}
+
+		byte[] array;
 		if (maxMemorySize > INITIAL_BUFFER_SIZE) {
 			// Try to limit memory usage a bit.
 			// Start with a modest allocation initially, grow to max when needed later.
-			buffer = growBuffer(null, INITIAL_BUFFER_SIZE);
+			array = growBuffer(null, INITIAL_BUFFER_SIZE);
 		} else {
-			buffer = growBuffer(null, maxMemorySize);
+			array = growBuffer(null, maxMemorySize);
 		}
+		buffer = new HeapRingBufferStorage(array);
 
-		if (buffer.length == 0) {
+		if (array.length == 0) {
 			// Cannot transcode without a buffer
 			LOGGER.info("FATAL ERROR: OutOfMemory / dumping stats");
 			LOGGER.trace("freeMemory: " + Runtime.getRuntime().freeMemory());
@@ -222,14 +256,13 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 			LOGGER.trace("maxMemory: " + Runtime.getRuntime().maxMemory());
 			System.exit(1);
 		}
-
-		inputStreams = new ArrayList<>();
 	}
 
 	@Override
 	public void close() throws IOException {
 		LOGGER.trace("EOF");
 		eof = true;
+		signalAll();
 		if (cleanup) {
 			detachInputStream();
 		}
@@ -263,6 +296,7 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		if (!configuration.getTrancodeBlocksMultipleConnections() || getCurrentInputStream() == null) {
 			atominputStream = new WaitBufferedInputStream(this);
 			inputStreams.add(atominputStream);
+			signalWriter();
 		} else {
 			if (configuration.getTrancodeKeepFirstConnections()) {
 				LOGGER.debug("BufferedOutputFile is already attached to an InputStream: " + getCurrentInputStream());
@@ -279,6 +313,7 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 				inputStreams.clear();
 				atominputStream = new WaitBufferedInputStream(this);
 				inputStreams.add(atominputStream);
+				signalWriter();
 				LOGGER.debug("Reassign inputstream: " + getCurrentInputStream());
 			}
 
@@ -305,79 +340,233 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 			debugOutput.flush();
 		}
 
-		WaitBufferedInputStream input = getCurrentInputStream();
+		if (len <= 0) {
+			return;
+		}
 
-		//LOGGER.trace("write(" + b.length + ", " + off + ", " + len + "), writeCount = " + writeCount + ", readCount = " + (input != null ? input.getReadCount() : "null"));
+		growBufferIfNeeded(len);
+		waitForSpace(len);
 
-		while ((input != null && (writeCount - input.getReadCount() > bufferOverflowWarning)) || (input == null && writeCount > bufferOverflowWarning)) {
-			UMSUtils.sleep(CHECK_INTERVAL);
-			input = getCurrentInputStream();
+		RingBufferStorage data = buffer;
+		if (data == null) {
+			return;
 		}
 
-		if (buffer != null) {
-			int mb = (int) (writeCount % maxMemorySize);
+		int mb = (int) (writeCount % data.capacity());
+		int head = Math.min(len, data.capacity() - mb);
+		data.put(mb, b, off, head);
+		if (head < len) {
+			// Wrapping around the end of the ring buffer
+			data.put(0, b, off + head, len - head);
+		}
+		buffered = true;
 
-			if (mb >= buffer.length - (len - off)) {
-				if (buffer.length == INITIAL_BUFFER_SIZE) {
-					// Initial buffer size was not big enough, try to increase it
-					buffer = growBuffer(buffer, maxMemorySize);
-				}
+		// Ditlew - WDTV Live
+		if (timeseek > 0 && writeCount > 10 && shiftScr) {
+			for (int i = 0; i < len; i++) {
+				shiftSCRByTimeSeek(mb + i, (int) timeseek); // Ditlew - update any SCR headers
+				//shiftGOPByTimeSeek(mb+i, (int)timeseek); // Ditlew - update any GOP headers - Not needed for WDTV Live
+			}
+		}
+
+		long newWriteCount = writeCount + len;
+		if (timeseek > 0 && timeend == 0) {
+			int packetLength = 6; // minimum to get packet size
+			while (packetpos + packetLength < newWriteCount) {
+				int packetposMB = (int) (packetpos % data.capacity());
+				int streamPos = 0;
+				if (data.get(packetposMB) == 71) { // TS
+					packetLength = 188;
+					streamPos = 4;
+
+					// adaptation field
+					if ((data.get(modulo(packetposMB + 3, data.capacity())) & 0x20) == 0x20) {
+						streamPos += 1 + ((data.get(modulo(packetposMB + 4, data.capacity())) + 256) % 256);
+					}
+
+					if (streamPos == 188) {
+						streamPos = -1;
+					}
 
-				// FIXME: This smells like 2x System.arraycopy()!
-				int s = (len - off);
-				for (int i = 0; i < s; i++) {
-					buffer[modulo(mb + i, buffer.length)] = b[off + i];
+				} else if (data.get(modulo(packetposMB + 3, data.capacity())) == -70) { // BA
+					packetLength = 14;
+					streamPos = -1;
+				} else {
+					packetLength = 6 + ((data.get(modulo(packetposMB + 4, data.capacity())) + 256) % 256) * 256 + ((data.get(modulo(packetposMB + 5, data.capacity())) + 256) % 256);
 				}
-			} else {
-				System.arraycopy(b, off, buffer, mb, (len - off));
-				if ((len - off) > 0) {
-					buffered = true;
+				if (streamPos != -1) {
+					mb = packetposMB + streamPos + 18;
+					if (!shiftVideo(mb, true)) {
+						mb -= 5;
+						shiftAudio(mb, true);
+					}
 				}
+				packetpos += packetLength;
 			}
+		}
 
-			// Ditlew - WDTV Live
-			if (timeseek > 0 && writeCount > 10) {
-				for (int i = 0; i < len; i++) {
-					if (buffer != null && shiftScr) {
-						shiftSCRByTimeSeek(mb + i, (int) timeseek); // Ditlew - update any SCR headers
-					}					//shiftGOPByTimeSeek(mb+i, (int)timeseek); // Ditlew - update any GOP headers - Not needed for WDTV Live
-				}
+		// Only publish the new data once it has been fully written and patched
+		writeCount = newWriteCount;
+		signalReaders();
+	}
+
+	/**
+	 * Grows the initial buffer to {@link #maxMemorySize} once the data about
+	 * to be written would wrap around its end for the first time. If the
+	 * buffer cannot grow, the overflow margin is lowered to fit in the
+	 * buffer we have so that the writer never overwrites unread data.
+	 *
+	 * @param len the number of bytes about to be written.
+	 */
+	private void growBufferIfNeeded(int len) {
+		if (!(buffer instanceof HeapRingBufferStorage heapBuffer)) {
+			// Off-heap buffers never need to grow
+			return;
+		}
+
+		byte[] array = heapBuffer.array();
+		if (array.length != INITIAL_BUFFER_SIZE || maxMemorySize <= INITIAL_BUFFER_SIZE || writeCount + len <= array.length) {
+			return;
+		}
+
+		// Initial buffer size was not big enough, try to increase it
+		array = growBuffer(array, maxMemorySize);
+		buffer = new HeapRingBufferStorage(array);
+		if (array.length < maxMemorySize) {
+			bufferOverflowWarning = Math.min(bufferOverflowWarning, array.length - MARGIN_MEDIUM);
+		}
+	}
+
+	/**
+	 * @param len the number of bytes about to be written.
+	 * @return whether {@code len} bytes can be written without overtaking
+	 *         the current reader by more than the overflow margin allows.
+	 *         Writing is always allowed once the reader has caught up, so
+	 *         that writes bigger than the margin can't block forever.
+	 */
+	private boolean hasSpace(int len) {
+		WaitBufferedInputStream input = getCurrentInputStream();
+		long unread = writeCount - (input != null ? input.getReadCount() : 0);
+		return unread <= 0 || unread + len <= bufferOverflowWarning;
+	}
+
+	/**
+	 * Parks the writer until the current reader has consumed enough data to
+	 * make room for {@code len} bytes, or the buffer has been reset.
+	 *
+	 * @param len the number of bytes about to be written.
+	 */
+	private void waitForSpace(int len) {
+		if (hasSpace(len)) {
+			return;
+		}
+
+		lock.lock();
+		try {
+			writerWaiting = true;
+			while (buffer != null && !hasSpace(len)) {
+				// Readers may come and go without signalling, so don't wait forever
+				spaceAvailable.await(CHECK_INTERVAL, TimeUnit.MILLISECONDS);
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			writerWaiting = false;
+			lock.unlock();
+		}
+	}
 
-			writeCount += len - off;
-			if (timeseek > 0 && timeend == 0) {
-				int packetLength = 6; // minimum to get packet size
-				while (packetpos + packetLength < writeCount && buffer != null) {
-					int packetposMB = (int) (packetpos % maxMemorySize);
-					int streamPos = 0;
-					if (buffer[modulo(packetposMB, buffer.length)] == 71) { // TS
-						packetLength = 188;
-						streamPos = 4;
-
-						// adaptation field
-						if ((buffer[modulo(packetposMB + 3, buffer.length)] & 0x20) == 0x20) {
-							streamPos += 1 + ((buffer[modulo(packetposMB + 4, buffer.length)] + 256) % 256);
-						}
-
-						if (streamPos == 188) {
-							streamPos = -1;
-						}
-
-					} else if (buffer[modulo(packetposMB + 3, buffer.length)] == -70) { // BA
-						packetLength = 14;
-						streamPos = -1;
-					} else {
-						packetLength = 6 + ((buffer[modulo(packetposMB + 4, buffer.length)] + 256) % 256) * 256 + ((buffer[modulo(packetposMB + 5, buffer.length)] + 256) % 256);
-					}
-					if (streamPos != -1) {
-						mb = packetposMB + streamPos + 18;
-						if (!shiftVideo(mb, true)) {
-							mb -= 5;
-							shiftAudio(mb, true);
-						}
-					}
-					packetpos += packetLength;
+	/**
+	 * Parks a reader until more than the minimum amount of data is buffered
+	 * ahead of {@code readCount}, the end of the stream has been reached or
+	 * {@link #MAX_READ_WAIT} has elapsed. Once that time has elapsed, the
+	 * reader only waits for at least one byte to be available.
+	 *
+	 * @param firstRead whether this is the first read of the input stream.
+	 * @param readCount the position of the reader.
+	 */
+	private void waitForData(boolean firstRead, long readCount) {
+		int minBufferS = firstRead ? minMemorySize : secondReadMinSize;
+		if (eof || writeCount - readCount > minBufferS) {
+			return;
+		}
+
+		LOGGER.trace("Suspend Read: readCount=" + readCount + " / writeCount=" + writeCount);
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_READ_WAIT);
+		lock.lock();
+		waitingReaders.incrementAndGet();
+		try {
+			while (!eof && buffer != null) {
+				long available = writeCount - readCount;
+				long remaining = deadline - System.nanoTime();
+				if (available > minBufferS || (available > 0 && remaining <= 0)) {
+					break;
 				}
+				dataAvailable.awaitNanos(remaining > 0 ? remaining : TimeUnit.MILLISECONDS.toNanos(CHECK_INTERVAL));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			waitingReaders.decrementAndGet();
+			lock.unlock();
+		}
+		LOGGER.trace("Resume Read: readCount=" + readCount + " / writeCount=" + writeCount);
+	}
+
+	/**
+	 * Wakes up the readers waiting for data, if any.
+	 */
+	private void signalReaders() {
+		if (waitingReaders.get() > 0) {
+			lock.lock();
+			try {
+				dataAvailable.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Wakes up the writer if it is waiting for free space.
+	 */
+	private void signalWriter() {
+		if (writerWaiting) {
+			lock.lock();
+			try {
+				spaceAvailable.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Wakes up everybody, used when the state of the buffer changes.
+	 */
+	private void signalAll() {
+		lock.lock();
+		try {
+			dataAvailable.signalAll();
+			spaceAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Use a lower margin once the reader went past the initial buffer size,
+	 * see issue 220.
+	 *
+	 * @param readCount the position of the reader.
+	 */
+	private void updateOverflowMargin(long readCount) {
+		if (readCount > INITIAL_BUFFER_SIZE && readCount < maxMemorySize) {
+			RingBufferStorage data = buffer;
+			int newMargin = Math.min(maxMemorySize, data != null ? data.capacity() : maxMemorySize) - MARGIN_MEDIUM;
+			if (bufferOverflowWarning != newMargin) {
+				LOGGER.debug("Setting margin to 2Mb");
+				this.bufferOverflowWarning = newMargin;
 			}
 		}
 	}
@@ -400,60 +589,57 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 
 	@Override
 	public void write(int b) throws IOException {
-		boolean bb = b % 100000 == 0;
-		WaitBufferedInputStream input = getCurrentInputStream();
-		while (bb && ((input != null && (writeCount - input.getReadCount() > bufferOverflowWarning)) || (input == null && writeCount == bufferOverflowWarning))) {
-			UMSUtils.sleep(CHECK_INTERVAL);
-			//LOGGER.trace("BufferedOutputFile Full");
-			input = getCurrentInputStream();
-		}
-		int mb = (int) (writeCount++ % maxMemorySize);
-		if (buffer != null) {
-			buffer[mb] = (byte) b;
+		growBufferIfNeeded(1);
+		waitForSpace(1);
+		RingBufferStorage data = buffer;
+		if (data != null) {
+			int mb = (int) (writeCount % data.capacity());
+			data.put(mb, (byte) b);
 			buffered = true;
-			if (writeCount == INITIAL_BUFFER_SIZE) {
-				buffer = growBuffer(buffer, maxMemorySize);
-			}
+			long newWriteCount = writeCount + 1;
 
-			if (timeseek > 0 && writeCount > 19) {
+			if (timeseek > 0 && newWriteCount > 19) {
 				shiftByTimeSeek(mb, mb <= 20);
 			}
 
 			// Ditlew - WDTV Live - update any SCR headers
-			if (timeseek > 0 && writeCount > 10) {
+			if (timeseek > 0 && newWriteCount > 10) {
 				shiftSCRByTimeSeek(mb, (int) timeseek);
 			}
+
+			writeCount = newWriteCount;
+			signalReaders();
 		}
 	}
 
 	// Ditlew - Modify SCR
 	private void shiftSCRByTimeSeek(int bufferIndex, int offsetSec) {
-		int m9 = modulo(bufferIndex - 9, buffer.length);
-		int m8 = modulo(bufferIndex - 8, buffer.length);
-		int m7 = modulo(bufferIndex - 7, buffer.length);
-		int m6 = modulo(bufferIndex - 6, buffer.length);
-		int m5 = modulo(bufferIndex - 5, buffer.length);
-		int m4 = modulo(bufferIndex - 4, buffer.length);
-		int m3 = modulo(bufferIndex - 3, buffer.length);
-		int m2 = modulo(bufferIndex - 2, buffer.length);
-		int m1 = modulo(bufferIndex - 1, buffer.length);
-		int m0 = modulo(bufferIndex, buffer.length);
+		int m9 = modulo(bufferIndex - 9, buffer.capacity());
+		int m8 = modulo(bufferIndex - 8, buffer.capacity());
+		int m7 = modulo(bufferIndex - 7, buffer.capacity());
+		int m6 = modulo(bufferIndex - 6, buffer.capacity());
+		int m5 = modulo(bufferIndex - 5, buffer.capacity());
+		int m4 = modulo(bufferIndex - 4, buffer.capacity());
+		int m3 = modulo(bufferIndex - 3, buffer.capacity());
+		int m2 = modulo(bufferIndex - 2, buffer.capacity());
+		int m1 = modulo(bufferIndex - 1, buffer.capacity());
+		int m0 = modulo(bufferIndex, buffer.capacity());
 
 		// SCR
-		if (buffer[m9] == 0 &&
-			buffer[m8] == 0 &&
-			buffer[m7] == 1 &&
-			buffer[m6] == -70 && // 0xBA - Java/UMS wants -70
+		if (buffer.get(m9) == 0 &&
+			buffer.get(m8) == 0 &&
+			buffer.get(m7) == 1 &&
+			buffer.get(m6) == -70 && // 0xBA - Java/UMS wants -70
 			// control bits
-			((buffer[m5] & 128) != 128) &&
-			((buffer[m5] & 64) == 64) &&
-			((buffer[m5] & 4) == 4) &&
-			((buffer[m3] & 4) == 4) &&
-			((buffer[m1] & 4) == 4) &&
-			((buffer[m0] & 1) == 1)) {
-			long scr3230 = ((buffer[m5] & 56) >> 3);
-			long scr2915 = ((buffer[m5] & 3) << 13) + (buffer[m4] << 5) + ((buffer[m3] & 248) >> 3);
-			long scr1400 = ((buffer[m3] & 3) << 13) + (buffer[m2] << 5) + ((buffer[m1] & 248) >> 3);
+			((buffer.get(m5) & 128) != 128) &&
+			((buffer.get(m5) & 64) == 64) &&
+			((buffer.get(m5) & 4) == 4) &&
+			((buffer.get(m3) & 4) == 4) &&
+			((buffer.get(m1) & 4) == 4) &&
+			((buffer.get(m0) & 1) == 1)) {
+			long scr3230 = ((buffer.get(m5) & 56) >> 3);
+			long scr2915 = ((buffer.get(m5) & 3) << 13) + (buffer.get(m4) << 5) + ((buffer.get(m3) & 248) >> 3);
+			long scr1400 = ((buffer.get(m3) & 3) << 13) + (buffer.get(m2) << 5) + ((buffer.get(m1) & 248) >> 3);
 
 			long scr = (scr3230 << 30) + (scr2915 << 15) + scr1400;
 			long scrNew = scr + (90000L * offsetSec);
@@ -463,17 +649,17 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 			long scr1400New = (scrNew & 32767L);             // 000000000000000000111111111111111
 
 			// scr_32_30_new
-			buffer[m5] = (byte) ((buffer[m5] & 199) + ((scr3230New << 3) & 56)); // 11000111
+			buffer.put(m5, (byte) ((buffer.get(m5) & 199) + ((scr3230New << 3) & 56))); // 11000111
 
 			// scr_29_15_new
-			buffer[m5] = (byte) ((buffer[m5] & 252) + ((scr2915New >> 13) & 3)); // 00000011
-			buffer[m4] = (byte) (scr2915New >> 5);                               // 11111111
-			buffer[m3] = (byte) ((buffer[m3] & 7) + ((scr2915New << 3) & 248));  // 11111000
+			buffer.put(m5, (byte) ((buffer.get(m5) & 252) + ((scr2915New >> 13) & 3))); // 00000011
+			buffer.put(m4, (byte) (scr2915New >> 5));                               // 11111111
+			buffer.put(m3, (byte) ((buffer.get(m3) & 7) + ((scr2915New << 3) & 248)));  // 11111000
 
 			// scr_14_00_new
-			buffer[m3] = (byte) ((buffer[m3] & 252) + ((scr1400New >> 13) & 3)); // 00000011
-			buffer[m2] = (byte) (scr1400New >> 5);                               // 11111111
-			buffer[m1] = (byte) ((buffer[m1] & 7) + ((scr1400New << 3) & 248));  // 11111000
+			buffer.put(m3, (byte) ((buffer.get(m3) & 252) + ((scr1400New >> 13) & 3))); // 00000011
+			buffer.put(m2, (byte) (scr1400New >> 5));                               // 11111111
+			buffer.put(m1, (byte) ((buffer.get(m1) & 7) + ((scr1400New << 3) & 248)));  // 11111000
 
 			// Debug
 			//LOGGER.trace("Ditlew - SCR "+scr+" ("+(int)(scr/90000)+") -> "+scr_new+" ("+(int)(scr_new/90000)+")  "+offset_sec+" secs");
@@ -483,31 +669,31 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 	// Ditlew - Modify GOP
 	@SuppressWarnings("unused")
 	private void shiftGOPByTimeSeek(int bufferIndex, int offsetSec) {
-		int m7 = modulo(bufferIndex - 7, buffer.length);
-		int m6 = modulo(bufferIndex - 6, buffer.length);
-		int m5 = modulo(bufferIndex - 5, buffer.length);
-		int m4 = modulo(bufferIndex - 4, buffer.length);
-		int m3 = modulo(bufferIndex - 3, buffer.length);
-		int m2 = modulo(bufferIndex - 2, buffer.length);
-		int m1 = modulo(bufferIndex - 1, buffer.length);
-		int m0 = modulo(bufferIndex, buffer.length);
+		int m7 = modulo(bufferIndex - 7, buffer.capacity());
+		int m6 = modulo(bufferIndex - 6, buffer.capacity());
+		int m5 = modulo(bufferIndex - 5, buffer.capacity());
+		int m4 = modulo(bufferIndex - 4, buffer.capacity());
+		int m3 = modulo(bufferIndex - 3, buffer.capacity());
+		int m2 = modulo(bufferIndex - 2, buffer.capacity());
+		int m1 = modulo(bufferIndex - 1, buffer.capacity());
+		int m0 = modulo(bufferIndex, buffer.capacity());
 
 		// check if valid gop
-		if (buffer[m7] == 0 &&
-			buffer[m6] == 0 &&
-			buffer[m5] == 1 &&
-			buffer[m4] == -72 && // 0xB8 - Java/UMS wants -72
+		if (buffer.get(m7) == 0 &&
+			buffer.get(m6) == 0 &&
+			buffer.get(m5) == 1 &&
+			buffer.get(m4) == -72 && // 0xB8 - Java/UMS wants -72
 			// control bits
-			((buffer[m2] & 0x08) == 0x08) &&
-			((buffer[m0] & 31) == 0) &&
+			((buffer.get(m2) & 0x08) == 0x08) &&
+			((buffer.get(m0) & 31) == 0) &&
 			// of interest
-			((buffer[m3] & 128) != 128) && // not drop frm
-			((buffer[m0] & 16) != 16) // not broken
+			((buffer.get(m3) & 128) != 128) && // not drop frm
+			((buffer.get(m0) & 16) != 16) // not broken
 			) {
 			// org timecode
-			byte h = (byte) ((buffer[m3] & 124) >> 2);
-			byte m = (byte) (((buffer[m3] & 3) << 4) + ((buffer[m2] & 240) >> 4));
-			byte s = (byte) (((buffer[m2] & 7) << 3) + ((buffer[m1] & 224) >> 5));
+			byte h = (byte) ((buffer.get(m3) & 124) >> 2);
+			byte m = (byte) (((buffer.get(m3) & 3) << 4) + ((buffer.get(m2) & 240) >> 4));
+			byte s = (byte) (((buffer.get(m2) & 7) << 3) + ((buffer.get(m1) & 224) >> 5));
 
 			// updated offset
 			int offset = s + m * 60 + h * 60 + offsetSec;
@@ -519,13 +705,13 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 
 			// update gop
 			// h - ok
-			buffer[m3] = (byte) ((buffer[m3] & 131) + (newh << 2)); // 10000011
+			buffer.put(m3, (byte) ((buffer.get(m3) & 131) + (newh << 2))); // 10000011
 			// m - ok
-			buffer[m3] = (byte) ((buffer[m3] & 252) + (newm >> 4)); // 11111100
-			buffer[m2] = (byte) ((buffer[m2] & 15) + (newm << 4)); // 00001111
+			buffer.put(m3, (byte) ((buffer.get(m3) & 252) + (newm >> 4))); // 11111100
+			buffer.put(m2, (byte) ((buffer.get(m2) & 15) + (newm << 4))); // 00001111
 			// s - ok
-			buffer[m2] = (byte) ((buffer[m2] & 248) + (news >> 3)); // 11111000
-			buffer[m1] = (byte) ((buffer[m1] & 31) + (news << 5)); // 00011111
+			buffer.put(m2, (byte) ((buffer.get(m2) & 248) + (news >> 3))); // 11111000
+			buffer.put(m1, (byte) ((buffer.get(m1) & 31) + (news << 5))); // 00011111
 
 			// Debug
 			//LOGGER.trace("Ditlew - GOP "+h+":"+m+":"+s+" -> "+_h+":"+_m+":"+_s+"  "+offset_sec+" secs");
@@ -541,26 +727,26 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		boolean bb = (
 				!mod &&
 				(
-					buffer[mb - 10] == -67 || buffer[mb - 10] == -64
+					buffer.get(mb - 10) == -67 || buffer.get(mb - 10) == -64
 				) &&
-				buffer[mb - 11] == 1 &&
-				buffer[mb - 12] == 0 &&
-				buffer[mb - 13] == 0 &&
-				(buffer[mb - 6] & 128) == 128
+				buffer.get(mb - 11) == 1 &&
+				buffer.get(mb - 12) == 0 &&
+				buffer.get(mb - 13) == 0 &&
+				(buffer.get(mb - 6) & 128) == 128
 			) ||
 			(
 				mod &&
 				(
-					buffer[modulo(mb - 10, buffer.length)] == -67 ||
-					buffer[modulo(mb - 10, buffer.length)] == -64
+					buffer.get(modulo(mb - 10, buffer.capacity())) == -67 ||
+					buffer.get(modulo(mb - 10, buffer.capacity())) == -64
 				) &&
-				buffer[modulo(mb - 11, buffer.length)] == 1 &&
-				buffer[modulo(mb - 12, buffer.length)] == 0 &&
-				buffer[modulo(mb - 13, buffer.length)] == 0 &&
-				(buffer[modulo(mb - 6, buffer.length)] & 128) == 128
+				buffer.get(modulo(mb - 11, buffer.capacity())) == 1 &&
+				buffer.get(modulo(mb - 12, buffer.capacity())) == 0 &&
+				buffer.get(modulo(mb - 13, buffer.capacity())) == 0 &&
+				(buffer.get(modulo(mb - 6, buffer.capacity())) & 128) == 128
 			);
 		if (bb) {
-			int pts = (((((buffer[modulo(mb - 3, buffer.length)] & 0xff) << 8) + (buffer[modulo(mb - 2, buffer.length)] & 0xff)) >> 1) << 15) + ((((buffer[modulo(mb - 1, buffer.length)] & 0xff) << 8) + (buffer[modulo(mb, buffer.length)] & 0xff)) >> 1);
+			int pts = (((((buffer.get(modulo(mb - 3, buffer.capacity())) & 0xff) << 8) + (buffer.get(modulo(mb - 2, buffer.capacity())) & 0xff)) >> 1) << 15) + ((((buffer.get(modulo(mb - 1, buffer.capacity())) & 0xff) << 8) + (buffer.get(modulo(mb, buffer.capacity())) & 0xff)) >> 1);
 			pts += (int) (timeseek * 90000);
 
 			setTS(pts, mb, mod);
@@ -571,26 +757,26 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 
 	private boolean shiftVideo(int mb, boolean mod) {
 		boolean bb = (!mod &&
-			(buffer[mb - 15] == -32 || buffer[mb - 15] == -3) &&
-			buffer[mb - 16] == 1 &&
-			buffer[mb - 17] == 0 &&
-			buffer[mb - 18] == 0 &&
-			(buffer[mb - 11] & 128) == 128 &&
-			(buffer[mb - 9] & 32) == 32) || (mod &&
-			(buffer[modulo(mb - 15, buffer.length)] == -32 || buffer[modulo(mb - 15, buffer.length)] == -3) &&
-			buffer[modulo(mb - 16, buffer.length)] == 1 &&
-			buffer[modulo(mb - 17, buffer.length)] == 0 &&
-			buffer[modulo(mb - 18, buffer.length)] == 0 &&
-			(buffer[modulo(mb - 11, buffer.length)] & 128) == 128 &&
-			(buffer[modulo(mb - 9, buffer.length)] & 32) == 32);
+			(buffer.get(mb - 15) == -32 || buffer.get(mb - 15) == -3) &&
+			buffer.get(mb - 16) == 1 &&
+			buffer.get(mb - 17) == 0 &&
+			buffer.get(mb - 18) == 0 &&
+			(buffer.get(mb - 11) & 128) == 128 &&
+			(buffer.get(mb - 9) & 32) == 32) || (mod &&
+			(buffer.get(modulo(mb - 15, buffer.capacity())) == -32 || buffer.get(modulo(mb - 15, buffer.capacity())) == -3) &&
+			buffer.get(modulo(mb - 16, buffer.capacity())) == 1 &&
+			buffer.get(modulo(mb - 17, buffer.capacity())) == 0 &&
+			buffer.get(modulo(mb - 18, buffer.capacity())) == 0 &&
+			(buffer.get(modulo(mb - 11, buffer.capacity())) & 128) == 128 &&
+			(buffer.get(modulo(mb - 9, buffer.capacity())) & 32) == 32);
 
 		if (bb) { // check EO or FD (tsMuxeR)
 			int pts = getTS(mb - 5, mod);
 			int dts = 0;
-			boolean dtsPresent = (buffer[modulo(mb - 11, buffer.length)] & 64) == 64;
+			boolean dtsPresent = (buffer.get(modulo(mb - 11, buffer.capacity())) & 64) == 64;
 			if (dtsPresent) {
-				if ((buffer[modulo(mb - 4, buffer.length)] & 15) == 15) {
-					dts = (((((255 - (buffer[modulo(mb - 3, buffer.length)] & 0xff)) << 8) + (255 - (buffer[modulo(mb - 2, buffer.length)] & 0xff))) >> 1) << 15) + ((((255 - (buffer[modulo(mb - 1, buffer.length)] & 0xff)) << 8) + (255 - (buffer[modulo(mb, buffer.length)] & 0xff))) >> 1);
+				if ((buffer.get(modulo(mb - 4, buffer.capacity())) & 15) == 15) {
+					dts = (((((255 - (buffer.get(modulo(mb - 3, buffer.capacity())) & 0xff)) << 8) + (255 - (buffer.get(modulo(mb - 2, buffer.capacity())) & 0xff))) >> 1) << 15) + ((((255 - (buffer.get(modulo(mb - 1, buffer.capacity())) & 0xff)) << 8) + (255 - (buffer.get(modulo(mb, buffer.capacity())) & 0xff))) >> 1);
 					dts = -dts;
 				} else {
 					dts = getTS(mb, mod);
@@ -606,7 +792,7 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 			setTS(pts, mb - 5, mod);
 			if (dtsPresent) {
 				if (dts < 0) {
-					buffer[modulo(mb - 4, buffer.length)] = 17;
+					buffer.put(modulo(mb - 4, buffer.capacity()), (byte) 17);
 				}
 				dts += ts;
 				setTS(dts, mb, mod);
@@ -622,14 +808,14 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		int m1 = mb - 1;
 		int m0 = mb;
 		if (modulo) {
-			m3 = modulo(m3, buffer.length);
-			m2 = modulo(m2, buffer.length);
-			m1 = modulo(m1, buffer.length);
-			m0 = modulo(m0, buffer.length);
+			m3 = modulo(m3, buffer.capacity());
+			m2 = modulo(m2, buffer.capacity());
+			m1 = modulo(m1, buffer.capacity());
+			m0 = modulo(m0, buffer.capacity());
 		}
 
-		return (((((buffer[m3] & 0xff) << 8) + (buffer[m2] & 0xff)) >> 1) << 15) +
-			((((buffer[m1] & 0xff) << 8) + (buffer[m0] & 0xff)) >> 1);
+		return (((((buffer.get(m3) & 0xff) << 8) + (buffer.get(m2) & 0xff)) >> 1) << 15) +
+			((((buffer.get(m1) & 0xff) << 8) + (buffer.get(m0) & 0xff)) >> 1);
 	}
 
 	private void setTS(int ts, int mb, boolean modulo) {
@@ -638,141 +824,79 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		int m1 = mb - 1;
 		int m0 = mb;
 		if (modulo) {
-			m3 = modulo(m3, buffer.length);
-			m2 = modulo(m2, buffer.length);
-			m1 = modulo(m1, buffer.length);
-			m0 = modulo(m0, buffer.length);
+			m3 = modulo(m3, buffer.capacity());
+			m2 = modulo(m2, buffer.capacity());
+			m1 = modulo(m1, buffer.capacity());
+			m0 = modulo(m0, buffer.capacity());
 		}
 		int ptsLow = ts & 32767;
 		int ptsHigh = (ts >> 15) & 32767;
 		int ptsLeftLow = 1 + (ptsLow << 1);
 		int ptsLeftHigh = 1 + (ptsHigh << 1);
-		buffer[m3] = (byte) ((ptsLeftHigh & 65280) >> 8);
-		buffer[m2] = (byte) (ptsLeftHigh & 255);
-		buffer[m1] = (byte) ((ptsLeftLow & 65280) >> 8);
-		buffer[m0] = (byte) (ptsLeftLow & 255);
+		buffer.put(m3, (byte) ((ptsLeftHigh & 65280) >> 8));
+		buffer.put(m2, (byte) (ptsLeftHigh & 255));
+		buffer.put(m1, (byte) ((ptsLeftLow & 65280) >> 8));
+		buffer.put(m0, (byte) (ptsLeftLow & 255));
 	}
 
 	@Override
 	public int read(boolean firstRead, long readCount, byte[] buf, int off, int len) {
-		if (readCount > INITIAL_BUFFER_SIZE && readCount < maxMemorySize) {
-			int newMargin = maxMemorySize - MARGIN_MEDIUM;
-			if (bufferOverflowWarning != newMargin) {
-				LOGGER.debug("Setting margin to 2Mb");
-			}
-
-			this.bufferOverflowWarning = newMargin;
-		}
+		updateOverflowMargin(readCount);
 
 		if (eof && readCount >= writeCount) {
 			return -1;
 		}
 
-		int c = 0;
-		int minBufferS = firstRead ? minMemorySize : secondReadMinSize;
-		while (writeCount - readCount <= minBufferS && !eof && c < 15) {
-			if (c == 0) {
-				LOGGER.trace("Suspend Read: readCount=" + readCount + " / writeCount=" + writeCount);
-			}
-
-			c++;
-
-			UMSUtils.sleep(CHECK_INTERVAL);
-		}
+		waitForData(firstRead, readCount);
 
 		if (attachedThread != null) {
 			attachedThread.setReadyToStop(false);
 		}
 
-		if (c > 0) {
-			LOGGER.trace("Resume Read: readCount=" + readCount + " / writeCount=" + writeCount);
-		}
-
-		if (buffer == null || !buffered) {
+		// Read the write count before the buffer, it publishes the buffer content
+		long available = writeCount - readCount;
+		RingBufferStorage data = buffer;
+		if (data == null || !buffered || available <= 0) {
 			return -1;
 		}
 
-		int mb = (int) (readCount % maxMemorySize);
-		int endOF = buffer.length;
-		int cut = 0;
-
-		if (eof && (writeCount - readCount) < len) {
-			cut = (int) (len - (writeCount - readCount));
-			if (cut < 0) {
-				cut = 0;
-			}
-		}
-
-		int length;
-		if (mb >= endOF - len) {
-			length = endOF - mb - cut;
-			try {
-				System.arraycopy(buffer, mb, buf, off, length);
-			} catch (ArrayIndexOutOfBoundsException e) {
-				LOGGER.trace("Something went wrong with the buffer, error: " + e);
-				LOGGER.trace("buffer: " + Arrays.toString(buffer));
-				LOGGER.trace("mb: " + mb);
-				LOGGER.trace("buf: " + Arrays.toString(buf));
-				LOGGER.trace("off: " + off);
-				LOGGER.trace("endOF - mb - cut: " + length);
-			}
-			return length;
-		} else {
-			length = len - cut;
-			System.arraycopy(buffer, mb, buf, off, length);
-			return length;
+		int length = (int) Math.min(len, available);
+		int mb = (int) (readCount % data.capacity());
+		int head = Math.min(length, data.capacity() - mb);
+		data.get(mb, buf, off, head);
+		if (head < length) {
+			// Wrapping around the end of the ring buffer
+			data.get(0, buf, off + head, length - head);
 		}
+		return length;
 	}
 
 	@Override
 	public int read(boolean firstRead, long readCount) {
-		if (readCount > INITIAL_BUFFER_SIZE && readCount < maxMemorySize) {
-			int newMargin = maxMemorySize - MARGIN_MEDIUM;
-
-			if (bufferOverflowWarning != newMargin) {
-				LOGGER.debug("Setting margin to 2Mb");
-			}
-
-			this.bufferOverflowWarning = newMargin;
-		}
+		updateOverflowMargin(readCount);
 
 		if (eof && readCount >= writeCount) {
 			return -1;
 		}
 
-		int c = 0;
-		int minBufferS = firstRead ? minMemorySize : secondReadMinSize;
-
-		while (writeCount - readCount <= minBufferS && !eof && c < 15) {
-			if (c == 0) {
-				LOGGER.trace("Suspend Read: readCount=" + readCount + " / writeCount=" + writeCount);
-			}
-
-			c++;
-
-			UMSUtils.sleep(CHECK_INTERVAL);
-		}
+		waitForData(firstRead, readCount);
 
 		if (attachedThread != null) {
 			attachedThread.setReadyToStop(false);
 		}
 
-		if (c > 0) {
-			LOGGER.trace("Resume Read: readCount=" + readCount + " / writeCount=" + writeCount);
-		}
-
-		if (buffer == null || !buffered) {
+		long available = writeCount - readCount;
+		RingBufferStorage data = buffer;
+		if (data == null || !buffered || available <= 0) {
 			return -1;
 		}
 
-		try {
-			return 0xff & buffer[(int) (readCount % maxMemorySize)];
-		} catch (ArrayIndexOutOfBoundsException e) {
-			LOGGER.info("Buffer read ArrayIndexOutOfBoundsException error:");
-			LOGGER.info("readCount: \"" + readCount + "\"");
-			LOGGER.info("maxMemorySize: \"" + maxMemorySize + "\"");
-			return -1;
-		}
+		return 0xff & data.get((int) (readCount % data.capacity()));
+	}
+
+	@Override
+	public void readCountChanged() {
+		signalWriter();
 	}
 
 	@Override
@@ -801,6 +925,12 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 
 					long space = (writeCount - rc);
 					LOGGER.trace("buffered: " + FORMATTER.format(space) + " bytes / inputs: " + inputStreams.size());
+					if (buffer instanceof DirectRingBufferStorage) {
+						LOGGER.trace(
+							"off-heap buffers: " + FORMATTER.format(DirectBufferPool.getInUseBytes()) + " bytes in memory / " +
+							FORMATTER.format(DirectBufferPool.getSpilledBytes()) + " bytes spilled"
+						);
+					}
 
 					// There are 1048576 bytes in a megabyte
 					long bufferInMBs = space / 1048576;
@@ -816,6 +946,7 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 	@Override
 	public void removeInputStream(WaitBufferedInputStream inputStream) {
 		inputStreams.remove(inputStream);
+		signalWriter();
 	}
 
 	@Override
@@ -860,12 +991,15 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 			timer.cancel();
 		}
 
-		if (buffer != null) {
+		RingBufferStorage data = buffer;
+		if (data != null) {
 			LOGGER.trace("Destroying buffer");
 			buffer = null;
+			data.release();
 		}
 
 		buffered = false;
+		signalAll();
 
 		if (renderer != null) {
 			renderer.setBuffer(0);
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import net.pms.PMS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process-wide pool of fixed size direct {@link ByteBuffer} chunks used by the
+ * off-heap transcoding buffers.
+ * <p>
+ * The total amount of direct memory owned by the pool, whether the chunks are
+ * in use or waiting to be reused, never exceeds the configured budget (see
+ * {@link net.pms.configuration.UmsConfiguration#getTranscodeBufferMemoryBudget()}).
+ * When the budget is used up, {@link #acquire()} returns {@code null} and the
+ * caller is expected to spill to disk instead.
+ */
+public class DirectBufferPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DirectBufferPool.class);
+
+	/**
+	 * The size of a chunk, 1 MB.
+	 */
+	public static final int CHUNK_SIZE = 1 << 20;
+
+	private static final Queue<ByteBuffer> FREE_CHUNKS = new ConcurrentLinkedQueue<>();
+	private static final AtomicLong ALLOCATED_BYTES = new AtomicLong();
+	private static final AtomicLong IN_USE_BYTES = new AtomicLong();
+	private static final AtomicLong SPILLED_BYTES = new AtomicLong();
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private DirectBufferPool() {
+	}
+
+	/**
+	 * Takes a chunk from the pool, allocating it if the budget allows.
+	 *
+	 * @return a cleared direct chunk of {@link #CHUNK_SIZE} bytes, or
+	 *         {@code null} if the memory budget is used up.
+	 */
+	public static ByteBuffer acquire() {
+		ByteBuffer chunk = FREE_CHUNKS.poll();
+		if (chunk == null) {
+			long budget = getBudget();
+			long allocated;
+			do {
+				allocated = ALLOCATED_BYTES.get();
+				if (allocated + CHUNK_SIZE > budget) {
+					return null;
+				}
+			} while (!ALLOCATED_BYTES.compareAndSet(allocated, allocated + CHUNK_SIZE));
+
+			try {
+				chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+			} catch (OutOfMemoryError e) {
+				ALLOCATED_BYTES.addAndGet(-CHUNK_SIZE);
+				LOGGER.debug("Cannot allocate direct buffer chunk: {}", e.getMessage());
+				return null;
+			}
+		}
+		IN_USE_BYTES.addAndGet(CHUNK_SIZE);
+		return chunk;
+	}
+
+	/**
+	 * Gives a chunk obtained from {@link #acquire()} back to the pool. If the
+	 * budget has been lowered in the meantime, the chunk is dropped instead.
+	 *
+	 * @param chunk the chunk to give back.
+	 */
+	public static void release(ByteBuffer chunk) {
+		IN_USE_BYTES.addAndGet(-CHUNK_SIZE);
+		if (ALLOCATED_BYTES.get() > getBudget()) {
+			// Let the garbage collector free the native memory
+			ALLOCATED_BYTES.addAndGet(-CHUNK_SIZE);
+		} else {
+			chunk.clear();
+			FREE_CHUNKS.offer(chunk);
+		}
+	}
+
+	/**
+	 * Keeps track of the number of bytes that have been spilled to
+	 * memory-mapped files because the budget was used up.
+	 *
+	 * @param delta the number of bytes spilled, negative when released.
+	 */
+	static void addSpilledBytes(long delta) {
+		SPILLED_BYTES.addAndGet(delta);
+	}
+
+	/**
+	 * @return the direct memory in bytes owned by the pool.
+	 */
+	public static long getAllocatedBytes() {
+		return ALLOCATED_BYTES.get();
+	}
+
+	/**
+	 * @return the direct memory in bytes currently used by transcoding
+	 *         buffers.
+	 */
+	public static long getInUseBytes() {
+		return IN_USE_BYTES.get();
+	}
+
+	/**
+	 * @return the number of bytes currently spilled to memory-mapped files.
+	 */
+	public static long getSpilledBytes() {
+		return SPILLED_BYTES.get();
+	}
+
+	private static long getBudget() {
+		return PMS.getConfiguration().getTranscodeBufferMemoryBudget() * 1048576L;
+	}
+}
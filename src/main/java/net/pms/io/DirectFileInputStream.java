@@ -0,0 +1,158 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link InputStream} over a byte range of a local file, read through a
+ * {@link FileChannel}.
+ * <p>
+ * It can be used as any other input stream, but it also exposes the file
+ * channel and the remaining range so that the HTTP servers can send the data
+ * without copying it through the Java heap, using
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ */
+public class DirectFileInputStream extends InputStream {
+	private final File file;
+	private final FileChannel channel;
+	private final byte[] single = new byte[1];
+	private long end;
+	private long position;
+	private long mark;
+
+	/**
+	 * Opens a stream over a byte range of a file.
+	 *
+	 * @param file the file to read.
+	 * @param start the first byte to read.
+	 * @param length the number of bytes to read, a negative value reads up to
+	 *            the end of the file.
+	 * @throws IOException if the file cannot be opened.
+	 */
+	public DirectFileInputStream(File file, long start, long length) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		long size = channel.size();
+		this.position = Math.min(Math.max(start, 0), size);
+		this.end = length < 0 ? size : Math.min(size, this.position + length);
+		this.mark = this.position;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the channel of the file, positioned reads must be used.
+	 */
+	public FileChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return the position in the file of the next byte to read.
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return the number of bytes left to read.
+	 */
+	public long getRemaining() {
+		return Math.max(0, end - position);
+	}
+
+	/**
+	 * Limits the number of bytes left to read.
+	 *
+	 * @param bytes the maximum number of bytes to read from the current
+	 *            position.
+	 * @return this stream.
+	 */
+	public DirectFileInputStream limit(long bytes) {
+		end = Math.min(end, position + Math.max(bytes, 0));
+		return this;
+	}
+
+	/**
+	 * Marks the remaining bytes as read, to be called once they have been
+	 * transferred by other means than this stream.
+	 */
+	public void consumeRemaining() {
+		position = Math.max(position, end);
+	}
+
+	@Override
+	public int read() throws IOException {
+		return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		long remaining = getRemaining();
+		if (remaining == 0) {
+			return -1;
+		}
+		int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+		if (read > 0) {
+			position += read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = Math.min(Math.max(n, 0), getRemaining());
+		position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int) Math.min(getRemaining(), Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		mark = position;
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		position = mark;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
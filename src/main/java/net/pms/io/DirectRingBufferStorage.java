@@ -0,0 +1,208 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import net.pms.PMS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link RingBufferStorage} kept outside the Java heap.
+ * <p>
+ * The storage is split in chunks of {@link DirectBufferPool#CHUNK_SIZE} bytes
+ * that are only taken when the writer first reaches them, so a buffer never
+ * has to be copied to grow. Chunks come from the {@link DirectBufferPool} as
+ * long as the global memory budget allows, after that they are memory-mapped
+ * regions of a temporary file of this storage.
+ * <p>
+ * Only the writer thread takes chunks, readers only read positions the writer
+ * already published. Readers hold a read lock while they copy, so the chunks
+ * are not handed back to the pool while a reader still uses them.
+ */
+public class DirectRingBufferStorage implements RingBufferStorage {
+	private static final Logger LOGGER = LoggerFactory.getLogger(DirectRingBufferStorage.class);
+	private static final int CHUNK_SIZE = DirectBufferPool.CHUNK_SIZE;
+	private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_SIZE);
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * How long a left over spill file is kept by the temporary file manager,
+	 * one day.
+	 */
+	private static final int SPILL_FILE_CLEAN_TIME = 24 * 3600 * 1000;
+
+	private final int capacity;
+	private final ByteBuffer[] chunks;
+	private final boolean[] pooled;
+	private final ReadWriteLock readersLock = new ReentrantReadWriteLock();
+	private File spillFile;
+	private RandomAccessFile spillAccess;
+	private FileChannel spillChannel;
+	private long spilledBytes;
+	private boolean released;
+
+	public DirectRingBufferStorage(int capacity) {
+		this.capacity = capacity;
+		int count = (capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+		chunks = new ByteBuffer[count];
+		pooled = new boolean[count];
+	}
+
+	@Override
+	public int capacity() {
+		return capacity;
+	}
+
+	@Override
+	public byte get(int index) {
+		readersLock.readLock().lock();
+		try {
+			ByteBuffer chunk = released ? null : chunks[index >>> CHUNK_SHIFT];
+			return chunk == null ? 0 : chunk.get(index & CHUNK_MASK);
+		} finally {
+			readersLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public synchronized void put(int index, byte b) {
+		if (!released) {
+			getOrTakeChunk(index >>> CHUNK_SHIFT).put(index & CHUNK_MASK, b);
+		}
+	}
+
+	@Override
+	public void get(int index, byte[] dst, int off, int len) {
+		readersLock.readLock().lock();
+		try {
+			while (len > 0) {
+				int position = index & CHUNK_MASK;
+				int length = Math.min(len, CHUNK_SIZE - position);
+				ByteBuffer chunk = released ? null : chunks[index >>> CHUNK_SHIFT];
+				if (chunk == null) {
+					Arrays.fill(dst, off, off + length, (byte) 0);
+				} else {
+					chunk.get(position, dst, off, length);
+				}
+				index += length;
+				off += length;
+				len -= length;
+			}
+		} finally {
+			readersLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public synchronized void put(int index, byte[] src, int off, int len) {
+		if (released) {
+			// The chunks may already belong to another buffer
+			return;
+		}
+		while (len > 0) {
+			int position = index & CHUNK_MASK;
+			int length = Math.min(len, CHUNK_SIZE - position);
+			getOrTakeChunk(index >>> CHUNK_SHIFT).put(position, src, off, length);
+			index += length;
+			off += length;
+			len -= length;
+		}
+	}
+
+	private ByteBuffer getOrTakeChunk(int i) {
+		ByteBuffer chunk = chunks[i];
+		if (chunk == null) {
+			chunk = DirectBufferPool.acquire();
+			if (chunk != null) {
+				pooled[i] = true;
+			} else {
+				chunk = mapChunk(i);
+			}
+			chunks[i] = chunk;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Maps the region of the spill file that corresponds to a chunk, creating
+	 * the file on first use. If that fails, falls back to a heap chunk.
+	 */
+	private ByteBuffer mapChunk(int i) {
+		try {
+			if (spillChannel == null) {
+				spillFile = File.createTempFile("ums-buffer-", ".tmp", PMS.getConfiguration().getTempFolder());
+				// Make sure it gets cleaned up if we never get to delete it
+				PMS.get().addTempFile(spillFile, SPILL_FILE_CLEAN_TIME);
+				spillAccess = new RandomAccessFile(spillFile, "rw");
+				spillChannel = spillAccess.getChannel();
+				LOGGER.debug("Transcode buffer memory budget used up, spilling to \"{}\"", spillFile.getAbsolutePath());
+			}
+			ByteBuffer chunk = spillChannel.map(FileChannel.MapMode.READ_WRITE, (long) i << CHUNK_SHIFT, CHUNK_SIZE);
+			spilledBytes += CHUNK_SIZE;
+			DirectBufferPool.addSpilledBytes(CHUNK_SIZE);
+			return chunk;
+		} catch (IOException e) {
+			LOGGER.warn("Could not map transcode buffer spill file, using heap memory instead: {}", e.getMessage());
+			LOGGER.trace("", e);
+			return ByteBuffer.allocate(CHUNK_SIZE);
+		}
+	}
+
+	@Override
+	public synchronized void release() {
+		if (released) {
+			return;
+		}
+		// Wait for the readers still copying from the chunks
+		readersLock.writeLock().lock();
+		try {
+			released = true;
+			for (int i = 0; i < chunks.length; i++) {
+				if (pooled[i]) {
+					DirectBufferPool.release(chunks[i]);
+				}
+				chunks[i] = null;
+			}
+		} finally {
+			readersLock.writeLock().unlock();
+		}
+		DirectBufferPool.addSpilledBytes(-spilledBytes);
+		spilledBytes = 0;
+
+		if (spillChannel != null) {
+			try {
+				spillAccess.close();
+			} catch (IOException e) {
+				LOGGER.debug("Error closing transcode buffer spill file: {}", e.getMessage());
+			}
+			// Mapped regions may prevent deletion on some platforms, the
+			// temporary file manager will take care of it later.
+			if (!spillFile.delete()) {
+				spillFile.deleteOnExit();
+			}
+			spillChannel = null;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+/**
+ * {@link RingBufferStorage} backed by a single byte array on the Java heap.
+ */
+public class HeapRingBufferStorage implements RingBufferStorage {
+	private final byte[] array;
+
+	public HeapRingBufferStorage(byte[] array) {
+		this.array = array;
+	}
+
+	/**
+	 * @return the backing byte array.
+	 */
+	public byte[] array() {
+		return array;
+	}
+
+	@Override
+	public int capacity() {
+		return array.length;
+	}
+
+	@Override
+	public byte get(int index) {
+		return array[index];
+	}
+
+	@Override
+	public void put(int index, byte b) {
+		array[index] = b;
+	}
+
+	@Override
+	public void get(int index, byte[] dst, int off, int len) {
+		System.arraycopy(array, index, dst, off, len);
+	}
+
+	@Override
+	public void put(int index, byte[] src, int off, int len) {
+		System.arraycopy(src, off, array, index, len);
+	}
+
+	@Override
+	public void release() {
+		// Left to the garbage collector
+	}
+}
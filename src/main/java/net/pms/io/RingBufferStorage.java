@@ -0,0 +1,50 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+/**
+ * Fixed capacity storage behind the circular buffer of
+ * {@link BufferedOutputFileImpl}. Indexes are absolute positions inside the
+ * storage, wrapping around its end is handled by the caller.
+ */
+public interface RingBufferStorage {
+	/**
+	 * @return the number of bytes this storage can hold.
+	 */
+	public abstract int capacity();
+
+	public abstract byte get(int index);
+
+	public abstract void put(int index, byte b);
+
+	/**
+	 * Copies {@code len} bytes starting at {@code index} into {@code dst}.
+	 */
+	public abstract void get(int index, byte[] dst, int off, int len);
+
+	/**
+	 * Copies {@code len} bytes from {@code src} into the storage starting at
+	 * {@code index}.
+	 */
+	public abstract void put(int index, byte[] src, int off, int len);
+
+	/**
+	 * Gives back the memory or files used by this storage. The storage must
+	 * not be used afterwards.
+	 */
+	public abstract void release();
+}
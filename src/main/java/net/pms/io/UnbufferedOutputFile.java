@@ -184,6 +184,10 @@ public class UnbufferedOutputFile implements BufferedOutputFile {
 	public void removeInputStream(WaitBufferedInputStream waitBufferedInputStream) {
 	}
 
+	@Override
+	public void readCountChanged() {
+	}
+
 
 	/**
 	 * @deprecated Unused method from interface.
@@ -21,11 +21,12 @@ import java.io.InputStream;
 
 public class WaitBufferedInputStream extends InputStream {
 	private final BufferedOutputFile outputStream;
-	private long readCount;
+	private volatile long readCount;
 	private boolean firstRead;
 
 	public void setReadCount(long readCount) {
 		this.readCount = readCount;
+		outputStream.readCountChanged();
 	}
 
 	public long getReadCount() {
@@ -18,28 +18,34 @@ package net.pms.logging;
 
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
 import ch.qos.logback.core.status.ErrorStatus;
-import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Special LogBack appender that simply caches all messages and repost them
  * when told to by {@link#flush} (typically after LogBack configuration is complete).
  *
+ * The events are kept in a lock-free queue, so logging threads never wait
+ * for each other.
+ *
  * @author Nadahar
  * @param <E>
  */
-public class CacheAppender<E> extends AppenderBase<E> {
+public class CacheAppender<E> extends UnsynchronizedAppenderBase<E> {
 
-	private final Object eventListLock = new Object();
-	private final LinkedList<E> eventList = new LinkedList<>();
+	private final Queue<E> eventList = new ConcurrentLinkedQueue<>();
 
 	@Override
 	protected void append(E eventObject) {
 		try {
-			synchronized (eventListLock) {
-				eventList.add(eventObject);
+			if (eventObject instanceof DeferredProcessingAware deferredProcessingAware) {
+				// keep the thread name and MDC of the logging thread
+				deferredProcessingAware.prepareForDeferredProcessing();
 			}
+			eventList.add(eventObject);
 		} catch (Exception e) {
 			addStatus(new ErrorStatus(
 						getName() + " failed to append event: " + e.getLocalizedMessage(), this, e)
@@ -48,10 +54,9 @@ public class CacheAppender<E> extends AppenderBase<E> {
 	}
 
 	public void flush(Logger rootLogger) {
-		synchronized (eventListLock) {
-			while (!eventList.isEmpty()) {
-				rootLogger.callAppenders((ILoggingEvent) eventList.poll());
-			}
+		E event;
+		while ((event = eventList.poll()) != null) {
+			rootLogger.callAppenders((ILoggingEvent) event);
 		}
 	}
 }
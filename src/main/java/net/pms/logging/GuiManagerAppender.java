@@ -18,18 +18,42 @@ package net.pms.logging;
 
 import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.spi.DeferredProcessingAware;
 import ch.qos.logback.core.status.ErrorStatus;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import net.pms.gui.GuiManager;
 
 /**
  * Special Logback appender to 'print' log messages on the UMS GUI.
  *
+ * The logging thread only puts the event in a lock-free ring buffer, a
+ * background thread encodes the events and hands them to the GUI in
+ * batches. When the GUI falls behind and the buffer is full, the events are
+ * dropped and counted, or with <code>neverBlock</code> set to false the
+ * logging thread waits for room.
+ *
  * @author thomas@innot.de
  * @param <E>
  */
 public class GuiManagerAppender<E> extends UnsynchronizedAppenderBase<E> {
+	private static final int DEFAULT_QUEUE_SIZE = 8192;
+	private static final int MAX_BATCH_SIZE = 512;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final AtomicLong droppedCount = new AtomicLong();
 	private Encoder<E> encoder;
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+	private boolean neverBlock = true;
+	private LogEventRingBuffer<E> buffer;
+	private volatile Thread worker;
+	private volatile boolean idle;
+	private long reportedDroppedCount;
 
 	/**
 	 * Checks that the required parameters are set and if everything is in
@@ -50,7 +74,33 @@ public class GuiManagerAppender<E> extends UnsynchronizedAppenderBase<E> {
 		}
 
 		if (!error) {
+			buffer = new LogEventRingBuffer<>(queueSize);
 			super.start();
+			Thread thread = new Thread(this::deliver, "GUI log appender " + name);
+			thread.setDaemon(true);
+			worker = thread;
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops this appender, delivering the events already queued first.
+	 */
+	@Override
+	public void stop() {
+		if (!isStarted()) {
+			return;
+		}
+		super.stop();
+		Thread thread = worker;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			worker = null;
 		}
 	}
 
@@ -58,9 +108,91 @@ public class GuiManagerAppender<E> extends UnsynchronizedAppenderBase<E> {
 	 * @see ch.qos.logback.core.UnsynchronizedAppenderBase#append(java.lang.Object)
 	 */
 	@Override
-	protected synchronized void append(E eventObject) {
-		String msg = new String(encoder.encode(eventObject), StandardCharsets.UTF_8);
-		GuiManager.appendLog(msg);
+	protected void append(E eventObject) {
+		if (eventObject instanceof DeferredProcessingAware deferredProcessingAware) {
+			// the event is encoded later, on another thread
+			deferredProcessingAware.prepareForDeferredProcessing();
+		}
+		Thread thread = worker;
+		while (!buffer.offer(eventObject)) {
+			// never wait on the delivering thread itself, it would never get room
+			if (neverBlock || thread == null || thread == Thread.currentThread() || !isStarted()) {
+				droppedCount.incrementAndGet();
+				return;
+			}
+			LockSupport.parkNanos(this, FULL_PARK_NANOS);
+		}
+		if (idle && thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	private void deliver() {
+		List<E> events = new ArrayList<>();
+		List<String> msgs = new ArrayList<>();
+		while (true) {
+			if (buffer.drainTo(events, MAX_BATCH_SIZE) == 0) {
+				if (!isStarted() && buffer.isEmpty()) {
+					break;
+				}
+				idle = true;
+				if (buffer.isEmpty()) {
+					LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				}
+				idle = false;
+				continue;
+			}
+			for (E event : events) {
+				try {
+					msgs.add(new String(encoder.encode(event), StandardCharsets.UTF_8));
+				} catch (RuntimeException e) {
+					addError("Failed to encode a log event for the GUI", e);
+				}
+			}
+			events.clear();
+			GuiManager.appendLogs(msgs);
+			msgs.clear();
+			long dropped = droppedCount.get();
+			if (dropped != reportedDroppedCount) {
+				addWarn((dropped - reportedDroppedCount) + " log events were dropped because the GUI was too slow");
+				reportedDroppedCount = dropped;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of events dropped because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Sets the number of events waiting to be delivered to the GUI, rounded
+	 * up to a power of two. Default value is {@value #DEFAULT_QUEUE_SIZE}.
+	 *
+	 * @param queueSize the queue size.
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Sets whether events are dropped when the queue is full, instead of
+	 * making the logging thread wait. Default value is true.
+	 *
+	 * @param neverBlock whether to drop the events.
+	 */
+	public void setNeverBlock(boolean neverBlock) {
+		this.neverBlock = neverBlock;
+	}
+
+	public boolean isNeverBlock() {
+		return neverBlock;
 	}
 
 	/**
@@ -0,0 +1,105 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.logging;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free ring buffer for many producers and a single consumer.
+ *
+ * Producers claim a slot by advancing the tail, then publish their element
+ * in it. The consumer takes the elements in order, and only advances the
+ * head once the slot is cleared, so a producer never overwrites an element
+ * not consumed yet.
+ *
+ * @param <E> the element type.
+ */
+class LogEventRingBuffer<E> {
+
+	private final AtomicReferenceArray<E> slots;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head;
+
+	/**
+	 * @param capacity the minimum capacity, rounded up to a power of two.
+	 */
+	LogEventRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Adds an element if there is room, never waiting.
+	 *
+	 * @param element the element.
+	 * @return false if the buffer is full.
+	 */
+	boolean offer(E element) {
+		long position;
+		do {
+			position = tail.get();
+			if (position - head >= slots.length()) {
+				return false;
+			}
+		} while (!tail.compareAndSet(position, position + 1));
+		slots.lazySet((int) position & mask, element);
+		return true;
+	}
+
+	/**
+	 * Moves the published elements to the given list. Only one thread may
+	 * call this.
+	 *
+	 * @param batch the list receiving the elements.
+	 * @param max the maximum number of elements to move.
+	 * @return the number of elements moved.
+	 */
+	int drainTo(List<E> batch, int max) {
+		long position = head;
+		int count = 0;
+		while (count < max) {
+			int index = (int) position & mask;
+			E element = slots.get(index);
+			if (element == null) {
+				// empty, or claimed but not published yet
+				break;
+			}
+			slots.lazySet(index, null);
+			batch.add(element);
+			position++;
+			count++;
+		}
+		head = position;
+		return count;
+	}
+
+	/**
+	 * @return whether no element is waiting, including claimed ones.
+	 */
+	boolean isEmpty() {
+		return tail.get() == head;
+	}
+
+	int capacity() {
+		return slots.length();
+	}
+
+}
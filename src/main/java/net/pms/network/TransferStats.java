@@ -0,0 +1,120 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Response body throughput measured by the media servers.
+ *
+ * Each completed response body records the bytes sent and the time it took,
+ * giving the last throughput per client address and global totals.
+ *
+ * @see SpeedStats for the estimated network speed.
+ */
+public class TransferStats {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TransferStats.class);
+
+	private static final Map<String, Long> LAST_THROUGHPUT = new ConcurrentHashMap<>();
+	private static final AtomicLong TOTAL_BYTES = new AtomicLong();
+	private static final AtomicLong TOTAL_NANOS = new AtomicLong();
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private TransferStats() {
+	}
+
+	/**
+	 * Records a completed response body.
+	 *
+	 * @param address the client address.
+	 * @param bytes the number of bytes sent.
+	 * @param nanos the time spent sending them, in nanoseconds.
+	 * @return the throughput of this transfer in bytes per second.
+	 */
+	public static long record(InetAddress address, long bytes, long nanos) {
+		if (bytes <= 0) {
+			return 0;
+		}
+		long throughput = toBytesPerSecond(bytes, nanos);
+		TOTAL_BYTES.addAndGet(bytes);
+		TOTAL_NANOS.addAndGet(Math.max(nanos, 0));
+		if (address != null) {
+			LAST_THROUGHPUT.put(address.getHostAddress(), throughput);
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug(
+				"Sent {} bytes to {} in {} ms ({} KB/s)",
+				bytes,
+				address == null ? "unknown" : address.getHostAddress(),
+				TimeUnit.NANOSECONDS.toMillis(nanos),
+				throughput / 1024
+			);
+		}
+		return throughput;
+	}
+
+	/**
+	 * @param address the client address.
+	 * @return the throughput of the last response body sent to
+	 *         {@code address} in bytes per second, or -1 if none was recorded.
+	 */
+	public static long getLastThroughput(InetAddress address) {
+		if (address == null) {
+			return -1;
+		}
+		Long throughput = LAST_THROUGHPUT.get(address.getHostAddress());
+		return throughput == null ? -1 : throughput;
+	}
+
+	/**
+	 * @return the average throughput of all the response bodies sent, in
+	 *         bytes per second.
+	 */
+	public static long getAverageThroughput() {
+		return toBytesPerSecond(TOTAL_BYTES.get(), TOTAL_NANOS.get());
+	}
+
+	public static long getTotalBytes() {
+		return TOTAL_BYTES.get();
+	}
+
+	/**
+	 * Clears all the recorded values.
+	 */
+	public static void reset() {
+		LAST_THROUGHPUT.clear();
+		TOTAL_BYTES.set(0);
+		TOTAL_NANOS.set(0);
+	}
+
+	private static long toBytesPerSecond(long bytes, long nanos) {
+		if (bytes <= 0) {
+			return 0;
+		}
+		return (long) (bytes * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1));
+	}
+
+}
@@ -43,7 +43,9 @@ public class MediaServer {
 		2, "JUPnP+ (Netty)",
 		3, "JUPnP+ (Servlet)",
 		4, "JUPnP (Netty)",
-		5, "JUPnP (Java)"
+		5, "JUPnP (Java)",
+		6, "JUPnP+ (Netty 4)",
+		7, "JUPnP (Netty 4)"
 	);
 
 	public static final int DEFAULT_VERSION = 2;
@@ -108,11 +110,11 @@ public class MediaServer {
 				if (upnpService == null) {
 					LOGGER.debug("Starting UPnP (JUPnP) services.");
 					switch (engineVersion) {
-						case 1, 2, 3 -> {
+						case 1, 2, 3, 6 -> {
 							upnpService = new UmsUpnpService(true);
 							upnpService.startup();
 						}
-						case 4, 5 -> {
+						case 4, 5, 7 -> {
 							upnpService = new UmsUpnpService(false);
 							upnpService.startup();
 						}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.handlers;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Remembers where the last page of a search ended, so that the next page can
+ * seek past the last row instead of skipping all the previous rows with an
+ * {@code OFFSET}.
+ * <p>
+ * UPnP clients only know page indexes, so a continuation is only used when a
+ * client asks for the page starting exactly where the previous one ended,
+ * with the same query and while the library is unchanged.
+ */
+final class SearchContinuation {
+
+	static final String SORT_KEY_COLUMN = "SORT_KEY_";
+
+	private final String query;
+	private final long updateId;
+	private final String[] lastKeys;
+	private long nextIndex;
+	private long lastOid;
+
+	/**
+	 * @param query the query of the page, without its limits.
+	 * @param updateId the system update id when the page was read.
+	 * @param startingIndex the index of the first row of the page.
+	 * @param keyCount the number of sort key columns in the query.
+	 */
+	SearchContinuation(String query, long updateId, long startingIndex, int keyCount) {
+		this.query = query;
+		this.updateId = updateId;
+		this.nextIndex = startingIndex;
+		this.lastKeys = new String[keyCount];
+	}
+
+	/**
+	 * Moves the continuation past a row of the page.
+	 *
+	 * @param resultSet the result set positioned on the row.
+	 * @throws SQLException
+	 */
+	void addRow(ResultSet resultSet) throws SQLException {
+		nextIndex++;
+		lastOid = resultSet.getLong("oid");
+		for (int i = 0; i < lastKeys.length; i++) {
+			lastKeys[i] = resultSet.getString(SORT_KEY_COLUMN + (i + 1));
+		}
+	}
+
+	/**
+	 * @param query the query of the requested page, without its limits.
+	 * @param startingIndex the index of the first requested row.
+	 * @param updateId the current system update id.
+	 * @return whether the requested page starts right after this one.
+	 */
+	boolean isContinuedBy(String query, long startingIndex, long updateId) {
+		return nextIndex == startingIndex && this.updateId == updateId && this.query.equals(query);
+	}
+
+	long getNextIndex() {
+		return nextIndex;
+	}
+
+	long getLastOid() {
+		return lastOid;
+	}
+
+	String getLastKey(int index) {
+		return lastKeys[index];
+	}
+
+}
@@ -23,11 +23,14 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.pms.database.MediaDatabase;
 import net.pms.database.MediaTableAudioMetadata;
+import net.pms.database.MediaTableSearchIndex;
 import net.pms.dlna.DidlHelper;
 import net.pms.formats.Format;
 import net.pms.media.audio.metadata.MusicBrainzAlbum;
@@ -67,6 +70,10 @@ public class SearchRequestHandler {
 		Pattern.CASE_INSENSITIVE);
 	private static final Pattern ARTIST_ROLE = Pattern.compile("upnp:class.*role\\s*=\\s*\"(?<val>.*?)\".*", Pattern.CASE_INSENSITIVE);
 
+	private static final Set<String> TEXT_SORT_FIELDS = Set.of("A.SONGNAME", "A.ARTIST", "A.ALBUMARTIST", "A.ALBUM", "A.GENRE",
+		"A." + MediaTableAudioMetadata.COL_COMPOSER, "A." + MediaTableAudioMetadata.COL_CONDUCTOR, "F.FILENAME");
+	private static final Map<String, SearchContinuation> CONTINUATIONS = new ConcurrentHashMap<>();
+
 	private static final Pattern TOKENIZER_PATTERN = Pattern.compile(
 		"(?<property>((\\bdc\\b)|(\\bupnp\\b)):[A-Za-z@\\[\\]\"=]+)\\s+(?<op>[A-Za-z=!<>]+)\\s+\"(?<val>.*?)\"", Pattern.CASE_INSENSITIVE);
 
@@ -128,8 +135,9 @@ public class SearchRequestHandler {
 
 		int totalMatches = getLibraryResourceCountFromSQL(convertToCountSql(requestMessage.getSearchCriteria(), requestType));
 
-		String sqlFiles = convertToFilesSql(requestMessage, requestType);
-		for (StoreResource resource : getLibraryResourceFromSQL(renderer, sqlFiles, requestType)) {
+		List<StoreResource> resources = getLibraryResources(renderer, requestMessage.getSearchCriteria(), requestMessage.getStartingIndex(),
+			requestMessage.getRequestedCount(), getSortKeys(requestMessage.getSortCriteria(), requestType), requestType);
+		for (StoreResource resource : resources) {
 			numberReturned++;
 			dlnaItems.append(DidlHelper.getDidlString(resource));
 		}
@@ -145,6 +153,21 @@ public class SearchRequestHandler {
 	 * @param requestType
 	 * @return
 	 */
+	private static String addSqlSelectByType(DbIdMediaType requestType, List<SortKey> keyColumns) {
+		String select = addSqlSelectByType(requestType);
+		if (keyColumns.isEmpty()) {
+			return select;
+		}
+		StringBuilder sb = new StringBuilder();
+		int from = select.indexOf(" from ");
+		sb.append(select, 0, from);
+		for (int i = 0; i < keyColumns.size(); i++) {
+			sb.append(", ").append(keyColumns.get(i).getKeyExpression()).append(" as ").append(SearchContinuation.SORT_KEY_COLUMN).append(i + 1);
+		}
+		sb.append(select, from, select.length());
+		return sb.toString();
+	}
+
 	private static String addSqlSelectByType(DbIdMediaType requestType) {
 		switch (requestType) {
 			case TYPE_AUDIO -> {
@@ -218,47 +241,161 @@ public class SearchRequestHandler {
 	}
 
 	public static String convertToFilesSql(SearchRequest requestMessage, DbIdMediaType requestType) {
-		StringBuilder sb = new StringBuilder();
-		sb.append(addSqlSelectByType(requestType));
-		addSqlWherePart(requestMessage.getSearchCriteria(), requestType, sb);
-		addOrderBy(requestMessage.getSortCriteria(), requestType, sb);
-		addLimit(requestMessage.getStartingIndex(), requestMessage.getRequestedCount(), sb);
-		LOGGER.debug(sb.toString());
-		return sb.toString();
+		String sql = convertToFilesSql(requestMessage.getSearchCriteria(), requestMessage.getStartingIndex(), requestMessage.getRequestedCount(),
+			getSortKeys(requestMessage.getSortCriteria(), requestType), requestType);
+		LOGGER.debug(sql);
+		return sql;
 	}
 
 	public static String convertToFilesSql(String searchCriteria, long startingIndex, long requestedCount, SortCriterion[] orderBy,
 		DbIdMediaType requestType) {
+		String sql = convertToFilesSql(searchCriteria, startingIndex, requestedCount, getSortKeys(orderBy, requestType), requestType);
+		LOGGER.trace(sql);
+		return sql;
+	}
+
+	private static String convertToFilesSql(String searchCriteria, long startingIndex, long requestedCount, List<SortKey> sortKeys,
+		DbIdMediaType requestType) {
+		boolean keyset = isKeysetSupported(requestType, sortKeys);
 		StringBuilder sb = new StringBuilder();
-		sb.append(addSqlSelectByType(requestType));
+		sb.append(addSqlSelectByType(requestType, keyset ? sortKeys : List.of()));
 		addSqlWherePart(searchCriteria, requestType, sb);
-		addOrderBy(orderBy, requestType, sb);
+		addOrderBy(sortKeys, keyset, sb);
 		addLimit(startingIndex, requestedCount, sb);
-		LOGGER.trace(sb.toString());
 		return sb.toString();
 	}
 
-	private static void addOrderBy(SortCriterion[] orderBy, DbIdMediaType requestType, StringBuilder sb) {
-		sb.append(" ORDER BY ");
+	/**
+	 * Returns a page of the search results.
+	 *
+	 * Deep pages of large results are slow with an {@code OFFSET}, as all the
+	 * previous rows are read again. When a renderer asks for the page
+	 * following the previous one, the rows are read from the end of the
+	 * previous page instead, using the sort keys and the id of its last row.
+	 * Other pages still use the {@code OFFSET}.
+	 *
+	 * @param renderer the renderer.
+	 * @param searchCriteria the UPnP search criteria.
+	 * @param startingIndex the index of the first result.
+	 * @param requestedCount the number of results, 0 for the default.
+	 * @param orderBy the sort criteria.
+	 * @param requestType the type of the results.
+	 * @return the results.
+	 */
+	public static List<StoreResource> getLibraryResources(Renderer renderer, String searchCriteria, long startingIndex, long requestedCount,
+		SortCriterion[] orderBy, DbIdMediaType requestType) {
+		return getLibraryResources(renderer, searchCriteria, startingIndex, requestedCount, getSortKeys(orderBy, requestType), requestType);
+	}
+
+	private static List<StoreResource> getLibraryResources(Renderer renderer, String searchCriteria, long startingIndex, long requestedCount,
+		List<SortKey> sortKeys, DbIdMediaType requestType) {
+		String rendererKey = getRendererKey(renderer);
+		if (rendererKey == null || !isKeysetSupported(requestType, sortKeys)) {
+			String sql = convertToFilesSql(searchCriteria, startingIndex, requestedCount, sortKeys, requestType);
+			LOGGER.trace(sql);
+			return getLibraryResourceFromSQL(renderer, sql, requestType);
+		}
+		// the first page query identifies the search
+		String query = convertToFilesSql(searchCriteria, 0, 0, sortKeys, requestType);
+		long updateId = MediaStoreIds.getSystemUpdateId().getValue();
+		SearchContinuation previous = CONTINUATIONS.get(rendererKey);
+		String sql;
+		if (previous != null && previous.isContinuedBy(query, startingIndex, updateId)) {
+			sql = convertToSeekSql(searchCriteria, requestedCount, sortKeys, requestType, previous);
+		} else {
+			sql = convertToFilesSql(searchCriteria, startingIndex, requestedCount, sortKeys, requestType);
+		}
+		LOGGER.trace(sql);
+
+		SearchContinuation continuation = new SearchContinuation(query, updateId, startingIndex, sortKeys.size());
+		List<StoreResource> result = getLibraryResourceFromSQL(renderer, sql, requestType, continuation);
+		if (continuation.getNextIndex() > startingIndex) {
+			CONTINUATIONS.put(rendererKey, continuation);
+		} else {
+			CONTINUATIONS.remove(rendererKey);
+		}
+		return result;
+	}
+
+	static String convertToSeekSql(String searchCriteria, long requestedCount, SortCriterion[] orderBy, DbIdMediaType requestType,
+		SearchContinuation previous) {
+		return convertToSeekSql(searchCriteria, requestedCount, getSortKeys(orderBy, requestType), requestType, previous);
+	}
+
+	/**
+	 * Returns the query of the page following the previous one, reading the
+	 * rows sorted after its last row.
+	 */
+	private static String convertToSeekSql(String searchCriteria, long requestedCount, List<SortKey> sortKeys, DbIdMediaType requestType,
+		SearchContinuation previous) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(addSqlSelectByType(requestType, sortKeys));
+		sb.append("(");
+		addSqlWherePart(searchCriteria, requestType, sb);
+		sb.append(") AND ");
+		addSeekCondition(sortKeys, previous, sb);
+		addOrderBy(sortKeys, true, sb);
+		addLimit(requestedCount, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * @return the continuation of the last page read by a renderer, if any.
+	 */
+	static SearchContinuation getContinuation(Renderer renderer) {
+		String rendererKey = getRendererKey(renderer);
+		return rendererKey == null ? null : CONTINUATIONS.get(rendererKey);
+	}
+
+	private static String getRendererKey(Renderer renderer) {
+		if (renderer == null || renderer.getAddress() == null) {
+			return null;
+		}
+		return renderer.getId();
+	}
+
+	/**
+	 * Pages can be sought on the results holding one row per file, sorted on
+	 * text fields.
+	 */
+	private static boolean isKeysetSupported(DbIdMediaType requestType, List<SortKey> sortKeys) {
+		switch (requestType) {
+			case TYPE_AUDIO, TYPE_VIDEO, TYPE_IMAGE -> {
+				for (SortKey sortKey : sortKeys) {
+					if (!TEXT_SORT_FIELDS.contains(sortKey.field.trim())) {
+						return false;
+					}
+				}
+				return true;
+			}
+			default -> {
+				return false;
+			}
+		}
+	}
+
+	private static List<SortKey> getSortKeys(SortCriterion[] orderBy, DbIdMediaType requestType) {
+		List<SortKey> sortKeys = new ArrayList<>();
+		if (orderBy == null) {
+			return sortKeys;
+		}
 		try {
 			for (SortCriterion sort : orderBy) {
 				if (!StringUtils.isAllBlank(sort.getPropertyName())) {
 					String field = getField(sort.getPropertyName(), requestType);
 					if (!StringUtils.isAllBlank(field)) {
-						sb.append(field);
-						sb.append(sort.isAscending() ? " ASC " : " DESC ");
-						sb.append(", ");
+						sortKeys.add(new SortKey(field, sort.isAscending() ? " ASC " : " DESC "));
 					}
 				}
 			}
 		} catch (Exception e) {
 			LOGGER.trace("ERROR while processing 'addOrderBy'");
 		}
-		sb.append(String.format(" oid "));
+		return sortKeys;
 	}
 
-	private static void addOrderBy(String sortCriteria, DbIdMediaType requestType, StringBuilder sb) {
-		sb.append(" ORDER BY ");
+	private static List<SortKey> getSortKeys(String sortCriteria, DbIdMediaType requestType) {
+		List<SortKey> sortKeys = new ArrayList<>();
 		if (!StringUtils.isAllBlank(sortCriteria)) {
 			String[] sortElements = sortCriteria.split("[;, ]");
 			try {
@@ -266,9 +403,7 @@ public class SearchRequestHandler {
 					if (!StringUtils.isAllBlank(sort)) {
 						String field = getField(sort.substring(1), requestType);
 						if (!StringUtils.isAllBlank(field)) {
-							sb.append(field);
-							sb.append(sortOrder(sort.substring(0, 1)));
-							sb.append(", ");
+							sortKeys.add(new SortKey(field, sortOrder(sort.substring(0, 1))));
 						}
 					}
 				}
@@ -276,9 +411,49 @@ public class SearchRequestHandler {
 				LOGGER.trace("ERROR while processing 'addOrderBy'");
 			}
 		}
+		return sortKeys;
+	}
+
+	private static void addOrderBy(List<SortKey> sortKeys, boolean keyset, StringBuilder sb) {
+		sb.append(" ORDER BY ");
+		for (SortKey sortKey : sortKeys) {
+			sb.append(keyset ? sortKey.getKeyExpression() : sortKey.field);
+			sb.append(sortKey.order);
+			sb.append(", ");
+		}
 		sb.append(String.format(" oid "));
 	}
 
+	/**
+	 * Adds the condition selecting the rows sorted after the last row of the
+	 * previous page.
+	 */
+	private static void addSeekCondition(List<SortKey> sortKeys, SearchContinuation previous, StringBuilder sb) {
+		sb.append("(");
+		for (int i = 0; i <= sortKeys.size(); i++) {
+			if (i > 0) {
+				sb.append(" OR ");
+			}
+			sb.append("(");
+			for (int j = 0; j < i; j++) {
+				sb.append(sortKeys.get(j).getKeyExpression()).append(" = ").append(toSqlString(previous.getLastKey(j))).append(" AND ");
+			}
+			if (i < sortKeys.size()) {
+				SortKey sortKey = sortKeys.get(i);
+				sb.append(sortKey.getKeyExpression()).append(sortKey.isDescending() ? " < " : " > ").append(toSqlString(previous.getLastKey(i)));
+			} else {
+				// the oid of the results holding one row per file
+				sb.append("F.ID > ").append(previous.getLastOid());
+			}
+			sb.append(")");
+		}
+		sb.append(")");
+	}
+
+	private static String toSqlString(String value) {
+		return "'" + (value == null ? "" : value.replace("'", "''")) + "'";
+	}
+
 	private static String sortOrder(String order) {
 		if ("+".equals(order)) {
 			return " ASC ";
@@ -289,11 +464,19 @@ public class SearchRequestHandler {
 	}
 
 	private static void addLimit(long startingIndex, long requestedCount, StringBuilder sb) {
+		sb.append(String.format(" LIMIT %d OFFSET %d ", getLimit(requestedCount), startingIndex));
+	}
+
+	private static void addLimit(long requestedCount, StringBuilder sb) {
+		sb.append(String.format(" LIMIT %d ", getLimit(requestedCount)));
+	}
+
+	private static long getLimit(long requestedCount) {
 		long limit = requestedCount;
 		if (limit == 0) {
 			limit = 999; // performance issue: do only deliver top 999 items
 		}
-		sb.append(String.format(" LIMIT %d OFFSET %d ", limit, startingIndex));
+		return limit;
 	}
 
 	public static String convertToCountSql(String upnpSearch, DbIdMediaType requestType) {
@@ -337,13 +520,46 @@ public class SearchRequestHandler {
 		if ("=".equals(op)) {
 			sb.append(String.format(" %s = '%s' ", getField(property, requestType), val));
 		} else if ("contains".equals(op)) {
-			sb.append(String.format("LOWER(%s) LIKE '%%%s%%'", getField(property, requestType), escapeH2dbSql(val).toLowerCase()));
+			String field = getField(property, requestType);
+			String indexCondition = getSearchIndexCondition(field, val);
+			if (indexCondition != null) {
+				// the index narrows the rows, LIKE still checks the matches
+				sb.append(String.format("(%s AND LOWER(%s) LIKE '%%%s%%')", indexCondition, field, escapeH2dbSql(val).toLowerCase()));
+			} else {
+				sb.append(String.format("LOWER(%s) LIKE '%%%s%%'", field, escapeH2dbSql(val).toLowerCase()));
+			}
 		} else {
 			throw new RuntimeException("unknown or unimplemented operator : " + op);
 		}
 		sb.append("");
 	}
 
+	/**
+	 * Returns the search index condition for a contains search on a field.
+	 *
+	 * @param field the SQL field.
+	 * @param val the searched text.
+	 * @return the condition, or null if the field is not indexed or the text
+	 *         can't use the index.
+	 */
+	private static String getSearchIndexCondition(String field, String val) {
+		if (val.indexOf('\\') > -1) {
+			return null;
+		}
+		String text = val.replace('‘', '\'');
+		return switch (field.trim()) {
+			case "A.SONGNAME" -> MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_SONGNAME, text);
+			case "A.ARTIST" -> MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_ARTIST, text);
+			case "A.ALBUMARTIST" -> MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_ALBUMARTIST, text);
+			case "A.ALBUM" -> MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_ALBUM, text);
+			case "A.GENRE" -> MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_GENRE, text);
+			case "A.COMPOSER" -> MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_COMPOSER, text);
+			case "A.CONDUCTOR" -> MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_CONDUCTOR, text);
+			case "F.FILENAME" -> MediaTableSearchIndex.getContainsCondition("F.ID", MediaTableSearchIndex.FIELD_FILENAME, text);
+			default -> null;
+		};
+	}
+
 	private static String escapeH2dbSql(String val) {
 		val = val.replaceAll("'", "''");
 
@@ -500,6 +716,10 @@ public class SearchRequestHandler {
 	 * List of discovered CDS items and containers from the database.
 	 */
 	public static List<StoreResource> getLibraryResourceFromSQL(Renderer renderer, String query, DbIdMediaType type) {
+		return getLibraryResourceFromSQL(renderer, query, type, null);
+	}
+
+	private static List<StoreResource> getLibraryResourceFromSQL(Renderer renderer, String query, DbIdMediaType type, SearchContinuation continuation) {
 		ArrayList<StoreResource> result = new ArrayList<>();
 
 		if (LOGGER.isTraceEnabled()) {
@@ -513,6 +733,9 @@ public class SearchRequestHandler {
 					try (ResultSet resultSet = statement.executeQuery(query)) {
 						Set<String> foundMbidAlbums = new HashSet<>();
 						while (resultSet.next()) {
+							if (continuation != null) {
+								continuation.addRow(resultSet);
+							}
 							String filenameField = extractDisplayName(resultSet, type);
 							switch (type) {
 								case TYPE_ALBUM -> {
@@ -637,4 +860,29 @@ public class SearchRequestHandler {
 		return response;
 	}
 
+	/**
+	 * A sort criterion of a search.
+	 */
+	private static class SortKey {
+		private final String field;
+		private final String order;
+
+		private SortKey(String field, String order) {
+			this.field = field;
+			this.order = order;
+		}
+
+		private boolean isDescending() {
+			return " DESC ".equals(order);
+		}
+
+		/**
+		 * Null values are sorted as empty texts, so that the rows after a key
+		 * can be selected with a comparison.
+		 */
+		private String getKeyExpression() {
+			return "COALESCE(" + field.trim() + ", '')";
+		}
+	}
+
 }
@@ -565,9 +565,13 @@ public class ContentDirectoryHandler implements HttpHandler {
 			searchCriteria = requestMessage.getSearchCriteria();
 		}
 
+		// without search or sort, only the asked window is needed before answering
+		boolean windowed = searchCriteria == null && StringUtils.isBlank(requestMessage.getSortCriteria());
 		List<StoreResource> resources = renderer.getMediaStore().getResources(
 				objectID,
-				browseDirectChildren
+				browseDirectChildren,
+				windowed ? startingIndex : 0,
+				windowed ? requestCount : 0
 		);
 
 		if (resources != null) {
@@ -586,7 +590,8 @@ public class ContentDirectoryHandler implements HttpHandler {
 				} else {
 					toIndex = Math.min(startingIndex + requestCount, resources.size());
 				}
-				resources = resources.subList(startingIndex, toIndex);
+				// the total may count children still pending discovery
+				resources = resources.subList(Math.min(startingIndex, toIndex), toIndex);
 			}
 		}
 
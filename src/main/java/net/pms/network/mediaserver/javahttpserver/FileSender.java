@@ -0,0 +1,46 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.javahttpserver;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Capability of an {@link com.sun.net.httpserver.HttpExchange} that can send
+ * a file range itself, without copying it through the response body stream.
+ * <p>
+ * Engines that can transfer files without copying them (like
+ * {@code sendfile} on Linux) implement it on their exchange, the handlers
+ * fall back on the response body stream for the others.
+ */
+public interface FileSender {
+
+	/**
+	 * Sends a file range as part of the response body, after what was
+	 * already written to the response body stream.
+	 *
+	 * The call blocks until the range has been written.
+	 *
+	 * @param fileChannel the file channel.
+	 * @param position the position of the first byte to send.
+	 * @param count the number of bytes to send.
+	 * @throws IOException if the response headers were not sent or the
+	 *             connection was closed.
+	 */
+	void sendFile(FileChannel fileChannel, long position, long count) throws IOException;
+
+}
@@ -20,9 +20,9 @@ import com.sun.net.httpserver.HttpServer;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import net.pms.PMS;
 import net.pms.network.mediaserver.HttpMediaServer;
+import net.pms.util.RequestExecutorService;
 import net.pms.util.SimpleThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +31,7 @@ public class JavaHttpServer extends HttpMediaServer {
 	private static final Logger LOGGER = LoggerFactory.getLogger(JavaHttpServer.class);
 
 	private HttpServer server;
+	private RequestExecutorService executorService;
 
 	public JavaHttpServer(InetAddress inetAddress, int port) {
 		super(inetAddress, port);
@@ -45,8 +46,10 @@ public class JavaHttpServer extends HttpMediaServer {
 			hostname = server.getAddress().getAddress().getHostAddress();
 			localPort = server.getAddress().getPort();
 			server.createContext("/", new RequestHandler());
-			ExecutorService executorService = Executors.newCachedThreadPool(
-				new SimpleThreadFactory("HTTPv3 Request Handler", "HttpServer Requests group")
+			executorService = new RequestExecutorService(
+				"HTTPv3 Request Handler",
+				new SimpleThreadFactory("HTTPv3 Request Handler", "HttpServer Requests group"),
+				PMS.getConfiguration().isServerVirtualThreads()
 			);
 			server.setExecutor(executorService);
 			server.start();
@@ -63,6 +66,10 @@ public class JavaHttpServer extends HttpMediaServer {
 			server.stop(0);
 			server = null;
 		}
+		if (executorService != null) {
+			executorService.shutdown();
+			executorService = null;
+		}
 		LOGGER.info("HTTP server stopped");
 	}
 
@@ -32,10 +32,13 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import net.pms.PMS;
 import net.pms.configuration.UmsConfiguration;
 import net.pms.dlna.DLNAImageInputStream;
 import net.pms.dlna.DLNAImageProfile;
+import net.pms.dlna.DLNAThumbnailCache;
 import net.pms.dlna.DLNAThumbnailInputStream;
 import net.pms.dlna.DlnaHelper;
 import net.pms.dlna.protocolinfo.PanasonicDmpProfiles;
@@ -45,6 +48,7 @@ import net.pms.formats.Format;
 import net.pms.formats.v2.SubtitleType;
 import net.pms.image.BufferedImageFilterChain;
 import net.pms.image.ImagesUtil;
+import net.pms.io.DirectFileInputStream;
 import net.pms.io.OutputParams;
 import net.pms.io.ProcessWrapper;
 import net.pms.media.MediaInfo;
@@ -53,6 +57,7 @@ import net.pms.media.subtitle.MediaOnDemandSubtitle;
 import net.pms.media.subtitle.MediaSubtitle;
 import net.pms.network.HTTPResource;
 import net.pms.network.NetworkDeviceFilter;
+import net.pms.network.TransferStats;
 import net.pms.network.mediaserver.MediaServer;
 import net.pms.network.mediaserver.MediaServerRequest;
 import net.pms.renderers.ConnectedRenderers;
@@ -85,6 +90,16 @@ public class MediaServerHandler implements HttpHandler {
 	private static final String GET = "GET";
 	private static final String HEAD = "HEAD";
 	private static final int BUFFER_SIZE = 8 * 1024;
+	/**
+	 * Local files are read in large chunks, the JDK server does not expose its
+	 * socket channel so {@code FileChannel.transferTo} can't be used.
+	 */
+	private static final int FILE_BUFFER_SIZE = 512 * 1024;
+	/**
+	 * Spare file buffers, requests may run on short-lived threads so they are
+	 * pooled rather than kept per thread.
+	 */
+	private static final BlockingQueue<byte[]> FILE_BUFFERS = new ArrayBlockingQueue<>(8);
 
 	private static final String HTTPSERVER_REQUEST_BEGIN = "================================== MEDIASERVER REQUEST BEGIN =====================================";
 	private static final String HTTPSERVER_REQUEST_END = "================================== MEDIASERVER REQUEST END =======================================";
@@ -277,14 +292,28 @@ public class MediaServerHandler implements HttpHandler {
 			// send only if no HEAD method is being used.
 			if (writeStream && !HEAD.equalsIgnoreCase(exchange.getRequestMethod())) {
 				// Send the response body to the client in chunks.
-				byte[] buf = new byte[BUFFER_SIZE];
+				// Local files ranges are read in large chunks and only flushed
+				// at the end, live streams are flushed on every chunk.
+				boolean localFile = inputStream instanceof DirectFileInputStream;
+				byte[] buf = localFile ? acquireFileBuffer() : new byte[BUFFER_SIZE];
 				int length;
+				long start = System.nanoTime();
 				try (OutputStream outputStream = exchange.getResponseBody()) {
-					int lengthSent = 0;
+					long lengthSent = 0;
 					try {
+						if (localFile && contentLength > 0 && exchange instanceof FileSender fileSender) {
+							// the engine sends the file range without copying it
+							DirectFileInputStream fileInputStream = (DirectFileInputStream) inputStream;
+							long count = fileInputStream.getRemaining();
+							fileSender.sendFile(fileInputStream.getChannel(), fileInputStream.getPosition(), count);
+							fileInputStream.consumeRemaining();
+							lengthSent += count;
+						}
 						while ((length = inputStream.read(buf)) > 0) {
 							outputStream.write(buf, 0, length);
-							outputStream.flush();
+							if (!localFile) {
+								outputStream.flush();
+							}
 							lengthSent += length;
 						}
 					} catch (IOException ioe) {
@@ -296,6 +325,11 @@ public class MediaServerHandler implements HttpHandler {
 						//client close the connection and insufficient bytes written to stream
 					}
 					LOGGER.trace("OutputStream({}) - bytes sent: {}/{}", outputStream.getClass().getName(), lengthSent, contentLength);
+					TransferStats.record(exchange.getRemoteAddress().getAddress(), lengthSent, System.nanoTime() - start);
+				} finally {
+					if (localFile) {
+						FILE_BUFFERS.offer(buf);
+					}
 				}
 			}
 			try {
@@ -306,6 +340,11 @@ public class MediaServerHandler implements HttpHandler {
 		}
 	}
 
+	private static byte[] acquireFileBuffer() {
+		byte[] buf = FILE_BUFFERS.poll();
+		return buf != null ? buf : new byte[FILE_BUFFER_SIZE];
+	}
+
 	private static void sendMediaResponse(final HttpExchange exchange, final Renderer renderer, StoreResource resource, String filename) throws IOException {
 		// Request to retrieve a file
 		if (resource instanceof StoreItem item) {
@@ -722,7 +761,8 @@ public class MediaServerHandler implements HttpHandler {
 			filterChain = new BufferedImageFilterChain(FullyPlayed.getOverlayFilter());
 		}
 		filterChain = resource.addFlagFilters(filterChain);
-		inputStream = thumbInputStream.transcode(
+		inputStream = DLNAThumbnailCache.transcode(
+				thumbInputStream,
 				imageProfile,
 				renderer.isThumbnailPadding(),
 				filterChain
@@ -31,12 +31,14 @@ import net.pms.network.mediaserver.jupnp.transport.impl.JdkHttpServerStreamServe
 import net.pms.network.mediaserver.jupnp.transport.impl.JdkHttpServletStreamServer;
 import net.pms.network.mediaserver.jupnp.transport.impl.JdkStreamClientConfiguration;
 import net.pms.network.mediaserver.jupnp.transport.impl.JdkStreamClients;
+import net.pms.network.mediaserver.jupnp.transport.impl.Netty4StreamServer;
 import net.pms.network.mediaserver.jupnp.transport.impl.NettyStreamServer;
 import net.pms.network.mediaserver.jupnp.transport.impl.UmsDatagramIO;
 import net.pms.network.mediaserver.jupnp.transport.impl.UmsDatagramProcessor;
 import net.pms.network.mediaserver.jupnp.transport.impl.UmsMulticastReceiver;
 import net.pms.network.mediaserver.jupnp.transport.impl.UmsNetworkAddressFactory;
 import net.pms.network.mediaserver.jupnp.transport.impl.UmsStreamServerConfiguration;
+import net.pms.util.RequestExecutorService;
 import net.pms.util.SimpleThreadFactory;
 import org.jupnp.UpnpServiceConfiguration;
 import org.jupnp.binding.xml.DeviceDescriptorBinder;
@@ -285,6 +287,14 @@ public class UmsUpnpServiceConfiguration implements UpnpServiceConfiguration {
 						)
 				);
 			}
+			case 6, 7 -> {
+				return new Netty4StreamServer(
+						new UmsStreamServerConfiguration(
+								networkAddressFactory.getStreamListenPort(),
+								true
+						)
+				);
+			}
 			default -> {
 				//non listening server
 				return new JdkHttpServerStreamServer(
@@ -354,7 +364,11 @@ public class UmsUpnpServiceConfiguration implements UpnpServiceConfiguration {
 		if (useThreadPool && streamClientThreadPool) {
 			return streamClientExecutorService;
 		} else {
-			return Executors.newCachedThreadPool(new SimpleThreadFactory(STREAM_CLIENT_THREAD_NAME, true));
+			return new RequestExecutorService(
+				STREAM_CLIENT_THREAD_NAME,
+				new SimpleThreadFactory(STREAM_CLIENT_THREAD_NAME, true),
+				CONFIGURATION.isServerVirtualThreads()
+			);
 		}
 	}
 
@@ -363,7 +377,11 @@ public class UmsUpnpServiceConfiguration implements UpnpServiceConfiguration {
 		if (useThreadPool && streamServerThreadPool) {
 			return streamServerExecutorService;
 		} else {
-			return Executors.newCachedThreadPool(new SimpleThreadFactory(STREAM_SERVER_THREAD_NAME, true));
+			return new RequestExecutorService(
+				STREAM_SERVER_THREAD_NAME,
+				new SimpleThreadFactory(STREAM_SERVER_THREAD_NAME, true),
+				CONFIGURATION.isServerVirtualThreads()
+			);
 		}
 	}
 
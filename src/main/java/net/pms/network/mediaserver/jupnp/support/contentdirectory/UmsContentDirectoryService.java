@@ -581,9 +581,14 @@ public class UmsContentDirectoryService {
 
 		boolean browseDirectChildren = browseFlag == BrowseFlag.DIRECT_CHILDREN;
 
+		// without search or sort, only the asked window is needed before answering
+		// (browse has no search criteria, search never uses the window)
+		boolean windowed = sortCriteria == null || sortCriteria.length == 0;
 		List<StoreResource> resources = renderer.getMediaStore().getResources(
 				objectID,
-				browseDirectChildren
+				browseDirectChildren,
+				windowed ? (int) startingIndex : 0,
+				windowed ? (int) requestedCount : 0
 		);
 
 		List<StoreResource> resultResources = new ArrayList<>();
@@ -707,8 +712,7 @@ public class UmsContentDirectoryService {
 
 			int totalMatches = SearchRequestHandler.getLibraryResourceCountFromSQL(SearchRequestHandler.convertToCountSql(searchCriteria, requestType));
 
-			String sqlFiles = SearchRequestHandler.convertToFilesSql(searchCriteria, startingIndex, requestedCount, orderBy, requestType);
-			List<StoreResource> resultResources = SearchRequestHandler.getLibraryResourceFromSQL(renderer, sqlFiles, requestType);
+			List<StoreResource> resultResources = SearchRequestHandler.getLibraryResources(renderer, searchCriteria, startingIndex, requestedCount, orderBy, requestType);
 
 			long containerUpdateID = MediaStoreIds.getSystemUpdateId().getValue();
 			LOGGER.trace("Creating DIDL result");
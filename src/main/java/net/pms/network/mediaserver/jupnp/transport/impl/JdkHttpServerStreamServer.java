@@ -91,7 +91,7 @@ public class JdkHttpServerStreamServer implements StreamServer<UmsStreamServerCo
 		}
 	}
 
-	protected class RequestHttpHandler implements HttpHandler {
+	protected static class RequestHttpHandler implements HttpHandler {
 
 		private final Router router;
 		private final RequestHandler requestHandler;
@@ -0,0 +1,362 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.jupnp.transport.impl;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.pms.network.mediaserver.javahttpserver.FileSender;
+
+/**
+ * {@link HttpExchange} over a Netty 4 channel.
+ *
+ * It lets the handlers written for the JDK HttpServer run on the Netty 4
+ * engine. The request is fully aggregated, the response body is written in
+ * pooled buffers with back pressure on the channel writability, and local
+ * files can be sent as a {@link io.netty.channel.FileRegion}.
+ */
+public class Netty4HttpExchange extends HttpExchange implements FileSender {
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final Channel channel;
+	private final HttpVersion version;
+	private final String method;
+	private final URI uri;
+	private final Headers requestHeaders = new Headers();
+	private final Headers responseHeaders = new Headers();
+	private final Map<String, Object> attributes = new HashMap<>();
+	private final boolean keepAlive;
+	private InputStream requestBody;
+	private OutputStream responseBody;
+	private ResponseBody body;
+	private int responseCode = -1;
+	private boolean noBody;
+	private boolean closeAfterResponse;
+
+	public Netty4HttpExchange(Channel channel, FullHttpRequest request) {
+		this.channel = channel;
+		this.version = request.protocolVersion();
+		this.method = request.method().name();
+		this.uri = URI.create(request.uri());
+		this.keepAlive = HttpUtil.isKeepAlive(request);
+		for (Map.Entry<String, String> header : request.headers()) {
+			requestHeaders.add(header.getKey(), header.getValue());
+		}
+		requestBody = new ByteArrayInputStream(ByteBufUtil.getBytes(request.content()));
+	}
+
+	@Override
+	public Headers getRequestHeaders() {
+		return requestHeaders;
+	}
+
+	@Override
+	public Headers getResponseHeaders() {
+		return responseHeaders;
+	}
+
+	@Override
+	public URI getRequestURI() {
+		return uri;
+	}
+
+	@Override
+	public String getRequestMethod() {
+		return method;
+	}
+
+	/**
+	 * There is no context on the Netty engine, the routing is done by the
+	 * stream server.
+	 *
+	 * @return {@code null}.
+	 */
+	@Override
+	public HttpContext getHttpContext() {
+		return null;
+	}
+
+	@Override
+	public void close() {
+		if (body == null && responseCode == -1) {
+			// the response was never started
+			channel.close();
+			return;
+		}
+		try {
+			getResponseBody().close();
+		} catch (IOException e) {
+			channel.close();
+		}
+	}
+
+	@Override
+	public InputStream getRequestBody() {
+		return requestBody;
+	}
+
+	@Override
+	public OutputStream getResponseBody() {
+		if (responseBody == null) {
+			// the JDK server creates the stream lazily too
+			body = new ResponseBody();
+			responseBody = body;
+		}
+		return responseBody;
+	}
+
+	@Override
+	public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+		if (responseCode != -1) {
+			throw new IOException("headers already sent");
+		}
+		responseCode = rCode;
+		HttpResponse response = new DefaultHttpResponse(version, HttpResponseStatus.valueOf(rCode));
+		for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+			response.headers().add(header.getKey(), header.getValue());
+		}
+		if (!response.headers().contains(HttpHeaderNames.DATE)) {
+			response.headers().set(HttpHeaderNames.DATE, DateFormatter.format(new Date()));
+		}
+		noBody = HttpMethod.HEAD.name().equals(method) || rCode == 204 || rCode == 304 || (rCode >= 100 && rCode < 200);
+		closeAfterResponse = !keepAlive;
+		if (!noBody) {
+			if (responseLength == 0) {
+				if (version.equals(HttpVersion.HTTP_1_0)) {
+					// no chunked encoding, the end of the body is the end of the connection
+					closeAfterResponse = true;
+				} else {
+					HttpUtil.setTransferEncodingChunked(response, true);
+				}
+			} else if (responseLength < 0) {
+				HttpUtil.setContentLength(response, 0);
+				noBody = true;
+			} else {
+				HttpUtil.setContentLength(response, responseLength);
+			}
+		}
+		if (closeAfterResponse) {
+			response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+		} else if (version.equals(HttpVersion.HTTP_1_0)) {
+			response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+		}
+		checkActive(channel.write(response));
+		getResponseBody();
+		if (noBody) {
+			body.close();
+		}
+	}
+
+	/**
+	 * Sends a file range as a {@link DefaultFileRegion}, using zero-copy
+	 * transfer when the transport supports it.
+	 *
+	 * The call blocks until the region has been written, the file channel is
+	 * closed once the region is released.
+	 */
+	@Override
+	public void sendFile(FileChannel fileChannel, long position, long count) throws IOException {
+		if (body == null || body.closed) {
+			throw new IOException("response body is not open");
+		}
+		body.writeBuffer();
+		ChannelFuture future = channel.writeAndFlush(new DefaultFileRegion(fileChannel, position, count));
+		future.awaitUninterruptibly();
+		if (!future.isSuccess()) {
+			throw new IOException("file transfer failed", future.cause());
+		}
+	}
+
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return (InetSocketAddress) channel.remoteAddress();
+	}
+
+	@Override
+	public int getResponseCode() {
+		return responseCode;
+	}
+
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return (InetSocketAddress) channel.localAddress();
+	}
+
+	@Override
+	public String getProtocol() {
+		return version.text();
+	}
+
+	@Override
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	@Override
+	public void setAttribute(String name, Object value) {
+		attributes.put(name, value);
+	}
+
+	@Override
+	public void setStreams(InputStream i, OutputStream o) {
+		if (i != null) {
+			requestBody = i;
+		}
+		if (o != null) {
+			getResponseBody();
+			responseBody = o;
+		}
+	}
+
+	@Override
+	public HttpPrincipal getPrincipal() {
+		return null;
+	}
+
+	private void checkActive(ChannelFuture future) throws IOException {
+		if (future.isDone() && !future.isSuccess()) {
+			throw new IOException("connection closed", future.cause());
+		}
+		if (!channel.isActive()) {
+			throw new IOException("connection closed");
+		}
+	}
+
+	/**
+	 * Response body written in pooled buffers.
+	 *
+	 * When the channel is not writable anymore, the writer waits for the last
+	 * write to complete.
+	 */
+	private class ResponseBody extends OutputStream {
+
+		private ByteBuf buffer;
+		private volatile boolean closed;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (closed) {
+				throw new IOException("stream is closed");
+			}
+			if (responseCode == -1) {
+				throw new IOException("response headers not sent yet");
+			}
+			if (noBody) {
+				throw new IOException("response has no body");
+			}
+			while (len > 0) {
+				if (buffer == null) {
+					buffer = channel.alloc().buffer(CHUNK_SIZE, CHUNK_SIZE);
+				}
+				int length = Math.min(len, buffer.writableBytes());
+				buffer.writeBytes(b, off, length);
+				off += length;
+				len -= length;
+				if (!buffer.isWritable()) {
+					writeBuffer();
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (!closed) {
+				writeBuffer();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (responseCode == -1) {
+				channel.close();
+				return;
+			}
+			try {
+				writeBuffer();
+			} finally {
+				ChannelFuture future = channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+				if (closeAfterResponse) {
+					future.addListener(ChannelFutureListener.CLOSE);
+				} else {
+					// ready for the next request on this connection
+					future.addListener((ChannelFutureListener) f -> {
+						f.channel().config().setAutoRead(true);
+						f.channel().read();
+					});
+				}
+			}
+		}
+
+		private void writeBuffer() throws IOException {
+			if (buffer == null) {
+				return;
+			}
+			ByteBuf content = buffer;
+			buffer = null;
+			if (!content.isReadable()) {
+				content.release();
+				return;
+			}
+			ChannelFuture future = channel.writeAndFlush(new DefaultHttpContent(content));
+			if (!channel.isWritable()) {
+				future.awaitUninterruptibly();
+			}
+			checkActive(future);
+		}
+	}
+
+}
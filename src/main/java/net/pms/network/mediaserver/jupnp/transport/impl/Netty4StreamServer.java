@@ -0,0 +1,275 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.jupnp.transport.impl;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.network.NetworkDeviceFilter;
+import net.pms.network.mediaserver.MediaServer;
+import net.pms.util.RequestExecutorService;
+import net.pms.util.SimpleThreadFactory;
+import org.jupnp.transport.Router;
+import org.jupnp.transport.spi.InitializationException;
+import org.jupnp.transport.spi.StreamServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation based on Netty 4.
+ *
+ * It uses the native epoll transport when available, NIO otherwise, with
+ * bounded event loop groups and pooled buffers. Requests are handled by the
+ * same handlers as the JDK HttpServer engine, through
+ * {@link Netty4HttpExchange}, on a request executor of its own, with virtual
+ * threads when enabled and a bounded number of requests in flight.
+ */
+public class Netty4StreamServer implements StreamServer<UmsStreamServerConfiguration> {
+	//base the logger inside org.jupnp.transport.spi.StreamServer to reflect old behavior
+	private static final Logger LOGGER = LoggerFactory.getLogger(StreamServer.class);
+	private static final int MAX_CONTENT_LENGTH = 65536;
+	private static final int WORKER_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+	/**
+	 * Every stream being sent holds a request, this leaves room for many
+	 * renderers while keeping a flood of connections from starting threads.
+	 */
+	private static final int MAX_REQUESTS_IN_FLIGHT = 256;
+
+	protected final UmsStreamServerConfiguration configuration;
+	private InetSocketAddress socketAddress;
+	private Channel channel;
+	private ChannelGroup allChannels;
+	private EventLoopGroup bossGroup;
+	private EventLoopGroup workerGroup;
+	private ServerBootstrap bootstrap;
+	private RequestExecutorService executor;
+
+	public Netty4StreamServer(UmsStreamServerConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	@Override
+	public synchronized void init(InetAddress bindAddress, Router router) throws InitializationException {
+		try {
+			socketAddress = new InetSocketAddress(bindAddress, configuration.getListenPort());
+			allChannels = new DefaultChannelGroup("JUPnP-HTTPServer", GlobalEventExecutor.INSTANCE);
+			Class<? extends ServerChannel> channelClass;
+			if (Epoll.isAvailable()) {
+				bossGroup = new EpollEventLoopGroup(1, new DefaultThreadFactory("jupnp-netty4-boss"));
+				workerGroup = new EpollEventLoopGroup(WORKER_THREADS, new DefaultThreadFactory("jupnp-netty4-worker"));
+				channelClass = EpollServerSocketChannel.class;
+			} else {
+				LOGGER.debug("Netty native epoll transport not available: {}", Epoll.unavailabilityCause() != null ? Epoll.unavailabilityCause().getMessage() : "");
+				bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("jupnp-netty4-boss"));
+				workerGroup = new NioEventLoopGroup(WORKER_THREADS, new DefaultThreadFactory("jupnp-netty4-worker"));
+				channelClass = NioServerSocketChannel.class;
+			}
+
+			executor = new RequestExecutorService(
+				"jupnp-netty4-request",
+				new SimpleThreadFactory("jupnp-netty4-request", true),
+				PMS.getConfiguration().isServerVirtualThreads(),
+				MAX_REQUESTS_IN_FLIGHT
+			);
+			JdkHttpServerStreamServer.RequestHttpHandler requestHandler = new JdkHttpServerStreamServer.RequestHttpHandler(router);
+			bootstrap = new ServerBootstrap()
+				.group(bossGroup, workerGroup)
+				.channel(channelClass)
+				.option(ChannelOption.SO_REUSEADDR, true)
+				.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+				.childOption(ChannelOption.TCP_NODELAY, true)
+				.childOption(ChannelOption.SO_KEEPALIVE, true)
+				.childOption(ChannelOption.SO_SNDBUF, 65536)
+				.childOption(ChannelOption.SO_RCVBUF, 65536)
+				.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(256 * 1024, 1024 * 1024))
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel ch) {
+						allChannels.add(ch);
+						ch.pipeline().addLast("codec", new HttpServerCodec());
+						ch.pipeline().addLast("aggregator", new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+						ch.pipeline().addLast("handler", new RequestInboundHandler(requestHandler, executor));
+					}
+				});
+			if (configuration.getTcpConnectionBacklog() > 0) {
+				bootstrap.option(ChannelOption.SO_BACKLOG, configuration.getTcpConnectionBacklog());
+			}
+			LOGGER.info("Created server (for receiving TCP streams) on: {} ({})", socketAddress, channelClass.getSimpleName());
+		} catch (Exception ex) {
+			throw new InitializationException("Could not initialize " + getClass().getSimpleName() + ": " + ex.toString(), ex);
+		}
+	}
+
+	@Override
+	public synchronized int getPort() {
+		if (channel != null && channel.localAddress() instanceof InetSocketAddress localAddress) {
+			return localAddress.getPort();
+		}
+		return socketAddress.getPort();
+	}
+
+	@Override
+	public UmsStreamServerConfiguration getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	public synchronized void run() {
+		LOGGER.debug("Starting StreamServer...");
+		try {
+			channel = bootstrap.bind(socketAddress).syncUninterruptibly().channel();
+			allChannels.add(channel);
+			LOGGER.info("Started StreamServer on: {}", channel.localAddress());
+			if (configuration.getUpdateMediaServerPort()) {
+				MediaServer.setPort(getPort());
+			}
+		} catch (Exception ex) {
+			throw new InitializationException("Could not initialize " + getClass().getSimpleName() + ": " + ex.toString(), ex);
+		}
+	}
+
+	@Override
+	public synchronized void stop() {
+		LOGGER.debug("Stopping StreamServer...");
+		if (allChannels != null) {
+			allChannels.close().awaitUninterruptibly();
+		}
+		if (bossGroup != null) {
+			bossGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+		}
+		if (workerGroup != null) {
+			workerGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+		}
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		channel = null;
+	}
+
+	/**
+	 * Hands the aggregated requests to the stream server executor.
+	 *
+	 * Reading is suspended until the response is sent, so requests on the
+	 * same connection are answered in order.
+	 */
+	protected static class RequestInboundHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+		private final JdkHttpServerStreamServer.RequestHttpHandler requestHandler;
+		private final Executor executor;
+
+		public RequestInboundHandler(JdkHttpServerStreamServer.RequestHttpHandler requestHandler, Executor executor) {
+			this.requestHandler = requestHandler;
+			this.executor = executor;
+		}
+
+		// This is executed in the event loop, it must not block.
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+			if (!request.decoderResult().isSuccess()) {
+				sendError(ctx, HttpResponseStatus.BAD_REQUEST);
+				return;
+			}
+			InetAddress remoteAddress = ((InetSocketAddress) ctx.channel().remoteAddress()).getAddress();
+			if (!NetworkDeviceFilter.isAllowed(remoteAddress)) {
+				LOGGER.trace("Ip Filtering denying address: {}", remoteAddress.getHostAddress());
+				ctx.close();
+				return;
+			}
+			if (HttpUtil.is100ContinueExpected(request)) {
+				ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER));
+			}
+			ctx.channel().config().setAutoRead(false);
+			Netty4HttpExchange exchange = new Netty4HttpExchange(ctx.channel(), request);
+			try {
+				executor.execute(() -> {
+					try {
+						requestHandler.handle(exchange);
+					} catch (IOException | RuntimeException e) {
+						LOGGER.debug("Error while handling {} {}: {}", exchange.getRequestMethod(), exchange.getRequestURI(), e.getMessage());
+						LOGGER.trace("", e);
+						ctx.close();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				LOGGER.debug("Request rejected: {}", e.getMessage());
+				sendError(ctx, HttpResponseStatus.SERVICE_UNAVAILABLE);
+			}
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			if (cause instanceof IOException) {
+				LOGGER.debug("Connection error: {}", cause.getMessage());
+			} else {
+				LOGGER.debug("Caught exception: {}", cause.getMessage());
+				LOGGER.trace("", cause);
+			}
+			// a response may already be in progress, just drop the connection
+			ctx.close();
+		}
+
+		private static void sendError(ChannelHandlerContext ctx, HttpResponseStatus status) {
+			FullHttpResponse response = new DefaultFullHttpResponse(
+				HttpVersion.HTTP_1_1,
+				status,
+				Unpooled.copiedBuffer("Failure: " + status.toString() + "\r\n", StandardCharsets.UTF_8)
+			);
+			response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain; charset=UTF-8");
+			HttpUtil.setContentLength(response, response.content().readableBytes());
+			// Close the connection as soon as the error message is sent.
+			ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+		}
+	}
+
+}
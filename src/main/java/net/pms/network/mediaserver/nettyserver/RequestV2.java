@@ -49,6 +49,7 @@ import net.pms.PMS;
 import net.pms.configuration.UmsConfiguration;
 import net.pms.dlna.DLNAImageInputStream;
 import net.pms.dlna.DLNAImageProfile;
+import net.pms.dlna.DLNAThumbnailCache;
 import net.pms.dlna.DLNAThumbnailInputStream;
 import net.pms.dlna.DidlHelper;
 import net.pms.dlna.DlnaHelper;
@@ -58,6 +59,7 @@ import net.pms.formats.Format;
 import net.pms.formats.v2.SubtitleType;
 import net.pms.image.BufferedImageFilterChain;
 import net.pms.image.ImagesUtil;
+import net.pms.io.DirectFileInputStream;
 import net.pms.io.OutputParams;
 import net.pms.io.ProcessWrapper;
 import net.pms.media.MediaInfo;
@@ -95,6 +97,7 @@ import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMethod;
@@ -365,7 +368,7 @@ public class RequestV2 extends HTTPResource {
 						filterChain = new BufferedImageFilterChain(FullyPlayed.getOverlayFilter());
 					}
 					filterChain = resource.addFlagFilters(filterChain);
-					inputStream = thumbInputStream.transcode(imageProfile,
+					inputStream = DLNAThumbnailCache.transcode(thumbInputStream, imageProfile,
 							renderer != null && renderer.isThumbnailPadding(),
 							filterChain
 					);
@@ -783,8 +786,18 @@ public class RequestV2 extends HTTPResource {
 				future = event.getChannel().write(output);
 
 				if (lowRange != MediaInfo.ENDFILE_POS && !HttpMethod.HEAD.equals(method)) {
-					// Send the response body to the client in chunks.
-					ChannelFuture chunkWriteFuture = event.getChannel().write(new ChunkedStream(inputStream, BUFFER_SIZE));
+					ChannelFuture chunkWriteFuture;
+					if (inputStream instanceof DirectFileInputStream directFileInputStream) {
+						// Local file sent as is, let the kernel copy it to the socket.
+						long position = directFileInputStream.getPosition();
+						long count = directFileInputStream.getRemaining();
+						directFileInputStream.consumeRemaining();
+						LOGGER.trace("Sending {} bytes of \"{}\" from position {} as a file region", count, directFileInputStream.getFile(), position);
+						chunkWriteFuture = event.getChannel().write(new DefaultFileRegion(directFileInputStream.getChannel(), position, count));
+					} else {
+						// Send the response body to the client in chunks.
+						chunkWriteFuture = event.getChannel().write(new ChunkedStream(inputStream, BUFFER_SIZE));
+					}
 
 					// Add a listener to clean up after sending the entire response body.
 					final InputStream finalInputStream = inputStream;
@@ -1109,9 +1122,13 @@ public class RequestV2 extends HTTPResource {
 			searchCriteria = requestMessage.getSearchCriteria();
 		}
 
+		// without search or sort, only the asked window is needed before answering
+		boolean windowed = searchCriteria == null && StringUtils.isBlank(requestMessage.getSortCriteria());
 		List<StoreResource> resources = renderer.getMediaStore().getResources(
 				objectID,
-				browseDirectChildren
+				browseDirectChildren,
+				windowed ? startingIndex : 0,
+				windowed ? requestCount : 0
 		);
 
 		if (resources != null) {
@@ -1130,7 +1147,8 @@ public class RequestV2 extends HTTPResource {
 				} else {
 					toIndex = Math.min(startingIndex + requestCount, resources.size());
 				}
-				resources = resources.subList(startingIndex, toIndex);
+				// the total may count children still pending discovery
+				resources = resources.subList(Math.min(startingIndex, toIndex), toIndex);
 			}
 		}
 
@@ -33,6 +33,7 @@ import java.util.Locale;
 import java.util.TimeZone;
 import net.pms.dlna.DLNAImageInputStream;
 import net.pms.dlna.DLNAImageProfile;
+import net.pms.dlna.DLNAThumbnailCache;
 import net.pms.dlna.DLNAThumbnailInputStream;
 import net.pms.dlna.DlnaHelper;
 import net.pms.dlna.protocolinfo.PanasonicDmpProfiles;
@@ -671,7 +672,8 @@ public class MediaServerServlet extends MediaServerHttpServlet {
 			filterChain = new BufferedImageFilterChain(FullyPlayed.getOverlayFilter());
 		}
 		filterChain = resource.addFlagFilters(filterChain);
-		inputStream = thumbInputStream.transcode(
+		inputStream = DLNAThumbnailCache.transcode(
+				thumbInputStream,
 				imageProfile,
 				renderer.isThumbnailPadding(),
 				filterChain
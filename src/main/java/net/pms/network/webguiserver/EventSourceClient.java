@@ -24,14 +24,29 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.configuration.UmsConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * A Server Sent Events stream to a browser.
+ *
+ * Messages are queued and written by the client own thread, the one also
+ * sending the heart beats, so a slow browser never blocks the sender. The
+ * queue is bounded, when full either the oldest message is dropped or the
+ * client is closed.
+ *
  * @author Surf@ceS
  */
 public class EventSourceClient implements IEventSourceClient, Runnable {
@@ -49,8 +64,15 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 	private final AsyncContext async;
 	private final ServletOutputStream output;
 
+	private final Deque<QueuedEvent> queue = new ArrayDeque<>();
+	private final int queueSize;
+	private final boolean coalesce;
+	private final boolean dropOldest;
+
 	private Future<?> heartBeat;
-	private boolean closed;
+	private volatile boolean closed;
+	private boolean writing;
+	private int dropped;
 
 	public EventSourceClient(AsyncContext async) throws IOException {
 		this(async, DEFAULT_HEART_BEAT_PERIOD, null);
@@ -69,6 +91,10 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 		this.scheduler = Executors.newSingleThreadScheduledExecutor();
 		this.async = async;
 		this.output = async.getResponse().getOutputStream();
+		UmsConfiguration configuration = PMS.getConfiguration();
+		this.queueSize = configuration.getWebGuiEventsQueueSize();
+		this.coalesce = configuration.isWebGuiEventsCoalesce();
+		this.dropOldest = configuration.isWebGuiEventsDropOldest();
 		if (callback != null) {
 			async.addListener(new AsyncListener() {
 				@Override
@@ -111,7 +137,6 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 				output.write(CRLF);
 			}
 			output.write(CRLF);
-			flush();
 		}
 	}
 
@@ -121,7 +146,6 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 			output.write(comment.getBytes(StandardCharsets.UTF_8));
 			output.write(CRLF);
 			output.write(CRLF);
-			flush();
 		}
 	}
 
@@ -131,26 +155,124 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 	}
 
 	public boolean sendMessage(String message, boolean log) {
+		return sendMessage(message, log, null);
+	}
+
+	/**
+	 * Queues a message.
+	 *
+	 * @param message the message.
+	 * @param log whether to log the message.
+	 * @param coalesceKey if not null, a message with the same key still
+	 *            waiting is dropped, as this one replaces it.
+	 * @return false if the client is closed.
+	 */
+	public boolean sendMessage(String message, boolean log, String coalesceKey) {
 		if (log) {
 			LOGGER.trace("ServerSentEvents send message: {}", message);
 		}
-		try {
-			event("message", message);
-			return true;
-		} catch (IOException e) {
-			return false;
-		}
+		return enqueue(new QueuedEvent("message", message, coalesceKey));
 	}
 
 	public boolean sendComment(String comment, boolean log) {
 		if (log) {
 			LOGGER.trace("ServerSentEvents send comment: {}", comment);
 		}
+		return enqueue(new QueuedEvent(null, comment, null));
+	}
+
+	/**
+	 * @return the number of messages waiting to be sent.
+	 */
+	public int getQueuedCount() {
+		synchronized (queue) {
+			return queue.size();
+		}
+	}
+
+	private boolean enqueue(QueuedEvent event) {
+		if (closed) {
+			return false;
+		}
+		boolean startWriter = false;
+		boolean overflow = false;
+		synchronized (queue) {
+			if (coalesce && event.coalesceKey != null) {
+				for (Iterator<QueuedEvent> iterator = queue.iterator(); iterator.hasNext();) {
+					if (event.coalesceKey.equals(iterator.next().coalesceKey)) {
+						iterator.remove();
+						break;
+					}
+				}
+			}
+			if (queue.size() >= queueSize) {
+				if (dropOldest) {
+					queue.pollFirst();
+					dropped++;
+				} else {
+					overflow = true;
+				}
+			}
+			if (!overflow) {
+				queue.addLast(event);
+				if (!writing) {
+					writing = true;
+					startWriter = true;
+				}
+			}
+		}
+		if (overflow) {
+			LOGGER.debug("ServerSentEvents client too slow, closing it");
+			close();
+			return false;
+		}
+		if (startWriter) {
+			try {
+				scheduler.execute(this::writeQueued);
+			} catch (RejectedExecutionException e) {
+				// closed meanwhile
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the queued messages, flushing once per pass.
+	 */
+	private void writeQueued() {
 		try {
-			comment(comment);
-			return true;
+			while (true) {
+				List<QueuedEvent> events;
+				int droppedCount;
+				synchronized (queue) {
+					if (queue.isEmpty() || closed) {
+						writing = false;
+						return;
+					}
+					events = new ArrayList<>(queue);
+					queue.clear();
+					droppedCount = dropped;
+					dropped = 0;
+				}
+				if (droppedCount > 0) {
+					LOGGER.trace("ServerSentEvents client too slow, {} messages dropped", droppedCount);
+				}
+				for (QueuedEvent event : events) {
+					if (event.name == null) {
+						comment(event.data);
+					} else {
+						event(event.name, event.data);
+					}
+				}
+				flush();
+			}
 		} catch (IOException e) {
-			return false;
+			// The other peer closed the connection
+			synchronized (queue) {
+				writing = false;
+			}
+			close();
 		}
 	}
 
@@ -160,11 +282,13 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 
 	@Override
 	public void close() {
-		synchronized (this) {
+		// not locking this, the writer may hold it while blocked on a write
+		synchronized (queue) {
 			closed = true;
 			if (heartBeat != null) {
 				heartBeat.cancel(false);
 			}
+			queue.clear();
 		}
 		if (scheduler != null) {
 			scheduler.shutdown();
@@ -173,7 +297,7 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 	}
 
 	private void scheduleHeartBeat() {
-		synchronized (this) {
+		synchronized (queue) {
 			if (!closed) {
 				heartBeat = scheduler.schedule(this, heartBeatPeriod, TimeUnit.SECONDS);
 			}
@@ -193,6 +317,7 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 	public void run() {
 		try {
 			event("ping", String.valueOf(System.currentTimeMillis()));
+			flush();
 			scheduleHeartBeat();
 		} catch (IOException e) {
 			// The other peer closed the connection
@@ -200,4 +325,16 @@ public class EventSourceClient implements IEventSourceClient, Runnable {
 		}
 	}
 
+	private static class QueuedEvent {
+		private final String name;
+		private final String data;
+		private final String coalesceKey;
+
+		private QueuedEvent(String name, String data, String coalesceKey) {
+			this.name = name;
+			this.data = data;
+			this.coalesceKey = coalesceKey;
+		}
+	}
+
 }
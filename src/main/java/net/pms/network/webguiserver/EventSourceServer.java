@@ -129,16 +129,7 @@ public class EventSourceServer {
 	 * @param message
 	 */
 	public static void broadcastSettingsMessage(String message) {
-		synchronized (SSE_SETTINGS_INSTANCES) {
-			for (Iterator<EventSourceClient> sseIterator = SSE_SETTINGS_INSTANCES.iterator(); sseIterator.hasNext();) {
-				EventSourceClient sse = sseIterator.next();
-				if (sse.isClosed()) {
-					sseIterator.remove();
-				} else {
-					sse.sendMessage(message);
-				}
-			}
-		}
+		broadcast(SSE_SETTINGS_INSTANCES, message, true, null);
 	}
 
 	/**
@@ -147,16 +138,7 @@ public class EventSourceServer {
 	 * @param message
 	 */
 	public static void broadcastSharedMessage(String message) {
-		synchronized (SSE_SHARED_INSTANCES) {
-			for (Iterator<EventSourceClient> sseIterator = SSE_SHARED_INSTANCES.iterator(); sseIterator.hasNext();) {
-				EventSourceClient sse = sseIterator.next();
-				if (sse.isClosed()) {
-					sseIterator.remove();
-				} else {
-					sse.sendMessage(message);
-				}
-			}
-		}
+		broadcast(SSE_SHARED_INSTANCES, message, true, null);
 	}
 
 	/**
@@ -165,16 +147,18 @@ public class EventSourceServer {
 	 * @param message
 	 */
 	public static void broadcastAboutMessage(String message) {
-		synchronized (SSE_ABOUT_INSTANCES) {
-			for (Iterator<EventSourceClient> sseIterator = SSE_ABOUT_INSTANCES.iterator(); sseIterator.hasNext();) {
-				EventSourceClient sse = sseIterator.next();
-				if (sse.isClosed()) {
-					sseIterator.remove();
-				} else {
-					sse.sendMessage(message);
-				}
-			}
-		}
+		broadcastAboutMessage(message, null);
+	}
+
+	/**
+	 * Broadcast a message to about page Server Sent Events Streams, replacing
+	 * the one with the same key not sent yet.
+	 *
+	 * @param message
+	 * @param coalesceKey
+	 */
+	public static void broadcastAboutMessage(String message, String coalesceKey) {
+		broadcast(SSE_ABOUT_INSTANCES, message, true, coalesceKey);
 	}
 
 	/**
@@ -183,16 +167,18 @@ public class EventSourceServer {
 	 * @param message
 	 */
 	public static void broadcastHomeMessage(String message) {
-		synchronized (SSE_HOME_INSTANCES) {
-			for (Iterator<EventSourceClient> sseIterator = SSE_HOME_INSTANCES.iterator(); sseIterator.hasNext();) {
-				EventSourceClient sse = sseIterator.next();
-				if (sse.isClosed()) {
-					sseIterator.remove();
-				} else {
-					sse.sendMessage(message);
-				}
-			}
-		}
+		broadcastHomeMessage(message, null);
+	}
+
+	/**
+	 * Broadcast a message to home page Server Sent Events Streams, replacing
+	 * the one with the same key not sent yet.
+	 *
+	 * @param message
+	 * @param coalesceKey
+	 */
+	public static void broadcastHomeMessage(String message, String coalesceKey) {
+		broadcast(SSE_HOME_INSTANCES, message, true, coalesceKey);
 	}
 
 	/**
@@ -201,14 +187,22 @@ public class EventSourceServer {
 	 * @param message
 	 */
 	public static void broadcastLogsMessage(String message) {
-		synchronized (SSE_LOGS_INSTANCES) {
-			for (Iterator<EventSourceClient> sseIterator = SSE_LOGS_INSTANCES.iterator(); sseIterator.hasNext();) {
+		//never log a log message
+		broadcast(SSE_LOGS_INSTANCES, message, false, null);
+	}
+
+	/**
+	 * Queues a message to the open streams of a page. The streams write it
+	 * on their own thread, so this never waits for a browser.
+	 */
+	private static void broadcast(List<EventSourceClient> sses, String message, boolean log, String coalesceKey) {
+		synchronized (sses) {
+			for (Iterator<EventSourceClient> sseIterator = sses.iterator(); sseIterator.hasNext();) {
 				EventSourceClient sse = sseIterator.next();
 				if (sse.isClosed()) {
 					sseIterator.remove();
 				} else {
-					//never log a log message
-					sse.sendMessage(message, false);
+					sse.sendMessage(message, log, coalesceKey);
 				}
 			}
 		}
@@ -337,7 +331,7 @@ public class EventSourceServer {
 	public static void setMemoryUsage(int maxMemory, int usedMemory, int dbCacheMemory, int bufferMemory) {
 		if (hasAboutServerSentEvents()) {
 			String json = "{\"action\":\"update_memory\",\"max\":" + maxMemory + ",\"used\":" + usedMemory + ",\"dbcache\":" + dbCacheMemory + ",\"buffer\":" + bufferMemory + "}";
-			broadcastAboutMessage(json);
+			broadcastAboutMessage(json, "update_memory");
 		}
 	}
 
@@ -27,6 +27,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import net.pms.PMS;
 import net.pms.configuration.UmsConfiguration;
 import net.pms.gui.IRendererGuiListener;
+import net.pms.network.TransferStats;
 import net.pms.renderers.Renderer;
 import net.pms.renderers.devices.players.PlayerState;
 import net.pms.store.StoreItem;
@@ -176,6 +177,13 @@ public class RendererItem implements IRendererGuiListener {
 				}
 			}
 		}
+		long throughput = TransferStats.getLastThroughput(renderer.getAddress());
+		if (throughput >= 0) {
+			entryObject = new JsonObject();
+			entryObject.addProperty("key", "i18n@LastTransferSpeed");
+			entryObject.addProperty("value", StringUtil.formatBytes(throughput, true) + "/s");
+			detailsArray.add(entryObject);
+		}
 		result.add("details", detailsArray);
 		return result;
 	}
@@ -269,7 +277,9 @@ public class RendererItem implements IRendererGuiListener {
 		if (EventSourceServer.hasHomeServerSentEvents()) {
 			JsonObject result = toJsonObject();
 			result.addProperty("action", action);
-			EventSourceServer.broadcastHomeMessage(result.toString());
+			// only the last update of a renderer matters
+			String coalesceKey = ACTION_UPDATE.equals(action) ? ACTION_UPDATE + id : null;
+			EventSourceServer.broadcastHomeMessage(result.toString(), coalesceKey);
 		}
 	}
 
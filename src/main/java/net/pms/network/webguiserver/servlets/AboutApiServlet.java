@@ -26,9 +26,11 @@ import net.pms.PMS;
 import net.pms.iam.Account;
 import net.pms.iam.AuthService;
 import net.pms.iam.Permissions;
+import net.pms.network.TransferStats;
 import net.pms.network.webguiserver.GuiHttpServlet;
 import net.pms.platform.PlatformUtils;
 import net.pms.util.PropertiesUtil;
+import net.pms.util.RequestExecutorService;
 import net.pms.util.StringUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -78,6 +80,10 @@ public class AboutApiServlet extends GuiHttpServlet {
 					jsonResponse.addProperty("operatingSystem", getOperatingSystem());
 					jsonResponse.addProperty("systemMemorySize", getSystemMemorySize());
 					jsonResponse.addProperty("jvmMemoryMax", getJavaMemoryMax());
+					jsonResponse.addProperty("dataSent", StringUtil.formatBytes(TransferStats.getTotalBytes(), true));
+					jsonResponse.addProperty("averageTransferSpeed", StringUtil.formatBytes(TransferStats.getAverageThroughput(), true) + "/s");
+					jsonResponse.addProperty("requestsInFlight", RequestExecutorService.getTotalInFlight());
+					jsonResponse.addProperty("peakRequestsInFlight", RequestExecutorService.getTotalPeakInFlight());
 				}
 				respond(req, resp, jsonResponse.toString(), 200, "application/json");
 			} else {
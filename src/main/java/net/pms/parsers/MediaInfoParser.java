@@ -29,7 +29,9 @@ import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
+import net.pms.PMS;
 import net.pms.configuration.FormatConfiguration;
+import net.pms.configuration.UmsConfiguration;
 import net.pms.dlna.DLNAThumbnail;
 import net.pms.formats.Format;
 import net.pms.formats.v2.SubtitleType;
@@ -44,6 +46,7 @@ import net.pms.media.subtitle.MediaSubtitle;
 import net.pms.media.video.MediaVideo;
 import net.pms.parsers.mediainfo.InfoKind;
 import net.pms.parsers.mediainfo.MediaInfoHelper;
+import net.pms.parsers.mediainfo.MediaInfoHelperPool;
 import net.pms.parsers.mediainfo.MediaInfoParseLogger;
 import net.pms.parsers.mediainfo.StreamAudio;
 import net.pms.parsers.mediainfo.StreamContainer;
@@ -78,18 +81,13 @@ public class MediaInfoParser {
 
 	public static final String PARSER_NAME;
 
+	private static final Version JSON_OUTPUT_VERSION = new Version("18.03");
+	private static MediaInfoHelperPool pool;
+
 	static {
-		MI = new MediaInfoHelper();
+		MI = createHandle();
 
 		if (MI.isValid()) {
-			//by default, MediaInfo will ignore not known option, so do not check for version.
-			MI.option("Internet", "No"); // avoid MediaInfoLib to try to connect to an Internet server for availability of newer software, anonymous statistics and retrieving information about a file
-			MI.option("Complete", "1");
-			MI.option("Language", "en");
-			MI.option("File_TestContinuousFileNames", "0");
-			MI.option("ReadByHuman", "0");
-			MI.option("Cover_Data", "base64");
-			MI.option("File_HighestFormat", "0");
 			Matcher matcher = Pattern.compile("MediaInfoLib - v(\\S+)", Pattern.CASE_INSENSITIVE).matcher(MI.option("Info_Version"));
 			if (matcher.find() && StringUtils.isNotBlank(matcher.group(1))) {
 				VERSION = new Version(matcher.group(1));
@@ -109,6 +107,46 @@ public class MediaInfoParser {
 	private MediaInfoParser() {
 	}
 
+	private static MediaInfoHelper createHandle() {
+		MediaInfoHelper mi = new MediaInfoHelper();
+		if (mi.isValid()) {
+			//by default, MediaInfo will ignore not known option, so do not check for version.
+			mi.option("Internet", "No"); // avoid MediaInfoLib to try to connect to an Internet server for availability of newer software, anonymous statistics and retrieving information about a file
+			mi.option("Complete", "1");
+			mi.option("Language", "en");
+			mi.option("File_TestContinuousFileNames", "0");
+			mi.option("ReadByHuman", "0");
+			mi.option("Cover_Data", "base64");
+			mi.option("File_HighestFormat", "0");
+			// only used by the bulk extraction
+			mi.option("Inform", "JSON");
+		}
+		return mi;
+	}
+
+	/**
+	 * @return whether all the fields of a file are read with a single call
+	 *         to the library.
+	 */
+	private static boolean isBulkExtraction() {
+		UmsConfiguration configuration = PMS.getConfiguration();
+		return configuration != null && configuration.isMediaInfoBulkExtraction() &&
+			VERSION != null && VERSION.isGreaterThanOrEqualTo(JSON_OUTPUT_VERSION);
+	}
+
+	/**
+	 * @return the pool of MediaInfo handles used to parse files.
+	 */
+	public static synchronized MediaInfoHelperPool getPool() {
+		if (pool == null) {
+			UmsConfiguration configuration = PMS.getConfiguration();
+			int size = configuration != null ? configuration.getMediaInfoPoolSize() : Runtime.getRuntime().availableProcessors();
+			pool = new MediaInfoHelperPool(size, MediaInfoParser::createHandle);
+			pool.add(MI);
+		}
+		return pool;
+	}
+
 	public static boolean isValid() {
 		return MI.isValid() && !blocked;
 	}
@@ -132,8 +170,11 @@ public class MediaInfoParser {
 
 	/**
 	 * Parse media via MediaInfoHelper.
+	 *
+	 * Each parse uses its own handle from the pool, so files are parsed in
+	 * parallel up to the pool size.
 	 */
-	public static synchronized void parse(MediaInfo media, File file, int type) {
+	public static void parse(MediaInfo media, File file, int type) {
 		media.waitMediaParsing(5);
 		media.setParsing(true);
 		if (file == null || media.isMediaParsed() || !MI.isValid()) {
@@ -141,9 +182,29 @@ public class MediaInfoParser {
 			return;
 		}
 
-		MediaInfoParseLogger parseLogger = LOGGER.isTraceEnabled() ? new MediaInfoParseLogger(MI) : null;
-		boolean fileOpened = MI.openFile(file.getAbsolutePath()) > 0;
+		MediaInfoHelper mi = getPool().checkout();
+		if (mi == null) {
+			media.setParsing(false);
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			parse(mi, media, file, type);
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			getPool().checkin(mi, elapsed);
+			LOGGER.trace("Parsed \"{}\" with MediaInfo in {} ms", file.getName(), elapsed / 1_000_000);
+			media.setParsing(false);
+		}
+	}
+
+	private static void parse(MediaInfoHelper mi, MediaInfo media, File file, int type) {
+		MediaInfoParseLogger parseLogger = LOGGER.isTraceEnabled() ? new MediaInfoParseLogger(mi) : null;
+		boolean fileOpened = mi.openFile(file.getAbsolutePath()) > 0;
 		if (fileOpened) {
+			if (isBulkExtraction() && !mi.loadSnapshot()) {
+				LOGGER.debug("Reading the fields of \"{}\" one by one", file.getName());
+			}
 			MediaAudio currentAudioTrack = new MediaAudio();
 			MediaVideo currentVideoTrack = new MediaVideo();
 			MediaSubtitle currentSubTrack;
@@ -154,22 +215,22 @@ public class MediaInfoParser {
 			Long longValue;
 
 			// set Container
-			setFormat(StreamKind.GENERAL, media, currentVideoTrack, currentAudioTrack, StreamContainer.getFormat(MI, 0), file);
-			setFormat(StreamKind.GENERAL, media, currentVideoTrack, currentAudioTrack, StreamContainer.getCodecID(MI, 0).trim(), file);
-			doubleValue = StreamContainer.getDuration(MI, 0);
+			setFormat(StreamKind.GENERAL, media, currentVideoTrack, currentAudioTrack, StreamContainer.getFormat(mi, 0), file);
+			setFormat(StreamKind.GENERAL, media, currentVideoTrack, currentAudioTrack, StreamContainer.getCodecID(mi, 0).trim(), file);
+			doubleValue = StreamContainer.getDuration(mi, 0);
 			if (doubleValue != null) {
 				//for some reason UMS store only seconds.
 				media.setDuration(doubleValue / 1000);
 			}
-			media.setBitRate(getIntValue(StreamContainer.getOverallBitRate(MI, 0), 0));
-			media.setTitle(StreamContainer.getTitle(MI, 0));
+			media.setBitRate(getIntValue(StreamContainer.getOverallBitRate(mi, 0), 0));
+			media.setTitle(StreamContainer.getTitle(mi, 0));
 
 			if (parseLogger != null) {
 				parseLogger.logGeneralColumns(file);
 			}
 
 			// set cover
-			value = StreamContainer.getCoverData(MI, 0);
+			value = StreamContainer.getCoverData(mi, 0);
 			if (!value.isEmpty()) {
 				try {
 					DLNAThumbnail thumbnail = DLNAThumbnail.toThumbnail(
@@ -199,16 +260,16 @@ public class MediaInfoParser {
 			}
 
 			// set Chapters
-			if (MI.countGet(StreamKind.MENU, 0) > 0) {
-				Long chaptersPosBeginLong = StreamMenu.getChaptersPosBegin(MI, 0);
-				Long chaptersPosEndLong = StreamMenu.getChaptersPosEnd(MI, 0);
+			if (mi.countGet(StreamKind.MENU, 0) > 0) {
+				Long chaptersPosBeginLong = StreamMenu.getChaptersPosBegin(mi, 0);
+				Long chaptersPosEndLong = StreamMenu.getChaptersPosEnd(mi, 0);
 				if (chaptersPosBeginLong != null && chaptersPosEndLong != null) {
 					int chaptersPosBegin = chaptersPosBeginLong.intValue();
 					int chaptersPosEnd = chaptersPosEndLong.intValue();
 					List<MediaChapter> chapters = new ArrayList<>();
 					for (int i = chaptersPosBegin; i <= chaptersPosEnd; i++) {
-						String chapterName = MI.get(StreamKind.MENU, 0, i, InfoKind.NAME);
-						String chapterTitle = MI.get(StreamKind.MENU, 0, i, InfoKind.TEXT);
+						String chapterName = mi.get(StreamKind.MENU, 0, i, InfoKind.NAME);
+						String chapterTitle = mi.get(StreamKind.MENU, 0, i, InfoKind.TEXT);
 						if (!chapterName.isEmpty()) {
 							MediaChapter chapter = new MediaChapter();
 							LocalTime lt;
@@ -251,41 +312,41 @@ public class MediaInfoParser {
 			}
 
 			// set Video
-			Long videoTrackCount = StreamVideo.getStreamCount(MI, 0);
+			Long videoTrackCount = StreamVideo.getStreamCount(mi, 0);
 			if (videoTrackCount != null && videoTrackCount > 0) {
 				for (int i = 0; i < videoTrackCount; i++) {
 					// check for DXSA and DXSB subtitles (subs in video format)
-					if (StreamVideo.getTitle(MI, i).startsWith("Subtitle")) {
+					if (StreamVideo.getTitle(mi, i).startsWith("Subtitle")) {
 						currentSubTrack = new MediaSubtitle();
 						// First attempt to detect subtitle track format
-						currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(StreamVideo.getFormat(MI, i)));
+						currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(StreamVideo.getFormat(mi, i)));
 						// Second attempt to detect subtitle track format (CodecID usually is more accurate)
-						currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(StreamVideo.getCodecID(MI, i),
+						currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(StreamVideo.getCodecID(mi, i),
 							currentSubTrack.getType()
 						));
 						currentSubTrack.setId(media.getSubtitlesTracks().size());
-						longValue = StreamVideo.getStreamOrder(MI, i);
+						longValue = StreamVideo.getStreamOrder(mi, i);
 						if (longValue != null) {
 							currentSubTrack.setStreamOrder(longValue.intValue());
 						}
-						currentSubTrack.setDefault("Yes".equals(StreamVideo.getDefault(MI, i)));
-						currentSubTrack.setForced("Yes".equals(StreamVideo.getForced(MI, i)));
+						currentSubTrack.setDefault("Yes".equals(StreamVideo.getDefault(mi, i)));
+						currentSubTrack.setForced("Yes".equals(StreamVideo.getForced(mi, i)));
 						addSubtitlesTrack(currentSubTrack, media);
 					} else {
 						currentVideoTrack = new MediaVideo();
 						currentVideoTrack.setId(i);
-						setFormat(StreamKind.VIDEO, media, currentVideoTrack, currentAudioTrack, StreamVideo.getFormat(MI, i), file);
-						setFormat(StreamKind.VIDEO, media, currentVideoTrack, currentAudioTrack, StreamVideo.getFormatVersion(MI, i), file);
-						setFormat(StreamKind.VIDEO, media, currentVideoTrack, currentAudioTrack, StreamVideo.getCodecID(MI, i), file);
-						longValue = StreamVideo.getStreamOrder(MI, i);
+						setFormat(StreamKind.VIDEO, media, currentVideoTrack, currentAudioTrack, StreamVideo.getFormat(mi, i), file);
+						setFormat(StreamKind.VIDEO, media, currentVideoTrack, currentAudioTrack, StreamVideo.getFormatVersion(mi, i), file);
+						setFormat(StreamKind.VIDEO, media, currentVideoTrack, currentAudioTrack, StreamVideo.getCodecID(mi, i), file);
+						longValue = StreamVideo.getStreamOrder(mi, i);
 						if (longValue != null) {
 							currentVideoTrack.setStreamOrder(longValue.intValue());
 						}
-						currentVideoTrack.setDefault("Yes".equals(StreamVideo.getDefault(MI, i)));
-						currentVideoTrack.setForced("Yes".equals(StreamVideo.getForced(MI, i)));
-						currentVideoTrack.setWidth(StreamVideo.getWidth(MI, i).intValue());
-						currentVideoTrack.setHeight(StreamVideo.getHeight(MI, i).intValue());
-						doubleValue = StreamVideo.getDuration(MI, i);
+						currentVideoTrack.setDefault("Yes".equals(StreamVideo.getDefault(mi, i)));
+						currentVideoTrack.setForced("Yes".equals(StreamVideo.getForced(mi, i)));
+						currentVideoTrack.setWidth(StreamVideo.getWidth(mi, i).intValue());
+						currentVideoTrack.setHeight(StreamVideo.getHeight(mi, i).intValue());
+						doubleValue = StreamVideo.getDuration(mi, i);
 						if (doubleValue == null) {
 							doubleValue = media.getDuration();
 						} else {
@@ -293,8 +354,8 @@ public class MediaInfoParser {
 							doubleValue = doubleValue / 1000;
 						}
 						currentVideoTrack.setDuration(doubleValue);
-						currentVideoTrack.setBitRate(getIntValue(StreamVideo.getBitRate(MI, i), 0));
-						value = StreamVideo.getFormatProfile(MI, i);
+						currentVideoTrack.setBitRate(getIntValue(StreamVideo.getBitRate(mi, i), 0));
+						value = StreamVideo.getFormatProfile(mi, i);
 						if (!value.isEmpty()) {
 							String[] profile = getFormatProfile(value);
 							if (profile[0] != null) {
@@ -307,63 +368,63 @@ public class MediaInfoParser {
 								currentVideoTrack.setFormatTier(profile[2]);
 							}
 						}
-						currentVideoTrack.setMatrixCoefficients(StreamVideo.getmatrixcoefficients(MI, i));
-						currentVideoTrack.setMultiViewLayout(StreamVideo.getMultiViewLayout(MI, i));
-						currentVideoTrack.setPixelAspectRatio(StreamVideo.getPixelAspectRatio(MI, i));
-						currentVideoTrack.setScanType(StreamVideo.getScanType(MI, i));
-						currentVideoTrack.setScanOrder(StreamVideo.getScanOrder(MI, i));
-						currentVideoTrack.setDisplayAspectRatio(StreamVideo.getDisplayAspectRatioString(MI, i));
-						currentVideoTrack.setOriginalDisplayAspectRatio(StreamVideo.getDisplayAspectRatioOriginalString(MI, i));
-						currentVideoTrack.setFrameRate(StreamVideo.getFrameRate(MI, i));
+						currentVideoTrack.setMatrixCoefficients(StreamVideo.getmatrixcoefficients(mi, i));
+						currentVideoTrack.setMultiViewLayout(StreamVideo.getMultiViewLayout(mi, i));
+						currentVideoTrack.setPixelAspectRatio(StreamVideo.getPixelAspectRatio(mi, i));
+						currentVideoTrack.setScanType(StreamVideo.getScanType(mi, i));
+						currentVideoTrack.setScanOrder(StreamVideo.getScanOrder(mi, i));
+						currentVideoTrack.setDisplayAspectRatio(StreamVideo.getDisplayAspectRatioString(mi, i));
+						currentVideoTrack.setOriginalDisplayAspectRatio(StreamVideo.getDisplayAspectRatioOriginalString(mi, i));
+						currentVideoTrack.setFrameRate(StreamVideo.getFrameRate(mi, i));
 						// for some reason, this is not store in DB.
-						currentVideoTrack.setFrameRateModeOriginal(StreamVideo.getFrameRateModeOriginal(MI, i));
+						currentVideoTrack.setFrameRateModeOriginal(StreamVideo.getFrameRateModeOriginal(mi, i));
 						// for some reason, this is not store in DB.
-						currentVideoTrack.setFrameRateMode(getFrameRateModeValue(StreamVideo.getFrameRateMode(MI, i)));
+						currentVideoTrack.setFrameRateMode(getFrameRateModeValue(StreamVideo.getFrameRateMode(mi, i)));
 						// for some reason, this is not store in DB.
-						currentVideoTrack.setFrameRateModeRaw(StreamVideo.getFrameRateMode(MI, i));
-						currentVideoTrack.setReferenceFrameCount(getByteValue(StreamVideo.getFormatSettingsRefFrames(MI, i), (byte) -1));
-						currentVideoTrack.setTitle(StreamVideo.getTitle(MI, i));
+						currentVideoTrack.setFrameRateModeRaw(StreamVideo.getFrameRateMode(mi, i));
+						currentVideoTrack.setReferenceFrameCount(getByteValue(StreamVideo.getFormatSettingsRefFrames(mi, i), (byte) -1));
+						currentVideoTrack.setTitle(StreamVideo.getTitle(mi, i));
 						// for some reason, this is not store in DB.
-						value = StreamVideo.getFormatSettingsQPel(MI, i);
+						value = StreamVideo.getFormatSettingsQPel(mi, i);
 						if (!value.isEmpty()) {
 							currentVideoTrack.putExtra(FormatConfiguration.MI_QPEL, value);
 						}
 						// for some reason, this is not store in DB.
-						value = StreamVideo.getFormatSettingsGMCString(MI, i);
+						value = StreamVideo.getFormatSettingsGMCString(mi, i);
 						if (!value.isEmpty()) {
 							currentVideoTrack.putExtra(FormatConfiguration.MI_GMC, value);
 						}
 						// for some reason, this is not store in DB.
-						value = StreamVideo.getFormatSettingsGOP(MI, i);
+						value = StreamVideo.getFormatSettingsGOP(mi, i);
 						if (!value.isEmpty()) {
 							currentVideoTrack.putExtra(FormatConfiguration.MI_GOP, value);
 						}
 
-						currentVideoTrack.setMuxingMode(StreamVideo.getMuxingMode(MI, i));
+						currentVideoTrack.setMuxingMode(StreamVideo.getMuxingMode(mi, i));
 						// for some reason, this is not store in DB.
-						currentVideoTrack.setEncrypted("encrypted".equals(StreamVideo.getEncryption(MI, i)));
+						currentVideoTrack.setEncrypted("encrypted".equals(StreamVideo.getEncryption(mi, i)));
 
-						longValue = StreamVideo.getBitDepth(MI, i);
+						longValue = StreamVideo.getBitDepth(mi, i);
 						if (longValue != null) {
 							currentVideoTrack.setBitDepth(longValue.intValue());
 						}
 
-						value = StreamVideo.getHDRFormat(MI, i);
+						value = StreamVideo.getHDRFormat(mi, i);
 						if (!value.isEmpty()) {
 							currentVideoTrack.setHDRFormat(value);
 						}
 
-						value = StreamVideo.getHDRFormatCompatibility(MI, i);
+						value = StreamVideo.getHDRFormatCompatibility(mi, i);
 						if (!value.isEmpty()) {
 							currentVideoTrack.setHDRFormatCompatibility(value);
 						}
 
-						value = StreamVideo.getLanguageString3(MI, i);
+						value = StreamVideo.getLanguageString3(mi, i);
 						if (StringUtils.isNotBlank(value)) {
 							currentVideoTrack.setLang(Iso639.getISO639_2Code(value));
 						}
 
-						value = StreamVideo.getID(MI, i);
+						value = StreamVideo.getID(mi, i);
 						if (StringUtils.isNotBlank(value)) {
 							currentVideoTrack.setOptionalId(getSpecificID(value));
 						}
@@ -377,46 +438,46 @@ public class MediaInfoParser {
 			}
 
 			// set Audio
-			Long audioTracks = StreamAudio.getStreamCount(MI, 0);
+			Long audioTracks = StreamAudio.getStreamCount(mi, 0);
 			if (audioTracks != null && audioTracks > 0) {
 				for (int i = 0; i < audioTracks; i++) {
 					currentAudioTrack = new MediaAudio();
 					currentAudioTrack.setId(i);
-					longValue = StreamAudio.getStreamOrder(MI, i);
+					longValue = StreamAudio.getStreamOrder(mi, i);
 					if (longValue != null) {
 						currentAudioTrack.setStreamOrder(longValue.intValue());
 					}
-					currentAudioTrack.setDefault("Yes".equals(StreamAudio.getDefault(MI, i)));
-					currentAudioTrack.setForced("Yes".equals(StreamAudio.getForced(MI, i)));
-					setFormat(StreamKind.AUDIO, media, currentVideoTrack, currentAudioTrack, StreamAudio.getFormat(MI, i), file);
-					setFormat(StreamKind.AUDIO, media, currentVideoTrack, currentAudioTrack, StreamAudio.getFormatVersion(MI, i), file);
-					setFormat(StreamKind.AUDIO, media, currentVideoTrack, currentAudioTrack, StreamAudio.getFormatProfile(MI, i), file);
-					setFormat(StreamKind.AUDIO, media, currentVideoTrack, currentAudioTrack, StreamAudio.getCodecID(MI, i), file);
-					value = StreamAudio.getCodecIDDescription(MI, i);
+					currentAudioTrack.setDefault("Yes".equals(StreamAudio.getDefault(mi, i)));
+					currentAudioTrack.setForced("Yes".equals(StreamAudio.getForced(mi, i)));
+					setFormat(StreamKind.AUDIO, media, currentVideoTrack, currentAudioTrack, StreamAudio.getFormat(mi, i), file);
+					setFormat(StreamKind.AUDIO, media, currentVideoTrack, currentAudioTrack, StreamAudio.getFormatVersion(mi, i), file);
+					setFormat(StreamKind.AUDIO, media, currentVideoTrack, currentAudioTrack, StreamAudio.getFormatProfile(mi, i), file);
+					setFormat(StreamKind.AUDIO, media, currentVideoTrack, currentAudioTrack, StreamAudio.getCodecID(mi, i), file);
+					value = StreamAudio.getCodecIDDescription(mi, i);
 					if (StringUtils.isNotBlank(value) && value.startsWith("Windows Media Audio 10")) {
 						currentAudioTrack.setCodec(FormatConfiguration.WMA10);
 					}
 
 					String languageCode = null;
-					value = StreamAudio.getLanguageString3(MI, i);
+					value = StreamAudio.getLanguageString3(mi, i);
 					if (StringUtils.isNotBlank(value)) {
 						languageCode = Iso639.getISO639_2Code(value);
 						currentAudioTrack.setLang(languageCode);
 					}
 
-					value = StreamAudio.getTitle(MI, i).trim();
+					value = StreamAudio.getTitle(mi, i).trim();
 					currentAudioTrack.setTitle(value);
 					// if language code is null try to recognize the language from Title
 					if (languageCode == null && StringUtils.isNotBlank(value)) {
 						languageCode = Iso639.getISO639_2Code(value, true);
 						currentAudioTrack.setLang(languageCode);
 					}
-					currentAudioTrack.setNumberOfChannels(getIntValue(StreamAudio.getChannels(MI, i), MediaAudio.DEFAULT_NUMBER_OF_CHANNELS));
-					currentAudioTrack.setSampleRate(getIntValue(StreamAudio.getSamplingRate(MI, i), MediaAudio.DEFAULT_SAMPLE_RATE));
-					currentAudioTrack.setBitRate(getIntValue(StreamAudio.getBitRate(MI, i), 0));
-					currentAudioTrack.setVideoDelay(getIntValue(StreamAudio.getVideoDelay(MI, i), 0));
-					currentAudioTrack.setBitDepth(getIntValue(StreamAudio.getBitDepth(MI, i), MediaAudio.DEFAULT_BIT_DEPTH));
-					value = StreamAudio.getID(MI, i);
+					currentAudioTrack.setNumberOfChannels(getIntValue(StreamAudio.getChannels(mi, i), MediaAudio.DEFAULT_NUMBER_OF_CHANNELS));
+					currentAudioTrack.setSampleRate(getIntValue(StreamAudio.getSamplingRate(mi, i), MediaAudio.DEFAULT_SAMPLE_RATE));
+					currentAudioTrack.setBitRate(getIntValue(StreamAudio.getBitRate(mi, i), 0));
+					currentAudioTrack.setVideoDelay(getIntValue(StreamAudio.getVideoDelay(mi, i), 0));
+					currentAudioTrack.setBitDepth(getIntValue(StreamAudio.getBitDepth(mi, i), MediaAudio.DEFAULT_BIT_DEPTH));
+					value = StreamAudio.getID(mi, i);
 					if (StringUtils.isNotBlank(value)) {
 						currentAudioTrack.setOptionalId(getSpecificID(value));
 					}
@@ -428,7 +489,7 @@ public class MediaInfoParser {
 			}
 
 			// set Image
-			Long imageCount = StreamImage.getStreamCount(MI, 0);
+			Long imageCount = StreamImage.getStreamCount(mi, 0);
 			if (imageCount != null) {
 				media.setImageCount(imageCount.intValue());
 			}
@@ -451,7 +512,7 @@ public class MediaInfoParser {
 				}
 
 				if (parseByMediainfo) {
-					setFormat(StreamKind.IMAGE, media, currentVideoTrack, currentAudioTrack, StreamImage.getFormat(MI, 0), file);
+					setFormat(StreamKind.IMAGE, media, currentVideoTrack, currentAudioTrack, StreamImage.getFormat(mi, 0), file);
 				}
 
 				if (parseLogger != null) {
@@ -460,22 +521,22 @@ public class MediaInfoParser {
 			}
 
 			// set Subs in text format
-			Long subTrackCount = StreamSubtitle.getStreamCount(MI, 0);
+			Long subTrackCount = StreamSubtitle.getStreamCount(mi, 0);
 			if (subTrackCount != null && subTrackCount > 0) {
 				for (int i = 0; i < subTrackCount; i++) {
 					currentSubTrack = new MediaSubtitle();
-					currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(StreamSubtitle.getCodecID(MI, i),
-						SubtitleType.valueOfMediaInfoValue(StreamSubtitle.getFormat(MI, i))
+					currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(StreamSubtitle.getCodecID(mi, i),
+						SubtitleType.valueOfMediaInfoValue(StreamSubtitle.getFormat(mi, i))
 					));
 					currentSubTrack.setId(media.getSubtitlesTracks().size());
 					String languageCode = null;
-					value = StreamSubtitle.getLanguageString3(MI, i);
+					value = StreamSubtitle.getLanguageString3(mi, i);
 					if (StringUtils.isNotBlank(value)) {
 						languageCode = Iso639.getISO639_2Code(value);
 						currentSubTrack.setLang(languageCode);
 					}
 
-					value = StreamSubtitle.getTitle(MI, i).trim();
+					value = StreamSubtitle.getTitle(mi, i).trim();
 					currentSubTrack.setTitle(value);
 					// if language code is null try to recognize the language from Title
 					if (languageCode == null && StringUtils.isNotBlank(value)) {
@@ -484,12 +545,12 @@ public class MediaInfoParser {
 					}
 
 					// Special check for OGM: MediaInfoHelper reports specific Audio/Subs IDs (0xn) while mencoder/FFmpeg does not
-					value = StreamSubtitle.getID(MI, i);
+					value = StreamSubtitle.getID(mi, i);
 					if (StringUtils.isNotBlank(value)) {
 						currentSubTrack.setOptionalId(getSpecificID(value));
 					}
-					currentSubTrack.setDefault("Yes".equals(StreamSubtitle.getDefault(MI, i)));
-					currentSubTrack.setForced("Yes".equals(StreamSubtitle.getForced(MI, i)));
+					currentSubTrack.setDefault("Yes".equals(StreamSubtitle.getDefault(mi, i)));
+					currentSubTrack.setForced("Yes".equals(StreamSubtitle.getForced(mi, i)));
 
 					addSubtitlesTrack(currentSubTrack, media);
 					if (parseLogger != null) {
@@ -542,7 +603,7 @@ public class MediaInfoParser {
 			}
 
 			if (media.isAudio()) {
-				media.setAudioMetadata(parseFileForAudioMetadata(file, media));
+				media.setAudioMetadata(parseFileForAudioMetadata(mi, file, media));
 			}
 
 			Parser.postParse(media, type);
@@ -550,7 +611,7 @@ public class MediaInfoParser {
 				LOGGER.trace("{}", parseLogger);
 			}
 
-			MI.closeFile();
+			mi.closeFile();
 			if (media.getContainer() == null) {
 				media.setContainer(MediaLang.UND);
 			}
@@ -558,7 +619,6 @@ public class MediaInfoParser {
 				media.setMediaParser(PARSER_NAME);
 			}
 		}
-		media.setParsing(false);
 	}
 
 	public static void addVideoTrack(MediaVideo currentVideoTrack, MediaInfo media) {
@@ -1190,29 +1250,29 @@ public class MediaInfoParser {
 		}
 	}
 
-	private static MediaAudioMetadata parseFileForAudioMetadata(File file, MediaInfo media) {
+	private static MediaAudioMetadata parseFileForAudioMetadata(MediaInfoHelper mi, File file, MediaInfo media) {
 		MediaAudioMetadata audioMetadata = new MediaAudioMetadata();
-		audioMetadata.setSongname(StreamContainer.getTrack(MI, 0));
-		audioMetadata.setAlbum(StreamContainer.getAlbum(MI, 0));
-		String albumArtists = MI.get(StreamKind.GENERAL, 0, "ALBUM_ARTISTS");
+		audioMetadata.setSongname(StreamContainer.getTrack(mi, 0));
+		audioMetadata.setAlbum(StreamContainer.getAlbum(mi, 0));
+		String albumArtists = mi.get(StreamKind.GENERAL, 0, "ALBUM_ARTISTS");
 		if (StringUtils.isAllBlank(albumArtists)) {
-			albumArtists = StreamContainer.getAlbumPerformer(MI, 0);
+			albumArtists = StreamContainer.getAlbumPerformer(mi, 0);
 		}
 		audioMetadata.setAlbumArtist(albumArtists);
-		String artists = MI.get(StreamKind.GENERAL, 0, "ARTISTS");
+		String artists = mi.get(StreamKind.GENERAL, 0, "ARTISTS");
 		if (StringUtils.isAllBlank(artists)) {
-			artists = StreamContainer.getPerformer(MI, 0);
+			artists = StreamContainer.getPerformer(mi, 0);
 		}
 		audioMetadata.setArtist(artists);
-		audioMetadata.setGenre(StreamContainer.getGenre(MI, 0));
-		audioMetadata.setComposer(StreamContainer.getComposer(MI, 0));
-		audioMetadata.setConductor(StreamContainer.getConductor(MI, 0));
-		Long longValue = StreamContainer.getTrackPosition(MI, 0);
+		audioMetadata.setGenre(StreamContainer.getGenre(mi, 0));
+		audioMetadata.setComposer(StreamContainer.getComposer(mi, 0));
+		audioMetadata.setConductor(StreamContainer.getConductor(mi, 0));
+		Long longValue = StreamContainer.getTrackPosition(mi, 0);
 		if (longValue != null) {
 			audioMetadata.setTrack(longValue.intValue());
 		}
 
-		String value = StreamContainer.getPart(MI, 0);
+		String value = StreamContainer.getPart(mi, 0);
 		if (!value.isEmpty()) {
 			try {
 				audioMetadata.setDisc(Integer.parseInt(value));
@@ -1222,7 +1282,7 @@ public class MediaInfoParser {
 		}
 
 		// Try to parse the year from the stored date
-		String recordedDate = StreamContainer.getRecordedDate(MI, 0);
+		String recordedDate = StreamContainer.getRecordedDate(mi, 0);
 		Matcher matcher = YEAR_PATTERN.matcher(recordedDate);
 		if (matcher.matches()) {
 			try {
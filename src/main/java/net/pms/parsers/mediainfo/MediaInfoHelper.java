@@ -19,6 +19,7 @@ package net.pms.parsers.mediainfo;
 import com.sun.jna.Platform;
 import com.sun.jna.Pointer;
 import com.sun.jna.WString;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,14 +29,23 @@ import org.slf4j.LoggerFactory;
 public class MediaInfoHelper implements AutoCloseable {
 	private static final Logger LOGGER = LoggerFactory.getLogger(MediaInfoHelper.class);
 
+	private static final AtomicBoolean LOADED = new AtomicBoolean();
+
 	private Pointer handle;
+	private MediaInfoSnapshot snapshot;
 
 	// Constructor/Destructor
 	public MediaInfoHelper() {
 		try {
-			LOGGER.info("Loading MediaInfo library");
-			handle = MediaInfoLibrary.INSTANCE.New();
-			LOGGER.info("Loaded {}", optionStatic("Info_Version"));
+			if (LOADED.get()) {
+				handle = MediaInfoLibrary.INSTANCE.New();
+				LOGGER.debug("Created a new MediaInfo handle");
+			} else {
+				LOGGER.info("Loading MediaInfo library");
+				handle = MediaInfoLibrary.INSTANCE.New();
+				LOGGER.info("Loaded {}", optionStatic("Info_Version"));
+				LOADED.set(true);
+			}
 
 			if (!Platform.isWindows()) {
 				LOGGER.debug("Setting MediaInfo library characterset to UTF-8");
@@ -79,6 +89,8 @@ public class MediaInfoHelper implements AutoCloseable {
 	 * @return 1 if file was opened, 0 if file was not not opened
 	 */
 	public int openFile(String fileName) {
+		// a pooled handle may not have been closed after a failed parse
+		snapshot = null;
 		return MediaInfoLibrary.INSTANCE.Open(handle, new WString(fileName));
 	}
 
@@ -87,9 +99,24 @@ public class MediaInfoHelper implements AutoCloseable {
 	 *
 	 */
 	public void closeFile() {
+		snapshot = null;
 		MediaInfoLibrary.INSTANCE.Close(handle);
 	}
 
+	/**
+	 * Reads all the fields of the opened file with a single {@code Inform()}
+	 * call. The following reads of known fields are then answered without
+	 * calling the library, until the file is closed.
+	 *
+	 * The handle must have its {@code Inform} option set to {@code JSON}.
+	 *
+	 * @return true if the fields were read.
+	 */
+	public boolean loadSnapshot() {
+		snapshot = MediaInfoSnapshot.parse(inform());
+		return snapshot != null;
+	}
+
 	// Information
 	/**
 	 * Get all details about a file.
@@ -141,6 +168,12 @@ public class MediaInfoHelper implements AutoCloseable {
 	 * @return a string about information you search, an empty string if there is a problem
 	 */
 	public String get(StreamKind streamType, int streamNumber, String parameter, InfoKind infoType, InfoKind searchType) {
+		if (snapshot != null && infoType == InfoKind.TEXT && searchType == InfoKind.NAME) {
+			String value = snapshot.get(streamType, streamNumber, parameter);
+			if (value != null) {
+				return value;
+			}
+		}
 		return MediaInfoLibrary.INSTANCE.Get(handle,
 			streamType.getValue(),
 			streamNumber,
@@ -223,6 +256,9 @@ public class MediaInfoHelper implements AutoCloseable {
 	 * @return number of Streams of the given Stream kind
 	 */
 	public int countGet(StreamKind streamType) {
+		if (snapshot != null) {
+			return snapshot.count(streamType);
+		}
 		return MediaInfoLibrary.INSTANCE.Count_Get(handle, streamType.getValue(), -1);
 	}
 
@@ -0,0 +1,165 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.parsers.mediainfo;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of {@link MediaInfoHelper} handles.
+ *
+ * A handle parses a single file at a time, so each parse checks out its own
+ * handle and returns it when done. Handles are created on demand up to the
+ * pool size, then parses wait for a handle to be returned.
+ */
+public class MediaInfoHelperPool {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaInfoHelperPool.class);
+
+	private final BlockingQueue<MediaInfoHelper> idle = new LinkedBlockingQueue<>();
+	private final Supplier<MediaInfoHelper> factory;
+	private final int size;
+	private final AtomicInteger created = new AtomicInteger();
+	private final AtomicInteger inUse = new AtomicInteger();
+	private final LongAdder parses = new LongAdder();
+	private final LongAdder parseNanos = new LongAdder();
+	private final AtomicLong maxParseNanos = new AtomicLong();
+
+	/**
+	 * @param size the maximum number of handles.
+	 * @param factory creates a new configured handle.
+	 */
+	public MediaInfoHelperPool(int size, Supplier<MediaInfoHelper> factory) {
+		this.size = Math.max(1, size);
+		this.factory = factory;
+	}
+
+	/**
+	 * Adds an already created handle to the pool.
+	 *
+	 * @param handle the handle.
+	 */
+	public void add(MediaInfoHelper handle) {
+		if (handle != null && handle.isValid()) {
+			created.incrementAndGet();
+			idle.offer(handle);
+		}
+	}
+
+	/**
+	 * Takes a handle out of the pool, waiting for one to be returned if all
+	 * of them are in use.
+	 *
+	 * @return the handle, or null if interrupted.
+	 */
+	public MediaInfoHelper checkout() {
+		MediaInfoHelper handle = idle.poll();
+		while (handle == null) {
+			int count = created.get();
+			if (count < size && created.compareAndSet(count, count + 1)) {
+				handle = factory.get();
+				if (handle == null || !handle.isValid()) {
+					// the library can't give more handles, do with the current ones
+					LOGGER.debug("Unable to create a new MediaInfo handle, keeping {}", count);
+					created.decrementAndGet();
+					handle = null;
+					if (count == 0) {
+						return null;
+					}
+				} else {
+					LOGGER.trace("Created MediaInfo handle {} of {}", count + 1, size);
+					break;
+				}
+			}
+			try {
+				handle = idle.poll(100, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		inUse.incrementAndGet();
+		return handle;
+	}
+
+	/**
+	 * Returns a handle to the pool and records the parse time.
+	 *
+	 * @param handle the handle taken with {@link #checkout()}.
+	 * @param elapsedNanos the time the handle was used for.
+	 */
+	public void checkin(MediaInfoHelper handle, long elapsedNanos) {
+		if (handle == null) {
+			return;
+		}
+		inUse.decrementAndGet();
+		parses.increment();
+		parseNanos.add(elapsedNanos);
+		maxParseNanos.accumulateAndGet(elapsedNanos, Math::max);
+		idle.offer(handle);
+	}
+
+	/**
+	 * @return the maximum number of handles.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of handles created so far.
+	 */
+	public int getCreatedCount() {
+		return created.get();
+	}
+
+	/**
+	 * @return the number of handles currently parsing.
+	 */
+	public int getInUseCount() {
+		return inUse.get();
+	}
+
+	/**
+	 * @return the number of parses done.
+	 */
+	public long getParseCount() {
+		return parses.sum();
+	}
+
+	/**
+	 * @return the average parse time in milliseconds.
+	 */
+	public double getAverageParseTime() {
+		long count = parses.sum();
+		return count == 0 ? 0 : parseNanos.sum() / (count * 1_000_000d);
+	}
+
+	/**
+	 * @return the longest parse time in milliseconds.
+	 */
+	public double getMaxParseTime() {
+		return maxParseNanos.get() / 1_000_000d;
+	}
+
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.parsers.mediainfo;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * All the fields of an opened file, read at once from the JSON output of
+ * MediaInfo {@code Inform()}.
+ *
+ * This avoids one native call for every field read. Fields not present in the
+ * JSON output, like the human readable {@code /String} variants, are not
+ * known to the snapshot and must still be read from the library.
+ */
+public class MediaInfoSnapshot {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaInfoSnapshot.class);
+
+	/**
+	 * The JSON output gives durations and delays in seconds, the library
+	 * gives them in milliseconds.
+	 */
+	private static final Pattern SECONDS_FIELD = Pattern.compile("^(Duration|Delay|Source_Duration|Source_Delay|Video_Delay|Video0_Delay)(_.*)?$");
+	private static final BigDecimal THOUSAND = BigDecimal.valueOf(1000);
+
+	private final Map<StreamKind, List<Map<String, String>>> streams = new EnumMap<>(StreamKind.class);
+
+	private MediaInfoSnapshot() {
+	}
+
+	/**
+	 * Returns the value of a field.
+	 *
+	 * @param streamType the kind of stream.
+	 * @param streamNumber the stream number in this kind of stream.
+	 * @param parameter the field name.
+	 * @return the value, or null if the snapshot does not know the field.
+	 */
+	public String get(StreamKind streamType, int streamNumber, String parameter) {
+		List<Map<String, String>> kindStreams = streams.get(streamType);
+		if (kindStreams == null || streamNumber < 0 || streamNumber >= kindStreams.size()) {
+			return null;
+		}
+		return kindStreams.get(streamNumber).get(parameter);
+	}
+
+	/**
+	 * @param streamType the kind of stream.
+	 * @return the number of streams of this kind.
+	 */
+	public int count(StreamKind streamType) {
+		List<Map<String, String>> kindStreams = streams.get(streamType);
+		return kindStreams == null ? 0 : kindStreams.size();
+	}
+
+	/**
+	 * Parses the JSON output of MediaInfo.
+	 *
+	 * @param json the {@code Inform()} output.
+	 * @return the snapshot, or null if the output can't be parsed.
+	 */
+	public static MediaInfoSnapshot parse(String json) {
+		if (json == null || json.isBlank()) {
+			return null;
+		}
+		MediaInfoSnapshot snapshot = new MediaInfoSnapshot();
+		try (JsonReader reader = new JsonReader(new StringReader(json))) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if ("media".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+					snapshot.readMedia(reader);
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+		} catch (IOException | IllegalStateException e) {
+			LOGGER.debug("Unable to parse MediaInfo JSON output: {}", e.getMessage());
+			LOGGER.trace("", e);
+			return null;
+		}
+		return snapshot;
+	}
+
+	private void readMedia(JsonReader reader) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if ("track".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					readTrack(reader);
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private void readTrack(JsonReader reader) throws IOException {
+		Map<String, String> fields = new HashMap<>();
+		reader.beginObject();
+		readFields(reader, fields);
+		reader.endObject();
+		StreamKind streamType = toStreamKind(fields.get("@type"));
+		if (streamType != null) {
+			streams.computeIfAbsent(streamType, kind -> new ArrayList<>()).add(fields);
+		}
+	}
+
+	private static void readFields(JsonReader reader, Map<String, String> fields) throws IOException {
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			switch (reader.peek()) {
+				case STRING, NUMBER -> fields.put(name, toLibraryValue(name, reader.nextString()));
+				case BOOLEAN -> fields.put(name, reader.nextBoolean() ? "Yes" : "No");
+				case BEGIN_OBJECT -> {
+					// "extra" holds the custom tags, the library gives them by name too
+					reader.beginObject();
+					readFields(reader, fields);
+					reader.endObject();
+				}
+				default -> reader.skipValue();
+			}
+		}
+	}
+
+	private static String toLibraryValue(String name, String value) {
+		if (SECONDS_FIELD.matcher(name).matches()) {
+			try {
+				return new BigDecimal(value).multiply(THOUSAND).stripTrailingZeros().toPlainString();
+			} catch (NumberFormatException e) {
+				// not a time, like Delay_Source
+			}
+		}
+		return value;
+	}
+
+	private static StreamKind toStreamKind(String type) {
+		if (type == null) {
+			return null;
+		}
+		return switch (type.toLowerCase(Locale.ROOT)) {
+			case "general" -> StreamKind.GENERAL;
+			case "video" -> StreamKind.VIDEO;
+			case "audio" -> StreamKind.AUDIO;
+			case "text" -> StreamKind.TEXT;
+			case "other" -> StreamKind.OTHER;
+			case "image" -> StreamKind.IMAGE;
+			case "menu" -> StreamKind.MENU;
+			default -> null;
+		};
+	}
+
+}
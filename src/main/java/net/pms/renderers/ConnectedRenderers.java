@@ -93,7 +93,12 @@ public class ConnectedRenderers {
 	 * @return
 	 */
 	public static Renderer getRenderer(InetAddress ia, String userAgentString, Collection<Map.Entry<String, String>> headers) {
-		Renderer renderer = null;
+		// Known renderers are recognized without waiting for the lock, which
+		// is only needed when the association may change
+		Renderer renderer = getRendererBySocketAddress(ia);
+		if (renderer != null && renderer.isLoaded()) {
+			return renderer;
+		}
 		RENDERER_LOCK.lock();
 		try {
 			// Attempt 1: try to recognize the renderer by its socket address from previous requests
@@ -187,7 +192,7 @@ public class ConnectedRenderers {
 
 	public static Renderer getRendererConfigurationByHeaders(SortedHeaderMap sortedHeaders, InetAddress ia) {
 		Renderer r = null;
-		RendererConfiguration ref = RendererConfigurations.getRendererConfigurationByHeaders(sortedHeaders);
+		RendererConfiguration ref = RendererConfigurations.getRendererConfigurationByHeaders(sortedHeaders, ia);
 		if (ref != null) {
 			boolean isNew = !ADDRESS_RENDERER_ASSOCIATION.containsKey(ia);
 			r = resolve(ia, ref);
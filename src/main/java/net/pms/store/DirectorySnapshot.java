@@ -0,0 +1,133 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import net.pms.store.SharedStoreTree.FolderListing;
+
+/**
+ * A compact summary of the content of a directory, used by the media scanner
+ * to find the directories that changed since the previous scan.
+ * <p>
+ * The modification time of a directory only changes when entries are added,
+ * removed or renamed, so the snapshot also keeps a hash of the name, size and
+ * modification time of every entry, catching the files modified in place.
+ */
+public final class DirectorySnapshot {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final String directory;
+	private final long modified;
+	private final int entries;
+	private final long hash;
+
+	public DirectorySnapshot(String directory, long modified, int entries, long hash) {
+		this.directory = directory;
+		this.modified = modified;
+		this.entries = entries;
+		this.hash = hash;
+	}
+
+	/**
+	 * @return the absolute path of the directory.
+	 */
+	public String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return the modification time of the directory.
+	 */
+	public long getModified() {
+		return modified;
+	}
+
+	/**
+	 * @return the number of entries of the directory.
+	 */
+	public int getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return the hash of the entries of the directory.
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Creates the snapshot of a directory from its listing.
+	 *
+	 * @param directory the directory.
+	 * @param listing the listing of the directory.
+	 * @return the snapshot.
+	 */
+	public static DirectorySnapshot create(File directory, FolderListing listing) {
+		List<File> files = new ArrayList<>(listing.getFiles());
+		if (listing.getPotentialCover() != null) {
+			files.add(listing.getPotentialCover());
+		}
+		files.sort(Comparator.comparing(File::getName));
+		long hash = FNV_OFFSET_BASIS;
+		for (File file : files) {
+			for (byte b : file.getName().getBytes(StandardCharsets.UTF_8)) {
+				hash = (hash ^ b) * FNV_PRIME;
+			}
+			hash = hash(hash, file.isDirectory() ? -1 : file.length());
+			hash = hash(hash, file.lastModified());
+		}
+		return new DirectorySnapshot(directory.getAbsolutePath(), listing.getLastModified(), files.size(), hash);
+	}
+
+	private static long hash(long hash, long value) {
+		for (int i = 0; i < Long.BYTES; i++) {
+			hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+			value >>>= 8;
+		}
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof DirectorySnapshot other)) {
+			return false;
+		}
+		return modified == other.modified && entries == other.entries && hash == other.hash && Objects.equals(directory, other.directory);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(directory, modified, entries, hash);
+	}
+
+	@Override
+	public String toString() {
+		return "DirectorySnapshot [directory=" + directory + ", modified=" + modified + ", entries=" + entries + ", hash=" + Long.toHexString(hash) + "]";
+	}
+
+}
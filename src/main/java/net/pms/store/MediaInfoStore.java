@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import net.pms.database.MediaDatabase;
+import net.pms.database.MediaDatabaseWriter;
 import net.pms.database.MediaTableFailedLookups;
 import net.pms.database.MediaTableFiles;
 import net.pms.database.MediaTableTVSeries;
@@ -49,6 +50,13 @@ public class MediaInfoStore {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MediaInfoStore.class);
 	private static final Map<String, WeakReference<MediaInfo>> STORE = new HashMap<>();
+	private static final Object[] LOCKS = new Object[64];
+
+	static {
+		for (int i = 0; i < LOCKS.length; i++) {
+			LOCKS[i] = new Object();
+		}
+	}
 
 	private MediaInfoStore() {
 		//should not be instantiated
@@ -83,92 +91,110 @@ public class MediaInfoStore {
 	}
 
 	public static MediaInfo getMediaInfo(String filename, File file, Format format, int type) {
-		synchronized (STORE) {
-			if (STORE.containsKey(filename) && STORE.get(filename).get() != null) {
-				return STORE.get(filename).get();
+		// parse each file once, but different files at the same time
+		synchronized (getLock(filename)) {
+			synchronized (STORE) {
+				if (STORE.containsKey(filename) && STORE.get(filename).get() != null) {
+					return STORE.get(filename).get();
+				}
 			}
 			LOGGER.trace("Store do not yet contains MediaInfo for {}", filename);
 			MediaInfo mediaInfo = null;
-			Connection connection = null;
+			boolean databaseAvailable = false;
 			InputFile input = new InputFile();
 			input.setFile(file);
+			// only hold the connection for the read, the writes below need
+			// their own pooled connection on the writer thread
+			Connection connection = null;
 			try {
 				connection = MediaDatabase.getConnectionIfAvailable();
 				if (connection != null) {
-					connection.setAutoCommit(false);
-					try {
-						mediaInfo = MediaTableFiles.getMediaInfo(connection, filename, file.lastModified());
-						if (mediaInfo != null) {
-							if (!mediaInfo.isMediaParsed()) {
-								Parser.parse(mediaInfo, input, format, type);
-								MediaTableFiles.insertOrUpdateData(connection, filename, file.lastModified(), type, mediaInfo);
-							}
-							//ensure we have the mime type
-							if (mediaInfo.getMimeType() == null) {
-								Parser.postParse(mediaInfo, type);
-								MediaTableFiles.insertOrUpdateData(connection, filename, file.lastModified(), type, mediaInfo);
-							}
-						}
-					} catch (IOException | SQLException e) {
-						LOGGER.debug("Error while getting cached information about {}, reparsing information: {}", filename, e.getMessage());
-						LOGGER.trace("", e);
-					}
+					databaseAvailable = true;
+					mediaInfo = MediaTableFiles.getMediaInfo(connection, filename, file.lastModified());
 				}
+			} catch (IOException | SQLException e) {
+				LOGGER.debug("Error while getting cached information about {}, reparsing information: {}", filename, e.getMessage());
+				LOGGER.trace("", e);
+				mediaInfo = null;
+			} finally {
+				MediaDatabase.close(connection);
+			}
 
-				if (mediaInfo == null) {
-					mediaInfo = new MediaInfo();
-
-					if (format != null) {
+			if (mediaInfo != null) {
+				try {
+					if (!mediaInfo.isMediaParsed()) {
 						Parser.parse(mediaInfo, input, format, type);
-					} else {
-						// Don't think that will ever happen
-						FFmpegParser.parse(mediaInfo, input, format, type);
+						storeMediaInfo(filename, file, type, mediaInfo);
+					}
+					//ensure we have the mime type
+					if (mediaInfo.getMimeType() == null) {
+						Parser.postParse(mediaInfo, type);
+						storeMediaInfo(filename, file, type, mediaInfo);
 					}
+				} catch (SQLException e) {
+					LOGGER.debug("Error while storing information about {}: {}", filename, e.getMessage());
+					LOGGER.trace("", e);
+				}
+			}
 
-					mediaInfo.waitMediaParsing(5);
-					if (connection != null && mediaInfo.isMediaParsed()) {
-						try {
-							MediaTableFiles.insertOrUpdateData(connection, filename, file.lastModified(), type, mediaInfo);
-						} catch (SQLException e) {
-							LOGGER.error(
-								"Database error while trying to add parsed information for \"{}\" to the cache: {}",
-								filename,
-								e.getMessage());
-							if (LOGGER.isTraceEnabled()) {
-								LOGGER.trace("SQL error code: {}", e.getErrorCode());
-								if (
-									e.getCause() instanceof SQLException &&
-									((SQLException) e.getCause()).getErrorCode() != e.getErrorCode()
-								) {
-									LOGGER.trace("Cause SQL error code: {}", ((SQLException) e.getCause()).getErrorCode());
-								}
-								LOGGER.trace("", e);
+			if (mediaInfo == null) {
+				mediaInfo = new MediaInfo();
+
+				if (format != null) {
+					Parser.parse(mediaInfo, input, format, type);
+				} else {
+					// Don't think that will ever happen
+					FFmpegParser.parse(mediaInfo, input, format, type);
+				}
+
+				mediaInfo.waitMediaParsing(5);
+				if (databaseAvailable && mediaInfo.isMediaParsed()) {
+					try {
+						storeMediaInfo(filename, file, type, mediaInfo);
+					} catch (SQLException e) {
+						LOGGER.error(
+							"Database error while trying to add parsed information for \"{}\" to the cache: {}",
+							filename,
+							e.getMessage());
+						if (LOGGER.isTraceEnabled()) {
+							LOGGER.trace("SQL error code: {}", e.getErrorCode());
+							if (
+								e.getCause() instanceof SQLException &&
+								((SQLException) e.getCause()).getErrorCode() != e.getErrorCode()
+							) {
+								LOGGER.trace("Cause SQL error code: {}", ((SQLException) e.getCause()).getErrorCode());
 							}
+							LOGGER.trace("", e);
 						}
 					}
 				}
-			} catch (SQLException e) {
-				LOGGER.error("Error in RealFile.resolve: {}", e.getMessage());
-				LOGGER.trace("", e);
-			} finally {
-				try {
-					if (connection != null) {
-						connection.commit();
-						connection.setAutoCommit(true);
-					}
-				} catch (SQLException e) {
-					LOGGER.error("Error in commit in RealFile.resolve: {}", e.getMessage());
-					LOGGER.trace("", e);
-				}
-				MediaDatabase.close(connection);
 			}
-			if (mediaInfo != null) {
+			synchronized (STORE) {
 				STORE.put(filename, new WeakReference<>(mediaInfo));
 			}
 			return mediaInfo;
 		}
 	}
 
+	/**
+	 * Writes the media information of a file to the database.
+	 *
+	 * The media scanner only queues it, to be written in a transaction with the other
+	 * scanned files. Other callers wait for it to be written, as they may need
+	 * its file id right away.
+	 */
+	private static void storeMediaInfo(String filename, File file, int type, MediaInfo mediaInfo) throws SQLException {
+		if (ParallelScanner.isScannerThread()) {
+			MediaDatabaseWriter.submit(filename, file.lastModified(), type, mediaInfo);
+		} else {
+			MediaDatabaseWriter.write(filename, file.lastModified(), type, mediaInfo);
+		}
+	}
+
+	private static Object getLock(String filename) {
+		return LOCKS[Math.floorMod(filename.hashCode(), LOCKS.length)];
+	}
+
 	public static MediaVideoMetadata getMediaVideoMetadata(String filename) {
 		//check on store
 		synchronized (STORE) {
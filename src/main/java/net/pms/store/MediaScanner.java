@@ -23,6 +23,7 @@ import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.GuardedBy;
@@ -33,18 +34,23 @@ import net.pms.configuration.sharedcontent.SharedContent;
 import net.pms.configuration.sharedcontent.SharedContentConfiguration;
 import net.pms.configuration.sharedcontent.SharedContentListener;
 import net.pms.database.MediaDatabase;
+import net.pms.database.MediaDatabaseWriter;
+import net.pms.database.MediaTableDirectorySnapshots;
 import net.pms.database.MediaTableFiles;
+import net.pms.dlna.DLNAThumbnailCache;
 import net.pms.gui.GuiManager;
 import net.pms.platform.PlatformUtils;
 import net.pms.renderers.ConnectedRenderers;
 import net.pms.renderers.Renderer;
 import net.pms.renderers.devices.MediaScannerDevice;
+import net.pms.store.SharedStoreTree.FolderListing;
 import net.pms.store.container.DVDISOFile;
 import net.pms.store.container.PlaylistFolder;
 import net.pms.store.container.RealFolder;
 import net.pms.store.container.VirtualFolder;
 import net.pms.util.FileUtil;
 import net.pms.util.FileWatcher;
+import net.pms.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,11 +67,13 @@ public class MediaScanner implements SharedContentListener {
 	private static final Renderer RENDERER = MediaScannerDevice.getRenderer();
 	private static final MediaScanner INSTANCE = new MediaScanner();
 	private static final List<String> FILES_PARSING = Collections.synchronizedList(new ArrayList<>());
+	private static final AtomicInteger UNCHANGED_FOLDERS = new AtomicInteger();
 
 	@GuardedBy("DEFAULT_FOLDERS_LOCK")
 	private static List<String> defaultFolders = null;
 	private static Thread scannerThread;
-	private static boolean running;
+	private static volatile ParallelScanner parallelScanner;
+	private static volatile boolean running;
 
 	private MediaScanner() {
 	}
@@ -100,6 +108,7 @@ public class MediaScanner implements SharedContentListener {
 					// Running might have been set false during scan
 					if (running) {
 						MediaTableFiles.cleanup(connection);
+						DLNAThumbnailCache.prewarm(connection, () -> running);
 					}
 				}
 			} finally {
@@ -114,47 +123,186 @@ public class MediaScanner implements SharedContentListener {
 
 	private static void scan(StoreContainer resource) {
 		if (running) {
+			List<StoreContainer> roots = new ArrayList<>();
 			for (StoreResource child : resource.getChildren()) {
-				// wait until the realtime lock is released before starting
-				PMS.REALTIME_LOCK.lock();
-				PMS.REALTIME_LOCK.unlock();
+				if (child instanceof StoreContainer storeContainer && storeContainer.allowScan()) {
+					roots.add(storeContainer);
+				}
+			}
+			ParallelScanner scanner = new ParallelScanner(PMS.getConfiguration().getScanThreadsPerDisk(), container -> scanFolder(container));
+			parallelScanner = scanner;
+			UNCHANGED_FOLDERS.set(0);
+			try {
+				scanner.scan(roots, 1000, () -> GuiManager.setStatusLine(getProgressLine(scanner)));
+				MediaDatabaseWriter.flush();
+				LOGGER.info("Scanned {} files in {} folders on {} devices ({} files/s), {} folders were unchanged",
+						scanner.getFilesScanned(), scanner.getFoldersScanned(), scanner.getDeviceCount(), Math.round(scanner.getFilesPerSecond()), UNCHANGED_FOLDERS.get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				setRunning(false);
+			} finally {
+				parallelScanner = null;
+			}
+		}
+		GuiManager.setStatusLine(null);
+	}
 
-				if (running && child instanceof StoreContainer storeContainer && storeContainer.allowScan()) {
+	/**
+	 * Scans a single folder.
+	 *
+	 * @param storeContainer the folder.
+	 * @return the sub folders to scan.
+	 */
+	private static List<StoreContainer> scanFolder(StoreContainer storeContainer) {
+		List<StoreContainer> subFolders = new ArrayList<>();
+		if (!running) {
+			return subFolders;
+		}
 
-					// Display and log which folder is being scanned
-					if (storeContainer instanceof RealFolder) {
-						String childName = child.getName();
-						LOGGER.debug("Scanning folder: " + childName);
-						GuiManager.setStatusLine(Messages.getString("ScanningFolder") + " " + childName);
-					}
+		// wait until the realtime lock is released before starting
+		PMS.REALTIME_LOCK.lock();
+		PMS.REALTIME_LOCK.unlock();
+
+		DirectorySnapshot snapshot = null;
+		long writeSequence = MediaDatabaseWriter.getSequence();
+		if (storeContainer instanceof RealFolder realFolder) {
+			snapshot = getSnapshot(realFolder);
+			if (snapshot != null && !storeContainer.isDiscovered() && snapshot.equals(getStoredSnapshot(snapshot.getDirectory()))) {
+				LOGGER.trace("Skipping unchanged folder: {}", snapshot.getDirectory());
+				UNCHANGED_FOLDERS.incrementAndGet();
+				return getUnchangedSubFolders(realFolder);
+			}
+			LOGGER.debug("Scanning folder: " + storeContainer.getName());
+		}
 
-					if (storeContainer.isDiscovered()) {
-						storeContainer.refreshChildren();
-					} else {
-						// ugly hack
-						if (storeContainer instanceof DVDISOFile || storeContainer instanceof PlaylistFolder) {
-							storeContainer.syncResolve();
-						}
+		if (storeContainer.isDiscovered()) {
+			storeContainer.refreshChildren();
+		} else {
+			// ugly hack
+			if (storeContainer instanceof DVDISOFile || storeContainer instanceof PlaylistFolder) {
+				storeContainer.syncResolve();
+			}
 
-						storeContainer.discoverChildren();
-						if (child instanceof VirtualFolder virtualFolder) {
-							virtualFolder.analyzeChildren();
-						}
-						storeContainer.setDiscovered(true);
-					}
+			storeContainer.discoverChildren();
+			if (storeContainer instanceof VirtualFolder virtualFolder) {
+				virtualFolder.analyzeChildren();
+			}
+			storeContainer.setDiscovered(true);
+		}
 
-					int count = storeContainer.getChildren().size();
-					if (count != 0) {
-						scan(storeContainer);
-						storeContainer.getChildren().clear();
-					}
-				} else if (!running) {
-					break;
+		int files = 0;
+		for (StoreResource child : storeContainer.getChildren()) {
+			if (child instanceof StoreContainer subFolder) {
+				if (subFolder.allowScan()) {
+					subFolders.add(subFolder);
+				}
+				if (child instanceof VirtualFolder && !(child instanceof SystemFileResource)) {
+					// the files were split into A-Z folders, not scanned yet
+					snapshot = null;
 				}
+			} else {
+				files++;
 			}
-		} else {
-			GuiManager.setStatusLine(null);
 		}
+		if (snapshot != null && running) {
+			// once the files of the folder are written, unless some failed and
+			// must be parsed again by the next scan
+			DirectorySnapshot scannedSnapshot = snapshot;
+			MediaDatabaseWriter.barrier(writeSequence).whenComplete((unused, e) -> {
+				if (e == null) {
+					storeSnapshot(scannedSnapshot);
+				} else {
+					LOGGER.debug("Not storing the snapshot of \"{}\": {}", scannedSnapshot.getDirectory(), e.getMessage());
+				}
+			});
+		}
+		ParallelScanner scanner = parallelScanner;
+		if (scanner != null) {
+			scanner.addFiles(files);
+		}
+		// the sub folders are kept by their scan tasks
+		storeContainer.getChildren().clear();
+		return subFolders;
+	}
+
+	/**
+	 * Takes the snapshot of the directory of a folder.
+	 *
+	 * @param realFolder the folder.
+	 * @return the snapshot, or {@code null} if incremental scans are disabled
+	 *         or the directory can't be read.
+	 */
+	private static DirectorySnapshot getSnapshot(RealFolder realFolder) {
+		if (!PMS.getConfiguration().isScanIncremental() || !MediaDatabase.isAvailable()) {
+			return null;
+		}
+		File directory = realFolder.getSystemFile();
+		FolderListing listing = SharedStoreTree.getListing(directory, RENDERER.getUmsConfiguration().getIgnoredFolderNames());
+		return listing == null ? null : DirectorySnapshot.create(directory, listing);
+	}
+
+	private static DirectorySnapshot getStoredSnapshot(String directory) {
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			if (connection != null) {
+				return MediaTableDirectorySnapshots.getSnapshot(connection, directory);
+			}
+		} finally {
+			MediaDatabase.close(connection);
+		}
+		return null;
+	}
+
+	private static void storeSnapshot(DirectorySnapshot snapshot) {
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			if (connection != null) {
+				MediaTableDirectorySnapshots.setSnapshot(connection, snapshot);
+			}
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	/**
+	 * Returns the sub folders of a folder that did not change since the
+	 * previous scan, without discovering its files.
+	 *
+	 * @param realFolder the unchanged folder.
+	 * @return the sub folders to scan.
+	 */
+	private static List<StoreContainer> getUnchangedSubFolders(RealFolder realFolder) {
+		List<StoreContainer> subFolders = new ArrayList<>();
+		FolderListing listing = SharedStoreTree.getListing(realFolder.getSystemFile(), RENDERER.getUmsConfiguration().getIgnoredFolderNames());
+		if (listing == null) {
+			return subFolders;
+		}
+		for (File file : listing.getFiles()) {
+			if (file.isDirectory() && RENDERER.getMediaStore().createResourceFromFile(file) instanceof StoreContainer subFolder) {
+				realFolder.addChild(subFolder, true, true);
+			}
+		}
+		for (StoreResource child : realFolder.getChildren()) {
+			if (child instanceof StoreContainer subFolder && subFolder.allowScan()) {
+				subFolders.add(subFolder);
+			}
+		}
+		// the sub folders are kept by their scan tasks
+		realFolder.getChildren().clear();
+		return subFolders;
+	}
+
+	private static String getProgressLine(ParallelScanner scanner) {
+		long secondsLeft = scanner.getEstimatedSecondsLeft();
+		String timeLeft = secondsLeft < 0 ? "?" : StringUtil.convertTimeToString(secondsLeft, "%d:%02d:%02.0f");
+		return String.format(Messages.getString("MediaScanProgress"),
+				scanner.getFilesScanned(),
+				scanner.getFoldersScanned(),
+				scanner.getFoldersQueued(),
+				Math.round(scanner.getFilesPerSecond()),
+				timeLeft);
 	}
 
 	private static void reset() {
@@ -302,6 +450,10 @@ public class MediaScanner implements SharedContentListener {
 
 	private static void setRunning(boolean value) {
 		running = value;
+		ParallelScanner scanner = parallelScanner;
+		if (!value && scanner != null) {
+			scanner.stop();
+		}
 	}
 
 	private static synchronized boolean isInSharedFolders(String filename) {
@@ -505,6 +657,10 @@ public class MediaScanner implements SharedContentListener {
 	 */
 	private static final FileWatcher.Listener MEDIA_RESCANNER = (String filename, String event, FileWatcher.Watch watch, boolean isDir) -> {
 		if ((ENTRY_DELETE.equals(event) || ENTRY_CREATE.equals(event) || ENTRY_MODIFY.equals(event))) {
+			if (!ENTRY_MODIFY.equals(event)) {
+				// the shared listing of the parent folder is outdated
+				SharedStoreTree.invalidate(new File(filename).getParentFile());
+			}
 			/**
 			 * If a new directory is created with files, the listener may not
 			 * give us information about those new files, as it wasn't listening
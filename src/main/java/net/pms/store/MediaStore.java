@@ -18,11 +18,10 @@ package net.pms.store;
 
 import com.sun.jna.Platform;
 import java.io.File;
-import java.lang.ref.WeakReference;
 import java.util.*;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import net.pms.Messages;
 import net.pms.PMS;
 import net.pms.configuration.sharedcontent.ApertureContent;
@@ -71,7 +70,6 @@ import net.pms.store.item.WebAudioStream;
 import net.pms.store.item.WebVideoStream;
 import net.pms.store.utils.IOList;
 import net.pms.util.FileUtil;
-import net.pms.util.SimpleThreadFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,7 +78,12 @@ public class MediaStore extends StoreContainer {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(MediaStore.class);
 
-	private final Map<Long, WeakReference<StoreResource>> weakResources = new HashMap<>();
+	private final StoreResourceRegistry weakResources = new StoreResourceRegistry();
+	/**
+	 * Held for reading by the resource lookups and for writing by the resets,
+	 * so lookups run together but never while the root is discovered again.
+	 */
+	private final ReadWriteLock resetLock = new ReentrantReadWriteLock();
 	// A temp folder for non-xmb items
 	private final UnattachedFolder tempFolder;
 	private final MediaLibrary mediaLibrary;
@@ -385,10 +388,19 @@ public class MediaStore extends StoreContainer {
 		backupChildren.clear();
 	}
 
+	/**
+	 * Discovers the root folder again. Resource lookups wait for it to be
+	 * done.
+	 */
 	public void reset() {
-		if (isDiscovered()) {
-			setDiscovered(false);
-			discoverChildren();
+		resetLock.writeLock().lock();
+		try {
+			if (isDiscovered()) {
+				setDiscovered(false);
+				discoverChildren();
+			}
+		} finally {
+			resetLock.writeLock().unlock();
 		}
 	}
 
@@ -413,7 +425,7 @@ public class MediaStore extends StoreContainer {
 		return tempFolder.add(uri, name);
 	}
 
-	public synchronized StoreResource getResource(String objectId) {
+	public StoreResource getResource(String objectId) {
 		// this method returns exactly ONE (1) LibraryResource
 		// it's used when someone requests playback of mediaInfo. The mediaInfo must
 		// have been discovered by someone first (unless it's a Temp item)
@@ -425,13 +437,28 @@ public class MediaStore extends StoreContainer {
 			String loginstring = StringUtils.substringAfter(objectId, "/");
 			Integer userId = UserVirtualFolder.decrypt(loginstring);
 			if (userId != null) {
-				renderer.setAccount(AccountService.getAccountByUserId(userId));
-				reset();
-				discoverChildren();
+				resetLock.writeLock().lock();
+				try {
+					renderer.setAccount(AccountService.getAccountByUserId(userId));
+					reset();
+					discoverChildren();
+				} finally {
+					resetLock.writeLock().unlock();
+				}
 			}
 			return this;
 		}
 
+		resetLock.readLock().lock();
+		try {
+			return getResourceInternal(objectId);
+		} finally {
+			resetLock.readLock().unlock();
+		}
+	}
+
+	private StoreResource getResourceInternal(String objectId) {
+
 		// Get/create/reconstruct it if it's a Temp item
 		if (objectId.contains("$Temp/")) {
 			return getTemp().get(objectId);
@@ -463,14 +490,12 @@ public class MediaStore extends StoreContainer {
 		if (id == null) {
 			return null;
 		}
-		synchronized (weakResources) {
-			if (weakResources.containsKey(id) && weakResources.get(id).get() != null) {
-				return weakResources.get(id).get();
-			} else {
-				// object id not founded, try recreate
-				return recreateResource(id);
-			}
+		StoreResource resource = weakResources.get(id);
+		if (resource != null) {
+			return resource;
 		}
+		// object id not founded, try recreate
+		return recreateResource(id);
 	}
 
 	/**
@@ -483,25 +508,24 @@ public class MediaStore extends StoreContainer {
 		LOGGER.trace("try recreating resource with id '{}'", id);
 		List<MediaStoreId> libraryIds = MediaStoreIds.getMediaStoreResourceTree(id);
 		if (!libraryIds.isEmpty()) {
-			synchronized (weakResources) {
-				for (MediaStoreId libraryId : libraryIds) {
-					if (weakResources.containsKey(libraryId.getId()) && weakResources.get(libraryId.getId()).get() != null) {
-						StoreResource resource = weakResources.get(libraryId.getId()).get();
-						if (resource instanceof StoreContainer container) {
-							container.discoverChildren();
-						}
-						if (resource instanceof VirtualFolder container) {
-							container.analyzeChildren();
+			for (MediaStoreId libraryId : libraryIds) {
+				StoreResource resource = weakResources.get(libraryId.getId());
+				if (resource instanceof StoreContainer container) {
+					synchronized (container) {
+						container.discoverChildren();
+						if (container instanceof VirtualFolder virtualFolder) {
+							virtualFolder.analyzeChildren();
 						}
 					}
 				}
-				//now that parent folders are discovered, try to get the resource
-				if (weakResources.containsKey(id) && weakResources.get(id).get() != null) {
-					LOGGER.trace("resource with id '{}' recreacted succefully", id);
-					return weakResources.get(id).get();
-				} else {
-					LOGGER.trace("resource with id '{}' is no longer available in the store tree", id);
-				}
+			}
+			//now that parent folders are discovered, try to get the resource
+			StoreResource resource = weakResources.get(id);
+			if (resource != null) {
+				LOGGER.trace("resource with id '{}' recreacted succefully", id);
+				return resource;
+			} else {
+				LOGGER.trace("resource with id '{}' is no longer available in the store tree", id);
 			}
 		} else {
 			LOGGER.trace("resource with id '{}' was not found in database", id);
@@ -511,60 +535,38 @@ public class MediaStore extends StoreContainer {
 
 	public boolean weakResourceExists(String objectId) {
 		Long id = parseIndex(objectId);
-		synchronized (weakResources) {
-			return (id != null && weakResources.containsKey(id) && weakResources.get(id).get() != null);
-		}
+		return id != null && weakResources.contains(id);
 	}
 
 	public boolean addWeakResource(StoreResource resource) {
 		Long id = MediaStoreIds.getMediaStoreResourceId(resource);
 		if (id != null) {
-			synchronized (weakResources) {
-				weakResources.put(id, new WeakReference<>(resource));
-				return true;
-			}
+			weakResources.put(id, resource);
+			return true;
 		}
 		return false;
 	}
 
 	public void replaceWeakResource(StoreResource a, StoreResource b) {
 		Long id = parseIndex(a.getId());
-		synchronized (weakResources) {
-			if (id != null && weakResources.containsKey(id)) {
-				weakResources.get(id).clear();
-				weakResources.put(id, new WeakReference<>(b));
-			}
+		if (id != null) {
+			weakResources.replace(id, b);
 		}
 	}
 
 	public void deleteWeakResource(StoreResource resource) {
 		Long id = parseIndex(resource.getId());
-		synchronized (weakResources) {
-			if (id != null && weakResources.containsKey(id)) {
-				weakResources.get(id).clear();
-				weakResources.remove(id);
-			}
+		if (id != null) {
+			weakResources.remove(id);
 		}
 	}
 
 	public void clearWeakResources() {
-		synchronized (weakResources) {
-			weakResources.clear();
-		}
+		weakResources.clear();
 	}
 
 	public List<StoreResource> findSystemFileResources(File file) {
-		List<StoreResource> systemFileResources = new ArrayList<>();
-		synchronized (weakResources) {
-			for (WeakReference<StoreResource> resource : weakResources.values()) {
-				if (resource.get() instanceof SystemFileResource systemFileResource &&
-						file.equals(systemFileResource.getSystemFile()) &&
-						systemFileResource instanceof StoreResource storeResource) {
-					systemFileResources.add(storeResource);
-				}
-			}
-		}
-		return systemFileResources;
+		return weakResources.getByFile(file);
 	}
 
 	/**
@@ -577,7 +579,25 @@ public class MediaStore extends StoreContainer {
 	 * @return List of LibraryResource items.
 	 * @throws IOException
 	 */
-	public synchronized List<StoreResource> getResources(String objectId, boolean returnChildren) {
+	public List<StoreResource> getResources(String objectId, boolean returnChildren) {
+		return getResources(objectId, returnChildren, 0, 0);
+	}
+
+	/**
+	 * Returns the resource or its children, resolving the children in the
+	 * requested window before returning.
+	 *
+	 * The children outside of the window are discovered and resolved in the
+	 * background.
+	 *
+	 * @param objectId the resource id.
+	 * @param returnChildren whether to return the children of the resource.
+	 * @param startingIndex the index of the first child the renderer asked for.
+	 * @param requestedCount the number of children the renderer asked for, 0
+	 *            for all of them.
+	 * @return the resource or its children.
+	 */
+	public List<StoreResource> getResources(String objectId, boolean returnChildren, int startingIndex, int requestedCount) {
 		ArrayList<StoreResource> resources = new ArrayList<>();
 		if (StringUtils.isEmpty(objectId)) {
 			return resources;
@@ -589,82 +609,94 @@ public class MediaStore extends StoreContainer {
 			return items != null ? items : resources;
 		}
 
-		StoreResource resource = getResource(objectId);
-
-		if (resource == null) {
-			// nothing in the cache do a traditional search
-			// Now strip off the filename
-			objectId = StringUtils.substringBefore(objectId, "/");
-			String[] ids = objectId.split("\\.");
-			resource = search(ids);
+		if (objectId.startsWith("$LogIn/")) {
+			// logs in and resets the store, which the lookup lock excludes
+			getResource(objectId);
+			objectId = "0";
 		}
 
-		if (resource != null) {
-			if (!(resource instanceof CodeEnter) && !isCodeValid(resource)) {
-				LOGGER.debug("code is not valid any longer");
-				return resources;
-			}
+		CompletableFuture<Void> resolved = null;
+		String systemName = null;
+		resetLock.readLock().lock();
+		try {
+			StoreResource resource = getResourceInternal(objectId);
 
-			if (!isRendererAllowed()) {
-				LOGGER.debug("renderer does not have access to this ressource");
-				return resources;
+			if (resource == null) {
+				// nothing in the cache do a traditional search
+				// Now strip off the filename
+				objectId = StringUtils.substringBefore(objectId, "/");
+				String[] ids = objectId.split("\\.");
+				resource = search(ids);
 			}
 
-			if (!returnChildren) {
-				resources.add(resource);
-				if (resource instanceof StoreContainer storeContainer) {
-					if (!storeContainer.isDiscovered()) {
-						storeContainer.discover(false);
-					} else {
-						storeContainer.refreshChildrenIfNeeded();
-					}
+			if (resource != null) {
+				if (!(resource instanceof CodeEnter) && !isCodeValid(resource)) {
+					LOGGER.debug("code is not valid any longer");
+					return resources;
 				}
-			} else {
-				if (resource instanceof StoreContainer storeContainer) {
-					storeContainer.discover(true);
-
-					int count = storeContainer.getChildren().size();
-					if (count > 0) {
-						String systemName = storeContainer.getSystemName();
-						LOGGER.trace("Start of analysis for " + systemName);
-						ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(count);
-
-						int nParallelThreads = 3;
-						if (storeContainer instanceof DVDISOFile) {
-							// Some DVD drives die with 3 parallel threads
-							nParallelThreads = 1;
-						}
 
-						ThreadPoolExecutor tpe = new ThreadPoolExecutor(Math.min(count, nParallelThreads), count, 20, TimeUnit.SECONDS, queue,
-								new SimpleThreadFactory("LibraryResource resolver thread", true));
+				if (!isRendererAllowed()) {
+					LOGGER.debug("renderer does not have access to this ressource");
+					return resources;
+				}
 
-						if (shouldDoAudioTrackSorting(storeContainer)) {
-							sortChildrenWithAudioElements(storeContainer);
+				if (!returnChildren) {
+					resources.add(resource);
+					if (resource instanceof StoreContainer storeContainer) {
+						if (!storeContainer.isDiscovered()) {
+							storeContainer.discover(false);
+						} else {
+							storeContainer.refreshChildrenIfNeeded();
 						}
-						for (int i = 0; i < storeContainer.getChildren().size(); i++) {
-							final StoreResource child = storeContainer.getChildren().get(i);
-							if (child != null) {
-								tpe.execute(child);
-								resources.add(child);
-							} else {
-								LOGGER.warn("null child at index {} in {}", i, systemName);
+					}
+				} else {
+					if (resource instanceof StoreContainer storeContainer) {
+						// large folders only need the asked page to be discovered now
+						storeContainer.discover(true, requestedCount > 0 ? startingIndex + requestedCount : 0);
+
+						int count = storeContainer.getChildren().size();
+						if (count > 0) {
+							systemName = storeContainer.getSystemName();
+							LOGGER.trace("Start of analysis for " + systemName);
+							Object device = this;
+							int limit = renderer.getUmsConfiguration().getResolverThreadsPerRenderer();
+							if (storeContainer instanceof DVDISOFile) {
+								// Some DVD drives die with 3 parallel threads
+								device = DVDISOFile.class;
+								limit = 1;
 							}
-						}
 
-						try {
-							tpe.shutdown();
-							tpe.awaitTermination(20, TimeUnit.SECONDS);
-						} catch (InterruptedException e) {
-							LOGGER.error("error while shutting down thread pool executor for " + systemName, e);
-							Thread.currentThread().interrupt();
+							List<StoreResource> children;
+							synchronized (storeContainer) {
+								if (shouldDoAudioTrackSorting(storeContainer)) {
+									sortChildrenWithAudioElements(storeContainer);
+								}
+								children = storeContainer.getChildren(0, 0);
+							}
+							for (int i = 0; i < children.size(); i++) {
+								final StoreResource child = children.get(i);
+								if (child != null) {
+									resources.add(child);
+								} else {
+									LOGGER.warn("null child at index {} in {}", i, systemName);
+								}
+							}
+							int fromIndex = requestedCount > 0 ? startingIndex : 0;
+							int toIndex = requestedCount > 0 ? startingIndex + requestedCount : children.size();
+							resolved = StoreResolver.resolve(device, limit, children, fromIndex, toIndex);
 						}
-
-						LOGGER.trace("End of analysis for " + systemName);
 					}
 				}
 			}
+		} finally {
+			resetLock.readLock().unlock();
 		}
 
+		// wait outside of the lookup lock, so a reset is not held back
+		if (resolved != null) {
+			StoreResolver.await(resolved, 20, systemName);
+			LOGGER.trace("End of analysis for " + systemName);
+		}
 		return resources;
 	}
 
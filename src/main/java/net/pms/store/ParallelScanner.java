@@ -0,0 +1,280 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scans store containers in parallel.
+ *
+ * Each storage device gets its own work-stealing pool, limited to a few
+ * threads so spinning disks are not thrashed, while the different devices are
+ * scanned at the same time. Sub folders on the same device are forked to the
+ * pool of their parent, the ones on another device are handed to the pool of
+ * that device.
+ */
+public class ParallelScanner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ParallelScanner.class);
+	private static final Object VIRTUAL_DEVICE = new Object();
+
+	private final Function<StoreContainer, List<StoreContainer>> visitor;
+	private final Function<StoreContainer, Object> deviceResolver;
+	private final int threadsPerDevice;
+	private final Map<Object, ForkJoinPool> pools = new ConcurrentHashMap<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicInteger devices = new AtomicInteger();
+	private final AtomicInteger foldersQueued = new AtomicInteger();
+	private final AtomicInteger foldersScanned = new AtomicInteger();
+	private final AtomicLong filesScanned = new AtomicLong();
+	private final Object completion = new Object();
+	private volatile boolean stopped;
+	private long startTime;
+
+	/**
+	 * @param threadsPerDevice the number of folders scanned at the same time
+	 *            on a single device.
+	 * @param visitor scans a folder and returns its sub folders to scan.
+	 */
+	public ParallelScanner(int threadsPerDevice, Function<StoreContainer, List<StoreContainer>> visitor) {
+		this(threadsPerDevice, visitor, ParallelScanner::getDevice);
+	}
+
+	ParallelScanner(int threadsPerDevice, Function<StoreContainer, List<StoreContainer>> visitor, Function<StoreContainer, Object> deviceResolver) {
+		this.threadsPerDevice = Math.max(1, threadsPerDevice);
+		this.visitor = visitor;
+		this.deviceResolver = deviceResolver;
+	}
+
+	/**
+	 * Scans the given folders and all their sub folders, returning once they
+	 * are all scanned or the scan is stopped.
+	 *
+	 * @param roots the folders to scan.
+	 * @param reportInterval how often to call the reporter, in milliseconds.
+	 * @param reporter called with this scanner while the scan runs, may be
+	 *            null.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public void scan(List<StoreContainer> roots, long reportInterval, Runnable reporter) throws InterruptedException {
+		startTime = System.nanoTime();
+		try {
+			for (StoreContainer root : roots) {
+				submit(root, null);
+			}
+			synchronized (completion) {
+				while (pending.get() > 0) {
+					completion.wait(reportInterval);
+					if (reporter != null && pending.get() > 0) {
+						reporter.run();
+					}
+				}
+			}
+		} finally {
+			for (ForkJoinPool pool : pools.values()) {
+				pool.shutdownNow();
+			}
+			pools.clear();
+		}
+	}
+
+	/**
+	 * Stops the scan, the folders being scanned are finished first.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Counts the files found while scanning a folder.
+	 *
+	 * @param count the number of files.
+	 */
+	public void addFiles(int count) {
+		filesScanned.addAndGet(count);
+	}
+
+	public int getFoldersScanned() {
+		return foldersScanned.get();
+	}
+
+	public int getFoldersQueued() {
+		return foldersQueued.get();
+	}
+
+	public long getFilesScanned() {
+		return filesScanned.get();
+	}
+
+	/**
+	 * @return the number of devices scanned so far.
+	 */
+	public int getDeviceCount() {
+		return devices.get();
+	}
+
+	/**
+	 * @return the number of files scanned per second.
+	 */
+	public double getFilesPerSecond() {
+		double seconds = (System.nanoTime() - startTime) / 1_000_000_000d;
+		return seconds > 0 ? filesScanned.get() / seconds : 0;
+	}
+
+	/**
+	 * Estimates the remaining time from the folders already known. It grows
+	 * while new folders are found.
+	 *
+	 * @return the estimated remaining time in seconds, -1 if unknown.
+	 */
+	public long getEstimatedSecondsLeft() {
+		int scanned = foldersScanned.get();
+		if (scanned == 0) {
+			return -1;
+		}
+		long elapsed = System.nanoTime() - startTime;
+		long remaining = Math.max(0, foldersQueued.get() - scanned);
+		return TimeUnit.NANOSECONDS.toSeconds(elapsed * remaining / scanned);
+	}
+
+	private void submit(StoreContainer container, Object parentDevice) {
+		Object device;
+		try {
+			device = deviceResolver.apply(container);
+		} catch (RuntimeException e) {
+			device = null;
+		}
+		if (device == null) {
+			device = parentDevice != null ? parentDevice : VIRTUAL_DEVICE;
+		}
+		pending.incrementAndGet();
+		foldersQueued.incrementAndGet();
+		ScanTask task = new ScanTask(container, device);
+		ForkJoinPool pool = pools.computeIfAbsent(device, this::createPool);
+		if (ForkJoinTask.getPool() == pool) {
+			// same device, keep it on the local work-stealing queue
+			task.fork();
+		} else {
+			pool.execute(task);
+		}
+	}
+
+	private ForkJoinPool createPool(Object device) {
+		int number = devices.incrementAndGet();
+		AtomicInteger threadNumber = new AtomicInteger(1);
+		return new ForkJoinPool(threadsPerDevice, pool -> {
+			ForkJoinWorkerThread thread = new ScannerThread(pool);
+			thread.setName("Media Scanner " + number + "-" + threadNumber.getAndIncrement());
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			return thread;
+		}, null, false);
+	}
+
+	private void done() {
+		if (pending.decrementAndGet() == 0) {
+			synchronized (completion) {
+				completion.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return whether the current thread is scanning folders.
+	 */
+	public static boolean isScannerThread() {
+		return Thread.currentThread() instanceof ScannerThread;
+	}
+
+	/**
+	 * Identifies the storage device of a folder.
+	 *
+	 * @param container the folder.
+	 * @return the device, or null if the folder is not on the file system.
+	 */
+	static Object getDevice(StoreContainer container) {
+		if (!(container instanceof SystemFileResource systemFileResource) || systemFileResource.getSystemFile() == null) {
+			return null;
+		}
+		File file = systemFileResource.getSystemFile();
+		Path path = file.toPath();
+		try {
+			return Files.getAttribute(path, "unix:dev");
+		} catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+			// not a unix file system
+		}
+		// the drive or share, volume labels may be empty or shared
+		return path.toAbsolutePath().getRoot();
+	}
+
+	private static class ScannerThread extends ForkJoinWorkerThread {
+		private ScannerThread(ForkJoinPool pool) {
+			super(pool);
+		}
+	}
+
+	private class ScanTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final transient StoreContainer container;
+		private final transient Object device;
+
+		private ScanTask(StoreContainer container, Object device) {
+			this.container = container;
+			this.device = device;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				if (!stopped) {
+					List<StoreContainer> subFolders = visitor.apply(container);
+					foldersScanned.incrementAndGet();
+					if (subFolders != null) {
+						for (StoreContainer subFolder : subFolders) {
+							if (stopped) {
+								break;
+							}
+							submit(subFolder, device);
+						}
+					}
+				}
+			} catch (RuntimeException e) {
+				LOGGER.debug("Error while scanning {}: {}", container.getName(), e.getMessage());
+				LOGGER.trace("", e);
+			} finally {
+				done();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,414 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import net.pms.formats.Format;
+import net.pms.formats.FormatFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renderer independent tree of the shared folders.
+ * <p>
+ * Every renderer has its own {@link MediaStore}, each of them browsing the
+ * same folders. The tree holds one canonical node per directory and per file,
+ * keyed by the absolute path, with the work that does not depend on the
+ * renderer: listing the directory, filtering the potential media files,
+ * finding the folder cover and the thumbnails that belong to a media file,
+ * matching the format of a file and remembering the files whose media can't
+ * be served.
+ * <p>
+ * Each renderer still builds its own store resources, the tree only saves
+ * them the shared work. A {@link net.pms.store.container.VirtualFolder} keeps
+ * the nodes of its directories and a {@link net.pms.store.item.RealFile}
+ * keeps the node of its file next to its renderer specific state (format
+ * support, transcoding engine, resume entries...). The media information is
+ * shared through {@link MediaInfoStore}.
+ * <p>
+ * Directory nodes are only weakly referenced by the tree, they are dropped
+ * once no renderer view uses them anymore.
+ */
+public class SharedStoreTree {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SharedStoreTree.class);
+	private static final ReferenceQueue<FolderNode> QUEUE = new ReferenceQueue<>();
+	private static final Map<String, FolderReference> FOLDERS = new ConcurrentHashMap<>();
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private SharedStoreTree() {
+	}
+
+	/**
+	 * Returns the node of a directory, creating it if no view uses it yet.
+	 *
+	 * @param directory the directory.
+	 * @return the node.
+	 */
+	public static FolderNode getFolder(File directory) {
+		expungeCollectedFolders();
+		String path = directory.getAbsolutePath();
+		FolderNode[] node = new FolderNode[1];
+		FOLDERS.compute(path, (key, reference) -> {
+			node[0] = reference != null ? reference.get() : null;
+			if (node[0] == null) {
+				node[0] = new FolderNode(directory);
+				return new FolderReference(key, node[0]);
+			}
+			return reference;
+		});
+		return node[0];
+	}
+
+	/**
+	 * Returns the node of a file, from the node of its directory.
+	 *
+	 * @param file the file.
+	 * @return the node.
+	 */
+	public static FileNode getFile(File file) {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory == null) {
+			// a root has no directory to share it with
+			return new FileNode(null, file);
+		}
+		return getFolder(directory).getFile(file);
+	}
+
+	/**
+	 * Returns the listing of a directory, computing it if it was not done yet
+	 * or if the directory was modified since.
+	 *
+	 * @param directory the directory.
+	 * @param ignoredDirectoryNames the names of the sub directories to ignore.
+	 * @return the listing, or {@code null} if the directory can't be read.
+	 */
+	public static FolderListing getListing(File directory, List<String> ignoredDirectoryNames) {
+		return getFolder(directory).getListing(ignoredDirectoryNames);
+	}
+
+	/**
+	 * Forgets what is known about a directory and its files.
+	 *
+	 * @param directory the directory.
+	 */
+	public static void invalidate(File directory) {
+		if (directory != null) {
+			FolderReference reference = FOLDERS.get(directory.getAbsolutePath());
+			FolderNode node = reference != null ? reference.get() : null;
+			if (node != null) {
+				node.invalidate();
+			}
+		}
+	}
+
+	/**
+	 * Forgets all the directories.
+	 */
+	public static void clear() {
+		for (FolderReference reference : FOLDERS.values()) {
+			FolderNode node = reference.get();
+			if (node != null) {
+				node.invalidate();
+			}
+		}
+		FOLDERS.clear();
+		expungeCollectedFolders();
+	}
+
+	private static void expungeCollectedFolders() {
+		Reference<? extends FolderNode> reference;
+		while ((reference = QUEUE.poll()) != null) {
+			FolderReference folderReference = (FolderReference) reference;
+			FOLDERS.remove(folderReference.path, folderReference);
+		}
+	}
+
+	private static class FolderReference extends WeakReference<FolderNode> {
+		private final String path;
+
+		private FolderReference(String path, FolderNode node) {
+			super(node, QUEUE);
+			this.path = path;
+		}
+	}
+
+	/**
+	 * A directory of the tree.
+	 *
+	 * Listings are computed under the node lock, so that renderers browsing
+	 * the same directory at the same time wait for a single listing. The
+	 * listing itself is softly referenced, the nodes of the files are kept as
+	 * long as the directory node.
+	 */
+	public static class FolderNode {
+		private final File directory;
+		private final Map<String, FileNode> files = new ConcurrentHashMap<>();
+		private SoftReference<FolderListing> listing;
+
+		private FolderNode(File directory) {
+			this.directory = directory;
+		}
+
+		public File getDirectory() {
+			return directory;
+		}
+
+		/**
+		 * Returns the listing of the directory, computing it if it was not
+		 * done yet or if the directory was modified since.
+		 *
+		 * @param ignoredDirectoryNames the names of the sub directories to
+		 *            ignore.
+		 * @return the listing, or {@code null} if the directory can't be read.
+		 */
+		public synchronized FolderListing getListing(List<String> ignoredDirectoryNames) {
+			FolderListing result = listing != null ? listing.get() : null;
+			long lastModified = directory.lastModified();
+			if (result != null && result.lastModified == lastModified && result.ignoredDirectoryNames.equals(ignoredDirectoryNames)) {
+				return result;
+			}
+			result = FolderListing.create(directory, lastModified, ignoredDirectoryNames);
+			listing = result != null ? new SoftReference<>(result) : null;
+			return result;
+		}
+
+		/**
+		 * Returns the node of a file of this directory.
+		 *
+		 * @param file the file.
+		 * @return the node.
+		 */
+		public FileNode getFile(File file) {
+			return files.computeIfAbsent(file.getName(), name -> new FileNode(this, file));
+		}
+
+		private synchronized void invalidate() {
+			listing = null;
+			files.clear();
+		}
+	}
+
+	/**
+	 * A file of the tree.
+	 *
+	 * What is known about the file is dropped when its modification time or
+	 * its size changes.
+	 */
+	public static class FileNode {
+		/**
+		 * Keeps the directory node as long as a view uses one of its files.
+		 */
+		@SuppressWarnings("unused")
+		private final FolderNode folder;
+		private final File file;
+		private long lastModified;
+		private long length;
+		private boolean formatResolved;
+		private Format format;
+		private Boolean mediaValid;
+
+		private FileNode(FolderNode folder, File file) {
+			this.folder = folder;
+			this.file = file;
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/**
+		 * @return a copy of the format matching the file name, or
+		 *         {@code null} if no format matches.
+		 */
+		public synchronized Format getFormat() {
+			checkModified();
+			if (!formatResolved) {
+				format = FormatFactory.getAssociatedFormat(file.getAbsolutePath());
+				formatResolved = true;
+			}
+			// formats are mutable, each view has its own copy
+			return format != null ? format.duplicate() : null;
+		}
+
+		/**
+		 * Returns whether the media of the file can be served. The result of
+		 * the check is remembered until the file is modified, so it is done
+		 * by the first renderer only, the others wait for it.
+		 *
+		 * @param check the check of the media, independent of the renderer.
+		 * @return the result of the check.
+		 */
+		public synchronized boolean isMediaValid(BooleanSupplier check) {
+			checkModified();
+			if (mediaValid == null) {
+				mediaValid = check.getAsBoolean();
+			}
+			return mediaValid;
+		}
+
+		private void checkModified() {
+			long modified = file.lastModified();
+			long size = file.length();
+			if (modified != lastModified || size != length) {
+				lastModified = modified;
+				length = size;
+				formatResolved = false;
+				format = null;
+				mediaValid = null;
+			}
+		}
+	}
+
+	/**
+	 * The renderer independent content of a directory.
+	 */
+	public static class FolderListing {
+		private final long lastModified;
+		private final List<String> ignoredDirectoryNames;
+		private final List<File> files;
+		private final Set<File> directories;
+		private final File potentialCover;
+
+		private FolderListing(long lastModified, List<String> ignoredDirectoryNames, List<File> files, Set<File> directories, File potentialCover) {
+			this.lastModified = lastModified;
+			this.ignoredDirectoryNames = ignoredDirectoryNames;
+			this.files = Collections.unmodifiableList(files);
+			this.directories = Collections.unmodifiableSet(directories);
+			this.potentialCover = potentialCover;
+		}
+
+		/**
+		 * @return the readable sub directories and potential media files, the
+		 *         folder cover and the thumbnails of the media files excluded.
+		 */
+		public List<File> getFiles() {
+			return files;
+		}
+
+		/**
+		 * @return the sub directories of {@link #getFiles()}, as found when
+		 *         listing, so the views don't check each file again.
+		 */
+		public Set<File> getDirectories() {
+			return directories;
+		}
+
+		/**
+		 * @return the folder cover, or {@code null}.
+		 */
+		public File getPotentialCover() {
+			return potentialCover;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		private static FolderListing create(File directory, long lastModified, List<String> ignoredDirectoryNames) {
+			Set<File> directories = new HashSet<>();
+			File[] listFiles = directory.listFiles((File parentDirectory, String file) -> {
+				Path path = parentDirectory.toPath().resolve(file);
+				// Reject any non readable
+				if (!Files.isReadable(path)) {
+					return false;
+				}
+				// Accept any directory
+				if (Files.isDirectory(path)) {
+					// Skip if ignored
+					if (!ignoredDirectoryNames.isEmpty() && ignoredDirectoryNames.contains(file)) {
+						LOGGER.debug("Ignoring {} because it is in the ignored directories list", file);
+						return false;
+					}
+					directories.add(new File(parentDirectory, file));
+					return true;
+				}
+
+				// We want to find only media files
+				return SystemFilesHelper.isPotentialMediaFile(file);
+			});
+			if (listFiles == null) {
+				return null;
+			}
+			List<File> files = new ArrayList<>(Arrays.asList(listFiles));
+			File potentialCover = null;
+
+			// Build a map of all files and their corresponding formats
+			Set<File> images = new HashSet<>();
+			Set<File> audioVideo = new HashSet<>();
+			Iterator<File> iterator = files.iterator();
+			while (iterator.hasNext()) {
+				File file = iterator.next();
+				if (file.isFile()) {
+					if (SystemFilesHelper.isPotentialThumbnail(file.getName())) {
+						if (SystemFilesHelper.isFolderThumbnail(file, false)) {
+							potentialCover = file;
+							iterator.remove();
+						} else {
+							images.add(file);
+						}
+					} else {
+						Format format = FormatFactory.getAssociatedFormat(file.getAbsolutePath());
+						if (format != null && (format.isAudio() || format.isVideo())) {
+							audioVideo.add(file);
+						}
+					}
+				}
+			}
+
+			// Remove cover/thumbnails from file list. A thumbnail always sits
+			// next to its media file, so this gives the same result per
+			// directory as on the merged list of a multi directory folder.
+			if (!images.isEmpty() && !audioVideo.isEmpty()) {
+				Set<File> potentialMatches;
+				for (File audioVideoFile : audioVideo) {
+					potentialMatches = SystemFilesHelper.getPotentialFileThumbnails(audioVideoFile, false);
+					iterator = images.iterator();
+					while (iterator.hasNext()) {
+						File imageFile = iterator.next();
+						if (potentialMatches.contains(imageFile)) {
+							iterator.remove();
+							files.remove(imageFile);
+						}
+					}
+				}
+			}
+			return new FolderListing(lastModified, Collections.unmodifiableList(new ArrayList<>(ignoredDirectoryNames)), files, directories, potentialCover);
+		}
+	}
+
+}
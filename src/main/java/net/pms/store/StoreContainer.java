@@ -22,7 +22,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.IdentityHashMap;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicBoolean;
 import net.pms.PMS;
 import net.pms.dlna.DLNAThumbnailInputStream;
 import net.pms.encoders.Engine;
@@ -52,12 +54,27 @@ public class StoreContainer extends StoreResource {
 	private static final Logger LOGGER = LoggerFactory.getLogger(StoreResource.class);
 	private static final int DEPTH_WARNING_LIMIT = 7;
 
+	/**
+	 * The number of pending children added at once by the background
+	 * discovery, the container is locked between each chunk only.
+	 */
+	private static final int DISCOVERY_CHUNK_SIZE = 256;
+
 	protected String name;
 	protected String thumbnailIcon;
 	protected boolean isSortedByDisplayName = false;
 
+	/**
+	 * Set once a page was served before all the children were known. The
+	 * children then keep the order of their sorted pending listing while they
+	 * are discovered, sorting them again would shift the pages already served.
+	 * They are sorted by display name once they are all discovered.
+	 */
+	protected boolean childrenOrderFixed = false;
+
 	private boolean allChildrenAreContainers = true;
 	private boolean discovered = false;
+	private final AtomicBoolean backgroundDiscovery = new AtomicBoolean();
 
 	/**
 	 * List of children objects associated with this StoreResource.
@@ -347,13 +364,48 @@ public class StoreContainer extends StoreResource {
 		return children;
 	}
 
+	/**
+	 * Returns a copy of the children in the given window.
+	 *
+	 * Only the children already discovered are returned, use
+	 * {@link #discover(boolean, int)} to make sure the window is filled.
+	 *
+	 * @param startingIndex the index of the first child.
+	 * @param requestedCount the maximum number of children, 0 for all of them.
+	 * @return the children in the window.
+	 */
+	public synchronized List<StoreResource> getChildren(int startingIndex, int requestedCount) {
+		int fromIndex = Math.min(Math.max(startingIndex, 0), children.size());
+		int toIndex = requestedCount > 0 ? Math.min(fromIndex + requestedCount, children.size()) : children.size();
+		return new ArrayList<>(children.subList(fromIndex, toIndex));
+	}
+
 	/**
 	 * @return Number of children objects. This might be used in the DLDI
 	 * response, as some renderers might not have enough memory to hold the list
 	 * for all children.
+	 *
+	 * Children still pending discovery are counted too.
 	 */
 	public int childrenCount() {
-		return children.size();
+		return children.size() + getPendingChildrenCount();
+	}
+
+	/**
+	 * @return the number of children known to exist but not added yet.
+	 */
+	protected int getPendingChildrenCount() {
+		return 0;
+	}
+
+	/**
+	 * Adds some of the pending children.
+	 *
+	 * @param count the number of pending children to add.
+	 * @return true if children are still pending.
+	 */
+	protected boolean discoverPendingChildren(int count) {
+		return false;
 	}
 
 	/**
@@ -473,27 +525,42 @@ public class StoreContainer extends StoreResource {
 	}
 
 	protected void sortChildrenIfNeeded() {
-		if (isSortedByDisplayName) {
-			Collections.sort(children, (StoreResource child1, StoreResource child2) -> {
-				if (!child1.isSortableByDisplayName || !child2.isSortableByDisplayName) {
-					return 0;
+		if (isSortedByDisplayName && !childrenOrderFixed && children.size() > 1) {
+			// compute the sort keys once, not on every comparison
+			boolean ignoreArticles = PMS.getConfiguration().isIgnoreTheWordAandThe();
+			IdentityHashMap<StoreResource, String> keys = new IdentityHashMap<>(children.size());
+			for (StoreResource child : children) {
+				if (child.isSortableByDisplayName) {
+					String str = child.getLocalizedDisplayName(null);
+					if (str != null) {
+						keys.put(child, getSortKey(str, ignoreArticles));
+					}
 				}
-				String str1 = child1.getLocalizedDisplayName(null);
-				String str2 = child2.getLocalizedDisplayName(null);
+			}
+			Collections.sort(children, (StoreResource child1, StoreResource child2) -> {
+				String str1 = keys.get(child1);
+				String str2 = keys.get(child2);
 				if (str1 == null || str2 == null) {
 					return 0;
 				}
-				if (PMS.getConfiguration().isIgnoreTheWordAandThe()) {
-					str1 = str1.replaceAll("^(?i)A[ .]|The[ .]", "").replaceAll("\\s{2,}", " ");
-					str2 = str2.replaceAll("^(?i)A[ .]|The[ .]", "").replaceAll("\\s{2,}", " ");
-				}
-				str1 = Normalizer.normalize(str1, Normalizer.Form.NFKD);
-				str2 = Normalizer.normalize(str2, Normalizer.Form.NFKD);
 				return str1.compareToIgnoreCase(str2);
 			});
 		}
 	}
 
+	/**
+	 * @param name a display name.
+	 * @param ignoreArticles whether to ignore the leading articles.
+	 * @return the key to sort {@code name} by display name, compared ignoring
+	 *         case.
+	 */
+	protected static String getSortKey(String name, boolean ignoreArticles) {
+		if (ignoreArticles) {
+			name = name.replaceAll("^(?i)A[ .]|The[ .]", "").replaceAll("\\s{2,}", " ");
+		}
+		return Normalizer.normalize(name, Normalizer.Form.NFKD);
+	}
+
 	protected void refreshChildrenIfNeeded() {
 		if (isDiscovered() && isRefreshNeeded()) {
 			refreshChildren();
@@ -731,6 +798,23 @@ public class StoreContainer extends StoreResource {
 	}
 
 	protected synchronized final void discover(boolean forced) {
+		discover(forced, 0);
+	}
+
+	/**
+	 * Discovers the children, stopping once the container holds the given
+	 * number of children when it supports it.
+	 *
+	 * The remaining children are then discovered in the background, so a
+	 * renderer browsing a large container only waits for the page it asked.
+	 * The pending children are sorted before the first page is served and
+	 * keep that order, so the pages don't shift while they are discovered,
+	 * then they are sorted by display name like any other container.
+	 *
+	 * @param forced whether to refresh an already discovered container.
+	 * @param minimumChildren the number of children needed, 0 for all of them.
+	 */
+	protected synchronized final void discover(boolean forced, int minimumChildren) {
 		// Discover children if it hasn't been done already
 		if (!isDiscovered()) {
 			LOGGER.trace("Initial discovering children for container: {}", getDisplayName());
@@ -743,20 +827,41 @@ public class StoreContainer extends StoreResource {
 			}
 
 			discoverChildren();
-			sortChildrenIfNeeded();
 			boolean ready;
 
 			if (this instanceof VirtualFolder virtualFolder) {
-				ready = virtualFolder.analyzeChildren();
+				ready = virtualFolder.analyzeChildren(minimumChildren);
 			} else {
 				ready = true;
 			}
 
+			if (ready) {
+				sortChildrenIfNeeded();
+			} else {
+				childrenOrderFixed = true;
+				discoverInBackground();
+			}
+
 			if (!renderer.isUseMediaInfo() || ready) {
 				setDiscovered(true);
 			}
 
 			notifyRefresh();
+		} else if (getPendingChildrenCount() > 0) {
+			// still filled in the background, only add what this page needs
+			LOGGER.trace("discover {} still pending: {}", getResourceId(), getPendingChildrenCount());
+			if (minimumChildren <= 0) {
+				while (discoverPendingChildren(DISCOVERY_CHUNK_SIZE)) {
+					// all of them are needed now
+				}
+			} else if (children.size() < minimumChildren) {
+				discoverPendingChildren(minimumChildren - children.size());
+			}
+			if (getPendingChildrenCount() > 0) {
+				discoverInBackground();
+			} else {
+				endPendingDiscovery();
+			}
 		} else {
 			// if forced, then call the old 'refreshChildren' method
 			LOGGER.trace("discover {} refresh forced: {}", getResourceId(), forced);
@@ -788,6 +893,42 @@ public class StoreContainer extends StoreResource {
 		}
 	}
 
+	private void discoverInBackground() {
+		if (!backgroundDiscovery.compareAndSet(false, true)) {
+			return;
+		}
+		StoreResolver.execute(() -> {
+			try {
+				boolean pending = true;
+				while (pending) {
+					synchronized (this) {
+						pending = discoverPendingChildren(DISCOVERY_CHUNK_SIZE);
+						if (!pending) {
+							setDiscovered(true);
+							endPendingDiscovery();
+						}
+					}
+				}
+				LOGGER.trace("Background discovery done for container: {}", getDisplayName());
+			} catch (RuntimeException e) {
+				LOGGER.debug("Error while discovering children of {}: {}", getDisplayName(), e.getMessage());
+				LOGGER.trace("", e);
+			} finally {
+				backgroundDiscovery.set(false);
+			}
+		});
+	}
+
+	/**
+	 * Sorts the children once the pending ones are all discovered: their
+	 * display names may not sort them as their file names did.
+	 */
+	private void endPendingDiscovery() {
+		childrenOrderFixed = false;
+		sortChildrenIfNeeded();
+		notifyRefresh();
+	}
+
 	public void doRefreshChildren() {
 	}
 
@@ -35,18 +35,22 @@ import net.pms.PMS;
 import net.pms.configuration.FormatConfiguration;
 import net.pms.configuration.UmsConfiguration;
 import net.pms.database.MediaDatabase;
+import net.pms.database.MediaDatabaseWriter;
 import net.pms.database.MediaTableSubtracks;
 import net.pms.dlna.DLNAThumbnail;
 import net.pms.dlna.DLNAThumbnailInputStream;
 import net.pms.encoders.Engine;
 import net.pms.encoders.EngineFactory;
+import net.pms.encoders.FFMpegVideo;
 import net.pms.encoders.HlsHelper;
 import net.pms.formats.Format;
 import net.pms.formats.FormatFactory;
 import net.pms.image.BufferedImageFilterChain;
 import net.pms.image.ImagesUtil;
+import net.pms.io.DirectFileInputStream;
 import net.pms.io.OutputParams;
 import net.pms.io.ProcessWrapper;
+import net.pms.io.ProcessWrapperImpl;
 import net.pms.io.SizeLimitInputStream;
 import net.pms.media.MediaInfo;
 import net.pms.media.MediaLang;
@@ -771,6 +775,32 @@ public abstract class StoreItem extends StoreResource {
 		return getInputStream(range, null);
 	}
 
+	/**
+	 * Launches a transcode writing the HLS segments of a rendition of this
+	 * StoreItem into a directory, starting at a given segment.
+	 *
+	 * Only the plain FFmpeg video engine can segment its output, other engines
+	 * return {@code null} and are asked one segment at a time instead.
+	 *
+	 * @param hlsConfiguration the rendition.
+	 * @param directory the directory receiving the segments.
+	 * @param startSegment the index of the first segment.
+	 * @return the running process, or {@code null} if not supported.
+	 */
+	public synchronized ProcessWrapperImpl launchHlsSegmenter(HlsHelper.HlsConfiguration hlsConfiguration, File directory, int startSegment) {
+		if (engine == null || engine.getClass() != FFMpegVideo.class || isResume() || this instanceof IPushOutput) {
+			return null;
+		}
+		OutputParams params = new OutputParams(renderer.getUmsConfiguration());
+		params.setAid(mediaAudio);
+		params.setSid(mediaSubtitle);
+		params.setMediaRenderer(renderer);
+		params.setTimeSeek(startSegment * HlsHelper.DEFAULT_TARGETDURATION);
+		params.setHlsConfiguration(hlsConfiguration);
+		LOGGER.debug("Starting HLS segmenter of {} from segment {}", getName(), startSegment);
+		return ((FFMpegVideo) engine).launchHlsSegmenter(this, mediaInfo, params, directory, startSegment);
+	}
+
 	/**
 	 * Returns an InputStream of this StoreItem that starts at a given
 	 * time, if possible. Very useful if video chapters are being used.
@@ -830,12 +860,15 @@ public abstract class StoreItem extends StoreResource {
 		if (engine == null && !isResume()) {
 			// No transcoding
 			if (this instanceof IPushOutput iPushOutput) {
-				PipedOutputStream out = new PipedOutputStream();
-				InputStream fis = new PipedInputStream(out);
-				iPushOutput.push(out);
-
-				if (low > 0) {
-					fis.skip(low);
+				InputStream fis = iPushOutput.getInputStreamAt(low > 0 ? low : 0);
+				if (fis == null) {
+					PipedOutputStream out = new PipedOutputStream();
+					fis = new PipedInputStream(out);
+					iPushOutput.push(out);
+
+					if (low > 0) {
+						fis.skip(low);
+					}
 				}
 
 				setLastStartSystemTime(System.currentTimeMillis());
@@ -1008,6 +1041,11 @@ public abstract class StoreItem extends StoreResource {
 	public static InputStream wrap(InputStream input, long high, long low) {
 		if (input != null && high > low) {
 			long bytes = (high - (low < 0 ? 0 : low)) + 1;
+			if (input instanceof DirectFileInputStream directFileInputStream) {
+				// Keep it direct so that it can be sent without copying
+				LOGGER.trace("Limiting file stream to {} bytes", bytes);
+				return directFileInputStream.limit(bytes);
+			}
 			LOGGER.trace("Using size-limiting stream (" + bytes + " bytes)");
 			return new SizeLimitInputStream(input, bytes);
 		}
@@ -1348,6 +1386,10 @@ public abstract class StoreItem extends StoreResource {
 
 			DLNAThumbnail thumbnail = Parser.getThumbnail(mediaInfo, inputFile, getFormat(), getType(), seekPosition);
 			if (thumbnail != null) {
+				if (!isResume && mediaInfo.getFileId() == null && inputFile.getFile() != null) {
+					// the scanned file may still be queued for the database
+					MediaDatabaseWriter.await(inputFile.getFile().getAbsolutePath());
+				}
 				if (!isResume && mediaInfo.getFileId() != null) {
 					mediaInfo.setThumbnailId(ThumbnailStore.getId(thumbnail, mediaInfo.getFileId(), mediaInfo.getThumbnailSource()));
 				} else {
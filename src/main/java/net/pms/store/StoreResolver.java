@@ -0,0 +1,303 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide scheduler resolving the store resources.
+ * <p>
+ * All the renderers share a single work-stealing pool. Each device (a renderer
+ * store, or a DVD drive) has its own queue, limiting how many of its
+ * resources are resolved at the same time. Resources in the window asked by
+ * the renderer are resolved first, the others are resolved in the
+ * background.
+ * <p>
+ * Resolving blocks on files, external parsers and the database, so each
+ * resource is resolved as a {@link ForkJoinPool.ManagedBlocker}: the pool
+ * starts another worker while one is blocked, up to a bound, and a few slow
+ * files don't hold back the other devices.
+ */
+public class StoreResolver {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StoreResolver.class);
+	private static final int PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+	/**
+	 * The maximum number of workers, counting the ones started while others
+	 * are blocked.
+	 */
+	private static final int MAX_POOL_SIZE = PARALLELISM + 64;
+	/**
+	 * Resources resolved by a worker before it yields to the other devices.
+	 */
+	private static final int BATCH_SIZE = 16;
+	private static final AtomicInteger THREAD_NUMBER = new AtomicInteger(1);
+	private static final ForkJoinPool POOL = new ForkJoinPool(
+		PARALLELISM,
+		pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("LibraryResource resolver thread " + THREAD_NUMBER.getAndIncrement());
+			return thread;
+		},
+		null,
+		true,
+		0,
+		MAX_POOL_SIZE,
+		1,
+		// past the bound, the blocked workers are not replaced
+		pool -> true,
+		60,
+		TimeUnit.SECONDS
+	);
+	private static final Map<Object, DeviceQueue> QUEUES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private StoreResolver() {
+	}
+
+	/**
+	 * Queues the resolution of resources.
+	 *
+	 * @param device the device the resources belong to, only weakly referenced.
+	 * @param limit the maximum number of resources of this device resolved at
+	 *            the same time.
+	 * @param resources the resources to resolve.
+	 * @param fromIndex the index of the first resource to resolve first.
+	 * @param toIndex the index after the last resource to resolve first.
+	 * @return a future completed when the resources from {@code fromIndex}
+	 *         to {@code toIndex} are resolved.
+	 */
+	public static CompletableFuture<Void> resolve(Object device, int limit, List<? extends Runnable> resources, int fromIndex, int toIndex) {
+		DeviceQueue queue = QUEUES.computeIfAbsent(device, key -> new DeviceQueue());
+		queue.limit = Math.max(1, limit);
+		fromIndex = Math.max(0, Math.min(fromIndex, resources.size()));
+		toIndex = Math.max(fromIndex, Math.min(toIndex, resources.size()));
+		List<CompletableFuture<Void>> window = new ArrayList<>(toIndex - fromIndex);
+		for (int i = fromIndex; i < toIndex; i++) {
+			Runnable resource = resources.get(i);
+			if (resource != null) {
+				window.add(queue.submit(resource, true));
+			}
+		}
+		for (int i = 0; i < resources.size(); i++) {
+			Runnable resource = resources.get(i);
+			if (resource != null && (i < fromIndex || i >= toIndex)) {
+				queue.submit(resource, false);
+			}
+		}
+		queue.drain();
+		return CompletableFuture.allOf(window.toArray(CompletableFuture[]::new));
+	}
+
+	/**
+	 * Waits for a resolution, logging the resources not resolved in time.
+	 *
+	 * @param future the future returned by {@link #resolve}.
+	 * @param timeout the maximum time to wait, in seconds.
+	 * @param name the name to log.
+	 */
+	public static void await(CompletableFuture<Void> future, long timeout, String name) {
+		try {
+			future.get(timeout, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			LOGGER.error("Interrupted while resolving resources of {}", name);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			LOGGER.debug("Error while resolving resources of {}: {}", name, e.getMessage());
+		} catch (TimeoutException e) {
+			LOGGER.debug("Resources of {} not resolved after {} seconds", name, timeout);
+		}
+	}
+
+	/**
+	 * Runs a background store task on the resolver threads.
+	 *
+	 * @param task the task.
+	 */
+	static void execute(Runnable task) {
+		POOL.execute(() -> runBlocking(task));
+	}
+
+	/**
+	 * Runs a task that may block, letting the pool start another worker
+	 * meanwhile.
+	 */
+	private static void runBlocking(Runnable task) {
+		try {
+			ForkJoinPool.managedBlock(new BlockingTask(task));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Forgets the queue of a device, the resources already queued are still
+	 * resolved.
+	 *
+	 * @param device the device.
+	 */
+	public static void remove(Object device) {
+		QUEUES.remove(device);
+	}
+
+	/**
+	 * @return the number of resources waiting to be resolved.
+	 */
+	public static int getQueuedCount() {
+		int count = 0;
+		synchronized (QUEUES) {
+			for (DeviceQueue queue : QUEUES.values()) {
+				count += queue.pending.size();
+			}
+		}
+		return count;
+	}
+
+	private static class BlockingTask implements ForkJoinPool.ManagedBlocker {
+		private final Runnable task;
+		private boolean done;
+
+		private BlockingTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public boolean block() {
+			try {
+				task.run();
+			} finally {
+				done = true;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return done;
+		}
+	}
+
+	private static class ResolveTask implements Runnable {
+		private final Runnable resource;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+		private final AtomicBoolean started = new AtomicBoolean();
+
+		private ResolveTask(Runnable resource) {
+			this.resource = resource;
+		}
+
+		@Override
+		public void run() {
+			if (!started.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				resource.run();
+				future.complete(null);
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * The queues of a device.
+	 *
+	 * A resource already queued is not queued again, but it's moved to the
+	 * priority queue when it's asked for.
+	 */
+	private static class DeviceQueue {
+		private final Map<Runnable, ResolveTask> pending = new ConcurrentHashMap<>();
+		private final ConcurrentLinkedQueue<ResolveTask> priority = new ConcurrentLinkedQueue<>();
+		private final ConcurrentLinkedQueue<ResolveTask> background = new ConcurrentLinkedQueue<>();
+		private final AtomicInteger running = new AtomicInteger();
+		private volatile int limit = 1;
+
+		private CompletableFuture<Void> submit(Runnable resource, boolean isPriority) {
+			ResolveTask created = new ResolveTask(resource);
+			ResolveTask task = pending.putIfAbsent(resource, created);
+			if (task == null) {
+				task = created;
+				(isPriority ? priority : background).add(task);
+			} else if (isPriority) {
+				// the older entry in the background queue will be skipped
+				priority.add(task);
+			}
+			return task.future;
+		}
+
+		private ResolveTask poll() {
+			ResolveTask task = priority.poll();
+			return task != null ? task : background.poll();
+		}
+
+		private void drain() {
+			while (true) {
+				int current = running.get();
+				if (current >= limit || (priority.isEmpty() && background.isEmpty())) {
+					return;
+				}
+				if (running.compareAndSet(current, current + 1)) {
+					POOL.execute(this::work);
+				}
+			}
+		}
+
+		private void work() {
+			try {
+				ResolveTask task;
+				int done = 0;
+				while (done < BATCH_SIZE && (task = poll()) != null) {
+					if (!task.started.get()) {
+						pending.remove(task.resource, task);
+						try {
+							runBlocking(task);
+						} catch (RuntimeException e) {
+							LOGGER.debug("Error while resolving {}: {}", task.resource, e.getMessage());
+							LOGGER.trace("", e);
+						}
+						done++;
+					}
+				}
+			} finally {
+				running.decrementAndGet();
+				// continue with a new task, letting the other devices in
+				drain();
+			}
+		}
+	}
+
+}
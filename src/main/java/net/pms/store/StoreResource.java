@@ -29,6 +29,7 @@ import java.util.HashMap;
 import net.pms.PMS;
 import net.pms.configuration.UmsConfiguration;
 import net.pms.database.MediaDatabase;
+import net.pms.database.MediaDatabaseWriter;
 import net.pms.database.MediaTableFiles;
 import net.pms.dlna.DLNAImageProfile;
 import net.pms.dlna.DLNAThumbnailInputStream;
@@ -932,27 +933,31 @@ public abstract class StoreResource implements Cloneable, Runnable {
 	 */
 	protected final void storeFileInCache(File file, int formatType) {
 		if (MediaDatabase.isAvailable()) {
+			boolean exists = true;
 			Connection connection = null;
 			try {
 				connection = MediaDatabase.getConnectionIfAvailable();
-				if (connection != null && !MediaTableFiles.isDataExists(connection, file.getAbsolutePath(), file.lastModified())) {
-					//handle autocommit
-					boolean currentAutoCommit = connection.getAutoCommit();
-					if (currentAutoCommit) {
-						connection.setAutoCommit(false);
-					}
-					MediaTableFiles.insertOrUpdateData(connection, file.getAbsolutePath(), file.lastModified(), formatType, null);
-					if (currentAutoCommit) {
-						connection.commit();
-						connection.setAutoCommit(true);
-					}
-				}
+				exists = connection == null || MediaTableFiles.isDataExists(connection, file.getAbsolutePath(), file.lastModified());
 			} catch (SQLException e) {
 				LOGGER.error("Database error while trying to store \"{}\" in the cache: {}", file.getName(), e.getMessage());
 				LOGGER.trace("", e);
 			} finally {
+				// the writer needs its own connection, do not hold this one while it works
 				MediaDatabase.close(connection);
 			}
+			if (exists) {
+				return;
+			}
+			try {
+				if (ParallelScanner.isScannerThread()) {
+					MediaDatabaseWriter.submit(file.getAbsolutePath(), file.lastModified(), formatType, null);
+				} else {
+					MediaDatabaseWriter.write(file.getAbsolutePath(), file.lastModified(), formatType, null);
+				}
+			} catch (SQLException e) {
+				LOGGER.error("Database error while trying to store \"{}\" in the cache: {}", file.getName(), e.getMessage());
+				LOGGER.trace("", e);
+			}
 		}
 	}
 
@@ -0,0 +1,220 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.io.File;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A lock-free registry of the store resources of a renderer, indexed by id
+ * and by system file.
+ *
+ * Resources are weakly referenced. The entries of collected resources are
+ * removed by a background thread shared by all the registries.
+ */
+public class StoreResourceRegistry {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StoreResourceRegistry.class);
+	private static final ReferenceQueue<StoreResource> QUEUE = new ReferenceQueue<>();
+
+	static {
+		Thread cleaner = new Thread(StoreResourceRegistry::expungeStaleReferences, "Store registry cleaner");
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
+
+	private final Map<Long, ResourceReference> byId = new ConcurrentHashMap<>();
+	private final Map<File, Set<ResourceReference>> byFile = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the resource registered with the given id.
+	 *
+	 * @param id the resource id.
+	 * @return the resource, or null if it is unknown or was collected.
+	 */
+	public StoreResource get(long id) {
+		ResourceReference reference = byId.get(id);
+		return reference == null ? null : reference.get();
+	}
+
+	/**
+	 * @param id the resource id.
+	 * @return whether a live resource is registered with the given id.
+	 */
+	public boolean contains(long id) {
+		return get(id) != null;
+	}
+
+	/**
+	 * Registers a resource, replacing any resource with the same id.
+	 *
+	 * @param id the resource id.
+	 * @param resource the resource.
+	 */
+	public void put(long id, StoreResource resource) {
+		ResourceReference reference = newReference(id, resource);
+		index(reference);
+		ResourceReference previous = byId.put(id, reference);
+		if (previous != null) {
+			unindex(previous);
+		}
+	}
+
+	/**
+	 * Replaces the resource registered with the given id, if any.
+	 *
+	 * The check and the replacement are atomic, a resource removed meanwhile
+	 * is not registered again.
+	 *
+	 * @param id the resource id.
+	 * @param resource the new resource.
+	 */
+	public void replace(long id, StoreResource resource) {
+		ResourceReference reference = newReference(id, resource);
+		index(reference);
+		ResourceReference previous = byId.replace(id, reference);
+		if (previous == null) {
+			// not registered, this also keeps it out of the queue
+			unindex(reference);
+			return;
+		}
+		unindex(previous);
+	}
+
+	/**
+	 * Forgets the resource registered with the given id.
+	 *
+	 * @param id the resource id.
+	 */
+	public void remove(long id) {
+		ResourceReference reference = byId.remove(id);
+		if (reference != null) {
+			unindex(reference);
+		}
+	}
+
+	/**
+	 * Forgets all the resources.
+	 */
+	public void clear() {
+		for (ResourceReference reference : byId.values()) {
+			reference.clear();
+		}
+		byId.clear();
+		byFile.clear();
+	}
+
+	/**
+	 * Returns the live resources whose system file is the given file.
+	 *
+	 * @param file the file.
+	 * @return the resources, never null.
+	 */
+	public List<StoreResource> getByFile(File file) {
+		List<StoreResource> resources = new ArrayList<>();
+		Set<ResourceReference> references = file == null ? null : byFile.get(file);
+		if (references != null) {
+			for (ResourceReference reference : references) {
+				StoreResource resource = reference.get();
+				if (resource != null) {
+					resources.add(resource);
+				}
+			}
+		}
+		return resources;
+	}
+
+	/**
+	 * @return the number of registered ids, collected resources included
+	 * until they are expunged.
+	 */
+	public int size() {
+		return byId.size();
+	}
+
+	private ResourceReference newReference(long id, StoreResource resource) {
+		File file = resource instanceof SystemFileResource systemFileResource ? systemFileResource.getSystemFile() : null;
+		return new ResourceReference(this, id, file, resource);
+	}
+
+	private void index(ResourceReference reference) {
+		if (reference.file != null) {
+			// add inside the atomic section, unindex() may drop an empty set
+			byFile.compute(reference.file, (file, references) -> {
+				if (references == null) {
+					references = ConcurrentHashMap.newKeySet();
+				}
+				references.add(reference);
+				return references;
+			});
+		}
+	}
+
+	private void unindex(ResourceReference reference) {
+		reference.clear();
+		if (reference.file != null) {
+			byFile.computeIfPresent(reference.file, (file, references) -> {
+				references.remove(reference);
+				return references.isEmpty() ? null : references;
+			});
+		}
+	}
+
+	private void expunge(ResourceReference reference) {
+		if (byId.remove(reference.id, reference)) {
+			LOGGER.trace("Expunged collected resource with id {}", reference.id);
+		}
+		unindex(reference);
+	}
+
+	private static void expungeStaleReferences() {
+		while (true) {
+			try {
+				ResourceReference reference = (ResourceReference) QUEUE.remove();
+				reference.registry.expunge(reference);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				LOGGER.debug("Error while expunging a collected resource: {}", e.getMessage());
+				LOGGER.trace("", e);
+			}
+		}
+	}
+
+	private static class ResourceReference extends WeakReference<StoreResource> {
+		private final StoreResourceRegistry registry;
+		private final long id;
+		private final File file;
+
+		private ResourceReference(StoreResourceRegistry registry, long id, File file, StoreResource resource) {
+			super(resource, QUEUE);
+			this.registry = registry;
+			this.id = id;
+			this.file = file;
+		}
+	}
+
+}
@@ -17,20 +17,18 @@
 package net.pms.store.container;
 
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.Map.Entry;
+import net.pms.PMS;
 import net.pms.configuration.sharedcontent.VirtualFolderContent;
-import net.pms.formats.Format;
-import net.pms.formats.FormatFactory;
 import net.pms.renderers.Renderer;
 import net.pms.store.FileSearch;
+import net.pms.store.SharedStoreTree;
+import net.pms.store.SharedStoreTree.FolderListing;
+import net.pms.store.SharedStoreTree.FolderNode;
 import net.pms.store.StoreContainer;
 import net.pms.store.StoreResource;
 import net.pms.store.SystemFileResource;
-import net.pms.store.SystemFilesHelper;
 import net.pms.store.item.RealFile;
 import net.pms.util.FileUtil;
 import net.pms.util.UMSUtils;
@@ -46,12 +44,27 @@ public class VirtualFolder extends StoreContainer {
 	private final List<File> files;
 	private final List<VirtualFolderContent> virtualFolders;
 
-	private List<File> discoverable;
+	private Deque<File> discoverable;
+	/**
+	 * The size of {@link #discoverable}, readable without the container lock.
+	 */
+	private volatile int pendingCount;
 	private List<File> emptyFoldersToRescan;
 
 	private boolean addToMediaLibrary = true;
+	private boolean analyzed;
 	private ArrayList<StoreResource> searchList;
+	private FileSearch fileSearch;
 	private File potentialCover;
+	/**
+	 * The shared nodes of the directories this folder is a view of, kept so
+	 * the tree holds them as long as this view.
+	 */
+	private List<FolderNode> folderNodes;
+	/**
+	 * The sub directories found by the listings of this folder.
+	 */
+	private Set<File> listedDirectories = Collections.emptySet();
 
 	public VirtualFolder(Renderer renderer) {
 		super(renderer, null, null);
@@ -78,7 +91,9 @@ public class VirtualFolder extends StoreContainer {
 		this.addToMediaLibrary = virtualFile.isAddToMediaLibrary();
 		this.files = virtualFile.getFiles();
 		this.virtualFolders = new ArrayList<>();
-		this.discoverable = files;
+		this.listedDirectories = virtualFile.listedDirectories;
+		this.discoverable = toDiscoverable(files);
+		this.pendingCount = discoverable.size();
 		this.forcedName = forcedName;
 		setLastModified(0);
 	}
@@ -130,6 +145,8 @@ public class VirtualFolder extends StoreContainer {
 
 	private List<File> getFilesListForDirectories() {
 		List<File> out = new ArrayList<>();
+		List<FolderNode> nodes = new ArrayList<>();
+		Set<File> directories = new HashSet<>();
 		List<String> ignoredDirectoryNames = renderer.getUmsConfiguration().getIgnoredFolderNames();
 		String directoryName;
 		for (File directory : getFiles()) {
@@ -146,108 +163,88 @@ public class VirtualFolder extends StoreContainer {
 			}
 
 			if (directory.canRead()) {
-				File[] listFiles = directory.listFiles((File parentDirectory, String file) -> {
-					Path path = Paths.get(parentDirectory + File.separator + file);
-					// Reject any non readable
-					if (!Files.isReadable(path)) {
-						return false;
-					}
-					// Accept any directory
-					if (Files.isDirectory(path)) {
-						// Skip if ignored
-						if (!ignoredDirectoryNames.isEmpty() && ignoredDirectoryNames.contains(file)) {
-							LOGGER.debug("Ignoring {} because it is in the ignored directories list", file);
-							return false;
-						}
-						return true;
-					}
-
-					// We want to find only media files
-					return SystemFilesHelper.isPotentialMediaFile(file);
-				});
-
-				if (listFiles == null) {
+				FolderNode node = SharedStoreTree.getFolder(directory);
+				nodes.add(node);
+				FolderListing listing = node.getListing(ignoredDirectoryNames);
+				if (listing == null) {
 					LOGGER.warn("Can't read files from directory: {}", directory.getAbsolutePath());
 				} else {
-					out.addAll(Arrays.asList(listFiles));
+					out.addAll(listing.getFiles());
+					directories.addAll(listing.getDirectories());
+					if (listing.getPotentialCover() != null) {
+						potentialCover = listing.getPotentialCover();
+					}
 				}
 			} else {
 				LOGGER.warn("Can't read directory: {}", directory.getAbsolutePath());
 			}
 		}
+		folderNodes = nodes;
+		listedDirectories = directories;
 
 		return out;
 	}
 
 	public boolean analyzeChildren() {
-		FileSearch fs = null;
-		if (!discoverable.isEmpty() && renderer.getUmsConfiguration().getSearchInFolder()) {
-			searchList = new ArrayList<>();
-			fs = new FileSearch(searchList);
-			addChild(new SearchFolder(renderer, fs));
-		}
-		for (VirtualFolderContent virtualFolder : virtualFolders) {
-			StoreContainer parent = getSharedContentParent(virtualFolder.getParent());
-			parent.addChild(new VirtualFolder(renderer, virtualFolder), true, true);
+		return analyzeChildren(0);
+	}
+
+	/**
+	 * Adds the discovered files as children, stopping once this folder holds
+	 * the given number of children. The other files stay pending until the
+	 * next call.
+	 *
+	 * @param minimumChildren the number of children needed, 0 for all of them.
+	 * @return true if no file is pending anymore.
+	 */
+	public boolean analyzeChildren(int minimumChildren) {
+		if (!analyzed) {
+			analyzed = true;
+			if (!discoverable.isEmpty() && renderer.getUmsConfiguration().getSearchInFolder()) {
+				searchList = new ArrayList<>();
+				fileSearch = new FileSearch(searchList);
+				addChild(new SearchFolder(renderer, fileSearch));
+			}
+			for (VirtualFolderContent virtualFolder : virtualFolders) {
+				StoreContainer parent = getSharedContentParent(virtualFolder.getParent());
+				parent.addChild(new VirtualFolder(renderer, virtualFolder), true, true);
+			}
 		}
-		while (!discoverable.isEmpty()) {
-			manageFile(discoverable.remove(0));
+		while (!discoverable.isEmpty() && (minimumChildren <= 0 || getChildren().size() < minimumChildren)) {
+			manageFile(discoverable.poll());
 		}
-		if (fs != null) {
-			fs.update(searchList);
+		pendingCount = discoverable.size();
+		if (discoverable.isEmpty() && fileSearch != null) {
+			fileSearch.update(searchList);
+			fileSearch = null;
 		}
 		return discoverable.isEmpty();
 	}
 
+	@Override
+	protected int getPendingChildrenCount() {
+		return pendingCount;
+	}
+
+	@Override
+	protected boolean discoverPendingChildren(int count) {
+		if (discoverable == null) {
+			return false;
+		}
+		return !analyzeChildren(getChildren().size() + count);
+	}
+
 	@Override
 	public void discoverChildren() {
 		if (discoverable == null) {
-			discoverable = new ArrayList<>();
+			discoverable = new ArrayDeque<>();
 		} else {
 			return;
 		}
 
+		// Listing, cover and thumbnails are shared between renderers
 		List<File> childrenFiles = getFilesListForDirectories();
 
-		// Build a map of all files and their corresponding formats
-		Set<File> images = new HashSet<>();
-		Set<File> audioVideo = new HashSet<>();
-		Iterator<File> iterator = childrenFiles.iterator();
-		while (iterator.hasNext()) {
-			File file = iterator.next();
-			if (file.isFile()) {
-				if (SystemFilesHelper.isPotentialThumbnail(file.getName())) {
-					if (SystemFilesHelper.isFolderThumbnail(file, false)) {
-						potentialCover = file;
-						iterator.remove();
-					} else {
-						images.add(file);
-					}
-				} else {
-					Format format = FormatFactory.getAssociatedFormat(file.getAbsolutePath());
-					if (format != null && (format.isAudio() || format.isVideo())) {
-						audioVideo.add(file);
-					}
-				}
-			}
-		}
-
-		// Remove cover/thumbnails from file list
-		if (!images.isEmpty() && !audioVideo.isEmpty()) {
-			Set<File> potentialMatches;
-			for (File audioVideoFile : audioVideo) {
-				potentialMatches = SystemFilesHelper.getPotentialFileThumbnails(audioVideoFile, false);
-				iterator = images.iterator();
-				while (iterator.hasNext()) {
-					File imageFile = iterator.next();
-					if (potentialMatches.contains(imageFile)) {
-						iterator.remove();
-						childrenFiles.remove(imageFile);
-					}
-				}
-			}
-		}
-
 		// ATZ handling
 		if (childrenFiles.size() > renderer.getUmsConfiguration().getATZLimit() && StringUtils.isEmpty(forcedName)) {
 			/*
@@ -302,17 +299,34 @@ public class VirtualFolder extends StoreContainer {
 			return;
 		}
 
+		List<File> files = new ArrayList<>();
 		for (File f : childrenFiles) {
-			if (f.isDirectory()) {
-				discoverable.add(f);
+			if (f.isDirectory() || f.isFile()) {
+				files.add(f);
 			}
 		}
+		discoverable = toDiscoverable(files);
+		pendingCount = discoverable.size();
+	}
 
-		for (File f : childrenFiles) {
-			if (f.isFile()) {
-				discoverable.add(f);
+	/**
+	 * Sorts the files the way their children will be sorted, the children
+	 * keep that order when pages are served before they are all discovered.
+	 * The directories are known from the listings, the files are not checked
+	 * again.
+	 */
+	private Deque<File> toDiscoverable(List<File> files) {
+		List<File> sorted = new ArrayList<>(files);
+		if (isSortedByDisplayName && sorted.size() > 1) {
+			boolean ignoreArticles = PMS.getConfiguration().isIgnoreTheWordAandThe();
+			Map<File, String> keys = new HashMap<>(sorted.size());
+			for (File file : sorted) {
+				String name = listedDirectories.contains(file) ? file.getName() : FileUtil.getFileNameWithoutExtension(file.getName());
+				keys.put(file, getSortKey(name, ignoreArticles));
 			}
+			sorted.sort((File file1, File file2) -> keys.get(file1).compareToIgnoreCase(keys.get(file2)));
 		}
+		return new ArrayDeque<>(sorted);
 	}
 
 	/**
@@ -361,6 +375,11 @@ public class VirtualFolder extends StoreContainer {
 		getChildren().clear();
 		emptyFoldersToRescan = null; // Since we're re-scanning, reset this list so it can be built again
 		discoverable = null;
+		pendingCount = 0;
+		analyzed = false;
+		fileSearch = null;
+		// all the children are known again before this returns
+		childrenOrderFixed = false;
 		discoverChildren();
 		analyzeChildren();
 	}
@@ -0,0 +1,770 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store.item;
+
+import com.github.junrar.Archive;
+import com.github.junrar.exception.RarException;
+import com.github.junrar.rarfile.FileHeader;
+import com.github.junrar.volume.FileVolumeManager;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import net.sf.sevenzipjbinding.ExtractOperationResult;
+import net.sf.sevenzipjbinding.IInArchive;
+import net.sf.sevenzipjbinding.SevenZip;
+import net.sf.sevenzipjbinding.SevenZipException;
+import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
+import net.sf.sevenzipjbinding.simple.ISimpleInArchiveItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads archive entries from any offset.
+ *
+ * The opened archives and their entry index are kept for a while and
+ * reused, so a request neither reopens the archive nor scans its headers.
+ * A stored ZIP entry is read from the requested offset directly. Other
+ * entries have to be decompressed from their start, so a stream closed
+ * before the end is kept as a checkpoint, and a later request at or after
+ * its position continues the decompression from there.
+ */
+final class ArchiveEntryAccess {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveEntryAccess.class);
+	private static final int MAX_IDLE_HANDLES = 8;
+	private static final int MAX_CHECKPOINTS = 8;
+	private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+	private static final int MAINTENANCE_INTERVAL = 10;
+	private static final int PIPE_SIZE = 65536;
+	private static final Object LOCK = new Object();
+	/**
+	 * The archives not in use, the most recently used last.
+	 */
+	private static final LinkedList<Handle> IDLE_HANDLES = new LinkedList<>();
+	/**
+	 * The streams closed before the end, the most recently used last.
+	 */
+	private static final LinkedList<EntryInputStream> CHECKPOINTS = new LinkedList<>();
+	private static ScheduledExecutorService maintenance;
+
+	enum Type {
+		ZIP,
+		RAR,
+		SEVEN_ZIP
+	}
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private ArchiveEntryAccess() {
+	}
+
+	/**
+	 * Opens an archive entry at the given offset.
+	 *
+	 * @param type the archive type.
+	 * @param file the archive.
+	 * @param entryName the entry name in the archive.
+	 * @param offset the position of the first byte to read.
+	 * @return the entry data from the offset.
+	 * @throws IOException if the entry can't be read.
+	 */
+	static InputStream getInputStream(Type type, File file, String entryName, long offset) throws IOException {
+		startMaintenance();
+		String key = getKey(file);
+		EntryInputStream checkpoint = takeCheckpoint(key, entryName, offset);
+		if (checkpoint != null) {
+			try {
+				checkpoint.skipFully(offset - checkpoint.position);
+				LOGGER.trace("Continuing the extraction of {} from {}", entryName, checkpoint.position);
+				return checkpoint;
+			} catch (IOException e) {
+				LOGGER.debug("Extraction checkpoint of {} lost: {}", entryName, e.getMessage());
+				checkpoint.discard();
+			}
+		}
+
+		Handle handle = acquire(type, file, key);
+		EntryInputStream in;
+		try {
+			in = new EntryInputStream(handle, entryName, handle.open(entryName), handle.isSeekable(entryName));
+		} catch (IOException | RuntimeException e) {
+			release(handle, true);
+			throw e;
+		}
+		try {
+			in.skipFully(offset);
+		} catch (IOException e) {
+			in.discard();
+			throw e;
+		}
+		return in;
+	}
+
+	/**
+	 * Tells whether an archive entry is read from any offset without
+	 * decompressing the data before it.
+	 *
+	 * @param type the archive type.
+	 * @param file the archive.
+	 * @param entryName the entry name in the archive.
+	 * @return {@code true} for a stored ZIP entry.
+	 */
+	static boolean isSeekable(Type type, File file, String entryName) {
+		if (type != Type.ZIP) {
+			// RAR and 7z entries are always extracted from their start
+			return false;
+		}
+		startMaintenance();
+		Handle handle;
+		try {
+			handle = acquire(type, file, getKey(file));
+		} catch (IOException e) {
+			LOGGER.debug("Can't open archive {}: {}", file, e.getMessage());
+			return false;
+		}
+		try {
+			return handle.isSeekable(entryName);
+		} finally {
+			release(handle, true);
+		}
+	}
+
+	private static String getKey(File file) {
+		return file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+	}
+
+	private static EntryInputStream takeCheckpoint(String key, String entryName, long offset) {
+		synchronized (LOCK) {
+			EntryInputStream best = null;
+			for (EntryInputStream checkpoint : CHECKPOINTS) {
+				if (checkpoint.handle.key.equals(key) && checkpoint.entryName.equals(entryName) &&
+						checkpoint.position <= offset && (best == null || checkpoint.position > best.position)) {
+					best = checkpoint;
+				}
+			}
+			if (best != null) {
+				CHECKPOINTS.remove(best);
+				best.closed = false;
+			}
+			return best;
+		}
+	}
+
+	private static void park(EntryInputStream checkpoint) {
+		EntryInputStream evicted = null;
+		synchronized (LOCK) {
+			checkpoint.lastUsed = System.currentTimeMillis();
+			CHECKPOINTS.addLast(checkpoint);
+			if (CHECKPOINTS.size() > MAX_CHECKPOINTS) {
+				evicted = CHECKPOINTS.removeFirst();
+			}
+		}
+		if (evicted != null) {
+			evicted.discard();
+		}
+	}
+
+	private static Handle acquire(Type type, File file, String key) throws IOException {
+		synchronized (LOCK) {
+			for (Iterator<Handle> iterator = IDLE_HANDLES.descendingIterator(); iterator.hasNext();) {
+				Handle handle = iterator.next();
+				if (handle.key.equals(key)) {
+					iterator.remove();
+					return handle;
+				}
+			}
+		}
+		LOGGER.trace("Opening archive {}", file);
+		return switch (type) {
+			case ZIP -> new ZipHandle(key, file);
+			case RAR -> new RarHandle(key, file);
+			case SEVEN_ZIP -> new SevenZipHandle(key, file);
+		};
+	}
+
+	private static void release(Handle handle, boolean reusable) {
+		Handle evicted = null;
+		if (reusable && !handle.isBusy()) {
+			synchronized (LOCK) {
+				handle.lastUsed = System.currentTimeMillis();
+				IDLE_HANDLES.addLast(handle);
+				if (IDLE_HANDLES.size() > MAX_IDLE_HANDLES) {
+					evicted = IDLE_HANDLES.removeFirst();
+				}
+			}
+		} else {
+			evicted = handle;
+		}
+		if (evicted != null) {
+			closeLater(evicted);
+		}
+	}
+
+	/**
+	 * Closes an archive on the maintenance thread, as it may have to wait
+	 * for an extraction to stop.
+	 */
+	private static void closeLater(Closeable closeable) {
+		ScheduledExecutorService executor = maintenance;
+		if (executor != null) {
+			try {
+				executor.execute(() -> closeQuietly(closeable));
+				return;
+			} catch (RejectedExecutionException e) {
+				// closing now
+			}
+		}
+		closeQuietly(closeable);
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			LOGGER.debug("Error while closing an archive: {}", e.getMessage());
+		}
+	}
+
+	private static synchronized void startMaintenance() {
+		if (maintenance == null) {
+			maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Archive entry access");
+				thread.setDaemon(true);
+				return thread;
+			});
+			maintenance.scheduleWithFixedDelay(ArchiveEntryAccess::maintain, MAINTENANCE_INTERVAL, MAINTENANCE_INTERVAL, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Drops the checkpoints and closes the archives not used for a while.
+	 */
+	static void maintain() {
+		long expired = System.currentTimeMillis() - IDLE_TIMEOUT;
+		List<EntryInputStream> checkpoints = new ArrayList<>();
+		List<Handle> handles = new ArrayList<>();
+		synchronized (LOCK) {
+			for (Iterator<EntryInputStream> iterator = CHECKPOINTS.iterator(); iterator.hasNext();) {
+				EntryInputStream checkpoint = iterator.next();
+				if (checkpoint.lastUsed < expired) {
+					iterator.remove();
+					checkpoints.add(checkpoint);
+				}
+			}
+			for (Iterator<Handle> iterator = IDLE_HANDLES.iterator(); iterator.hasNext();) {
+				Handle handle = iterator.next();
+				if (handle.lastUsed < expired) {
+					iterator.remove();
+					handles.add(handle);
+				}
+			}
+		}
+		for (EntryInputStream checkpoint : checkpoints) {
+			checkpoint.discard();
+		}
+		for (Handle handle : handles) {
+			closeQuietly(handle);
+		}
+	}
+
+	/**
+	 * Drops all the checkpoints and closes all the archives not in use.
+	 */
+	static void clear() {
+		List<EntryInputStream> checkpoints;
+		List<Handle> handles;
+		synchronized (LOCK) {
+			checkpoints = new ArrayList<>(CHECKPOINTS);
+			CHECKPOINTS.clear();
+			handles = new ArrayList<>(IDLE_HANDLES);
+			IDLE_HANDLES.clear();
+		}
+		for (EntryInputStream checkpoint : checkpoints) {
+			checkpoint.discard();
+		}
+		for (Handle handle : handles) {
+			closeQuietly(handle);
+		}
+	}
+
+	static int getCheckpointCount() {
+		synchronized (LOCK) {
+			return CHECKPOINTS.size();
+		}
+	}
+
+	static int getIdleHandleCount() {
+		synchronized (LOCK) {
+			return IDLE_HANDLES.size();
+		}
+	}
+
+	/**
+	 * The entry data, keeping track of its position.
+	 */
+	private static class EntryInputStream extends FilterInputStream {
+		private final Handle handle;
+		private final String entryName;
+		private final boolean seekable;
+		private long position;
+		private long lastUsed;
+		private boolean eof;
+		private boolean failed;
+		private boolean closed;
+
+		private EntryInputStream(Handle handle, String entryName, InputStream in, boolean seekable) {
+			super(in);
+			this.handle = handle;
+			this.entryName = entryName;
+			this.seekable = seekable;
+		}
+
+		@Override
+		public int read() throws IOException {
+			try {
+				int b = in.read();
+				if (b < 0) {
+					eof = true;
+				} else {
+					position++;
+				}
+				return b;
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			try {
+				int n = in.read(b, off, len);
+				if (n < 0) {
+					eof = true;
+				} else {
+					position += n;
+				}
+				return n;
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			try {
+				long skipped = in.skip(n);
+				position += skipped;
+				return skipped;
+			} catch (IOException e) {
+				failed = true;
+				throw e;
+			}
+		}
+
+		private void skipFully(long n) throws IOException {
+			long remaining = n;
+			while (remaining > 0) {
+				long skipped = skip(remaining);
+				if (skipped <= 0) {
+					if (read() < 0) {
+						throw new EOFException("Offset " + n + " is past the end of " + entryName);
+					}
+					skipped = 1;
+				}
+				remaining -= skipped;
+			}
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (!eof && !failed && !seekable && position > 0) {
+				park(this);
+			} else {
+				discard();
+			}
+		}
+
+		private void discard() {
+			closed = true;
+			try {
+				in.close();
+			} catch (IOException e) {
+				LOGGER.trace("", e);
+			}
+			release(handle, !failed);
+		}
+	}
+
+	/**
+	 * An opened archive, used by one stream at a time.
+	 */
+	private abstract static class Handle implements Closeable {
+		private final String key;
+		private long lastUsed;
+
+		private Handle(String key) {
+			this.key = key;
+		}
+
+		abstract InputStream open(String entryName) throws IOException;
+
+		boolean isSeekable(String entryName) {
+			return false;
+		}
+
+		boolean isBusy() {
+			return false;
+		}
+	}
+
+	private static class ZipHandle extends Handle {
+		private final ZipFile zipFile;
+
+		private ZipHandle(String key, File file) throws IOException {
+			super(key);
+			zipFile = new ZipFile(file);
+		}
+
+		private ZipEntry getEntry(String entryName) throws FileNotFoundException {
+			ZipEntry entry = zipFile.getEntry(entryName);
+			if (entry == null) {
+				throw new FileNotFoundException("No such entry " + entryName + " in " + zipFile.getName());
+			}
+			return entry;
+		}
+
+		@Override
+		InputStream open(String entryName) throws IOException {
+			return zipFile.getInputStream(getEntry(entryName));
+		}
+
+		@Override
+		boolean isSeekable(String entryName) {
+			// the stream of a stored entry skips without reading
+			ZipEntry entry = zipFile.getEntry(entryName);
+			return entry != null && entry.getMethod() == ZipEntry.STORED;
+		}
+
+		@Override
+		public void close() throws IOException {
+			zipFile.close();
+		}
+	}
+
+	/**
+	 * An archive extracted by a library writing the data, done on its own
+	 * thread through a pipe.
+	 */
+	private abstract static class PipedHandle extends Handle {
+		private volatile Thread extraction;
+		private volatile boolean done = true;
+
+		private PipedHandle(String key) {
+			super(key);
+		}
+
+		protected InputStream extract(String threadName, Extraction extractor) {
+			Pipe pipe = new Pipe(PIPE_SIZE);
+			done = false;
+			Thread thread = new Thread(() -> {
+				boolean complete = false;
+				try {
+					extractor.extract(pipe.getOutputStream());
+					complete = true;
+				} catch (IOException e) {
+					LOGGER.debug("Unpack error, maybe it's normal, as the stream can be closed early: {}", e.getMessage());
+				} finally {
+					done = true;
+					// the reader fails instead of getting a truncated entry
+					pipe.closeOutput(complete);
+				}
+			}, threadName);
+			thread.setDaemon(true);
+			extraction = thread;
+			thread.start();
+			return pipe;
+		}
+
+		@Override
+		boolean isBusy() {
+			return !done;
+		}
+
+		protected void awaitExtraction() {
+			Thread thread = extraction;
+			if (thread != null) {
+				try {
+					thread.join(5000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private interface Extraction {
+		void extract(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * A bounded pipe from the extraction thread to the reader. Unlike
+	 * {@link java.io.PipedInputStream}, it doesn't check that the threads
+	 * using it are alive: a checkpoint is read by successive request threads,
+	 * which end while the extraction waits.
+	 */
+	private static class Pipe extends InputStream {
+		private final byte[] buffer;
+		private final OutputStream out = new PipeOutputStream();
+		private int readPosition;
+		private int count;
+		private boolean outputClosed;
+		private boolean failed;
+		private boolean closed;
+
+		private Pipe(int size) {
+			buffer = new byte[size];
+		}
+
+		private OutputStream getOutputStream() {
+			return out;
+		}
+
+		/**
+		 * Ends the data written.
+		 *
+		 * @param complete whether all the data was written, otherwise the
+		 *            reader fails once it has read what was written.
+		 */
+		private synchronized void closeOutput(boolean complete) {
+			outputClosed = true;
+			failed = !complete;
+			notifyAll();
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			while (count == 0) {
+				if (closed) {
+					throw new IOException("Pipe closed");
+				} else if (failed) {
+					throw new IOException("Extraction failed");
+				} else if (outputClosed) {
+					return -1;
+				}
+				await();
+			}
+			int n = Math.min(len, count);
+			int first = Math.min(n, buffer.length - readPosition);
+			System.arraycopy(buffer, readPosition, b, off, first);
+			System.arraycopy(buffer, 0, b, off + first, n - first);
+			readPosition = (readPosition + n) % buffer.length;
+			count -= n;
+			notifyAll();
+			return n;
+		}
+
+		@Override
+		public synchronized int available() {
+			return count;
+		}
+
+		@Override
+		public synchronized void close() {
+			closed = true;
+			count = 0;
+			notifyAll();
+		}
+
+		private synchronized void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				while (count == buffer.length && !closed) {
+					await();
+				}
+				if (closed) {
+					throw new IOException("Pipe closed");
+				}
+				int writePosition = (readPosition + count) % buffer.length;
+				int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writePosition));
+				System.arraycopy(b, off, buffer, writePosition, n);
+				count += n;
+				off += n;
+				len -= n;
+				notifyAll();
+			}
+		}
+
+		private void await() throws InterruptedIOException {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+		}
+
+		private class PipeOutputStream extends OutputStream {
+			@Override
+			public void write(int b) throws IOException {
+				Pipe.this.write(new byte[] {(byte) b}, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				Pipe.this.write(b, off, len);
+			}
+
+			@Override
+			public void close() {
+				closeOutput(true);
+			}
+		}
+	}
+
+	private static class RarHandle extends PipedHandle {
+		private final Archive archive;
+		private final Map<String, FileHeader> headers = new HashMap<>();
+
+		private RarHandle(String key, File file) throws IOException {
+			super(key);
+			try {
+				archive = new Archive(new FileVolumeManager(file), null, null);
+			} catch (RarException e) {
+				throw new IOException(e);
+			}
+			for (FileHeader header : archive.getFileHeaders()) {
+				headers.putIfAbsent(header.getFileName(), header);
+			}
+		}
+
+		@Override
+		InputStream open(String entryName) throws IOException {
+			FileHeader header = headers.get(entryName);
+			if (header == null) {
+				throw new FileNotFoundException("No such entry " + entryName + " in archive");
+			}
+			return extract("Rar Extractor", out -> {
+				try {
+					archive.extractFile(header, out);
+				} catch (RarException e) {
+					throw new IOException(e);
+				}
+			});
+		}
+
+		@Override
+		public void close() throws IOException {
+			awaitExtraction();
+			archive.close();
+		}
+	}
+
+	private static class SevenZipHandle extends PipedHandle {
+		private final RandomAccessFile randomAccessFile;
+		private final IInArchive archive;
+		private final Map<String, Integer> items = new HashMap<>();
+
+		private SevenZipHandle(String key, File file) throws IOException {
+			super(key);
+			randomAccessFile = new RandomAccessFile(file, "r");
+			try {
+				archive = SevenZip.openInArchive(null, new RandomAccessFileInStream(randomAccessFile));
+				for (ISimpleInArchiveItem item : archive.getSimpleInterface().getArchiveItems()) {
+					items.putIfAbsent(item.getPath(), item.getItemIndex());
+				}
+			} catch (SevenZipException e) {
+				randomAccessFile.close();
+				throw new IOException(e);
+			}
+		}
+
+		@Override
+		InputStream open(String entryName) throws IOException {
+			Integer index = items.get(entryName);
+			if (index == null) {
+				throw new FileNotFoundException("No such item " + entryName + " found in archive");
+			}
+			return extract("7Zip Extractor", out -> {
+				try {
+					ExtractOperationResult result = archive.getSimpleInterface().getArchiveItem(index).extractSlow((byte[] data) -> {
+						try {
+							out.write(data);
+						} catch (IOException e) {
+							throw new SevenZipException(e);
+						}
+						return data.length;
+					});
+					if (result != ExtractOperationResult.OK) {
+						throw new IOException("Extraction of " + entryName + " failed: " + result);
+					}
+				} catch (SevenZipException e) {
+					throw new IOException(e);
+				}
+			});
+		}
+
+		@Override
+		public void close() throws IOException {
+			awaitExtraction();
+			try {
+				archive.close();
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+	}
+
+}
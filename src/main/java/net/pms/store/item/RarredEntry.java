@@ -16,10 +16,6 @@
  */
 package net.pms.store.item;
 
-import com.github.junrar.Archive;
-import com.github.junrar.exception.RarException;
-import com.github.junrar.rarfile.FileHeader;
-import com.github.junrar.volume.FileVolumeManager;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -93,33 +89,19 @@ public class RarredEntry extends StoreItem implements IPushOutput {
 
 	@Override
 	public boolean isUnderlyingSeekSupported() {
+		// the entry is extracted from its start up to the offset
 		return length() < MAX_ARCHIVE_SIZE_SEEK;
 	}
 
 	@Override
 	public void push(final OutputStream out) throws IOException {
 		Runnable r = () -> {
-			Archive rarFile = null;
-			try {
-				rarFile = new Archive(new FileVolumeManager(file), null, null);
-				FileHeader header = null;
-				for (FileHeader fh : rarFile.getFileHeaders()) {
-					if (fh.getFileName().equals(fileHeaderName)) {
-						header = fh;
-						break;
-					}
-				}
-				if (header != null) {
-					LOGGER.trace("Starting the extraction of " + header.getFileName());
-					rarFile.extractFile(header, out);
-				}
-			} catch (RarException | IOException e) {
-				LOGGER.debug("Unpack error, maybe it's normal, as backend can be terminated: " + e.getMessage());
+			try (InputStream in = getInputStreamAt(0)) {
+				in.transferTo(out);
+			} catch (IOException e) {
+				LOGGER.debug("Unpack error, maybe it's normal, as backend can be terminated: {}", e.getMessage());
 			} finally {
 				try {
-					if (rarFile != null) {
-						rarFile.close();
-					}
 					out.close();
 				} catch (IOException e) {
 					LOGGER.debug("Caught exception", e);
@@ -130,6 +112,11 @@ public class RarredEntry extends StoreItem implements IPushOutput {
 		new Thread(r, "Rar Extractor").start();
 	}
 
+	@Override
+	public InputStream getInputStreamAt(long offset) throws IOException {
+		return ArchiveEntryAccess.getInputStream(ArchiveEntryAccess.Type.RAR, file, fileHeaderName, offset);
+	}
+
 	@Override
 	protected void resolveOnce() {
 		if (getFormat() == null || !getFormat().isVideo()) {
@@ -20,7 +20,6 @@ import com.sun.jna.Platform;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -29,7 +28,7 @@ import net.pms.database.MediaTableCoverArtArchive;
 import net.pms.dlna.DLNAImageProfile;
 import net.pms.dlna.DLNAThumbnailInputStream;
 import net.pms.formats.Format;
-import net.pms.formats.FormatFactory;
+import net.pms.io.DirectFileInputStream;
 import net.pms.media.MediaLang;
 import net.pms.media.MediaType;
 import net.pms.media.subtitle.MediaOnDemandSubtitle;
@@ -39,6 +38,8 @@ import net.pms.platform.PlatformUtils;
 import net.pms.renderers.Renderer;
 import net.pms.store.MediaInfoStore;
 import net.pms.store.MediaStatusStore;
+import net.pms.store.SharedStoreTree;
+import net.pms.store.SharedStoreTree.FileNode;
 import net.pms.store.StoreItem;
 import net.pms.store.SystemFilesHelper;
 import net.pms.store.container.ChapterFileTranscodeVirtualFolder;
@@ -66,6 +67,11 @@ public class RealFile extends StoreItem {
 	private volatile String baseNamePrettified;
 
 	private final File file;
+	/**
+	 * The renderer independent node of the file, shared by the views of all
+	 * the renderers.
+	 */
+	private final FileNode node;
 	private boolean addToMediaLibrary = true;
 	private String name;
 	private volatile String baseNameWithoutExtension;
@@ -78,6 +84,7 @@ public class RealFile extends StoreItem {
 	public RealFile(Renderer renderer, File file, String name) {
 		super(renderer);
 		this.file = file;
+		this.node = SharedStoreTree.getFile(file);
 		this.name = name;
 		setLastModified(file.lastModified());
 	}
@@ -103,24 +110,8 @@ public class RealFile extends StoreItem {
 			//    Format.UNKNOWN + bad parse = inconclusive
 			//    known types    + bad parse = bad/encrypted file
 			if (getType() != Format.UNKNOWN && getMediaInfo() != null) {
-				if (getMediaInfo().getDefaultVideoTrack() != null && getMediaInfo().getDefaultVideoTrack().isEncrypted()) {
-					valid = false;
-					LOGGER.info("The file {} is encrypted. It will be hidden", file.getAbsolutePath());
-				} else if (getMediaInfo().getContainer() == null || getMediaInfo().getContainer().equals(MediaLang.UND)) {
-					// problematic media not parsed by MediaInfo try to parse it in a different way by ffmpeg, AudioFileIO or ImagesUtil
-					// this is a quick fix for the MediaInfo insufficient parsing method
-					getMediaInfo().setMediaParser(null);
-					InputFile inputfile = new InputFile();
-					inputfile.setFile(file);
-					getMediaInfo().setContainer(null);
-					FFmpegParser.parse(getMediaInfo(), inputfile, getFormat(), getType());
-					if (getMediaInfo().getContainer() == null) {
-						valid = false;
-						LOGGER.info("The file {} could not be parsed. It will be hidden", file.getAbsolutePath());
-					}
-					//TODO: this should update the db
-				}
-
+				// the media is only checked by the first renderer
+				valid = getSplitTrack() > 0 ? isMediaValid() : node.isMediaValid(this::isMediaValid);
 			}
 
 			// XXX isMediaInfoThumbnailGeneration is only true for the "default renderer"
@@ -134,6 +125,31 @@ public class RealFile extends StoreItem {
 		return valid;
 	}
 
+	/**
+	 * Checks that the parsed media can be served, reparsing it when MediaInfo
+	 * could not.
+	 */
+	private boolean isMediaValid() {
+		if (getMediaInfo().getDefaultVideoTrack() != null && getMediaInfo().getDefaultVideoTrack().isEncrypted()) {
+			LOGGER.info("The file {} is encrypted. It will be hidden", file.getAbsolutePath());
+			return false;
+		} else if (getMediaInfo().getContainer() == null || getMediaInfo().getContainer().equals(MediaLang.UND)) {
+			// problematic media not parsed by MediaInfo try to parse it in a different way by ffmpeg, AudioFileIO or ImagesUtil
+			// this is a quick fix for the MediaInfo insufficient parsing method
+			getMediaInfo().setMediaParser(null);
+			InputFile inputfile = new InputFile();
+			inputfile.setFile(file);
+			getMediaInfo().setContainer(null);
+			FFmpegParser.parse(getMediaInfo(), inputfile, getFormat(), getType());
+			if (getMediaInfo().getContainer() == null) {
+				LOGGER.info("The file {} could not be parsed. It will be hidden", file.getAbsolutePath());
+				return false;
+			}
+			//TODO: this should update the db
+		}
+		return true;
+	}
+
 	@Override
 	public boolean isRendererAllowed() {
 		return renderer.hasShareAccess(getFile());
@@ -142,8 +158,8 @@ public class RealFile extends StoreItem {
 	@Override
 	public InputStream getInputStream() {
 		try {
-			return new FileInputStream(getFile());
-		} catch (FileNotFoundException e) {
+			return new DirectFileInputStream(getFile(), 0, -1);
+		} catch (IOException e) {
 			LOGGER.debug("File not found: {}", getFile().getAbsolutePath());
 		}
 
@@ -167,7 +183,7 @@ public class RealFile extends StoreItem {
 	@Override
 	public void resolveFormat() {
 		if (getFormat() == null) {
-			setFormat(FormatFactory.getAssociatedFormat(getFile().getAbsolutePath()));
+			setFormat(node.getFormat());
 		}
 
 		super.resolveFormat();
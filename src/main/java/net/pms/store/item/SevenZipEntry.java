@@ -17,11 +17,9 @@
 package net.pms.store.item;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import net.pms.dlna.DLNAImageProfile;
 import net.pms.dlna.DLNAThumbnailInputStream;
 import net.pms.formats.Format;
@@ -32,12 +30,6 @@ import net.pms.store.StoreItem;
 import net.pms.util.FileUtil;
 import net.pms.util.IPushOutput;
 import net.pms.util.InputFile;
-import net.sf.sevenzipjbinding.IInArchive;
-import net.sf.sevenzipjbinding.SevenZip;
-import net.sf.sevenzipjbinding.SevenZipException;
-import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
-import net.sf.sevenzipjbinding.simple.ISimpleInArchive;
-import net.sf.sevenzipjbinding.simple.ISimpleInArchiveItem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,7 +38,6 @@ public class SevenZipEntry extends StoreItem implements IPushOutput {
 	private final File file;
 	private final String zeName;
 	private final long length;
-	private IInArchive arc;
 
 	public SevenZipEntry(Renderer renderer, File file, String zeName, long length) {
 		super(renderer);
@@ -97,45 +88,19 @@ public class SevenZipEntry extends StoreItem implements IPushOutput {
 
 	@Override
 	public boolean isUnderlyingSeekSupported() {
+		// the entry is extracted from its start up to the offset
 		return length() < MAX_ARCHIVE_SIZE_SEEK;
 	}
 
 	@Override
 	public void push(final OutputStream out) throws IOException {
 		Runnable r = () -> {
-			try {
-				RandomAccessFile rf = new RandomAccessFile(file, "r");
-
-				arc = SevenZip.openInArchive(null, new RandomAccessFileInStream(rf));
-				ISimpleInArchive simpleInArchive = arc.getSimpleInterface();
-				ISimpleInArchiveItem realItem = null;
-
-				for (ISimpleInArchiveItem item : simpleInArchive.getArchiveItems()) {
-					if (item.getPath().equals(zeName)) {
-						realItem = item;
-						break;
-					}
-				}
-
-				if (realItem == null) {
-					LOGGER.trace("No such item " + zeName + " found in archive");
-					return;
-				}
-
-				realItem.extractSlow((byte[] data) -> {
-					try {
-						out.write(data);
-					} catch (IOException e) {
-						LOGGER.debug("Caught exception", e);
-						throw new SevenZipException();
-					}
-					return data.length;
-				});
-			} catch (FileNotFoundException | SevenZipException e) {
-				LOGGER.debug("Unpack error. Possibly harmless.", e.getMessage());
+			try (InputStream in = getInputStreamAt(0)) {
+				in.transferTo(out);
+			} catch (IOException e) {
+				LOGGER.debug("Unpack error, maybe it's normal, as backend can be terminated: {}", e.getMessage());
 			} finally {
 				try {
-					arc.close();
 					out.close();
 				} catch (IOException e) {
 					LOGGER.debug("Caught exception", e);
@@ -146,6 +111,11 @@ public class SevenZipEntry extends StoreItem implements IPushOutput {
 		new Thread(r, "7Zip Extractor").start();
 	}
 
+	@Override
+	public InputStream getInputStreamAt(long offset) throws IOException {
+		return ArchiveEntryAccess.getInputStream(ArchiveEntryAccess.Type.SEVEN_ZIP, file, zeName, offset);
+	}
+
 	@Override
 	public synchronized void resolve() {
 		if (getFormat() == null || !getFormat().isVideo()) {
@@ -20,8 +20,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import net.pms.dlna.DLNAImageProfile;
 import net.pms.dlna.DLNAThumbnailInputStream;
 import net.pms.formats.Format;
@@ -40,7 +38,6 @@ public class ZippedEntry extends StoreItem implements IPushOutput {
 	private final File file;
 	private final String zeName;
 	private final long length;
-	private ZipFile zipFile;
 
 	public ZippedEntry(Renderer renderer, File file, String zeName, long length) {
 		super(renderer);
@@ -91,27 +88,20 @@ public class ZippedEntry extends StoreItem implements IPushOutput {
 
 	@Override
 	public boolean isUnderlyingSeekSupported() {
-		return length() < MAX_ARCHIVE_SIZE_SEEK;
+		// a stored entry is read from any offset, a deflated one is
+		// decompressed from its start up to the offset
+		return length() < MAX_ARCHIVE_SIZE_SEEK || ArchiveEntryAccess.isSeekable(ArchiveEntryAccess.Type.ZIP, file, zeName);
 	}
 
 	@Override
 	public void push(final OutputStream out) throws IOException {
 		Runnable r = () -> {
-			try {
-				int n;
-				byte[] data = new byte[65536];
-				zipFile = new ZipFile(file);
-				ZipEntry ze = zipFile.getEntry(zeName);
-				try (InputStream in = zipFile.getInputStream(ze)) {
-					while ((n = in.read(data)) > -1) {
-						out.write(data, 0, n);
-					}
-				}
+			try (InputStream in = getInputStreamAt(0)) {
+				in.transferTo(out);
 			} catch (IOException e) {
-				LOGGER.error("Unpack error. Possibly harmless.", e);
+				LOGGER.debug("Unpack error, maybe it's normal, as backend can be terminated: {}", e.getMessage());
 			} finally {
 				try {
-					zipFile.close();
 					out.close();
 				} catch (IOException e) {
 					LOGGER.debug("Caught exception", e);
@@ -122,6 +112,11 @@ public class ZippedEntry extends StoreItem implements IPushOutput {
 		new Thread(r, "Zip Extractor").start();
 	}
 
+	@Override
+	public InputStream getInputStreamAt(long offset) throws IOException {
+		return ArchiveEntryAccess.getInputStream(ArchiveEntryAccess.Type.ZIP, file, zeName, offset);
+	}
+
 	@Override
 	protected void resolveOnce() {
 		if (getFormat() == null || !getFormat().isVideo()) {
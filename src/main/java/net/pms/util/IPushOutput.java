@@ -17,10 +17,23 @@
 package net.pms.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 public interface IPushOutput {
 	public void push(OutputStream out) throws IOException;
 
 	public boolean isUnderlyingSeekSupported();
+
+	/**
+	 * Returns the data from the given offset, when it can be read directly
+	 * instead of pushing it all and skipping to the offset.
+	 *
+	 * @param offset the position of the first byte.
+	 * @return the data, or {@code null} if it has to be pushed.
+	 * @throws IOException if the data can't be read.
+	 */
+	public default InputStream getInputStreamAt(long offset) throws IOException {
+		return null;
+	}
 }
@@ -0,0 +1,257 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor for server requests that keeps count of the requests in flight.
+ * <p>
+ * Each task runs on its own virtual thread when they are requested and the
+ * JVM supports them (Java 21 and later). Otherwise the tasks run on a cached
+ * pool of platform threads, as the servers did before.
+ * <p>
+ * The number of requests in flight can be bounded, the requests past the
+ * bound are rejected with a {@link RejectedExecutionException}, so the
+ * platform threads are bounded too.
+ */
+public class RequestExecutorService extends AbstractExecutorService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestExecutorService.class);
+	private static final AtomicInteger TOTAL_IN_FLIGHT = new AtomicInteger();
+	private static final AtomicInteger TOTAL_PEAK_IN_FLIGHT = new AtomicInteger();
+
+	private final String name;
+	private final ExecutorService delegate;
+	private final boolean virtual;
+	private final int maxInFlight;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+
+	/**
+	 * Creates a request executor.
+	 *
+	 * @param name the name prefix of the threads.
+	 * @param platformThreadFactory the factory of the platform threads, used
+	 *            when virtual threads are not requested or not available.
+	 * @param useVirtualThreads whether to run each task on a virtual thread.
+	 */
+	public RequestExecutorService(String name, ThreadFactory platformThreadFactory, boolean useVirtualThreads) {
+		this(name, platformThreadFactory, useVirtualThreads, 0);
+	}
+
+	/**
+	 * Creates a request executor with a bounded number of requests in flight.
+	 *
+	 * @param name the name prefix of the threads.
+	 * @param platformThreadFactory the factory of the platform threads, used
+	 *            when virtual threads are not requested or not available.
+	 * @param useVirtualThreads whether to run each task on a virtual thread.
+	 * @param maxInFlight the maximum number of requests in flight, or 0 for
+	 *            no limit.
+	 */
+	public RequestExecutorService(String name, ThreadFactory platformThreadFactory, boolean useVirtualThreads, int maxInFlight) {
+		this.name = name;
+		this.maxInFlight = maxInFlight;
+		ExecutorService virtualExecutor = useVirtualThreads ? newVirtualThreadPerTaskExecutor(name + " ") : null;
+		if (virtualExecutor != null) {
+			delegate = virtualExecutor;
+			virtual = true;
+		} else {
+			if (useVirtualThreads) {
+				LOGGER.debug("Virtual threads are not supported by this JVM, \"{}\" will use platform threads", name);
+			}
+			delegate = Executors.newCachedThreadPool(platformThreadFactory);
+			virtual = false;
+		}
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		int current = inFlight.incrementAndGet();
+		if (maxInFlight > 0 && current > maxInFlight) {
+			inFlight.decrementAndGet();
+			throw new RejectedExecutionException("\"" + name + "\" already has " + maxInFlight + " requests in flight");
+		}
+		TOTAL_PEAK_IN_FLIGHT.accumulateAndGet(TOTAL_IN_FLIGHT.incrementAndGet(), Math::max);
+		peakInFlight.accumulateAndGet(current, Math::max);
+		try {
+			delegate.execute(() -> {
+				try {
+					command.run();
+				} finally {
+					done();
+				}
+			});
+		} catch (RuntimeException e) {
+			done();
+			throw e;
+		}
+	}
+
+	private void done() {
+		inFlight.decrementAndGet();
+		TOTAL_IN_FLIGHT.decrementAndGet();
+		completed.incrementAndGet();
+	}
+
+	@Override
+	public void shutdown() {
+		LOGGER.debug("Shutting down \"{}\" after {} requests, at most {} in flight", name, getCompletedCount(), getPeakInFlight());
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return whether the tasks run on virtual threads.
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * @return the maximum number of requests in flight, or 0 for no limit.
+	 */
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @return the number of tasks submitted and not yet finished.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return the highest number of tasks in flight at the same time.
+	 */
+	public int getPeakInFlight() {
+		return peakInFlight.get();
+	}
+
+	/**
+	 * @return the number of tasks finished.
+	 */
+	public long getCompletedCount() {
+		return completed.get();
+	}
+
+	/**
+	 * @return the number of tasks in flight on all the request executors.
+	 */
+	public static int getTotalInFlight() {
+		return TOTAL_IN_FLIGHT.get();
+	}
+
+	/**
+	 * @return the highest number of tasks in flight at the same time on all
+	 *         the request executors.
+	 */
+	public static int getTotalPeakInFlight() {
+		return TOTAL_PEAK_IN_FLIGHT.get();
+	}
+
+	/**
+	 * @return whether this JVM supports virtual threads.
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return VirtualThreads.FACTORY != null;
+	}
+
+	private static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+		if (!isVirtualThreadsSupported()) {
+			return null;
+		}
+		try {
+			Object builder = VirtualThreads.OF_VIRTUAL.invoke(null);
+			builder = VirtualThreads.NAME.invoke(builder, namePrefix, 1L);
+			ThreadFactory factory = (ThreadFactory) VirtualThreads.FACTORY.invoke(builder);
+			return (ExecutorService) VirtualThreads.NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			LOGGER.debug("Unable to create a virtual thread executor: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * The virtual threads API, looked up by reflection as UMS is built for
+	 * Java 17.
+	 */
+	private static class VirtualThreads {
+		private static final Method OF_VIRTUAL;
+		private static final Method NAME;
+		private static final Method FACTORY;
+		private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+		static {
+			Method ofVirtual = null;
+			Method name = null;
+			Method factory = null;
+			Method newThreadPerTaskExecutor = null;
+			try {
+				Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+				ofVirtual = Thread.class.getMethod("ofVirtual");
+				name = builderClass.getMethod("name", String.class, long.class);
+				factory = builderClass.getMethod("factory");
+				newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			} catch (ReflectiveOperationException e) {
+				factory = null;
+			}
+			OF_VIRTUAL = ofVirtual;
+			NAME = name;
+			FACTORY = factory;
+			NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+		}
+	}
+
+}
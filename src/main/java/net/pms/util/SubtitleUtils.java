@@ -31,6 +31,7 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardWatchEventKinds;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -41,8 +42,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.pms.PMS;
@@ -72,7 +75,8 @@ import org.slf4j.LoggerFactory;
 public class SubtitleUtils {
 	private static final UmsConfiguration CONFIGURATION = PMS.getConfiguration();
 	private static final Logger LOGGER = LoggerFactory.getLogger(SubtitleUtils.class);
-	private static final long FOLDER_CACHE_EXPIRATION_TIME = 300000; // Milliseconds
+	private static final String ENTRY_MODIFY = StandardWatchEventKinds.ENTRY_MODIFY.name();
+	static final int FOLDER_INDEX_MAX_SIZE = 1000;
 	private static final char[] SUBTITLES_UPPER_CASE;
 	private static final char[] SUBTITLES_LOWER_CASE;
 	private static final File ALTERNATIVE_SUBTITLES_FOLDER;
@@ -767,70 +771,298 @@ public class SubtitleUtils {
 		}
 	}
 
-	private static final HashMap<File, CacheFolder> FOLDER_CACHE = new HashMap<>();
+	/**
+	 * The subtitles folders already listed. It is kept in memory only: it is
+	 * right only as long as its file watchers run, a stored listing would have
+	 * to be listed again at startup anyway.
+	 */
+	private static final Map<File, SubtitlesFolder> FOLDER_INDEX = new ConcurrentHashMap<>();
+
+	/**
+	 * Drops the listing of a folder when a file watcher reports a file or
+	 * folder created or deleted in it or in one of its subtitles subfolders.
+	 */
+	private static final FileWatcher.Listener FOLDER_INDEX_INVALIDATOR = (String filename, String event, FileWatcher.Watch watch, boolean isDir) -> {
+		if (!ENTRY_MODIFY.equals(event) && watch.getItem() instanceof SubtitlesFolder subtitlesFolder) {
+			if (isDir) {
+				// a subtitles subfolder may be gone, watch it again when found
+				subtitlesFolder.unwatch(new File(filename));
+			}
+			subtitlesFolder.invalidate();
+		}
+	};
+
+	/**
+	 * A folder that is searched for external subtitles.
+	 * <p>
+	 * The subtitles files of the folder and of its subtitles subfolders are
+	 * listed once and kept until a file watcher reports a change. Lookups
+	 * never lock, concurrent lookups of a folder that isn't listed yet may
+	 * list it more than once. Once closed, the folder doesn't watch anymore.
+	 */
+	private static class SubtitlesFolder {
+
+		private final File folder;
+		private final boolean withSubtitlesFolders;
+		private final AtomicInteger version = new AtomicInteger();
+		private final AtomicReference<SubtitlesIndex> index = new AtomicReference<>();
+		private final Map<File, FileWatcher.Watch> watches = new ConcurrentHashMap<>();
+		private volatile long lastUsed = System.nanoTime();
+		private volatile boolean closed;
+
+		public SubtitlesFolder(File folder, boolean withSubtitlesFolders) {
+			this.folder = folder;
+			this.withSubtitlesFolders = withSubtitlesFolders;
+		}
+
+		public SubtitlesIndex getIndex(Set<String> supportedExtensions) {
+			SubtitlesIndex current = index.get();
+			if (current != null) {
+				return current;
+			}
+			int listedVersion = version.get();
+			SubtitlesIndex listed = new SubtitlesIndex(list(supportedExtensions));
+			index.set(listed);
+			if (version.get() != listedVersion) {
+				// changed while listing, the next lookup lists it again
+				index.compareAndSet(listed, null);
+			}
+			return listed;
+		}
 
-	private static class CacheFolder {
+		public void invalidate() {
+			version.incrementAndGet();
+			index.set(null);
+		}
 
-		private File[] items;
-		private final long birth;
-		private boolean populated;
+		public void unwatch(File dir) {
+			FileWatcher.Watch watch = watches.remove(dir);
+			if (watch != null) {
+				FileWatcher.remove(watch);
+			}
+		}
 
-		public CacheFolder() {
-			birth = System.currentTimeMillis();
+		public void touch() {
+			lastUsed = System.nanoTime();
 		}
 
-		public boolean isPopulated() {
-			return populated;
+		public long getLastUsed() {
+			return lastUsed;
 		}
 
-		public long getBirth() {
-			return birth;
+		public void close() {
+			closed = true;
+			for (File dir : watches.keySet()) {
+				unwatch(dir);
+			}
 		}
 
-		public File[] getItems() {
-			if (!populated) {
-				throw new IllegalStateException("Instance hasn't been populated yet");
+		private void watch(File dir) {
+			if (!watches.containsKey(dir)) {
+				FileWatcher.Watch watch = new FileWatcher.Watch(dir.getPath() + File.separator + "*", FOLDER_INDEX_INVALIDATOR, this);
+				if (!closed && watches.putIfAbsent(dir, watch) == null) {
+					FileWatcher.add(watch);
+					if (closed) {
+						// closed while adding it
+						unwatch(dir);
+					}
+				}
 			}
-			return items;
 		}
 
-		public void setItems(List<File> items) {
-			setItems(items == null ? null : items.toArray(File[]::new));
+		private List<SubtitlesFile> list(Set<String> supportedExtensions) {
+			// watch before listing so that no change is missed
+			watch(folder);
+			List<SubtitlesFile> result = new ArrayList<>();
+			String[] folderContent = folder.list();
+			if (folderContent != null) {
+				for (String fileNameEntry : folderContent) {
+					File fileEntry = withSubtitlesFolders ? isSubtitlesFolder(folder, fileNameEntry) : null;
+					if (fileEntry != null) {
+						// Subtitles subfolder
+						watch(fileEntry);
+						String[] subsFolderContent = fileEntry.list();
+						if (subsFolderContent != null) {
+							for (String subsFileNameEntry : subsFolderContent) {
+								addSubtitlesFile(result, new File(fileEntry, subsFileNameEntry), supportedExtensions);
+							}
+						}
+						continue;
+					}
+					addSubtitlesFile(result, new File(folder, fileNameEntry), supportedExtensions);
+				}
+			}
+			return result;
 		}
 
-		public void setItems(File[] items) {
-			populated = true;
-			if (items == null) {
-				this.items = new File[0];
-			} else {
-				this.items = items;
+		private static void addSubtitlesFile(List<SubtitlesFile> result, File file, Set<String> supportedExtensions) {
+			if (isSubtitlesFile(file, supportedExtensions) && file.isFile() && !file.isHidden()) {
+				result.add(new SubtitlesFile(file));
 			}
 		}
 
 		@Override
 		public String toString() {
+			SubtitlesIndex current = index.get();
 			StringBuilder sb = new StringBuilder(getClass().getSimpleName());
-			sb.append(" [Age=");
-			sb.append((System.currentTimeMillis() - birth) / 1000).append(" s");
-			sb.append(", Populated=").append(populated ? "Yes" : "No");
-			if (items == null || items.length == 0) {
-				sb.append(", Empty");
-			} else {
-				sb.append(", Items: ");
-				boolean first = true;
-				for (File item : items) {
-					if (!first) {
-						sb.append(", ");
-					}
-					sb.append(item.getName());
-					first = false;
-				}
+			sb.append(" [Folder=").append(folder);
+			sb.append(", Listed=").append(current != null ? "Yes" : "No");
+			if (current != null) {
+				sb.append(", Items: ").append(current.getFiles().size());
 			}
 			sb.append("]");
 			return sb.toString();
 		}
 	}
 
+	/**
+	 * The subtitles files found in a folder, with the matches for the video
+	 * base names looked up so far.
+	 */
+	private static class SubtitlesIndex {
+
+		private final List<SubtitlesFile> files;
+		private final Set<File> externalFiles = new HashSet<>();
+		private final Map<String, List<SubtitlesMatch>> matches = new ConcurrentHashMap<>();
+
+		public SubtitlesIndex(List<SubtitlesFile> files) {
+			this.files = files;
+			for (SubtitlesFile subtitlesFile : files) {
+				externalFiles.add(subtitlesFile.file);
+			}
+		}
+
+		public List<SubtitlesFile> getFiles() {
+			return files;
+		}
+
+		public boolean contains(File file) {
+			return externalFiles.contains(file);
+		}
+
+		/**
+		 * @param baseFileName the lower case video file name without
+		 *            extension.
+		 * @return the subtitles files matching this video.
+		 */
+		public List<SubtitlesMatch> getMatches(String baseFileName) {
+			return matches.computeIfAbsent(baseFileName, this::match);
+		}
+
+		private List<SubtitlesMatch> match(String baseFileName) {
+			List<SubtitlesMatch> result = new ArrayList<>();
+			for (SubtitlesFile subtitlesFile : files) {
+				if (subtitlesFile.nameLower.startsWith(baseFileName)) {
+					List<String> suffixParts = Arrays.asList(subtitlesFile.baseNameLower.replace(baseFileName, "").split("[\\s\\.-]+"));
+					result.add(new SubtitlesMatch(subtitlesFile.file, suffixParts));
+				} else if (subtitlesFile.inSubtitlesFolder) {
+					// Subtitles subfolder that doesn't start with video file name
+					List<String> suffixParts = Arrays.asList(subtitlesFile.baseNameLower.split("[\\s\\.-]+"));
+					for (String suffixPart : suffixParts) {
+						if (Iso639.isValid(suffixPart)) {
+							result.add(new SubtitlesMatch(subtitlesFile.file, suffixParts));
+							break;
+						}
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	private static class SubtitlesFile {
+
+		private final File file;
+		private final String nameLower;
+		private final String baseNameLower;
+		private final boolean inSubtitlesFolder;
+
+		public SubtitlesFile(File file) {
+			this.file = file;
+			this.nameLower = file.getName().toLowerCase(Locale.ROOT);
+			this.baseNameLower = FileUtil.getFileNameWithoutExtension(nameLower);
+			this.inSubtitlesFolder = isSubtitlesFolder(file.getParentFile(), file.getName()) != null;
+		}
+	}
+
+	/**
+	 * A subtitles file matching a video, with the type, language and title
+	 * parsed from its name.
+	 */
+	private static class SubtitlesMatch {
+
+		private final File file;
+		private final SubtitleType type;
+		private final String language;
+		private final String title;
+
+		public SubtitlesMatch(File file, List<String> suffixParts) {
+			this.file = file;
+			this.type = SubtitleType.valueOfFileExtension(FileUtil.getExtension(file.getPath(), LetterCase.LOWER, Locale.ROOT));
+			String lang = null;
+			List<String> titleParts = new ArrayList<>();
+			for (String part : suffixParts) {
+				if (StringUtils.isBlank(part)) {
+					continue;
+				}
+				if (Iso639.isValid(part)) {
+					lang = Iso639.getISO639_2Code(part);
+				} else {
+					titleParts.add(part);
+				}
+			}
+			this.language = lang;
+			this.title = titleParts.isEmpty() ? null : StringUtils.join(titleParts, '-');
+		}
+	}
+
+	/**
+	 * Drops all the indexed subtitles folders and their file watchers.
+	 */
+	static void clearFolderIndex() {
+		for (Iterator<SubtitlesFolder> iterator = FOLDER_INDEX.values().iterator(); iterator.hasNext();) {
+			SubtitlesFolder subtitlesFolder = iterator.next();
+			iterator.remove();
+			subtitlesFolder.close();
+		}
+	}
+
+	private static SubtitlesFolder getSubtitlesFolder(File folder, boolean withSubtitlesFolders) {
+		SubtitlesFolder subtitlesFolder = FOLDER_INDEX.get(folder);
+		if (subtitlesFolder == null) {
+			if (FOLDER_INDEX.size() >= FOLDER_INDEX_MAX_SIZE) {
+				// each folder holds file watchers, don't let them grow forever
+				evictLeastRecentlyUsedFolder();
+			}
+			subtitlesFolder = FOLDER_INDEX.computeIfAbsent(folder, key -> new SubtitlesFolder(key, withSubtitlesFolders));
+		}
+		subtitlesFolder.touch();
+		return subtitlesFolder;
+	}
+
+	/**
+	 * Drops the indexed subtitles folder used the longest time ago and its
+	 * file watchers, the other folders stay indexed and watched.
+	 */
+	private static void evictLeastRecentlyUsedFolder() {
+		SubtitlesFolder eldest = null;
+		for (SubtitlesFolder subtitlesFolder : FOLDER_INDEX.values()) {
+			if (eldest == null || subtitlesFolder.getLastUsed() - eldest.getLastUsed() < 0) {
+				eldest = subtitlesFolder;
+			}
+		}
+		if (eldest != null && FOLDER_INDEX.remove(eldest.folder, eldest)) {
+			eldest.close();
+		}
+	}
+
+	/**
+	 * @return the number of indexed subtitles folders.
+	 */
+	static int getFolderIndexSize() {
+		return FOLDER_INDEX.size();
+	}
+
 	/**
 	 * Evaluates if the given combination of folder and name represents a
 	 * subtitles subfolder.
@@ -956,77 +1188,13 @@ public class SubtitleUtils {
 
 		final Set<String> supportedFileExtensions = SubtitleType.getSupportedFileExtensions();
 
-		boolean cleaned = false;
-		List<File> folderSubtitles = new ArrayList<>();
+		List<SubtitlesIndex> indexes = new ArrayList<>();
 		for (File folder : folders) {
-			CacheFolder cacheFolder = null;
-			synchronized (FOLDER_CACHE) {
-				// Clean cache for expired entries and fetch or insert the entry
-				// for the folder under examination
-				if (cleaned) {
-					if (forceRefresh) {
-						FOLDER_CACHE.remove(folder);
-					}
-					cacheFolder = FOLDER_CACHE.get(folder);
-				} else {
-					long earliestBirth = System.currentTimeMillis() - FOLDER_CACHE_EXPIRATION_TIME;
-					for (Iterator<Entry<File, CacheFolder>> iterator = FOLDER_CACHE.entrySet().iterator(); iterator.hasNext();) {
-						Entry<File, CacheFolder> entry = iterator.next();
-						if (entry.getValue().getBirth() < earliestBirth) {
-							iterator.remove();
-						} else if (folder.equals(entry.getKey())) {
-							if (forceRefresh) {
-								iterator.remove();
-							} else {
-								cacheFolder = entry.getValue();
-							}
-						}
-					}
-					cleaned = true;
-				}
-				if (cacheFolder == null) {
-					cacheFolder = new CacheFolder();
-					FOLDER_CACHE.put(folder, cacheFolder);
-				}
-			}
-
-			// Populate the CacheFolder if it isn't already and get the files
-			synchronized (cacheFolder) {
-				if (!cacheFolder.isPopulated()) {
-					List<File> folderSubtitlesList = new ArrayList<>();
-					String[] folderContent = folder.list();
-					if (folderContent != null && folderContent.length > 0) {
-						for (String fileNameEntry : folderContent) {
-							File fileEntry = subFolder.equals(folder) ? isSubtitlesFolder(folder, fileNameEntry) : null;
-							if (fileEntry != null) {
-								// Subtitles subfolder
-								String[] subsFolderContent = fileEntry.list();
-								if (subsFolderContent != null && subsFolderContent.length > 0) {
-									for (String subsFileNameEntry : subsFolderContent) {
-										File subsFileEntry = new File(fileEntry, subsFileNameEntry);
-										if (
-											isSubtitlesFile(subsFileEntry, supportedFileExtensions) &&
-											subsFileEntry.isFile() &&
-											!subsFileEntry.isHidden()
-										) {
-											folderSubtitlesList.add(subsFileEntry);
-										}
-									}
-								}
-								continue;
-							}
-							fileEntry = new File(folder, fileNameEntry);
-							if (isSubtitlesFile(fileEntry, supportedFileExtensions) && fileEntry.isFile() && !fileEntry.isHidden()) {
-								folderSubtitlesList.add(fileEntry);
-							}
-						}
-					}
-					cacheFolder.setItems(folderSubtitlesList);
-					folderSubtitles.addAll(folderSubtitlesList);
-				} else {
-					folderSubtitles.addAll(Arrays.asList(cacheFolder.getItems()));
-				}
+			SubtitlesFolder subtitlesFolder = getSubtitlesFolder(folder, subFolder.equals(folder));
+			if (forceRefresh) {
+				subtitlesFolder.invalidate();
 			}
+			indexes.add(subtitlesFolder.getIndex(supportedFileExtensions));
 		}
 
 		// Find already parsed subtitles
@@ -1040,27 +1208,11 @@ public class SubtitleUtils {
 		boolean changed = false;
 		// Parse subtitles that are not in the existing list
 		String baseFileName = FileUtil.getFileNameWithoutExtension(file.getName()).toLowerCase(Locale.ROOT);
-		for (File subtitlesFile : folderSubtitles) {
-			if (existingSubtitles.contains(subtitlesFile)) {
-				continue;
-			}
-
-			String subtitlesName = subtitlesFile.getName();
-			String subtitlesNameLower = subtitlesName.toLowerCase(Locale.ROOT);
-			if (subtitlesNameLower.startsWith(baseFileName)) {
-				List<String> suffixParts = Arrays
-					.asList(FileUtil.getFileNameWithoutExtension(subtitlesNameLower).replace(baseFileName, "").split("[\\s\\.-]+"));
-				attachExternalSubtitlesFile(subtitlesFile, media, suffixParts);
-				changed = true;
-			} else if (isSubtitlesFolder(subtitlesFile.getParentFile(), subtitlesName) != null) {
-				// Subtitles subfolder that doesn't start with video file name
-				List<String> suffixParts = Arrays.asList(FileUtil.getFileNameWithoutExtension(subtitlesNameLower).split("[\\s\\.-]+"));
-				for (String suffixPart : suffixParts) {
-					if (Iso639.isValid(suffixPart)) {
-						attachExternalSubtitlesFile(subtitlesFile, media, suffixParts);
-						changed = true;
-						break;
-					}
+		for (SubtitlesIndex index : indexes) {
+			for (SubtitlesMatch match : index.getMatches(baseFileName)) {
+				if (!existingSubtitles.contains(match.file)) {
+					attachExternalSubtitlesFile(match, media);
+					changed = true;
 				}
 			}
 		}
@@ -1071,7 +1223,7 @@ public class SubtitleUtils {
 			if (
 				subtitles.isExternal() &&
 				!(subtitles instanceof MediaOnDemandSubtitle) &&
-				!folderSubtitles.contains(subtitles.getExternalFile())
+				!isIndexed(indexes, subtitles.getExternalFile())
 			) {
 				changed = true;
 				iterator.remove();
@@ -1080,49 +1232,43 @@ public class SubtitleUtils {
 		return changed;
 	}
 
+	private static boolean isIndexed(List<SubtitlesIndex> indexes, File file) {
+		for (SubtitlesIndex index : indexes) {
+			if (index.contains(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Creates a new instance of MediaSubtitle, populates it based on the
- incoming subtitlesFile, and attaches it to the incoming MediaInfo so
- it appears on the subtitles tracks list for that media.
+	 * incoming subtitles match, and attaches it to the incoming MediaInfo so
+	 * it appears on the subtitles tracks list for that media.
 	 *
 	 * @see MediaInfo#getSubtitleTracksList
-	 * @param subtitlesFile
+	 * @param match the subtitles file with the language and title parsed from
+	 *            its name.
 	 * @param media
-	 * @param suffixParts contains potential language identifiers, e.g. en or
-	 *            eng.
 	 */
-	private static void attachExternalSubtitlesFile(File subtitlesFile, MediaInfo media, List<String> suffixParts) {
-		LOGGER.trace("Attaching external subtitles file for {}", subtitlesFile.getName());
+	private static void attachExternalSubtitlesFile(SubtitlesMatch match, MediaInfo media) {
+		LOGGER.trace("Attaching external subtitles file for {}", match.file.getName());
 		MediaSubtitle subtitles = new MediaSubtitle();
-		subtitles.setType(SubtitleType.valueOfFileExtension(FileUtil.getExtension(subtitlesFile.getPath(), LetterCase.LOWER, Locale.ROOT)));
-
-		String language = null;
-		if (suffixParts != null && !suffixParts.isEmpty()) {
-			ArrayList<String> modifiableSuffixParts = new ArrayList<>(suffixParts);
-			for (Iterator<String> iterator = modifiableSuffixParts.iterator(); iterator.hasNext();) {
-				String part = iterator.next();
-				if (StringUtils.isBlank(part)) {
-					iterator.remove();
-				} else if (Iso639.isValid(part)) {
-					language = Iso639.getISO639_2Code(part);
-					iterator.remove();
-				}
-			}
-			if (!modifiableSuffixParts.isEmpty()) {
-				subtitles.setTitle(StringUtils.join(modifiableSuffixParts, '-'));
-			}
+		subtitles.setType(match.type);
+		if (match.title != null) {
+			subtitles.setTitle(match.title);
 		}
 
 		try {
-			if (StringUtils.isNotBlank(language)) {
-				subtitles.setLang(language);
+			if (StringUtils.isNotBlank(match.language)) {
+				subtitles.setLang(match.language);
 			}
-			subtitles.setExternalFile(subtitlesFile);
+			subtitles.setExternalFile(match.file);
 			if (subtitles.getLang() == null) {
 				subtitles.setLang(MediaLang.UND);
 			}
 			media.addSubtitlesTrack(subtitles);
-			LOGGER.trace("Added external subtitles file {} to the media {}", subtitlesFile.getName(), media.toString());
+			LOGGER.trace("Added external subtitles file {} to the media {}", match.file.getName(), media.toString());
 		} catch (FileNotFoundException e) {
 			LOGGER.warn("File not found during external subtitles scan: {}", e.getMessage());
 			LOGGER.trace("", e);
@@ -57,7 +57,7 @@ public class TempFileMgr {
 		}
 	}
 
-	public void add(File f, int cleanTime) {
+	public synchronized void add(File f, int cleanTime) {
 		files.put(f, cleanTime);
 		try {
 			dumpFile();
@@ -71,7 +71,7 @@ public class TempFileMgr {
 		}
 	}
 
-	private void scan() {
+	private synchronized void scan() {
 		long now = System.currentTimeMillis();
 		for (Iterator<Entry<File, Integer>> it = files.entrySet().iterator(); it.hasNext();) {
 			Entry<File, Integer> entry = it.next();
@@ -16,7 +16,18 @@
  */
 package net.pms.configuration;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import net.pms.PMS;
 import net.pms.TestHelper;
 import net.pms.util.SortedHeaderMap;
@@ -26,11 +37,14 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Test the RendererConfiguration class
  */
 public class RendererConfigurationTest {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RendererConfigurationTest.class);
 	UmsConfiguration prevConf;
 
 	@BeforeAll
@@ -408,6 +422,132 @@ public class RendererConfigurationTest {
 		);
 	}
 
+	/**
+	 * Test that recognition from many threads replaying the same requests
+	 * always gives the result of the first recognition.
+	 * @throws ConfigurationException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrentHeaders() throws ConfigurationException, InterruptedException {
+		UmsConfiguration pmsConf = new UmsConfiguration(false);
+
+		// Initialize the RendererConfiguration
+		PMS.setConfiguration(pmsConf);
+		RendererConfigurations.loadRendererConfigurations();
+
+		String[] userAgents = {
+			"User-Agent: AirPlayer/1.0.09 CFNetwork/485.13.9 Darwin/11.0.0",
+			"User-Agent: DLNADOC/1.50 INTEL_NMPR/2.1",
+			"User-Agent: LG-BP350",
+			"User-Agent: LG-BDP450",
+			"User-Agent: UPnP/1.0 DLNADOC/1.50",
+			"User-Agent: Unknown Renderer",
+			"X-Unknown-Header: Unknown Content"
+		};
+		Map<String, RendererConfiguration> expected = new HashMap<>();
+		for (String userAgent : userAgents) {
+			SortedHeaderMap headers = new SortedHeaderMap();
+			headers.put(userAgent);
+			expected.put(userAgent, RendererConfigurations.getRendererConfigurationByHeaders(headers));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(executor.submit(() -> {
+				for (int j = 0; j < 1000; j++) {
+					for (int k = 0; k < userAgents.length; k++) {
+						SortedHeaderMap headers = new SortedHeaderMap();
+						headers.put(userAgents[k]);
+						if (RendererConfigurations.getRendererConfigurationByHeaders(headers) != expected.get(userAgents[k])) {
+							return false;
+						}
+					}
+				}
+				return true;
+			}));
+		}
+		executor.shutdown();
+		try {
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get(), "Concurrent recognition returned another renderer");
+			}
+		} catch (ExecutionException e) {
+			fail(e.getCause());
+		}
+	}
+
+	/**
+	 * Replays requests captured from many device types, as they come with
+	 * varying Range, Date and Host headers and from many addresses, and
+	 * checks that the combined matcher and its cache give the result of
+	 * matching the configurations one after the other, while the cache stays
+	 * bounded. The time of both is printed, so this also serves as a
+	 * benchmark of the recognition.
+	 * @throws ConfigurationException
+	 * @throws UnknownHostException
+	 */
+	@Test
+	public void testHeadersReplay() throws ConfigurationException, UnknownHostException {
+		UmsConfiguration pmsConf = new UmsConfiguration(false);
+
+		// Initialize the RendererConfiguration
+		PMS.setConfiguration(pmsConf);
+		RendererConfigurations.loadRendererConfigurations();
+
+		String[][] devices = {
+			{"User-Agent: DLNADOC/1.50 INTEL_NMPR/2.1"},
+			{"User-Agent: Takin/3.0.0 (Linux arm ; U; en), FetchTV_STB_BCM7252S/3.7.7244 (FetchTV, M616T, Wireless)"},
+			{"User-Agent: Allegro-Software-WebClient/4.61 DLNADOC/1.00"},
+			{"User-Agent: 49PUS8503/12"},
+			{"User-Agent: Roku/5000X-7"},
+			{"User-Agent: SEC_HHP_[TV]UE46ES8000/1.0 DLNADOC/1.50"},
+			{"USER-AGENT: DLNADOC/1.50 SEC_HHP_[TV] UE88KS9810/1.0 UPnP/1.0"},
+			{"User-Agent: DLNADOC/1.50 SHARP-AQUOS-DMP/1.1W"},
+			{"User-Agent: Showtime 3.0", "X-AV-Client-Info: Showtime 3.0"},
+			{"User-Agent: UPnP/1.0 DLNADOC/1.50", "X-AV-Client-Info: av=5.0; cn=\"Sony Corporation\"; mn=\"BRAVIA KDL-55HX750\"; mv=\"1.7\";"},
+			{"X-AV-Client-Info: av=5.0; cn=\"Sony Corporation\"; mn=\"UBP-X800M2\"; mv=\"2.0\";"},
+			{"friendlyName.dlna.org: VideoWeb"},
+			{"User-Agent: VLC/3.0.19 LibVLC/3.0.19"},
+			{"User-Agent: XBMC/10.0 r35648 (Mac OS X; 11.2.0 x86_64; http://www.xbmc.org)"},
+			{"User-Agent: Unknown Renderer"},
+			{"X-Unknown-Header: Unknown Content"}
+		};
+		List<RendererConfiguration> confs = RendererConfigurations.getEnabledRenderersConfigurations();
+		long cachedTime = 0;
+		long oneByOneTime = 0;
+		for (int i = 0; i < 5000; i++) {
+			SortedHeaderMap headers = new SortedHeaderMap();
+			for (String header : devices[i % devices.length]) {
+				headers.put(header);
+			}
+			headers.put("Range", "bytes=" + i * 1024 + "-");
+			headers.put("Date", "Tue, 15 Nov 1994 08:12:" + (i % 60) + " GMT");
+			headers.put("Host", "192.168.1.2:" + (5001 + i % 3));
+			InetAddress address = InetAddress.getByAddress(new byte[] {10, 0, (byte) (i / 256 % 8), (byte) (i % 256)});
+
+			long start = System.nanoTime();
+			RendererConfiguration matched = RendererConfigurations.getRendererConfigurationByHeaders(headers, address);
+			cachedTime += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			RendererConfiguration expected = null;
+			for (RendererConfiguration conf : confs) {
+				if (conf.match(headers)) {
+					expected = conf;
+					break;
+				}
+			}
+			oneByOneTime += System.nanoTime() - start;
+
+			assertSame(expected, matched, "Unexpected renderer for headers \"" + headers + "\"");
+			assertTrue(RendererConfigurations.getHeadersMatchesCount() <= 1000, "Header matches cache grew past its limit");
+		}
+		LOGGER.debug("Renderer recognition of 5000 requests: {} ms combined and cached, {} ms one configuration after the other",
+			TimeUnit.NANOSECONDS.toMillis(cachedTime), TimeUnit.NANOSECONDS.toMillis(oneByOneTime));
+	}
+
 	/**
 	 * Test recognition with a forced default renderer configured.
 	 * @throws ConfigurationException
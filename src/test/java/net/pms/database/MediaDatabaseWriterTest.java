@@ -0,0 +1,221 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.formats.Format;
+import net.pms.media.MediaInfo;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MediaDatabaseWriterTest {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaDatabaseWriterTest.class);
+	private static final int MEASURED_FILES = 2000;
+
+	private MediaDatabaseWriter.Writer writer;
+
+	/**
+	 * Set up testing conditions before running the tests.
+	 * @throws ConfigurationException
+	 * @throws InterruptedException
+	 */
+	@BeforeEach
+	public final void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		MediaDatabase.init();
+		writer = new MediaDatabaseWriter.Writer("Test Media Database Writer");
+	}
+
+	@AfterEach
+	public final void tearDown() throws SQLException {
+		writer.shutdown();
+		// the other tests don't expect these videos
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			for (String folder : new String[] {"/grouped/", "/ondemand/", "/superseded/", "/barrier/"}) {
+				MediaTableFiles.removeMedia(connection, folder, true, false);
+			}
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	private static boolean exists(String filename, long modified) {
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			return MediaTableFiles.isDataExists(connection, filename, modified);
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	@Test
+	public void testGroupedWrites() throws Exception {
+		PMS.getConfiguration().setDatabaseMediaWriteGroupSize(10);
+		PMS.getConfiguration().setDatabaseMediaWriteGroupDelay(60000);
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 25; i++) {
+			futures.add(writer.submit("/grouped/file" + i + ".mkv", 1000, Format.VIDEO, null));
+		}
+		// the first two groups are full
+		futures.get(19).get();
+		assertTrue(exists("/grouped/file0.mkv", 1000));
+		assertTrue(exists("/grouped/file19.mkv", 1000));
+
+		writer.flush();
+		for (CompletableFuture<Void> future : futures) {
+			assertTrue(future.isDone());
+			assertFalse(future.isCompletedExceptionally());
+		}
+		assertTrue(exists("/grouped/file24.mkv", 1000));
+		assertEquals(0, writer.getQueuedCount());
+	}
+
+	/**
+	 * Compares the grouped writes with a transaction for each file.
+	 */
+	@Test
+	public void testGroupedWritesTiming() throws Exception {
+		PMS.getConfiguration().setDatabaseMediaWriteGroupDelay(60000);
+		PMS.getConfiguration().setDatabaseMediaWriteGroupSize(1);
+		long alone = writeFiles("/grouped/alone");
+		PMS.getConfiguration().setDatabaseMediaWriteGroupSize(100);
+		long grouped = writeFiles("/grouped/together");
+		LOGGER.debug("Writing {} media files: {} ms with a transaction each, {} ms in groups of 100",
+			MEASURED_FILES, alone, grouped);
+	}
+
+	private long writeFiles(String prefix) throws Exception {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int i = 0; i < MEASURED_FILES; i++) {
+			futures.add(writer.submit(prefix + i + ".mkv", 1000, Format.VIDEO, new MediaInfo()));
+		}
+		writer.flush();
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		for (CompletableFuture<Void> future : futures) {
+			assertFalse(future.isCompletedExceptionally());
+		}
+		assertTrue(exists(prefix + (MEASURED_FILES - 1) + ".mkv", 1000));
+		return elapsed;
+	}
+
+	@Test
+	public void testWriteJumpsTheQueue() throws Exception {
+		// keep the writer thread busy while the files are queued
+		PMS.getConfiguration().setDatabaseMediaWriteGroupDelay(100);
+		CountDownLatch busy = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		writer.barrier(writer.getSequence()).thenRun(() -> {
+			busy.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+		PMS.getConfiguration().setDatabaseMediaWriteGroupSize(10);
+		PMS.getConfiguration().setDatabaseMediaWriteGroupDelay(60000);
+		List<CompletableFuture<Void>> queued = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			queued.add(writer.submit("/ondemand/queued" + i + ".mkv", 1000, Format.VIDEO, null));
+		}
+		MediaInfo media = new MediaInfo();
+		CompletableFuture<Void> parsed = CompletableFuture.runAsync(() -> {
+			try {
+				writer.write("/ondemand/parsed.mkv", 2000, Format.VIDEO, media);
+			} catch (SQLException e) {
+				throw new CompletionException(e);
+			}
+		});
+		while (writer.getQueuedCount() < 6) {
+			Thread.sleep(10);
+		}
+		release.countDown();
+
+		parsed.get(5, TimeUnit.SECONDS);
+		assertTrue(exists("/ondemand/parsed.mkv", 2000));
+		assertNotNull(media.getFileId());
+		// the queued files still wait for their group
+		for (CompletableFuture<Void> future : queued) {
+			assertFalse(future.isDone());
+		}
+
+		writer.flush();
+		assertTrue(queued.get(4).isDone());
+		assertTrue(exists("/ondemand/queued4.mkv", 1000));
+		assertEquals(0, writer.getQueuedCount());
+	}
+
+	@Test
+	public void testOlderWriteDoesNotOverwrite() throws Exception {
+		PMS.getConfiguration().setDatabaseMediaWriteGroupDelay(60000);
+		writer.submit("/superseded/file.mkv", 1000, Format.VIDEO, null);
+		writer.write("/superseded/file.mkv", 2000, Format.VIDEO, null);
+		writer.flush();
+		assertTrue(exists("/superseded/file.mkv", 2000));
+	}
+
+	@Test
+	public void testBarrier() throws Exception {
+		PMS.getConfiguration().setDatabaseMediaWriteGroupDelay(100);
+		writer.submit("/barrier/file.mkv", 1000, Format.VIDEO, null);
+		CompletableFuture<Boolean> written = writer.barrier(writer.getSequence()).thenApply(unused -> exists("/barrier/file.mkv", 1000));
+		assertTrue(written.get());
+	}
+
+	@Test
+	public void testFailedWriteFailsTheBarrier() throws Exception {
+		PMS.getConfiguration().setDatabaseMediaWriteGroupDelay(100);
+		long since = writer.getSequence();
+		// longer than the FILENAME column
+		CompletableFuture<Void> failed = writer.submit("/barrier/" + "x".repeat(2000) + ".mkv", 1000, Format.VIDEO, null);
+		writer.submit("/barrier/other.mkv", 1000, Format.VIDEO, null);
+		CompletableFuture<Void> barrier = writer.barrier(since);
+		assertThrows(ExecutionException.class, barrier::get);
+		assertTrue(failed.isCompletedExceptionally());
+		assertTrue(exists("/barrier/other.mkv", 1000));
+
+		// the later folders are not affected
+		since = writer.getSequence();
+		writer.submit("/barrier/later.mkv", 1000, Format.VIDEO, null);
+		writer.barrier(since).get();
+	}
+
+}
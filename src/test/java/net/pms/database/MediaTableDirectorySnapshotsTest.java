@@ -0,0 +1,72 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.database;
+
+import java.sql.Connection;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.store.DirectorySnapshot;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MediaTableDirectorySnapshotsTest {
+	/**
+	 * Set up testing conditions before running the tests.
+	 * @throws ConfigurationException
+	 * @throws InterruptedException
+	 */
+	@BeforeEach
+	public final void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		MediaDatabase.init();
+	}
+
+	@Test
+	public void testSetAndRemove() throws Exception {
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			assertNotNull(connection);
+			MediaTableDirectorySnapshots.remove(connection, "/media/", true);
+			assertNull(MediaTableDirectorySnapshots.getSnapshot(connection, "/media/movies"));
+
+			DirectorySnapshot snapshot = new DirectorySnapshot("/media/movies", 1000, 3, 0x1234567890abcdefL);
+			MediaTableDirectorySnapshots.setSnapshot(connection, snapshot);
+			assertEquals(snapshot, MediaTableDirectorySnapshots.getSnapshot(connection, "/media/movies"));
+
+			DirectorySnapshot updated = new DirectorySnapshot("/media/movies", 2000, 4, -1);
+			MediaTableDirectorySnapshots.setSnapshot(connection, updated);
+			assertEquals(updated, MediaTableDirectorySnapshots.getSnapshot(connection, "/media/movies"));
+
+			MediaTableDirectorySnapshots.setSnapshot(connection, new DirectorySnapshot("/media/movies/2024", 1000, 1, 1));
+			MediaTableDirectorySnapshots.remove(connection, "/media/movies", false);
+			assertNull(MediaTableDirectorySnapshots.getSnapshot(connection, "/media/movies"));
+			assertNotNull(MediaTableDirectorySnapshots.getSnapshot(connection, "/media/movies/2024"));
+
+			MediaTableDirectorySnapshots.remove(connection, "/media/", true);
+			assertNull(MediaTableDirectorySnapshots.getSnapshot(connection, "/media/movies/2024"));
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.formats.Format;
+import net.pms.media.MediaInfo;
+import net.pms.media.audio.metadata.MediaAudioMetadata;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MediaTableSearchIndexTest {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaTableSearchIndexTest.class);
+	private static final String FILENAME = "/media/search index test/Swan Lake.mp3";
+	private static final String BENCHMARK_FOLDER = "/media/search index benchmark/";
+	private static final int BENCHMARK_FILES = 100000;
+
+	/**
+	 * Set up testing conditions before running the tests.
+	 * @throws ConfigurationException
+	 * @throws InterruptedException
+	 */
+	@BeforeEach
+	public final void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		MediaDatabase.init();
+	}
+
+	@Test
+	public void testTrigrams() {
+		assertTrue(MediaTableSearchIndex.getTrigrams("ab").isEmpty());
+		assertEquals(1, MediaTableSearchIndex.getTrigrams("abc").size());
+		assertEquals(MediaTableSearchIndex.getTrigrams("ABC"), MediaTableSearchIndex.getTrigrams("abc"));
+		// "aaaa" holds the same trigram twice
+		assertEquals(1, MediaTableSearchIndex.getTrigrams("aaaa").size());
+		assertNull(MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_ARTIST, "ab"));
+		assertNull(MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_ARTIST, "tch%ky"));
+	}
+
+	@Test
+	public void testIndexMaintenance() throws Exception {
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			assertNotNull(connection);
+			MediaTableFiles.removeMedia(connection, FILENAME, false, false);
+
+			MediaAudioMetadata audioMetadata = new MediaAudioMetadata();
+			audioMetadata.setArtist("Pyotr Ilyich Tchaikovsky");
+			audioMetadata.setAlbum("Swan Lake");
+			audioMetadata.setSongname("Dance of the Little Swans");
+			MediaInfo media = new MediaInfo();
+			media.setAudioMetadata(audioMetadata);
+			MediaTableFiles.insertOrUpdateData(connection, FILENAME, 1000, Format.AUDIO, media);
+
+			assertEquals(1, countArtists(connection, "tchaikovsky"));
+			assertEquals(1, countArtists(connection, "ILYICH"));
+			assertEquals(0, countArtists(connection, "swan"));
+			assertEquals(1, countFiles(connection, "swan lake"));
+			// the folder is indexed too
+			assertEquals(1, countFiles(connection, "search index test"));
+			assertEquals(0, countFiles(connection, "swan lake ballet"));
+
+			audioMetadata.setArtist("Leonard Bernstein");
+			MediaTableFiles.insertOrUpdateData(connection, FILENAME, 2000, Format.AUDIO, media);
+			assertEquals(0, countArtists(connection, "tchaikovsky"));
+			assertEquals(1, countArtists(connection, "bernstein"));
+
+			MediaTableFiles.removeMedia(connection, FILENAME, false, false);
+			assertEquals(0, countArtists(connection, "bernstein"));
+			assertEquals(0, countFiles(connection, "swan lake"));
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	@Test
+	public void testLatencyOn100kFiles() throws Exception {
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			assertNotNull(connection);
+			connection.setAutoCommit(false);
+			try (PreparedStatement insert = connection.prepareStatement("INSERT INTO FILES (FILENAME, MODIFIED) VALUES (?, CURRENT_TIMESTAMP)", Statement.RETURN_GENERATED_KEYS)) {
+				for (int i = 0; i < BENCHMARK_FILES; i++) {
+					String filename = BENCHMARK_FOLDER + "Series " + (i / 100) + "/Season " + (i / 10 % 10) + "/Episode " + i + ".mkv";
+					insert.setString(1, filename);
+					insert.executeUpdate();
+					try (ResultSet keys = insert.getGeneratedKeys()) {
+						keys.next();
+						MediaTableSearchIndex.insertFilename(connection, keys.getLong(1), filename);
+					}
+				}
+			}
+			connection.commit();
+
+			for (String value : new String[] {"series 421/", "episode 99999", "season 7", "zzz"}) {
+				long start = System.nanoTime();
+				int indexed = countFiles(connection, value);
+				long indexedTime = System.nanoTime() - start;
+				start = System.nanoTime();
+				int scanned = countFilesWithoutIndex(connection, value);
+				long scanTime = System.nanoTime() - start;
+				// same results, the index only narrows the rows to check
+				assertEquals(scanned, indexed);
+				LOGGER.debug("\"{}\" on {} files: {} found, {} ms with the index, {} ms without",
+					value, BENCHMARK_FILES, indexed, indexedTime / 1000000, scanTime / 1000000);
+			}
+			assertEquals(100, countFiles(connection, "series 421/"));
+			assertEquals(1, countFiles(connection, "episode 99999"));
+		} finally {
+			if (connection != null) {
+				try (Statement statement = connection.createStatement()) {
+					statement.executeUpdate("DELETE FROM FILES WHERE FILENAME LIKE '" + BENCHMARK_FOLDER + "%'");
+				}
+				connection.commit();
+				connection.setAutoCommit(true);
+			}
+			MediaDatabase.close(connection);
+		}
+	}
+
+	private static int countArtists(Connection connection, String value) throws SQLException {
+		return count(connection, "SELECT COUNT(*) FROM AUDIO_METADATA AS A WHERE " +
+			MediaTableSearchIndex.getContainsCondition("A.FILEID", MediaTableSearchIndex.FIELD_ARTIST, value) +
+			" AND LOWER(A.ARTIST) LIKE '%" + value.toLowerCase() + "%'");
+	}
+
+	private static int countFiles(Connection connection, String value) throws SQLException {
+		return count(connection, "SELECT COUNT(*) FROM FILES AS F WHERE " +
+			MediaTableSearchIndex.getContainsCondition("F.ID", MediaTableSearchIndex.FIELD_FILENAME, value) +
+			" AND LOWER(F.FILENAME) LIKE '%" + value.toLowerCase() + "%'");
+	}
+
+	/**
+	 * Counts the files as searched without the index.
+	 */
+	private static int countFilesWithoutIndex(Connection connection, String value) throws SQLException {
+		return count(connection, "SELECT COUNT(*) FROM FILES AS F WHERE LOWER(F.FILENAME) LIKE '%" + value.toLowerCase() + "%'");
+	}
+
+	private static int count(Connection connection, String sql) throws SQLException {
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import java.io.IOException;
+import java.io.InputStream;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.image.BufferedImageFilterChain;
+import net.pms.util.FullyPlayed;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class DLNAThumbnailCacheTest {
+
+	@BeforeAll
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+	}
+
+	@Test
+	public void testKey() {
+		String md5 = "0123456789abcdef0123456789abcdef";
+		String key = DLNAThumbnailCache.getKey(md5, DLNAImageProfile.JPEG_TN, false, null);
+		assertEquals(key, DLNAThumbnailCache.getKey(md5, DLNAImageProfile.JPEG_TN, false, new BufferedImageFilterChain()));
+		assertNotEquals(key, DLNAThumbnailCache.getKey(md5, DLNAImageProfile.JPEG_TN, true, null));
+		assertNotEquals(key, DLNAThumbnailCache.getKey(md5, DLNAImageProfile.JPEG_SM, false, null));
+		assertNotEquals(key, DLNAThumbnailCache.getKey(md5, DLNAImageProfile.createJPEG_RES_H_V(100, 100), false, null));
+		BufferedImageFilterChain filterChain = new BufferedImageFilterChain(FullyPlayed.getOverlayFilter());
+		assertNotEquals(key, DLNAThumbnailCache.getKey(md5, DLNAImageProfile.JPEG_TN, false, filterChain));
+	}
+
+	@Test
+	public void testTranscodeIsCached() throws IOException {
+		DLNAThumbnailInputStream source;
+		try (InputStream is = getClass().getResourceAsStream("/net/pms/parsers/image-jpeg.jpg")) {
+			source = DLNAThumbnailInputStream.toThumbnailInputStream(is);
+		}
+		assertNotNull(source);
+		DLNAThumbnailInputStream first = DLNAThumbnailCache.transcode(source, DLNAImageProfile.JPEG_TN, false, null);
+		DLNAThumbnailInputStream second = DLNAThumbnailCache.transcode(source, DLNAImageProfile.JPEG_TN, false, null);
+		assertNotNull(first);
+		assertSame(first.getBytes(false), second.getBytes(false));
+		assertEquals(first.getWidth(), second.getWidth());
+		assertTrue(first.getWidth() <= DLNAImageProfile.JPEG_TN.getMaxWidth());
+		assertNull(DLNAThumbnailCache.transcode(null, DLNAImageProfile.JPEG_TN, false, null));
+	}
+
+	@Test
+	public void testTranscodeIsReadFromDisk() throws IOException {
+		DLNAThumbnailInputStream source;
+		try (InputStream is = getClass().getResourceAsStream("/net/pms/parsers/image-jpeg.jpg")) {
+			source = DLNAThumbnailInputStream.toThumbnailInputStream(is);
+		}
+		assertNotNull(source);
+		DLNAThumbnailInputStream first = DLNAThumbnailCache.transcode(source, DLNAImageProfile.JPEG_SM, false, null);
+		DLNAThumbnailCache.clearMemory();
+		// read back through the deserialization filter
+		DLNAThumbnailInputStream second = DLNAThumbnailCache.transcode(source, DLNAImageProfile.JPEG_SM, false, null);
+		assertNotSame(first.getBytes(false), second.getBytes(false));
+		assertArrayEquals(first.getBytes(false), second.getBytes(false));
+		assertEquals(first.getWidth(), second.getWidth());
+		assertEquals(first.getHeight(), second.getHeight());
+	}
+
+}
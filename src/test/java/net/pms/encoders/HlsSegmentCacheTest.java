@@ -0,0 +1,78 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.encoders;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HlsSegmentCacheTest {
+
+	@TempDir
+	Path directory;
+
+	@BeforeAll
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+	}
+
+	@Test
+	public void testSegmentIndex() {
+		assertEquals(12, HlsSegmenter.getSegmentIndex(new File("12.ts")));
+		assertEquals(-1, HlsSegmenter.getSegmentIndex(new File("12.ts.tmp")));
+		assertEquals(-1, HlsSegmenter.getSegmentIndex(new File("index.m3u8")));
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws IOException {
+		HlsSegmenter segmenter = new HlsSegmenter(null, null, directory.toFile(), 10);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 10; i++) {
+			File segment = segmenter.getFile(i);
+			Files.write(segment.toPath(), new byte[100]);
+			// the last segments are the oldest
+			assertTrue(segment.setLastModified(now - (i * 10000)));
+		}
+		Files.write(directory.resolve("10.ts.tmp"), new byte[100]);
+
+		// the look-ahead window of the last segment asked is kept
+		assertEquals(500, HlsSegmentCache.evict(List.of(segmenter), 500, 2));
+		for (int i = 0; i < 5; i++) {
+			assertTrue(segmenter.getFile(i).exists(), "segment " + i);
+		}
+		for (int i = 5; i < 10; i++) {
+			assertFalse(segmenter.getFile(i).exists(), "segment " + i);
+		}
+
+		assertEquals(300, HlsSegmentCache.evict(List.of(segmenter), 0, 2));
+		assertTrue(segmenter.getFile(2).exists());
+		assertFalse(segmenter.getFile(3).exists());
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.external;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class JavaHttpClientTest {
+
+	private static final byte[] BODY = "poster".getBytes(StandardCharsets.UTF_8);
+	private static final String ETAG = "\"v1\"";
+	private static final AtomicInteger REQUESTS = new AtomicInteger();
+	private static final AtomicInteger NOT_MODIFIED = new AtomicInteger();
+	private static final AtomicInteger RATE_LIMITED = new AtomicInteger();
+	private static HttpServer server;
+	private static String baseUrl;
+
+	@BeforeAll
+	public static void setUpClass() throws ConfigurationException, InterruptedException, IOException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/fresh", exchange -> {
+			REQUESTS.incrementAndGet();
+			exchange.getResponseHeaders().set("Cache-Control", "max-age=3600");
+			send(exchange, 200, BODY);
+		});
+		server.createContext("/etag", exchange -> {
+			REQUESTS.incrementAndGet();
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+			exchange.getResponseHeaders().set("ETag", ETAG);
+			if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				NOT_MODIFIED.incrementAndGet();
+				send(exchange, 304, null);
+			} else {
+				send(exchange, 200, BODY);
+			}
+		});
+		server.createContext("/nostore", exchange -> {
+			REQUESTS.incrementAndGet();
+			exchange.getResponseHeaders().set("Cache-Control", "no-store");
+			exchange.getResponseHeaders().set("ETag", ETAG);
+			send(exchange, 200, BODY);
+		});
+		server.createContext("/limited", exchange -> {
+			REQUESTS.incrementAndGet();
+			if (RATE_LIMITED.getAndIncrement() == 0) {
+				exchange.getResponseHeaders().set("Retry-After", "0");
+				send(exchange, 429, null);
+			} else {
+				send(exchange, 200, BODY);
+			}
+		});
+		server.start();
+		baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+	}
+
+	@AfterAll
+	public static void tearDownClass() {
+		server.stop(0);
+	}
+
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+		if (body != null) {
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+		}
+		exchange.close();
+	}
+
+	/**
+	 * @return a new URL on the stub server, not cached by a previous run.
+	 */
+	private static String getUrl(String path) {
+		return baseUrl + path + "?run=" + UUID.randomUUID();
+	}
+
+	@Test
+	public void testFreshResponseIsReused() throws IOException {
+		String url = getUrl("/fresh");
+		int before = REQUESTS.get();
+		assertArrayEquals(BODY, JavaHttpClient.getBytes(url));
+		assertArrayEquals(BODY, JavaHttpClient.getBytes(url));
+		assertEquals(before + 1, REQUESTS.get());
+	}
+
+	@Test
+	public void testStaleResponseIsRevalidated() throws IOException {
+		String url = getUrl("/etag");
+		int before = NOT_MODIFIED.get();
+		assertArrayEquals(BODY, JavaHttpClient.getBytes(url));
+		assertArrayEquals(BODY, JavaHttpClient.getBytes(url));
+		assertArrayEquals(BODY, JavaHttpClient.getBytes(url));
+		assertEquals(before + 2, NOT_MODIFIED.get());
+	}
+
+	@Test
+	public void testNoStoreIsNotCached() throws IOException {
+		String url = getUrl("/nostore");
+		int before = REQUESTS.get();
+		assertArrayEquals(BODY, JavaHttpClient.getBytes(url));
+		assertArrayEquals(BODY, JavaHttpClient.getBytes(url));
+		assertEquals(before + 2, REQUESTS.get());
+	}
+
+	@Test
+	public void testRateLimitIsRetried() throws IOException {
+		assertArrayEquals(BODY, JavaHttpClient.getBytes(getUrl("/limited")));
+		assertEquals(2, RATE_LIMITED.get());
+	}
+
+	@Test
+	public void testRetryDelay() {
+		assertEquals(5000, JavaHttpClient.getRetryDelay(HttpHeaders.of(Map.of("retry-after", List.of("5")), (name, value) -> true), 0));
+		HttpHeaders none = HttpHeaders.of(Map.of(), (name, value) -> true);
+		assertEquals(1000, JavaHttpClient.getRetryDelay(none, 0));
+		assertEquals(4000, JavaHttpClient.getRetryDelay(none, 2));
+		long delay = JavaHttpClient.getRetryDelay(HttpHeaders.of(Map.of("retry-after", List.of("Thu, 01 Jan 2099 00:00:00 GMT")), (name, value) -> true), 0);
+		assertTrue(delay > 60000);
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BufferedOutputFileImplTest {
+	private static final int TOTAL_SIZE = 16 * 1048576;
+	private static final int CHUNK_SIZE = 100000;
+
+	@BeforeEach
+	public final void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+	}
+
+	private static OutputParams getSmallBufferParams() {
+		OutputParams params = new OutputParams(PMS.getConfiguration());
+		// 1 MB ring buffer, so the data written below wraps many times
+		params.setMaxBufferSize(1);
+		params.setMinBufferSize(0.01);
+		params.setSecondReadMinSize(0);
+		params.setHideBuffer(true);
+		return params;
+	}
+
+	@Test
+	public void testWrappingProducerConsumer() throws Exception {
+		checkWrappingProducerConsumer(getSmallBufferParams());
+	}
+
+	@Test
+	public void testOffHeapWrappingProducerConsumer() throws Exception {
+		UmsConfiguration configuration = PMS.getConfiguration();
+		configuration.setTranscodeBufferOffHeap(true);
+		// 2 MB budget for a 4 MB buffer, half of it spills to disk
+		configuration.setTranscodeBufferMemoryBudget(2);
+		OutputParams params = getSmallBufferParams();
+		params.setMaxBufferSize(4);
+		checkWrappingProducerConsumer(params);
+		assertEquals(0, DirectBufferPool.getInUseBytes());
+		assertEquals(0, DirectBufferPool.getSpilledBytes());
+	}
+
+	private static void checkWrappingProducerConsumer(OutputParams params) throws Exception {
+		BufferedOutputFileImpl output = new BufferedOutputFileImpl(params);
+		InputStream input = output.getInputStream(0);
+		assertNotNull(input);
+
+		AtomicReference<Throwable> writerError = new AtomicReference<>();
+		Thread writer = new Thread(() -> {
+			try {
+				byte[] chunk = new byte[CHUNK_SIZE];
+				int written = 0;
+				while (written < TOTAL_SIZE) {
+					int len = Math.min(CHUNK_SIZE, TOTAL_SIZE - written);
+					for (int i = 0; i < len; i++) {
+						chunk[i] = (byte) (written + i);
+					}
+					output.write(chunk, 0, len);
+					written += len;
+				}
+				output.close();
+			} catch (IOException e) {
+				writerError.set(e);
+			}
+		}, "BufferedOutputFileImplTest-writer");
+		writer.start();
+
+		byte[] buf = new byte[65536];
+		long read = 0;
+		int n;
+		while ((n = input.read(buf, 0, buf.length)) != -1) {
+			for (int i = 0; i < n; i++) {
+				assertEquals((byte) (read + i), buf[i], "Unexpected byte at position " + (read + i));
+			}
+			read += n;
+		}
+		writer.join(10000);
+
+		assertNull(writerError.get());
+		assertEquals(TOTAL_SIZE, read);
+		assertEquals(TOTAL_SIZE, output.getWriteCount());
+		output.reset();
+	}
+
+	@Test
+	public void testReadAfterEndOfStream() throws Exception {
+		BufferedOutputFileImpl output = new BufferedOutputFileImpl(getSmallBufferParams());
+		InputStream input = output.getInputStream(0);
+		output.write(new byte[] {1, 2, 3});
+		output.close();
+
+		byte[] buf = new byte[10];
+		assertEquals(3, input.read(buf, 0, buf.length));
+		assertEquals(-1, input.read(buf, 0, buf.length));
+		assertEquals(-1, input.read());
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectFileInputStreamTest {
+	@TempDir
+	static File tempDir;
+	static File file;
+
+	@BeforeAll
+	public static void setUp() throws IOException {
+		byte[] data = new byte[1000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		file = new File(tempDir, "data.bin");
+		Files.write(file.toPath(), data);
+	}
+
+	@Test
+	public void testRange() throws IOException {
+		try (DirectFileInputStream input = new DirectFileInputStream(file, 100, 50)) {
+			assertEquals(100, input.getPosition());
+			assertEquals(50, input.getRemaining());
+			assertEquals(100, input.read());
+			byte[] buf = new byte[100];
+			assertEquals(49, input.read(buf, 0, buf.length));
+			assertEquals((byte) 101, buf[0]);
+			assertEquals((byte) 149, buf[48]);
+			assertEquals(-1, input.read(buf, 0, buf.length));
+		}
+	}
+
+	@Test
+	public void testSkipAndLimit() throws IOException {
+		try (DirectFileInputStream input = new DirectFileInputStream(file, 0, -1)) {
+			assertEquals(1000, input.getRemaining());
+			assertEquals(500, input.skip(500));
+			assertSame(input, input.limit(10));
+			assertEquals(10, input.available());
+			assertEquals(500 & 0xff, input.read());
+			input.consumeRemaining();
+			assertEquals(0, input.getRemaining());
+			assertEquals(-1, input.read());
+		}
+	}
+
+	@Test
+	public void testPastEndOfFile() throws IOException {
+		try (DirectFileInputStream input = new DirectFileInputStream(file, 2000, -1)) {
+			assertEquals(0, input.getRemaining());
+			assertEquals(-1, input.read());
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DirectRingBufferStorageTest {
+	private static final int CAPACITY = DirectBufferPool.CHUNK_SIZE;
+
+	@BeforeEach
+	public final void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		PMS.getConfiguration().setTranscodeBufferOffHeap(true);
+		PMS.getConfiguration().setTranscodeBufferMemoryBudget(2);
+	}
+
+	@Test
+	public void testGetAfterRelease() {
+		DirectRingBufferStorage storage = fill(new DirectRingBufferStorage(CAPACITY), (byte) 1);
+		assertEquals(1, storage.get(CAPACITY - 1));
+		storage.release();
+		assertEquals(0, storage.get(CAPACITY - 1));
+		byte[] dst = new byte[16];
+		storage.get(0, dst, 0, dst.length);
+		assertArrayEquals(new byte[16], dst);
+		assertEquals(0, DirectBufferPool.getInUseBytes());
+	}
+
+	/**
+	 * A reader copying while the storage is released must never see the
+	 * bytes of the buffer that takes the chunk over.
+	 */
+	@Test
+	public void testConcurrentGetAndRelease() throws Exception {
+		for (int round = 0; round < 20; round++) {
+			DirectRingBufferStorage storage = fill(new DirectRingBufferStorage(CAPACITY), (byte) 1);
+			AtomicBoolean done = new AtomicBoolean();
+			AtomicReference<String> error = new AtomicReference<>();
+			CountDownLatch reading = new CountDownLatch(1);
+			Thread reader = new Thread(() -> {
+				byte[] dst = new byte[CAPACITY];
+				while (!done.get()) {
+					storage.get(0, dst, 0, CAPACITY);
+					reading.countDown();
+					byte first = dst[0];
+					if (first != 0 && first != 1) {
+						error.set("read another buffer's byte " + first);
+						return;
+					}
+					for (byte b : dst) {
+						if (b != first) {
+							error.set("read bytes " + first + " and " + b + " in one copy");
+							return;
+						}
+					}
+				}
+			});
+			reader.start();
+			assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+			storage.release();
+			DirectRingBufferStorage other = new DirectRingBufferStorage(CAPACITY);
+			for (int i = 0; i < 5; i++) {
+				fill(other, (byte) 2);
+			}
+			done.set(true);
+			reader.join(TimeUnit.SECONDS.toMillis(10));
+			other.release();
+			assertNull(error.get());
+		}
+		assertEquals(0, DirectBufferPool.getInUseBytes());
+	}
+
+	private static DirectRingBufferStorage fill(DirectRingBufferStorage storage, byte value) {
+		byte[] src = new byte[CAPACITY];
+		Arrays.fill(src, value);
+		storage.put(0, src, 0, CAPACITY);
+		return storage;
+	}
+}
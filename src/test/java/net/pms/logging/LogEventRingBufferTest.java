@@ -0,0 +1,93 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class LogEventRingBufferTest {
+
+	@Test
+	public void testBounded() {
+		LogEventRingBuffer<Integer> buffer = new LogEventRingBuffer<>(5);
+		assertEquals(8, buffer.capacity());
+		assertTrue(buffer.isEmpty());
+		for (int i = 0; i < 8; i++) {
+			assertTrue(buffer.offer(i));
+		}
+		assertFalse(buffer.offer(8));
+
+		List<Integer> batch = new ArrayList<>();
+		assertEquals(3, buffer.drainTo(batch, 3));
+		assertEquals(List.of(0, 1, 2), batch);
+		// room again, the order is kept across the wrap
+		assertTrue(buffer.offer(8));
+		batch.clear();
+		assertEquals(6, buffer.drainTo(batch, 100));
+		assertEquals(List.of(3, 4, 5, 6, 7, 8), batch);
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void testConcurrentProducers() throws InterruptedException {
+		LogEventRingBuffer<Integer> buffer = new LogEventRingBuffer<>(64);
+		int producers = 4;
+		int perProducer = 5000;
+		Thread[] threads = new Thread[producers];
+		for (int i = 0; i < producers; i++) {
+			int producer = i;
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < perProducer; j++) {
+					while (!buffer.offer(producer * perProducer + j)) {
+						Thread.yield();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		boolean[] seen = new boolean[producers * perProducer];
+		int[] last = new int[producers];
+		Arrays.fill(last, -1);
+		List<Integer> batch = new ArrayList<>();
+		int received = 0;
+		while (received < seen.length) {
+			batch.clear();
+			int drained = buffer.drainTo(batch, 100);
+			if (drained == 0) {
+				// let the producers run
+				Thread.yield();
+			}
+			received += drained;
+			for (int value : batch) {
+				assertFalse(seen[value], "Duplicate " + value);
+				seen[value] = true;
+				// each producer's events stay in order
+				int producer = value / perProducer;
+				assertTrue(value > last[producer]);
+				last[producer] = value;
+			}
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(buffer.isEmpty());
+	}
+
+}
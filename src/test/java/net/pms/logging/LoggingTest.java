@@ -36,6 +36,7 @@ import java.util.*;
 import net.pms.PMS;
 import net.pms.TestHelper;
 import net.pms.configuration.UmsConfiguration;
+import net.pms.gui.GuiManager;
 import net.pms.util.FileUtil;
 import org.apache.commons.configuration.ConfigurationException;
 import static org.junit.jupiter.api.Assertions.*;
@@ -328,6 +329,54 @@ public class LoggingTest {
 		context.reset();
 	}
 
+	/**
+	 * Test that GuiManagerAppender delivers every event from many threads to
+	 * the GUI log buffer when it is set to block on a full queue.
+	 */
+	@Test
+	public void testGuiManagerAppender() throws InterruptedException {
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		Logger logger = context.getLogger("net.pms.logging.GuiManagerAppenderTest");
+		logger.setLevel(Level.TRACE);
+		logger.setAdditive(false);
+		PatternLayoutEncoder patternEncoder = new PatternLayoutEncoder();
+		patternEncoder.setPattern("%msg%n");
+		patternEncoder.setContext(context);
+		patternEncoder.start();
+		GuiManagerAppender<ILoggingEvent> guiAppender = new GuiManagerAppender<>();
+		guiAppender.setContext(context);
+		guiAppender.setEncoder(patternEncoder);
+		guiAppender.setQueueSize(16);
+		guiAppender.setNeverBlock(false);
+		guiAppender.start();
+		logger.addAppender(guiAppender);
+
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			int thread = i;
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 500; j++) {
+					logger.trace("gui appender test {} {}", thread, j);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		guiAppender.stop();
+
+		assertEquals(0, guiAppender.getDroppedCount(), "NoDroppedEvents");
+		int found = 0;
+		for (String line : GuiManager.getLogLines()) {
+			if (line.startsWith("gui appender test ")) {
+				found++;
+			}
+		}
+		assertEquals(2000, found, "AllEventsDelivered");
+		logger.detachAppender(guiAppender);
+	}
+
 	private static class TestAppender<E> extends AppenderBase<E> {
 
 		private final Object lastEventLock = new Object();
@@ -0,0 +1,52 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TransferStatsTest {
+
+	@BeforeEach
+	public void setUp() {
+		TransferStats.reset();
+	}
+
+	@Test
+	public void testRecord() throws Exception {
+		InetAddress address = InetAddress.getByName("127.0.0.1");
+		assertEquals(-1, TransferStats.getLastThroughput(address));
+		assertEquals(1000, TransferStats.record(address, 1000, TimeUnit.SECONDS.toNanos(1)));
+		assertEquals(1000, TransferStats.getLastThroughput(address));
+		assertEquals(4000, TransferStats.record(address, 2000, TimeUnit.MILLISECONDS.toNanos(500)));
+		assertEquals(4000, TransferStats.getLastThroughput(address));
+		assertEquals(3000, TransferStats.getTotalBytes());
+		assertEquals(2000, TransferStats.getAverageThroughput());
+	}
+
+	@Test
+	public void testEmptyTransferIsIgnored() throws Exception {
+		InetAddress address = InetAddress.getByName("127.0.0.1");
+		assertEquals(0, TransferStats.record(address, 0, 10));
+		assertEquals(-1, TransferStats.getLastThroughput(address));
+		assertEquals(0, TransferStats.getTotalBytes());
+	}
+
+}
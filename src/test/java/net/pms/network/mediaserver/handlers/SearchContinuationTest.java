@@ -0,0 +1,182 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.handlers;
+
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.RendererConfiguration;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.database.MediaDatabase;
+import net.pms.database.MediaTableFiles;
+import net.pms.formats.Format;
+import net.pms.media.MediaInfo;
+import net.pms.media.audio.metadata.MediaAudioMetadata;
+import net.pms.renderers.ConnectedRenderers;
+import net.pms.renderers.Renderer;
+import net.pms.store.DbIdMediaType;
+import net.pms.store.MediaStoreIds;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.jupnp.support.model.SortCriterion;
+
+/**
+ * Tests the search pages sought from the previous one, against the media
+ * database.
+ */
+public class SearchContinuationTest {
+	private static final String FOLDER = "/media/keyset test/";
+	private static final String SEARCH_CRITERIA = "upnp:class derivedfrom \"object.item.audioItem\" and upnp:album = \"Keyset Test\"";
+
+	@BeforeAll
+	public static final void setUp() throws ConfigurationException, InterruptedException, SQLException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		MediaDatabase.init();
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			assertNotNull(connection);
+			MediaTableFiles.removeMedia(connection, FOLDER, true, false);
+			for (int i = 0; i < 25; i++) {
+				MediaAudioMetadata audioMetadata = new MediaAudioMetadata();
+				audioMetadata.setAlbum("Keyset Test");
+				// a few duplicated and missing titles
+				audioMetadata.setSongname(i % 5 == 0 ? null : i % 3 == 0 ? "Same Title" : "Title " + (char) ('Z' - i));
+				MediaInfo media = new MediaInfo();
+				media.setAudioMetadata(audioMetadata);
+				MediaTableFiles.insertOrUpdateData(connection, FOLDER + i + ".mp3", 1000, Format.AUDIO, media);
+			}
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	@AfterAll
+	public static final void tearDown() throws SQLException {
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			if (connection != null) {
+				MediaTableFiles.removeMedia(connection, FOLDER, true, false);
+			}
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	/**
+	 * Tests that seeking the pages from the previous one gives the same rows
+	 * as the offsets.
+	 */
+	@Test
+	public void testKeysetPagination() throws Exception {
+		Connection connection = null;
+		try {
+			connection = MediaDatabase.getConnectionIfAvailable();
+			assertNotNull(connection);
+			for (String sort : new String[] {"", "+dc:title", "-dc:title", "-dc:title,+upnp:artist"}) {
+				SortCriterion[] orderBy = SortCriterion.valueOf(sort);
+				List<Long> expected = getOids(connection,
+					SearchRequestHandler.convertToFilesSql(SEARCH_CRITERIA, 0, 0, orderBy, DbIdMediaType.TYPE_AUDIO), null);
+				assertEquals(25, expected.size());
+
+				SearchContinuation continuation = new SearchContinuation("", 0, 0, orderBy.length);
+				List<Long> sought = getOids(connection,
+					SearchRequestHandler.convertToFilesSql(SEARCH_CRITERIA, 0, 7, orderBy, DbIdMediaType.TYPE_AUDIO), continuation);
+				while (sought.size() < expected.size()) {
+					List<Long> page = getOids(connection,
+						SearchRequestHandler.convertToSeekSql(SEARCH_CRITERIA, 7, orderBy, DbIdMediaType.TYPE_AUDIO, continuation), continuation);
+					assertTrue(!page.isEmpty());
+					sought.addAll(page);
+				}
+				assertEquals(expected, sought, sort);
+				assertEquals(25, continuation.getNextIndex());
+			}
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	/**
+	 * Tests that the library searches keep the continuation of the renderer,
+	 * and drop it when the library changes or the results end.
+	 */
+	@Test
+	public void testContinuationCache() throws Exception {
+		Renderer renderer = new Renderer((RendererConfiguration) null);
+		// the continuations are kept by renderer address
+		ConnectedRenderers.addRendererAssociation(InetAddress.getByName("192.0.2.17"), renderer);
+		SortCriterion[] orderBy = SortCriterion.valueOf("+dc:title");
+		String query = SearchRequestHandler.convertToFilesSql(SEARCH_CRITERIA, 0, 0, orderBy, DbIdMediaType.TYPE_AUDIO);
+
+		SearchRequestHandler.getLibraryResources(renderer, SEARCH_CRITERIA, 0, 7, orderBy, DbIdMediaType.TYPE_AUDIO);
+		SearchContinuation first = SearchRequestHandler.getContinuation(renderer);
+		assertNotNull(first);
+		assertTrue(first.isContinuedBy(query, 7, getSystemUpdateId()));
+		assertFalse(first.isContinuedBy(query, 8, getSystemUpdateId()));
+
+		// the next page replaces it
+		SearchRequestHandler.getLibraryResources(renderer, SEARCH_CRITERIA, 7, 7, orderBy, DbIdMediaType.TYPE_AUDIO);
+		SearchContinuation next = SearchRequestHandler.getContinuation(renderer);
+		assertNotSame(first, next);
+		assertEquals(14, next.getNextIndex());
+		assertTrue(next.isContinuedBy(query, 14, getSystemUpdateId()));
+
+		// a change of the library invalidates it
+		MediaStoreIds.incrementSystemUpdateId();
+		assertFalse(next.isContinuedBy(query, 14, getSystemUpdateId()));
+		SearchRequestHandler.getLibraryResources(renderer, SEARCH_CRITERIA, 14, 7, orderBy, DbIdMediaType.TYPE_AUDIO);
+		assertTrue(SearchRequestHandler.getContinuation(renderer).isContinuedBy(query, 21, getSystemUpdateId()));
+
+		// another search doesn't continue it
+		String otherQuery = SearchRequestHandler.convertToFilesSql(SEARCH_CRITERIA, 0, 0, SortCriterion.valueOf("-dc:title"), DbIdMediaType.TYPE_AUDIO);
+		assertFalse(SearchRequestHandler.getContinuation(renderer).isContinuedBy(otherQuery, 21, getSystemUpdateId()));
+
+		// past the last result
+		SearchRequestHandler.getLibraryResources(renderer, SEARCH_CRITERIA, 25, 7, orderBy, DbIdMediaType.TYPE_AUDIO);
+		assertNull(SearchRequestHandler.getContinuation(renderer));
+	}
+
+	private static long getSystemUpdateId() {
+		return MediaStoreIds.getSystemUpdateId().getValue();
+	}
+
+	private static List<Long> getOids(Connection connection, String sql, SearchContinuation continuation) throws SQLException {
+		List<Long> oids = new ArrayList<>();
+		try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql)) {
+			while (resultSet.next()) {
+				if (continuation != null) {
+					continuation.addRow(resultSet);
+				}
+				oids.add(resultSet.getLong("oid"));
+			}
+		}
+		return oids;
+	}
+
+}
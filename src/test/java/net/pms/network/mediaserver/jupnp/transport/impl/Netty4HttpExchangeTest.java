@@ -0,0 +1,106 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.jupnp.transport.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpVersion;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class Netty4HttpExchangeTest {
+
+	private static String readOutbound(EmbeddedChannel channel) {
+		StringBuilder sb = new StringBuilder();
+		ByteBuf buf;
+		while ((buf = channel.readOutbound()) != null) {
+			sb.append(buf.toString(StandardCharsets.US_ASCII));
+			buf.release();
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testFixedLengthResponse() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseEncoder());
+		Netty4HttpExchange exchange = new Netty4HttpExchange(channel, new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ums/test?a=b"));
+		assertEquals("/ums/test", exchange.getRequestURI().getPath());
+		assertEquals("GET", exchange.getRequestMethod());
+		assertEquals("HTTP/1.1", exchange.getProtocol());
+		exchange.getResponseHeaders().set("Content-Type", "text/plain");
+		exchange.sendResponseHeaders(200, 5);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write("hello".getBytes(StandardCharsets.US_ASCII));
+		}
+		String response = readOutbound(channel);
+		assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+		assertTrue(response.contains("content-length: 5\r\n"));
+		assertTrue(response.endsWith("\r\n\r\nhello"));
+		assertTrue(channel.isOpen());
+		assertTrue(channel.config().isAutoRead());
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testChunkedResponse() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseEncoder());
+		Netty4HttpExchange exchange = new Netty4HttpExchange(channel, new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ums/test"));
+		exchange.sendResponseHeaders(200, 0);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write("abc".getBytes(StandardCharsets.US_ASCII));
+			os.flush();
+			os.write("de".getBytes(StandardCharsets.US_ASCII));
+		}
+		String response = readOutbound(channel);
+		assertTrue(response.contains("transfer-encoding: chunked\r\n"));
+		assertTrue(response.endsWith("\r\n\r\n3\r\nabc\r\n2\r\nde\r\n0\r\n\r\n"));
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testHeadResponseHasNoBody() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseEncoder());
+		Netty4HttpExchange exchange = new Netty4HttpExchange(channel, new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, "/ums/test"));
+		exchange.getResponseHeaders().set("Content-Length", "100");
+		exchange.sendResponseHeaders(200, 100);
+		exchange.close();
+		String response = readOutbound(channel);
+		assertTrue(response.contains("Content-length: 100\r\n") || response.contains("Content-Length: 100\r\n"));
+		assertTrue(response.endsWith("\r\n\r\n"));
+		channel.finishAndReleaseAll();
+	}
+
+	@Test
+	public void testConnectionClose() throws Exception {
+		EmbeddedChannel channel = new EmbeddedChannel(new HttpResponseEncoder());
+		DefaultFullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/ums/test");
+		request.headers().set("Connection", "close");
+		Netty4HttpExchange exchange = new Netty4HttpExchange(channel, request);
+		exchange.sendResponseHeaders(404, -1);
+		exchange.close();
+		String response = readOutbound(channel);
+		assertTrue(response.startsWith("HTTP/1.1 404 Not Found\r\n"));
+		assertTrue(response.contains("connection: close\r\n"));
+		assertFalse(channel.isOpen());
+	}
+
+}
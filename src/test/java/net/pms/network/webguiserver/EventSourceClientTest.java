@@ -0,0 +1,158 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.webguiserver;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class EventSourceClientTest {
+
+	private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+	private final CountDownLatch browserReady = new CountDownLatch(1);
+	private final CountDownLatch browserBlocked = new CountDownLatch(1);
+	private EventSourceClient client;
+
+	@BeforeEach
+	public final void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		PMS.getConfiguration().setWebGuiEventsQueueSize(5);
+	}
+
+	private void connect() throws IOException {
+		ServletOutputStream output = new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+				//nothing to do
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				// a slow browser, blocked until the test releases it
+				browserBlocked.countDown();
+				try {
+					browserReady.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				synchronized (written) {
+					written.write(b);
+				}
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				for (int i = off; i < off + len; i++) {
+					write(b[i]);
+				}
+			}
+		};
+		ServletResponse response = (ServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ServletResponse.class}, (proxy, method, args) ->
+			"getOutputStream".equals(method.getName()) ? output : null
+		);
+		AsyncContext async = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{AsyncContext.class}, (proxy, method, args) ->
+			"getResponse".equals(method.getName()) ? response : null
+		);
+		client = new EventSourceClient(async, 3600);
+	}
+
+	private String waitForWritten(String expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (System.currentTimeMillis() < deadline) {
+			synchronized (written) {
+				String result = written.toString(StandardCharsets.UTF_8);
+				if (result.contains(expected)) {
+					return result;
+				}
+			}
+			Thread.sleep(10);
+		}
+		fail("\"" + expected + "\" was never written");
+		return null;
+	}
+
+	@Test
+	public void testSlowBrowserDoesNotBlock() throws Exception {
+		connect();
+		assertTrue(client.sendMessage("first"));
+		assertTrue(browserBlocked.await(10, TimeUnit.SECONDS));
+		// the writer is blocked on the first message, the next ones are queued
+		for (int i = 0; i < 20; i++) {
+			assertTrue(client.sendMessage("message" + i, false));
+		}
+		assertEquals(5, client.getQueuedCount());
+		browserReady.countDown();
+		String result = waitForWritten("data: message19");
+		assertTrue(result.contains("data: first"));
+		// the oldest messages were dropped
+		assertFalse(result.contains("data: message14\r\n"));
+		assertTrue(result.contains("data: message15\r\n"));
+		client.close();
+	}
+
+	@Test
+	public void testCoalesce() throws Exception {
+		connect();
+		assertTrue(client.sendMessage("first"));
+		assertTrue(browserBlocked.await(10, TimeUnit.SECONDS));
+		client.sendMessage("memory1", false, "update_memory");
+		client.sendMessage("log", false, null);
+		client.sendMessage("memory2", false, "update_memory");
+		assertEquals(2, client.getQueuedCount());
+		browserReady.countDown();
+		String result = waitForWritten("data: memory2");
+		assertFalse(result.contains("memory1"));
+		assertTrue(result.indexOf("data: log") < result.indexOf("data: memory2"));
+		client.close();
+	}
+
+	@Test
+	public void testCloseSlowBrowser() throws Exception {
+		PMS.getConfiguration().setWebGuiEventsDropOldest(false);
+		connect();
+		assertTrue(client.sendMessage("first"));
+		assertTrue(browserBlocked.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 5; i++) {
+			assertTrue(client.sendMessage("message" + i, false));
+		}
+		assertFalse(client.sendMessage("overflow", false));
+		assertTrue(client.isClosed());
+		browserReady.countDown();
+	}
+
+}
@@ -17,6 +17,7 @@
 package net.pms.parsers;
 
 import java.io.File;
+import net.pms.PMS;
 import net.pms.configuration.FormatConfiguration;
 import net.pms.formats.Format;
 import net.pms.formats.FormatFactory;
@@ -25,6 +26,7 @@ import net.pms.media.audio.MediaAudio;
 import net.pms.media.video.MediaVideo;
 import net.pms.parsers.mediainfo.StreamKind;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -277,4 +279,28 @@ public class MediaInfoParserTest {
 
 	}
 
+	@Test
+	public void testBulkExtractionMatchesFieldByField() throws Exception {
+		assumeTrue(MediaInfoParser.isValid(), "MediaInfo is not installed");
+		String[] testFiles = {
+			"video-h264-aac.mp4",
+			"video-mpeg4-aac.mkv",
+			"video-h265_dolbyvision_p07.06.ts",
+			"video-theora-vorbis.ogg",
+			"audio-mp3-infos.mp3",
+			"audio-flac24.flac",
+			"audio-lpcm.wav"
+		};
+		try {
+			for (String testFile : testFiles) {
+				PMS.getConfiguration().setMediaInfoBulkExtraction(false);
+				String fieldByField = getTestFileMediaInfo(testFile).toString();
+				PMS.getConfiguration().setMediaInfoBulkExtraction(true);
+				assertEquals(fieldByField, getTestFileMediaInfo(testFile).toString(), testFile);
+			}
+		} finally {
+			PMS.getConfiguration().setMediaInfoBulkExtraction(false);
+		}
+	}
+
 }
@@ -0,0 +1,88 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.parsers.mediainfo;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.pms.TestHelper;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MediaInfoHelperPoolTest {
+
+	@BeforeEach
+	public void setUp() {
+		TestHelper.SetLoggingOff();
+	}
+
+	/**
+	 * A handle that does not need the native library.
+	 */
+	private static class TestHandle extends MediaInfoHelper {
+		@Override
+		public boolean isValid() {
+			return true;
+		}
+	}
+
+	@Test
+	public void testHandlesAreReused() {
+		AtomicInteger created = new AtomicInteger();
+		MediaInfoHelperPool pool = new MediaInfoHelperPool(2, () -> {
+			created.incrementAndGet();
+			return new TestHandle();
+		});
+		MediaInfoHelper first = pool.checkout();
+		pool.checkin(first, 2_000_000);
+		assertSame(first, pool.checkout());
+		assertEquals(1, created.get());
+		assertEquals(1, pool.getInUseCount());
+		assertEquals(1, pool.getParseCount());
+		assertEquals(2, pool.getAverageParseTime(), 0.001);
+	}
+
+	@Test
+	public void testPoolSizeIsRespected() throws InterruptedException {
+		MediaInfoHelperPool pool = new MediaInfoHelperPool(2, TestHandle::new);
+		MediaInfoHelper first = pool.checkout();
+		MediaInfoHelper second = pool.checkout();
+		assertNotSame(first, second);
+		assertEquals(2, pool.getCreatedCount());
+
+		CountDownLatch checkedOut = new CountDownLatch(1);
+		Thread waiting = new Thread(() -> {
+			MediaInfoHelper third = pool.checkout();
+			assertSame(first, third);
+			checkedOut.countDown();
+		});
+		waiting.start();
+		assertFalse(checkedOut.await(300, TimeUnit.MILLISECONDS));
+		pool.checkin(first, 0);
+		assertTrue(checkedOut.await(5, TimeUnit.SECONDS));
+		assertEquals(2, pool.getCreatedCount());
+	}
+
+	@Test
+	public void testInvalidHandles() {
+		MediaInfoHelperPool pool = new MediaInfoHelperPool(4, MediaInfoHelper::new);
+		assertNull(pool.checkout());
+		assertEquals(0, pool.getCreatedCount());
+	}
+
+}
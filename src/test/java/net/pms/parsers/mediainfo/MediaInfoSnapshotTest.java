@@ -0,0 +1,82 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.parsers.mediainfo;
+
+import net.pms.TestHelper;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MediaInfoSnapshotTest {
+	private static final String JSON = """
+		{
+		"creatingLibrary":{"name":"MediaInfoLib","version":"24.06","url":"https://mediaarea.net/MediaInfo"},
+		"media":{"@ref":"movie.mkv","track":[
+		{"@type":"General","VideoCount":"1","AudioCount":"2","Format":"Matroska","Duration":"5.005","OverallBitRate":"1234567",
+			"Title":"A \\"quoted\\" title","extra":{"ALBUM_ARTISTS":"Someone"}},
+		{"@type":"Video","StreamOrder":"0","Format":"AVC","Width":"1920","Height":"1080","Delay":"0.042","Delay_Source":"Container"},
+		{"@type":"Audio","@typeorder":"1","Format":"AAC","Channels":"2","Language":"en"},
+		{"@type":"Audio","@typeorder":"2","Format":"AC-3","Channels":"6","Language":"fr"}
+		]}
+		}
+		""";
+
+	@BeforeEach
+	public void setUp() {
+		TestHelper.SetLoggingOff();
+	}
+
+	@Test
+	public void testFields() {
+		MediaInfoSnapshot snapshot = MediaInfoSnapshot.parse(JSON);
+		assertNotNull(snapshot);
+		assertEquals("Matroska", snapshot.get(StreamKind.GENERAL, 0, "Format"));
+		assertEquals("A \"quoted\" title", snapshot.get(StreamKind.GENERAL, 0, "Title"));
+		assertEquals("Someone", snapshot.get(StreamKind.GENERAL, 0, "ALBUM_ARTISTS"));
+		assertEquals("1920", snapshot.get(StreamKind.VIDEO, 0, "Width"));
+		assertEquals("AC-3", snapshot.get(StreamKind.AUDIO, 1, "Format"));
+		assertEquals("fr", snapshot.get(StreamKind.AUDIO, 1, "Language"));
+		assertEquals(1, snapshot.count(StreamKind.VIDEO));
+		assertEquals(2, snapshot.count(StreamKind.AUDIO));
+		assertEquals(0, snapshot.count(StreamKind.TEXT));
+	}
+
+	@Test
+	public void testUnknownFields() {
+		MediaInfoSnapshot snapshot = MediaInfoSnapshot.parse(JSON);
+		assertNotNull(snapshot);
+		assertNull(snapshot.get(StreamKind.GENERAL, 0, "Format/String"));
+		assertNull(snapshot.get(StreamKind.AUDIO, 2, "Format"));
+		assertNull(snapshot.get(StreamKind.TEXT, 0, "Format"));
+	}
+
+	@Test
+	public void testTimesAreInMilliseconds() {
+		MediaInfoSnapshot snapshot = MediaInfoSnapshot.parse(JSON);
+		assertNotNull(snapshot);
+		assertEquals("5005", snapshot.get(StreamKind.GENERAL, 0, "Duration"));
+		assertEquals("42", snapshot.get(StreamKind.VIDEO, 0, "Delay"));
+		assertEquals("Container", snapshot.get(StreamKind.VIDEO, 0, "Delay_Source"));
+	}
+
+	@Test
+	public void testInvalidOutput() {
+		assertNull(MediaInfoSnapshot.parse(""));
+		assertNull(MediaInfoSnapshot.parse("General\nFormat : Matroska"));
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DirectorySnapshotTest {
+	@TempDir
+	File tempDir;
+
+	@BeforeEach
+	public void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		SharedStoreTree.clear();
+	}
+
+	private File create(String name, int size) throws IOException {
+		File file = new File(tempDir, name);
+		Files.write(file.toPath(), new byte[size]);
+		return file;
+	}
+
+	private DirectorySnapshot snapshot() {
+		return DirectorySnapshot.create(tempDir, SharedStoreTree.getListing(tempDir, List.of()));
+	}
+
+	@Test
+	public void testUnchanged() throws IOException {
+		create("movie.mkv", 1);
+		assertTrue(new File(tempDir, "season 1").mkdir());
+		DirectorySnapshot snapshot = snapshot();
+		assertEquals(tempDir.getAbsolutePath(), snapshot.getDirectory());
+		assertEquals(2, snapshot.getEntries());
+		assertEquals(snapshot, snapshot());
+		assertEquals(snapshot, new DirectorySnapshot(snapshot.getDirectory(), snapshot.getModified(), snapshot.getEntries(), snapshot.getHash()));
+	}
+
+	@Test
+	public void testFileAdded() throws IOException {
+		create("movie.mkv", 1);
+		DirectorySnapshot snapshot = snapshot();
+		create("other.mkv", 1);
+		DirectorySnapshot changed = snapshot();
+		assertEquals(2, changed.getEntries());
+		assertNotEquals(snapshot.getHash(), changed.getHash());
+	}
+
+	@Test
+	public void testFileModifiedInPlace() throws IOException {
+		File movie = create("movie.mkv", 1);
+		long modified = movie.lastModified();
+		DirectorySnapshot snapshot = snapshot();
+		Files.write(movie.toPath(), new byte[2]);
+		assertTrue(movie.setLastModified(modified));
+		assertTrue(tempDir.setLastModified(snapshot.getModified()));
+		DirectorySnapshot changed = snapshot();
+		assertEquals(snapshot.getModified(), changed.getModified());
+		assertEquals(snapshot.getEntries(), changed.getEntries());
+		assertNotEquals(snapshot.getHash(), changed.getHash());
+	}
+
+	@Test
+	public void testNonMediaFilesIgnored() throws IOException {
+		create("movie.mkv", 1);
+		DirectorySnapshot snapshot = snapshot();
+		create("notes.txt", 1);
+		assertTrue(tempDir.setLastModified(snapshot.getModified()));
+		assertEquals(snapshot, snapshot());
+	}
+
+}
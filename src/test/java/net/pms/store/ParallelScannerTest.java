@@ -0,0 +1,129 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.pms.TestHelper;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ParallelScannerTest {
+
+	@BeforeEach
+	public void setUp() {
+		TestHelper.SetLoggingOff();
+	}
+
+	/**
+	 * A folder tree on a given device, without renderer.
+	 */
+	private static class TestFolder extends StoreContainer {
+		private final String device;
+		private final List<StoreContainer> subFolders = new ArrayList<>();
+
+		private TestFolder(String name, String device) {
+			super(null, name, null);
+			this.device = device;
+		}
+
+		private TestFolder add(TestFolder subFolder) {
+			subFolders.add(subFolder);
+			return subFolder;
+		}
+	}
+
+	private static TestFolder createTree(String name, String device, int width, int depth) {
+		TestFolder folder = new TestFolder(name, device);
+		if (depth > 0) {
+			for (int i = 0; i < width; i++) {
+				folder.add(createTree(name + "/" + i, device, width, depth - 1));
+			}
+		}
+		return folder;
+	}
+
+	@Test
+	public void testAllFoldersAreScanned() throws InterruptedException {
+		Set<String> scanned = ConcurrentHashMap.newKeySet();
+		TestFolder disk1 = createTree("disk1", "disk1", 3, 3);
+		TestFolder disk2 = createTree("disk2", "disk2", 4, 2);
+		// a mount point inside the first tree
+		disk1.add(createTree("disk1/mount", "disk3", 2, 2));
+		ParallelScanner scanner = new ParallelScanner(2, folder -> {
+			assertTrue(scanned.add(folder.getName()), "scanned twice: " + folder.getName());
+			return ((TestFolder) folder).subFolders;
+		}, folder -> ((TestFolder) folder).device);
+		scanner.scan(List.of(disk1, disk2), 50, null);
+		// 1 + 3 + 9 + 27, 1 + 4 + 16 and 1 + 2 + 4
+		assertEquals(40 + 21 + 7, scanned.size());
+		assertEquals(scanned.size(), scanner.getFoldersScanned());
+		assertEquals(scanned.size(), scanner.getFoldersQueued());
+		assertEquals(3, scanner.getDeviceCount());
+		assertEquals(0, scanner.getEstimatedSecondsLeft());
+	}
+
+	@Test
+	public void testDeviceLimit() throws InterruptedException {
+		Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+		Map<String, AtomicInteger> peak = new ConcurrentHashMap<>();
+		ParallelScanner scanner = new ParallelScanner(2, folder -> {
+			String device = ((TestFolder) folder).device;
+			int current = running.computeIfAbsent(device, key -> new AtomicInteger()).incrementAndGet();
+			peak.computeIfAbsent(device, key -> new AtomicInteger()).accumulateAndGet(current, Math::max);
+			try {
+				Thread.sleep(2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			running.get(device).decrementAndGet();
+			return ((TestFolder) folder).subFolders;
+		}, folder -> ((TestFolder) folder).device);
+		scanner.scan(List.of(createTree("a", "a", 3, 3), createTree("b", "b", 3, 3)), 50, null);
+		assertTrue(peak.get("a").get() <= 2);
+		assertTrue(peak.get("b").get() <= 2);
+	}
+
+	@Test
+	public void testStop() throws InterruptedException {
+		AtomicInteger scanned = new AtomicInteger();
+		ParallelScanner[] holder = new ParallelScanner[1];
+		holder[0] = new ParallelScanner(1, folder -> {
+			if (scanned.incrementAndGet() == 5) {
+				holder[0].stop();
+			}
+			return ((TestFolder) folder).subFolders;
+		}, folder -> ((TestFolder) folder).device);
+		holder[0].scan(List.of(createTree("a", "a", 4, 4)), 50, null);
+		assertTrue(scanned.get() < 20);
+	}
+
+	@Test
+	public void testFilesPerSecond() throws InterruptedException {
+		ParallelScanner scanner = new ParallelScanner(1, folder -> List.of(), folder -> "a");
+		scanner.scan(List.of(new TestFolder("a", "a")), 50, null);
+		scanner.addFiles(10);
+		assertEquals(10, scanner.getFilesScanned());
+		assertTrue(scanner.getFilesPerSecond() > 0);
+	}
+
+}
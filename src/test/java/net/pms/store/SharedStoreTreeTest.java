@@ -0,0 +1,128 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.store.SharedStoreTree.FileNode;
+import net.pms.store.SharedStoreTree.FolderListing;
+import net.pms.store.SharedStoreTree.FolderNode;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SharedStoreTreeTest {
+	@TempDir
+	File tempDir;
+
+	@BeforeEach
+	public void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		SharedStoreTree.clear();
+	}
+
+	private File create(String name) throws IOException {
+		File file = new File(tempDir, name);
+		Files.write(file.toPath(), new byte[] {0});
+		return file;
+	}
+
+	@Test
+	public void testListing() throws IOException {
+		File video = create("movie.mkv");
+		File thumbnail = create("movie.jpg");
+		File cover = create("folder.jpg");
+		File photo = create("holidays.jpg");
+		create("notes.txt");
+		File subFolder = new File(tempDir, "season 1");
+		assertTrue(subFolder.mkdir());
+		assertTrue(new File(tempDir, "ignored").mkdir());
+
+		FolderListing listing = SharedStoreTree.getListing(tempDir, List.of("ignored"));
+		assertNotNull(listing);
+		List<File> files = listing.getFiles();
+		assertTrue(files.contains(video));
+		assertTrue(files.contains(photo));
+		assertTrue(files.contains(subFolder));
+		assertFalse(files.contains(thumbnail));
+		assertFalse(files.contains(cover));
+		assertFalse(files.contains(new File(tempDir, "ignored")));
+		assertEquals(cover, listing.getPotentialCover());
+	}
+
+	@Test
+	public void testListingIsShared() throws IOException {
+		create("movie.mkv");
+		FolderListing listing = SharedStoreTree.getListing(tempDir, List.of());
+		assertSame(listing, SharedStoreTree.getListing(tempDir, List.of()));
+
+		// other settings need their own listing
+		assertNotSame(listing, SharedStoreTree.getListing(tempDir, List.of("extras")));
+
+		// a modified directory is listed again
+		File added = create("other.mkv");
+		assertTrue(tempDir.setLastModified(listing.getLastModified() + 2000));
+		FolderListing updated = SharedStoreTree.getListing(tempDir, List.of());
+		assertNotSame(listing, updated);
+		assertTrue(updated.getFiles().contains(added));
+	}
+
+	@Test
+	public void testFileNodeIsShared() throws IOException {
+		File video = create("movie.mkv");
+		FolderNode folder = SharedStoreTree.getFolder(tempDir);
+		FileNode node = SharedStoreTree.getFile(video);
+		assertSame(folder, SharedStoreTree.getFolder(tempDir));
+		assertSame(node, SharedStoreTree.getFile(video));
+		assertSame(node, folder.getFile(video));
+
+		// each view gets its own copy of the format
+		assertNotNull(node.getFormat());
+		assertNotSame(node.getFormat(), node.getFormat());
+
+		// the media check is remembered until the file is modified
+		AtomicInteger checks = new AtomicInteger();
+		assertTrue(node.isMediaValid(() -> checks.incrementAndGet() > 0));
+		assertTrue(node.isMediaValid(() -> checks.incrementAndGet() < 0));
+		assertEquals(1, checks.get());
+		assertTrue(video.setLastModified(video.lastModified() + 2000));
+		assertFalse(node.isMediaValid(() -> checks.incrementAndGet() < 0));
+		assertFalse(node.isMediaValid(() -> checks.incrementAndGet() > 0));
+		assertEquals(2, checks.get());
+		// or resized
+		long lastModified = video.lastModified();
+		Files.write(video.toPath(), new byte[] {1, 2});
+		assertTrue(video.setLastModified(lastModified));
+		assertTrue(node.isMediaValid(() -> checks.incrementAndGet() > 0));
+		assertEquals(3, checks.get());
+
+		// an invalidated directory gives new nodes to new views
+		SharedStoreTree.invalidate(tempDir);
+		assertNotSame(node, SharedStoreTree.getFile(video));
+	}
+
+}
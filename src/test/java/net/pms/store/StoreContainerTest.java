@@ -0,0 +1,102 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.RendererConfiguration;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.renderers.Renderer;
+import net.pms.store.container.RealFolder;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class StoreContainerTest {
+	private static final int FOLDERS = 600;
+	private static final long DISCOVERY_TIMEOUT = 10000;
+
+	@TempDir
+	File tempDir;
+
+	@BeforeEach
+	public void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		SharedStoreTree.clear();
+		// created in reverse order, the listing doesn't give them sorted
+		for (int i = FOLDERS - 1; i >= 0; i--) {
+			assertTrue(new File(tempDir, getName(i)).mkdir());
+		}
+	}
+
+	private static String getName(int index) {
+		return String.format("Folder %03d", index);
+	}
+
+	private static List<String> getNames(List<StoreResource> resources) {
+		List<String> names = new ArrayList<>();
+		for (StoreResource resource : resources) {
+			names.add(resource.getName());
+		}
+		return names;
+	}
+
+	private static List<String> getNames(int from, int count) {
+		List<String> names = new ArrayList<>();
+		for (int i = from; i < from + count; i++) {
+			names.add(getName(i));
+		}
+		return names;
+	}
+
+	@Test
+	public void testPagedDiscovery() throws Exception {
+		Renderer renderer = new Renderer((RendererConfiguration) null);
+		StoreContainer folder = new RealFolder(renderer, tempDir);
+
+		// the first page is served before all the children are known
+		folder.discover(false, 10);
+		assertEquals(getNames(0, 10), getNames(folder.getChildren(0, 10)));
+		// the pending children are counted
+		assertEquals(FOLDERS, folder.childrenCount());
+
+		// the next page follows, whatever was discovered in the background
+		folder.discover(false, 20);
+		assertEquals(getNames(10, 10), getNames(folder.getChildren(10, 10)));
+		assertEquals(FOLDERS, folder.childrenCount());
+
+		long deadline = System.currentTimeMillis() + DISCOVERY_TIMEOUT;
+		while (folder.getPendingChildrenCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, folder.getPendingChildrenCount());
+		synchronized (folder) {
+			// the background discovery sorted them once done
+			assertFalse(folder.childrenOrderFixed);
+			assertEquals(FOLDERS, folder.childrenCount());
+			assertEquals(getNames(0, FOLDERS), getNames(folder.getChildren(0, 0)));
+		}
+	}
+
+}
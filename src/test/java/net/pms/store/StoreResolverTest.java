@@ -0,0 +1,144 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class StoreResolverTest {
+
+	@Test
+	public void testWindowIsResolvedFirst() throws Exception {
+		Object device = new Object();
+		List<Integer> order = new CopyOnWriteArrayList<>();
+		CountDownLatch allDone = new CountDownLatch(10);
+		List<Runnable> resources = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			int index = i;
+			resources.add(() -> {
+				order.add(index);
+				allDone.countDown();
+			});
+		}
+		CompletableFuture<Void> window = StoreResolver.resolve(device, 1, resources, 6, 8);
+		window.get(10, TimeUnit.SECONDS);
+		assertTrue(order.contains(6));
+		assertTrue(order.contains(7));
+		assertTrue(allDone.await(10, TimeUnit.SECONDS));
+		// a single resource at a time for this device, the window first
+		assertEquals(List.of(6, 7, 0, 1, 2, 3, 4, 5, 8, 9), order);
+	}
+
+	@Test
+	public void testDeviceLimit() throws Exception {
+		Object device = new Object();
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger peak = new AtomicInteger();
+		List<Runnable> resources = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			resources.add(() -> {
+				peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+			});
+		}
+		StoreResolver.resolve(device, 2, resources, 0, resources.size()).get(10, TimeUnit.SECONDS);
+		assertTrue(peak.get() <= 2);
+		assertEquals(0, running.get());
+	}
+
+	@Test
+	public void testQueuedResourceIsResolvedOnce() throws Exception {
+		Object device = new Object();
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch blocker = new CountDownLatch(1);
+		Runnable blocking = () -> {
+			try {
+				blocker.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		Runnable counted = runs::incrementAndGet;
+		CompletableFuture<Void> first = StoreResolver.resolve(device, 1, List.of(blocking), 0, 1);
+		// queued twice while the device is busy
+		StoreResolver.resolve(device, 1, List.of(counted), 0, 0);
+		CompletableFuture<Void> second = StoreResolver.resolve(device, 1, List.of(counted), 0, 1);
+		blocker.countDown();
+		first.get(10, TimeUnit.SECONDS);
+		second.get(10, TimeUnit.SECONDS);
+		assertEquals(1, runs.get());
+	}
+
+	@Test
+	public void testFailingResourceDoesNotStallTheDevice() throws Exception {
+		Object device = new Object();
+		CountDownLatch othersDone = new CountDownLatch(20);
+		List<Runnable> resources = new ArrayList<>();
+		resources.add(() -> {
+			throw new IllegalStateException("broken resource");
+		});
+		for (int i = 0; i < 20; i++) {
+			resources.add(othersDone::countDown);
+		}
+		CompletableFuture<Void> window = StoreResolver.resolve(device, 1, resources, 0, 1);
+		ExecutionException e = assertThrows(ExecutionException.class, () -> window.get(10, TimeUnit.SECONDS));
+		assertInstanceOf(IllegalStateException.class, e.getCause());
+		// the remaining resources are resolved without another resolve call
+		assertTrue(othersDone.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testBlockedDevicesDoNotStallTheOthers() throws Exception {
+		int blocked = Math.max(2, Runtime.getRuntime().availableProcessors()) + 2;
+		CountDownLatch blocker = new CountDownLatch(1);
+		List<CompletableFuture<Void>> slow = new ArrayList<>();
+		try {
+			// as many slow files as there are processors, and more
+			for (int i = 0; i < blocked; i++) {
+				slow.add(StoreResolver.resolve(new Object(), 1, List.of(() -> {
+					try {
+						blocker.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}), 0, 1));
+			}
+			AtomicInteger runs = new AtomicInteger();
+			StoreResolver.resolve(new Object(), 1, List.of(runs::incrementAndGet), 0, 1).get(10, TimeUnit.SECONDS);
+			assertEquals(1, runs.get());
+		} finally {
+			blocker.countDown();
+		}
+		for (CompletableFuture<Void> future : slow) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+	}
+
+}
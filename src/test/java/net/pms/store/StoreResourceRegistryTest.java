@@ -0,0 +1,101 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store;
+
+import java.io.File;
+import java.util.List;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.store.container.RealFolder;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class StoreResourceRegistryTest {
+
+	@BeforeEach
+	public void setUp() throws ConfigurationException, InterruptedException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+	}
+
+	@Test
+	public void testIndexes() {
+		StoreResourceRegistry registry = new StoreResourceRegistry();
+		File file = new File("Movies");
+		RealFolder resource = new RealFolder(null, file);
+		RealFolder other = new RealFolder(null, file);
+		registry.put(1, resource);
+		registry.put(2, other);
+		assertSame(resource, registry.get(1));
+		assertTrue(registry.contains(2));
+		assertEquals(2, registry.getByFile(file).size());
+		assertTrue(registry.getByFile(new File("Other")).isEmpty());
+
+		registry.remove(2);
+		assertFalse(registry.contains(2));
+		assertEquals(List.of(resource), registry.getByFile(file));
+
+		RealFolder replacement = new RealFolder(null, new File("Replacement"));
+		registry.replace(1, replacement);
+		registry.replace(3, other);
+		assertSame(replacement, registry.get(1));
+		assertFalse(registry.contains(3));
+		assertTrue(registry.getByFile(file).isEmpty());
+		assertEquals(List.of(replacement), registry.getByFile(new File("Replacement")));
+
+		registry.clear();
+		assertEquals(0, registry.size());
+	}
+
+	@Test
+	public void testReplaceRacingRemove() throws InterruptedException {
+		StoreResourceRegistry registry = new StoreResourceRegistry();
+		RealFolder resource = new RealFolder(null, new File("Movies"));
+		File replacementFile = new File("Replacement");
+		RealFolder replacement = new RealFolder(null, replacementFile);
+		for (int i = 0; i < 500; i++) {
+			registry.put(1, resource);
+			Thread replacer = new Thread(() -> registry.replace(1, replacement));
+			Thread remover = new Thread(() -> registry.remove(1));
+			replacer.start();
+			remover.start();
+			replacer.join();
+			remover.join();
+			// whatever the order, a removed id is never registered again
+			assertNull(registry.get(1));
+			assertTrue(registry.getByFile(replacementFile).isEmpty());
+		}
+	}
+
+	@Test
+	public void testCollectedResourcesAreExpunged() throws InterruptedException {
+		StoreResourceRegistry registry = new StoreResourceRegistry();
+		registry.put(1, new RealFolder(null, new File("Movies")));
+		for (int i = 0; i < 50 && registry.size() > 0; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		assertNull(registry.get(1));
+		assertEquals(0, registry.size());
+		assertTrue(registry.getByFile(new File("Movies")).isEmpty());
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.store.item;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import net.pms.TestHelper;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ArchiveEntryAccessTest {
+	private static final int SIZE = 1024 * 1024;
+
+	@TempDir
+	File tempDir;
+
+	private byte[] data;
+	private File zip;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		TestHelper.SetLoggingOff();
+		ArchiveEntryAccess.clear();
+		data = new byte[SIZE];
+		// compressible, but not trivially
+		Random random = new Random(42);
+		for (int i = 0; i < SIZE; i++) {
+			data[i] = (byte) ('a' + random.nextInt(4));
+		}
+		zip = new File(tempDir, "archive.zip");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+			ZipEntry stored = new ZipEntry("stored.bin");
+			stored.setMethod(ZipEntry.STORED);
+			stored.setSize(SIZE);
+			CRC32 crc = new CRC32();
+			crc.update(data);
+			stored.setCrc(crc.getValue());
+			out.putNextEntry(stored);
+			out.write(data);
+			out.closeEntry();
+			out.putNextEntry(new ZipEntry("deflated.bin"));
+			out.write(data);
+			out.closeEntry();
+		}
+	}
+
+	@AfterEach
+	public void tearDown() {
+		ArchiveEntryAccess.clear();
+	}
+
+	private byte[] read(String entryName, long offset, int length) throws IOException {
+		try (InputStream in = ArchiveEntryAccess.getInputStream(ArchiveEntryAccess.Type.ZIP, zip, entryName, offset)) {
+			return in.readNBytes(length);
+		}
+	}
+
+	@Test
+	public void testStoredRange() throws IOException {
+		int offset = SIZE - 1000;
+		assertArrayEquals(Arrays.copyOfRange(data, offset, offset + 100), read("stored.bin", offset, 100));
+		// a stored entry is read where asked, no checkpoint needed
+		assertEquals(0, ArchiveEntryAccess.getCheckpointCount());
+		assertEquals(1, ArchiveEntryAccess.getIdleHandleCount());
+		assertArrayEquals(Arrays.copyOfRange(data, 0, 100), read("stored.bin", 0, 100));
+		assertEquals(1, ArchiveEntryAccess.getIdleHandleCount());
+	}
+
+	@Test
+	public void testSeekable() {
+		assertTrue(ArchiveEntryAccess.isSeekable(ArchiveEntryAccess.Type.ZIP, zip, "stored.bin"));
+		assertFalse(ArchiveEntryAccess.isSeekable(ArchiveEntryAccess.Type.ZIP, zip, "deflated.bin"));
+		assertFalse(ArchiveEntryAccess.isSeekable(ArchiveEntryAccess.Type.SEVEN_ZIP, zip, "stored.bin"));
+		// the opened archive is kept for the requests
+		assertEquals(1, ArchiveEntryAccess.getIdleHandleCount());
+	}
+
+	@Test
+	public void testDeflatedCheckpoint() throws IOException {
+		assertArrayEquals(Arrays.copyOfRange(data, 1000, 2000), read("deflated.bin", 1000, 1000));
+		assertEquals(1, ArchiveEntryAccess.getCheckpointCount());
+
+		// continues from the checkpoint at 2000
+		assertArrayEquals(Arrays.copyOfRange(data, 5000, 6000), read("deflated.bin", 5000, 1000));
+		assertEquals(1, ArchiveEntryAccess.getCheckpointCount());
+
+		// before the checkpoint, decompressed again from the start
+		assertArrayEquals(Arrays.copyOfRange(data, 10, 20), read("deflated.bin", 10, 10));
+		assertEquals(2, ArchiveEntryAccess.getCheckpointCount());
+
+		// read to the end, the archive is reusable
+		assertArrayEquals(Arrays.copyOfRange(data, SIZE - 10, SIZE), read("deflated.bin", SIZE - 10, 20));
+		assertEquals(1, ArchiveEntryAccess.getCheckpointCount());
+		assertEquals(1, ArchiveEntryAccess.getIdleHandleCount());
+	}
+
+	/**
+	 * A piped extraction outlives the request thread that read it, and is
+	 * continued by another one.
+	 */
+	@Test
+	public void testPipedCheckpointOnAnotherThread() throws Exception {
+		// 7-Zip reads the ZIP archive as well, through the piped extraction
+		byte[][] first = new byte[1][];
+		Thread request = new Thread(() -> {
+			try (InputStream in = ArchiveEntryAccess.getInputStream(ArchiveEntryAccess.Type.SEVEN_ZIP, zip, "deflated.bin", 1000)) {
+				first[0] = in.readNBytes(1000);
+			} catch (IOException e) {
+				first[0] = new byte[0];
+			}
+		});
+		request.start();
+		request.join();
+		assertArrayEquals(Arrays.copyOfRange(data, 1000, 2000), first[0]);
+		assertEquals(1, ArchiveEntryAccess.getCheckpointCount());
+		// the extraction is blocked on the full pipe meanwhile
+		Thread.sleep(1500);
+
+		try (InputStream in = ArchiveEntryAccess.getInputStream(ArchiveEntryAccess.Type.SEVEN_ZIP, zip, "deflated.bin", 2000)) {
+			assertEquals(0, ArchiveEntryAccess.getCheckpointCount());
+			assertArrayEquals(Arrays.copyOfRange(data, 2000, SIZE), in.readAllBytes());
+		}
+	}
+
+	@Test
+	public void testMissingEntry() {
+		assertThrows(IOException.class, () -> read("missing.bin", 0, 1));
+		assertThrows(IOException.class, () -> read("stored.bin", SIZE + 1, 1));
+	}
+
+}
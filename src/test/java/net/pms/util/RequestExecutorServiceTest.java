@@ -0,0 +1,88 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+public class RequestExecutorServiceTest {
+
+	@Test
+	public void testInFlightCount() throws Exception {
+		RequestExecutorService executor = new RequestExecutorService("Test Request", new SimpleThreadFactory("Test Request"), true);
+		assertEquals(RequestExecutorService.isVirtualThreadsSupported(), executor.isVirtual());
+		CountDownLatch started = new CountDownLatch(3);
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 3; i++) {
+			executor.execute(() -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertEquals(3, executor.getInFlight());
+		assertTrue(RequestExecutorService.getTotalInFlight() >= 3);
+		assertTrue(RequestExecutorService.getTotalPeakInFlight() >= 3);
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(0, executor.getInFlight());
+		assertEquals(3, executor.getPeakInFlight());
+		assertEquals(3, executor.getCompletedCount());
+	}
+
+	@Test
+	public void testPlatformThreads() throws Exception {
+		RequestExecutorService executor = new RequestExecutorService("Test Request", new SimpleThreadFactory("Test Request"), false);
+		assertFalse(executor.isVirtual());
+		assertEquals("done", executor.submit(() -> "done").get(10, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(1, executor.getCompletedCount());
+	}
+
+	@Test
+	public void testMaxInFlight() throws Exception {
+		RequestExecutorService executor = new RequestExecutorService("Test Request", new SimpleThreadFactory("Test Request"), false, 2);
+		assertEquals(2, executor.getMaxInFlight());
+		CountDownLatch release = new CountDownLatch(1);
+		Runnable task = () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		executor.execute(task);
+		executor.execute(task);
+		assertThrows(RejectedExecutionException.class, () -> executor.execute(task));
+		assertEquals(2, executor.getInFlight());
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(0, executor.getInFlight());
+		assertEquals(2, executor.getCompletedCount());
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import net.pms.PMS;
+import net.pms.TestHelper;
+import net.pms.configuration.UmsConfiguration;
+import net.pms.media.MediaInfo;
+import net.pms.media.subtitle.MediaSubtitle;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SubtitleUtilsTest {
+	private static final long WATCH_TIMEOUT = 10000;
+
+	@TempDir
+	File tempDir;
+
+	private File video;
+
+	@BeforeEach
+	public void setUp() throws ConfigurationException, InterruptedException, IOException {
+		TestHelper.SetLoggingOff();
+		PMS.get();
+		PMS.setConfiguration(new UmsConfiguration(false));
+		SubtitleUtils.clearFolderIndex();
+		video = new File(tempDir, "Movie.2010.mkv");
+		assertTrue(video.createNewFile());
+		assertTrue(new File(tempDir, "movie.2010.en.srt").createNewFile());
+		assertTrue(new File(tempDir, "Movie.2010.fr.forced.srt").createNewFile());
+		assertTrue(new File(tempDir, "Other.en.srt").createNewFile());
+		File subs = new File(tempDir, "Subs");
+		assertTrue(subs.mkdir());
+		assertTrue(new File(subs, "Movie.2010.de.srt").createNewFile());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		SubtitleUtils.clearFolderIndex();
+	}
+
+	private static Map<String, MediaSubtitle> getExternalSubtitles(MediaInfo media) {
+		Map<String, MediaSubtitle> result = new HashMap<>();
+		for (MediaSubtitle subtitles : media.getSubtitlesTracks()) {
+			if (subtitles.isExternal()) {
+				result.put(subtitles.getExternalFile().getName(), subtitles);
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testSearchAndAttachExternalSubtitles() {
+		MediaInfo media = new MediaInfo();
+		assertTrue(SubtitleUtils.searchAndAttachExternalSubtitles(video, media, false));
+		Map<String, MediaSubtitle> subtitles = getExternalSubtitles(media);
+		assertEquals(3, subtitles.size());
+		assertEquals("eng", subtitles.get("movie.2010.en.srt").getLang());
+		assertEquals("fre", subtitles.get("Movie.2010.fr.forced.srt").getLang());
+		assertEquals("forced", subtitles.get("Movie.2010.fr.forced.srt").getTitle());
+		assertEquals("ger", subtitles.get("Movie.2010.de.srt").getLang());
+
+		// nothing changed, the index answers the second lookup
+		assertFalse(SubtitleUtils.searchAndAttachExternalSubtitles(video, media, false));
+		assertEquals(3, getExternalSubtitles(media).size());
+	}
+
+	@Test
+	public void testIndexInvalidatedByFileWatcher() throws IOException, InterruptedException {
+		MediaInfo media = new MediaInfo();
+		SubtitleUtils.searchAndAttachExternalSubtitles(video, media, false);
+		assertEquals(3, getExternalSubtitles(media).size());
+
+		assertTrue(new File(tempDir, "Movie.2010.es.srt").createNewFile());
+		long deadline = System.currentTimeMillis() + WATCH_TIMEOUT;
+		while (!getExternalSubtitles(media).containsKey("Movie.2010.es.srt") && System.currentTimeMillis() < deadline) {
+			SubtitleUtils.searchAndAttachExternalSubtitles(video, media, false);
+			Thread.sleep(50);
+		}
+		assertEquals("spa", getExternalSubtitles(media).get("Movie.2010.es.srt").getLang());
+
+		assertTrue(new File(tempDir, "Subs/Movie.2010.de.srt").delete());
+		deadline = System.currentTimeMillis() + WATCH_TIMEOUT;
+		while (getExternalSubtitles(media).containsKey("Movie.2010.de.srt") && System.currentTimeMillis() < deadline) {
+			SubtitleUtils.searchAndAttachExternalSubtitles(video, media, false);
+			Thread.sleep(50);
+		}
+		assertFalse(getExternalSubtitles(media).containsKey("Movie.2010.de.srt"));
+		assertEquals(3, getExternalSubtitles(media).size());
+	}
+
+	@Test
+	public void testForceRefresh() throws IOException {
+		MediaInfo media = new MediaInfo();
+		SubtitleUtils.searchAndAttachExternalSubtitles(video, media, false);
+		assertTrue(new File(tempDir, "Movie.2010.it.srt").createNewFile());
+		assertTrue(SubtitleUtils.searchAndAttachExternalSubtitles(video, media, true));
+		assertEquals("ita", getExternalSubtitles(media).get("Movie.2010.it.srt").getLang());
+	}
+
+	@Test
+	public void testFolderIndexEvictsOneFolder() throws IOException {
+		MediaInfo media = new MediaInfo();
+		SubtitleUtils.searchAndAttachExternalSubtitles(video, media, false);
+		for (int i = 1; i <= SubtitleUtils.FOLDER_INDEX_MAX_SIZE; i++) {
+			File folder = new File(tempDir, "Folder" + i);
+			assertTrue(folder.mkdir());
+			SubtitleUtils.searchAndAttachExternalSubtitles(new File(folder, "Movie.mkv"), new MediaInfo(), false);
+		}
+		// the eldest folder made room, the others stay indexed
+		assertEquals(SubtitleUtils.FOLDER_INDEX_MAX_SIZE, SubtitleUtils.getFolderIndexSize());
+	}
+}